@@ -133,14 +133,26 @@ public class CodeServer {
         makeOutboxes(options, startupLogger, unitCache, minimalRebuildCacheManager);
 
     JobEventTable eventTable = new JobEventTable();
-    JobRunner runner = new JobRunner(eventTable, minimalRebuildCacheManager);
+    JobRunner runner = new JobRunner(eventTable, minimalRebuildCacheManager,
+        options.getMaxConcurrentCompiles());
+    SourceWatcher sourceWatcher = null;
+    if (options.isSpeculativeRecompileEnabled()) {
+      sourceWatcher = SourceWatcher.start(topLogger, options, outboxes, runner);
+    }
 
     JsonExporter exporter = new JsonExporter(options, outboxes);
 
     SourceHandler sourceHandler = new SourceHandler(outboxes, exporter);
     WebServer webServer = new WebServer(sourceHandler, exporter, outboxes,
-        runner, eventTable, options.getBindAddress(), options.getPort());
-    webServer.start(topLogger);
+        runner, eventTable, sourceWatcher, options.getBindAddress(), options.getPort());
+    try {
+      webServer.start(topLogger);
+    } catch (UnableToCompleteException e) {
+      if (sourceWatcher != null) {
+        sourceWatcher.shutdown();
+      }
+      throw e;
+    }
 
     return webServer;
   }
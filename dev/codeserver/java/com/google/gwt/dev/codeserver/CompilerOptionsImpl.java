@@ -285,6 +285,11 @@ class CompilerOptionsImpl extends UnmodifiableCompilerOptions {
     return false;
   }
 
+  @Override
+  public boolean shouldOptimizePrecompile() {
+    return false;
+  }
+
   @Override
   public boolean shouldOrdinalizeEnums() {
     return false;
@@ -57,6 +57,8 @@ class Job {
 
   private final ImmutableSortedMap<String, String> bindingProperties;
 
+  private final boolean speculative;
+
   // Output
 
   private final SettableFuture<Result> result = SettableFuture.create();
@@ -94,7 +96,18 @@ class Job {
    */
   Job(Outbox box, Map<String, String> bindingProperties,
       TreeLogger parentLogger, Options options) {
+    this(box, bindingProperties, parentLogger, options, false);
+  }
+
+  /**
+   * Creates a job to update an outbox.
+   * @param speculative  Whether the job was started because source files changed, before the
+   *     browser asked for a recompile.
+   */
+  Job(Outbox box, Map<String, String> bindingProperties,
+      TreeLogger parentLogger, Options options, boolean speculative) {
     this.id = chooseNextId(box);
+    this.speculative = speculative;
     this.outbox = box;
     this.inputModuleName = box.getInputModuleName();
     // TODO: we will use the binding properties to find or create the outbox,
@@ -141,6 +154,13 @@ class Job {
     return bindingProperties;
   }
 
+  /**
+   * Returns true if the job was started because source files changed, rather than on request.
+   */
+  boolean isSpeculative() {
+    return speculative;
+  }
+
   /**
    * The outbox that will serve the job's result (if successful).
    */
@@ -267,6 +287,27 @@ class Job {
     }
   }
 
+  /**
+   * Reports that this job finished without being compiled because an identical job that was
+   * waiting at the same time was compiled instead. Its result is the result of the other job.
+   * @throws IllegalStateException if the job is not waiting.
+   */
+  synchronized void onCoalesced(Job compiledJob, Result newResult) {
+    if (table == null || table.getPublishedEvent(this).getStatus() != Status.WAITING) {
+      throw new IllegalStateException("compile job is not waiting: " + id);
+    }
+
+    result.set(newResult);
+    outputModuleName = newResult.outputModuleName;
+    String message = "Compiled as job " + compiledJob.getId();
+    if (newResult.isOk()) {
+      // The output is served for the other job.
+      publish(makeEvent(Status.GONE, message));
+    } else {
+      publish(makeEvent(Status.ERROR, message));
+    }
+  }
+
   /**
    * Reports that this job's output is no longer available.
    */
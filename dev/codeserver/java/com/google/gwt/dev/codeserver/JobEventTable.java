@@ -43,8 +43,8 @@ class JobEventTable {
   private final Set<String> activeJobIds = new LinkedHashSet<String>();
 
   /**
-   * The set of compiling job ids. Since compiling is single-threaded, this set should
-   * contain zero or one entries.
+   * The set of compiling job ids, in the order they started. Jobs for different outboxes may be
+   * compiled at the same time.
    */
   private final Set<String> compilingJobIds = new LinkedHashSet<String>();
 
@@ -73,7 +73,6 @@ class JobEventTable {
 
     if (event.getStatus() == Status.COMPILING) {
       compilingJobIds.add(id);
-      assert compilingJobIds.size() <= 1;
     } else {
       compilingJobIds.remove(id);
     }
@@ -97,7 +96,7 @@ class JobEventTable {
   }
 
   /**
-   * Returns an event indicating the current status of the job that's currently being compiled,
+   * Returns an event indicating the current status of the job that's been compiling the longest,
    * or null if idle.
    */
   synchronized JobEvent getCompilingJobEvent() {
@@ -20,17 +20,32 @@ import com.google.gwt.core.ext.TreeLogger.Type;
 import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.MinimalRebuildCacheManager;
 import com.google.gwt.dev.javac.UnitCacheSingleton;
+import com.google.gwt.thirdparty.guava.common.base.Preconditions;
+import com.google.gwt.thirdparty.guava.common.collect.LinkedListMultimap;
+import com.google.gwt.thirdparty.guava.common.collect.ListMultimap;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Executes requests to compile modules using Super Dev Mode.
  *
- * <p>Guarantees that only one thread invokes the GWT compiler at a time and reports
- * progress on waiting jobs.
+ * <p>Jobs for the same outbox are compiled one at a time, in the order they were submitted.
+ * Jobs for different outboxes may be compiled at the same time, up to a configurable limit.
+ * A job submitted while an identical job (same outbox and binding properties) is still waiting
+ * is not compiled separately; it gets the result of the waiting job. The same goes for a job
+ * submitted while an identical speculative job is compiling, as long as no source files changed
+ * since that job started (see {@link #onSourcesChanged}). Reports progress on waiting jobs.
  *
  * <p>JobRunners are thread-safe.
  */
@@ -38,11 +53,41 @@ public class JobRunner {
 
   private final JobEventTable table;
   private final MinimalRebuildCacheManager minimalRebuildCacheManager;
-  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final ExecutorService executor;
+
+  /**
+   * Held for reading while compiling and for writing while cleaning the caches.
+   */
+  private final ReadWriteLock compileLock = new ReentrantReadWriteLock(true);
+
+  // Guarded by this.
+  private final Set<Outbox> busyOutboxes = Sets.newHashSet();
+  private final ListMultimap<Job, Job> coalescedJobsByJob = LinkedListMultimap.create();
+  private final Map<Outbox, Map<String, String>> lastRequestedBindingPropertiesByOutbox =
+      Maps.newHashMap();
+  private final Map<Outbox, Job> runningJobsByOutbox = Maps.newHashMap();
+  private final Map<Outbox, List<Job>> waitingJobsByOutbox = Maps.newHashMap();
+
+  /**
+   * The running speculative jobs that other jobs may still join, with the threads compiling them.
+   * Guarded by this.
+   */
+  private final Map<Job, Thread> joinableJobs = Maps.newHashMap();
 
   JobRunner(JobEventTable table, MinimalRebuildCacheManager minimalRebuildCacheManager) {
+    this(table, minimalRebuildCacheManager, 1);
+  }
+
+  /**
+   * @param maxConcurrentCompiles the maximum number of outboxes that are compiled at the same
+   *     time.
+   */
+  JobRunner(JobEventTable table, MinimalRebuildCacheManager minimalRebuildCacheManager,
+      int maxConcurrentCompiles) {
+    Preconditions.checkArgument(maxConcurrentCompiles > 0);
     this.table = table;
     this.minimalRebuildCacheManager = minimalRebuildCacheManager;
+    this.executor = Executors.newFixedThreadPool(maxConcurrentCompiles);
   }
 
   /**
@@ -66,7 +111,12 @@ public class JobRunner {
       return executor.submit(new Callable<String>() {
         @Override
         public String call() throws Exception {
-          return box.getRecompileJs(logger);
+          compileLock.readLock().lock();
+          try {
+            return box.getRecompileJs(logger);
+          } finally {
+            compileLock.readLock().unlock();
+          }
         }
       }).get();
     } catch (InterruptedException e) {
@@ -75,6 +125,22 @@ public class JobRunner {
     }
   }
 
+  /**
+   * Returns the binding properties of the last job submitted for the given outbox that wasn't
+   * speculative, or null if there wasn't one.
+   */
+  synchronized Map<String, String> getLastRequestedBindingProperties(Outbox box) {
+    return lastRequestedBindingPropertiesByOutbox.get(box);
+  }
+
+  /**
+   * Reports that source files changed, so that jobs submitted from now on won't join speculative
+   * jobs that are already compiling.
+   */
+  synchronized void onSourcesChanged() {
+    joinableJobs.clear();
+  }
+
   /**
    * Submits a job to be executed. (Returns immediately.)
    */
@@ -83,29 +149,130 @@ public class JobRunner {
       throw new IllegalStateException("job already submitted: " + job.getId());
     }
     job.onSubmitted(table);
-    executor.submit(new Runnable() {
-      @Override
-      public void run() {
+
+    final Outbox box = job.getOutbox();
+    if (!job.isSpeculative()) {
+      lastRequestedBindingPropertiesByOutbox.put(box, job.getBindingProperties());
+    }
+
+    Job runningJob = runningJobsByOutbox.get(box);
+    if (runningJob != null && joinableJobs.containsKey(runningJob)
+        && runningJob.getBindingProperties().equals(job.getBindingProperties())) {
+      // The running job already sees the current input. Somebody is waiting for it now, so it
+      // shouldn't yield the CPU anymore.
+      joinableJobs.get(runningJob).setPriority(Thread.NORM_PRIORITY);
+      coalescedJobsByJob.put(runningJob, job);
+      job.getLogger().log(Type.TRACE, "waiting for speculative job: " + runningJob.getId());
+      return;
+    }
+
+    List<Job> waitingJobs = waitingJobsByOutbox.get(box);
+    if (waitingJobs == null) {
+      waitingJobs = new LinkedList<Job>();
+      waitingJobsByOutbox.put(box, waitingJobs);
+    }
+    for (Job waitingJob : waitingJobs) {
+      if (waitingJob.getBindingProperties().equals(job.getBindingProperties())) {
+        // The waiting job hasn't started, so its compile will see the same input.
+        coalescedJobsByJob.put(waitingJob, job);
+        job.getLogger().log(Type.TRACE, "waiting for job: " + waitingJob.getId());
+        return;
+      }
+    }
+    waitingJobs.add(job);
+
+    if (busyOutboxes.add(box)) {
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          runJobs(box);
+        }
+      });
+    }
+    job.getLogger().log(Type.TRACE, "added job to queue");
+  }
+
+  /**
+   * Runs the waiting jobs of an outbox until there are none left.
+   */
+  private void runJobs(Outbox box) {
+    while (true) {
+      Job job;
+      Thread thread = Thread.currentThread();
+      int priority = thread.getPriority();
+      synchronized (this) {
+        List<Job> waitingJobs = waitingJobsByOutbox.get(box);
+        if (waitingJobs.isEmpty()) {
+          waitingJobsByOutbox.remove(box);
+          busyOutboxes.remove(box);
+          return;
+        }
+        job = waitingJobs.remove(0);
+        runningJobsByOutbox.put(box, job);
+        if (job.isSpeculative()) {
+          joinableJobs.put(job, thread);
+          // Leave the CPU to the developer's tools while nobody is waiting for the result.
+          // (Set while holding the lock, so that a job joining it can't be overridden.)
+          thread.setPriority(Thread.MIN_PRIORITY);
+        }
+      }
+
+      compileLock.readLock().lock();
+      Job.Result result;
+      try {
+        result = runJob(job);
+      } finally {
+        compileLock.readLock().unlock();
+        thread.setPriority(priority);
+      }
+
+      List<Job> coalescedJobs;
+      synchronized (this) {
+        runningJobsByOutbox.remove(box);
+        joinableJobs.remove(job);
+        coalescedJobs = coalescedJobsByJob.removeAll(job);
+      }
+      for (Job coalescedJob : coalescedJobs) {
         try {
-          recompile(job);
+          coalescedJob.onCoalesced(job, result);
         } catch (Throwable t) {
-          // Try to release the job so the HTTP request will return an error.
-          // (But this might not work if the same exception is thrown while
-          // sending the finished event.)
-          if (!job.isDone()) {
-            try {
-              job.onFinished(new Job.Result(null, null, t));
-              return;
-            } catch (Throwable t2) {
-              // fall through and log original exception
-            }
-          }
-          // Assume everything is broken. Last-ditch attempt to report the error.
           t.printStackTrace();
         }
       }
-    });
-    job.getLogger().log(Type.TRACE, "added job to queue");
+    }
+  }
+
+  /**
+   * Runs a job and returns its result.
+   */
+  private static Job.Result runJob(Job job) {
+    Job.Result result;
+    try {
+      recompile(job);
+      result = job.waitForResult();
+    } catch (Throwable t) {
+      result = new Job.Result(null, null, t);
+      // Try to release the job so the HTTP request will return an error.
+      // (But this might not work if the same exception is thrown while
+      // sending the finished event.)
+      boolean reported = false;
+      if (!job.isDone()) {
+        try {
+          job.onFinished(result);
+          reported = true;
+        } catch (Throwable t2) {
+          // fall through and log original exception
+        }
+      }
+      if (!reported) {
+        // Assume everything is broken. Last-ditch attempt to report the error.
+        t.printStackTrace();
+      }
+    }
+    if (job.isDone()) {
+      result = job.waitForResult();
+    }
+    return result;
   }
 
   private static void recompile(Job job) {
@@ -116,8 +283,9 @@ public class JobRunner {
   /**
    * A callable for clearing both unit and minimalRebuild caches.
    * <p>
-   * By packaging it as a callable and running it in the ExecutorService any danger of clearing
-   * caches at the same time as an active compile job is avoided.
+   * By packaging it as a callable and running it in the ExecutorService while holding the
+   * compile lock for writing any danger of clearing caches at the same time as an active compile
+   * job is avoided.
    */
   private class CleanerJob implements Callable<Void> {
 
@@ -130,8 +298,13 @@ public class JobRunner {
     @Override
     public Void call() throws UnableToCompleteException {
       long beforeMs = System.nanoTime() / 1000000L;
-      minimalRebuildCacheManager.deleteCaches();
-      UnitCacheSingleton.clearCache();
+      compileLock.writeLock().lock();
+      try {
+        minimalRebuildCacheManager.deleteCaches();
+        UnitCacheSingleton.clearCache();
+      } finally {
+        compileLock.writeLock().unlock();
+      }
       long afterMs = System.nanoTime() / 1000000L;
       logger.log(TreeLogger.INFO, String.format("Cleaned in %sms.", (afterMs - beforeMs)));
       return null;
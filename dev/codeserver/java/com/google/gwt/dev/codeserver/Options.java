@@ -87,6 +87,8 @@ public class Options {
   private boolean failOnError = false;
   private boolean strictResources = false;
   private int compileTestRecompiles = 0;
+  private int maxConcurrentCompiles = 1;
+  private boolean speculativeRecompile = false;
   private OptionJsInteropMode.Mode jsInteropMode = OptionJsInteropMode.Mode.NONE;
   private OptionMethodNameDisplayMode.Mode methodNameDisplayMode =
       OptionMethodNameDisplayMode.Mode.NONE;
@@ -259,6 +261,14 @@ public class Options {
     return sourceLevel;
   }
 
+  /**
+   * If true, modules are recompiled in the background when source files change, before the
+   * browser asks for a recompile.
+   */
+  boolean isSpeculativeRecompileEnabled() {
+    return speculativeRecompile;
+  }
+
   /**
    * If true, just compile the modules, then exit.
    */
@@ -277,6 +287,13 @@ public class Options {
     return compileTestRecompiles;
   }
 
+  /**
+   * The maximum number of modules that may be compiled at the same time.
+   */
+  int getMaxConcurrentCompiles() {
+    return maxConcurrentCompiles;
+  }
+
   /**
    * The hostname to put in a URL pointing to the code server.
    */
@@ -337,10 +354,12 @@ public class Options {
       registerHandler(new CompileTestFlag());
       registerHandler(new CompileTestRecompilesFlag());
       registerHandler(new FailOnErrorFlag());
+      registerHandler(new MaxConcurrentCompilesFlag());
       registerHandler(new ModuleNameArgument());
       registerHandler(new NoPrecompileFlag());
       registerHandler(new PortFlag());
       registerHandler(new SourceFlag());
+      registerHandler(new SpeculativeRecompileFlag());
       registerHandler(new StrictResourcesFlag());
       registerHandler(new WorkDirFlag());
       registerHandler(new LauncherDir());
@@ -490,6 +509,30 @@ public class Options {
     }
   }
 
+  private class SpeculativeRecompileFlag extends ArgHandlerFlag {
+
+    @Override
+    public String getLabel() {
+      return "speculativeRecompile";
+    }
+
+    @Override
+    public String getPurposeSnippet() {
+      return "Recompiles modules in the background when files in -src directories change.";
+    }
+
+    @Override
+    public boolean setFlag(boolean value) {
+      speculativeRecompile = value;
+      return true;
+    }
+
+    @Override
+    public boolean getDefaultValue() {
+      return speculativeRecompile;
+    }
+  }
+
   private class CompileTestRecompilesFlag extends ArgHandlerInt {
 
     @Override
@@ -513,6 +556,29 @@ public class Options {
     }
   }
 
+  private class MaxConcurrentCompilesFlag extends ArgHandlerInt {
+
+    @Override
+    public String getTag() {
+      return "-maxConcurrentCompiles";
+    }
+
+    @Override
+    public String[] getTagArgs() {
+      return new String[] {"count"};
+    }
+
+    @Override
+    public String getPurpose() {
+      return "The maximum number of modules compiled at the same time. Defaults to 1.";
+    }
+
+    @Override
+    public void setInt(int value) {
+      maxConcurrentCompiles = Math.max(value, 1);
+    }
+  }
+
   private class BindAddressFlag extends ArgHandlerString {
 
     @Override
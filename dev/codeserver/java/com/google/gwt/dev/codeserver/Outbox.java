@@ -52,6 +52,13 @@ class Outbox {
   private final AtomicReference<Result> published = new AtomicReference<Result>();
   private Job publishedJob; // may be null if the Result wasn't created by a Job.
 
+  // The source map of the published compile, parsed on first use and shared between requests.
+  // (Guarded by this.)
+  private File indexedSourceMapFile;
+  private long indexedSourceMapModified;
+  private SourceMap sourceMap;
+  private ReverseSourceMap reverseSourceMap;
+
   Outbox(String id, Recompiler recompiler, Options options, TreeLogger logger)
       throws UnableToCompleteException {
     Preconditions.checkArgument(isValidOutboxId(id));
@@ -115,6 +122,13 @@ class Outbox {
     return new Job(this, bindingProperties, parentLogger, options);
   }
 
+  /**
+   * Creates a Job that recompiles this outbox ahead of a request because source files changed.
+   */
+  Job makeSpeculativeJob(Map<String, String> bindingProperties, TreeLogger parentLogger) {
+    return new Job(this, bindingProperties, parentLogger, options, true);
+  }
+
   /**
    * Compiles the module again, possibly changing the output directory.
    * After returning, the result of the compile can be found via {@link Job#waitForResult}
@@ -144,6 +158,9 @@ class Outbox {
     }
     publishedJob = job;
     published.set(result);
+    indexedSourceMapFile = null;
+    sourceMap = null;
+    reverseSourceMap = null;
   }
 
   private CompileDir getOutputDir() {
@@ -197,6 +214,50 @@ class Outbox {
     return sourceMapFiles.get(0);
   }
 
+  /**
+   * Returns the directory and file listing of the source map from the most recent recompile,
+   * assuming there is one permutation. The map is only parsed once per compile.
+   *
+   * @throws RuntimeException if unable
+   */
+  synchronized SourceMap loadSourceMapForOnePermutation() {
+    File file = findIndexedSourceMap();
+    if (sourceMap == null) {
+      sourceMap = SourceMap.load(file);
+    }
+    return sourceMap;
+  }
+
+  /**
+   * Returns the Java lines that have JavaScript in the most recent recompile, assuming there is
+   * one permutation. The map is only parsed once per compile.
+   *
+   * @throws RuntimeException if unable
+   */
+  synchronized ReverseSourceMap loadReverseSourceMapForOnePermutation(TreeLogger logger) {
+    File file = findIndexedSourceMap();
+    if (reverseSourceMap == null) {
+      reverseSourceMap = ReverseSourceMap.load(logger, file);
+    }
+    return reverseSourceMap;
+  }
+
+  /**
+   * Returns the source map file for one permutation, forgetting the parsed maps if they were
+   * loaded from a different or since modified file.
+   */
+  private File findIndexedSourceMap() {
+    File file = findSourceMapForOnePermutation();
+    long modified = file.lastModified();
+    if (!file.equals(indexedSourceMapFile) || modified != indexedSourceMapModified) {
+      indexedSourceMapFile = file;
+      indexedSourceMapModified = modified;
+      sourceMap = null;
+      reverseSourceMap = null;
+    }
+    return file;
+  }
+
   /**
    * Returns the source map file given a strong name.
    *
@@ -41,7 +41,6 @@ import com.google.gwt.dev.codeserver.Job.Result;
 import com.google.gwt.dev.codeserver.JobEvent.CompileStrategy;
 import com.google.gwt.dev.javac.UnitCache;
 import com.google.gwt.dev.resource.impl.ResourceOracleImpl;
-import com.google.gwt.dev.resource.impl.ZipFileClassPathEntry;
 import com.google.gwt.dev.util.log.CompositeTreeLogger;
 import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
 import com.google.gwt.thirdparty.guava.common.base.Charsets;
@@ -427,7 +426,7 @@ public class Recompiler {
   private ModuleDef loadModule(TreeLogger logger) throws UnableToCompleteException {
 
     // make sure we get the latest version of any modified jar
-    ZipFileClassPathEntry.clearCache();
+    // (entries for unmodified jars are shared with other compiles)
     ResourceOracleImpl.clearCache();
 
     ResourceLoader resources = ResourceLoaders.forClassLoader(Thread.currentThread());
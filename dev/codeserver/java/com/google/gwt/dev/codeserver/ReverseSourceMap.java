@@ -18,19 +18,28 @@ package com.google.gwt.dev.codeserver;
 
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.debugging.sourcemap.FilePosition;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapConsumerV3.EntryVisitor;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapParseException;
 
 import java.io.File;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A mapping from Java lines to JavaScript.
+ *
+ * <p>The lines that have any JavaScript are indexed by source file when the map is loaded,
+ * so that lookups don't need to search the mappings.
  */
 class ReverseSourceMap {
-  private final SourceMapConsumerV3 consumer;
+  private final Map<String, BitSet> usedLinesBySource;
 
-  private ReverseSourceMap(SourceMapConsumerV3 consumer) {
-    this.consumer = consumer;
+  private ReverseSourceMap(Map<String, BitSet> usedLinesBySource) {
+    this.usedLinesBySource = usedLinesBySource;
   }
 
   /**
@@ -42,11 +51,26 @@ class ReverseSourceMap {
     String unparsed = Util.readFileAsString(sourceMapFile);
     try {
       consumer.parse(unparsed);
-      return new ReverseSourceMap(consumer);
     } catch (SourceMapParseException e) {
       logger.log(TreeLogger.WARN, "can't parse source map", e);
-      return new ReverseSourceMap(null);
+      return new ReverseSourceMap(Collections.<String, BitSet>emptyMap());
     }
+
+    final Map<String, BitSet> usedLinesBySource = new HashMap<String, BitSet>();
+    consumer.visitMappings(new EntryVisitor() {
+      @Override
+      public void visit(String sourceName, String symbolName, FilePosition sourceStartPosition,
+          FilePosition startPosition, FilePosition endPosition) {
+        BitSet lines = usedLinesBySource.get(sourceName);
+        if (lines == null) {
+          lines = new BitSet();
+          usedLinesBySource.put(sourceName, lines);
+        }
+        // Lines are numbered from zero in the consumer.
+        lines.set(sourceStartPosition.getLine());
+      }
+    });
+    return new ReverseSourceMap(usedLinesBySource);
   }
 
   /**
@@ -55,7 +79,7 @@ class ReverseSourceMap {
    * where the GWT compiler found it.)
    */
   boolean appearsInJavaScript(String path, int lineNumber) {
-    // TODO: getReverseMapping() seems to be off by one (lines numbered from zero). Why?
-    return consumer != null && !consumer.getReverseMapping(path, lineNumber - 1, -1).isEmpty();
+    BitSet lines = usedLinesBySource.get(path);
+    return lines != null && lineNumber > 0 && lines.get(lineNumber - 1);
   }
 }
@@ -165,14 +165,14 @@ class SourceHandler {
   }
 
   private Response makeDirectoryListPage(Outbox box) throws IOException {
-    SourceMap map = SourceMap.load(box.findSourceMapForOnePermutation());
+    SourceMap map = box.loadSourceMapForOnePermutation();
     JsonObject json = exporter.exportSourceMapDirectoryListVars(box, map);
     return Pages.newHtmlPage("config", json, "directorylist.html");
   }
 
   private Response sendFileListPage(Outbox box, String rest) throws IOException {
 
-    SourceMap map = SourceMap.load(box.findSourceMapForOnePermutation());
+    SourceMap map = box.loadSourceMapForOnePermutation();
     JsonObject json = exporter.exportSourceMapFileListVars(box, map, rest);
     return Pages.newHtmlPage("config", json, "filelist.html");
   }
@@ -204,8 +204,7 @@ class SourceHandler {
   private Response makeHtmlSourcePage(Outbox box, final String sourcePath,
       final InputStream pageBytes, TreeLogger logger) throws IOException {
 
-    final ReverseSourceMap sourceMap = ReverseSourceMap.load(logger,
-        box.findSourceMapForOnePermutation());
+    final ReverseSourceMap sourceMap = box.loadReverseSourceMapForOnePermutation(logger);
 
     final File sourceFile = new File(sourcePath);
 
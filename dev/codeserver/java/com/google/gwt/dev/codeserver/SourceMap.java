@@ -26,21 +26,51 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * In-memory representation of a SourceMap.
+ *
+ * <p>Only the list of source files is kept, indexed by directory when the map is loaded.
  */
 class SourceMap {
-  private final JsonObject json;
+  private final List<String> directories;
+  private final Map<String, List<String>> filesByParent;
 
   /**
    *@see #load
    */
   private SourceMap(JsonObject json) {
-    this.json = json;
+    JsonArray sources = (JsonArray) json.get("sources");
+    Set<String> directorySet = new HashSet<String>();
+    Map<String, List<String>> filesByParent = new HashMap<String, List<String>>();
+    for (int i = 0; i < sources.getLength(); i++) {
+      String filename = sources.get(i).asString().getString();
+      int lastSlashPos = filename.lastIndexOf('/');
+      if (lastSlashPos < 0) {
+        directorySet.add("");
+        continue;
+      }
+      directorySet.add(filename.substring(0, lastSlashPos));
+      String parent = filename.substring(0, lastSlashPos + 1);
+      List<String> files = filesByParent.get(parent);
+      if (files == null) {
+        files = new ArrayList<String>();
+        filesByParent.put(parent, files);
+      }
+      files.add(filename.substring(lastSlashPos + 1));
+    }
+
+    this.directories = new ArrayList<String>(directorySet);
+    Collections.sort(directories);
+    for (List<String> files : filesByParent.values()) {
+      Collections.sort(files);
+    }
+    this.filesByParent = filesByParent;
   }
 
   static SourceMap load(File file) {
@@ -63,18 +93,7 @@ class SourceMap {
    * in the source map.
    */
   List<String> getSourceDirectories() {
-    JsonArray sources = (JsonArray) json.get("sources");
-    Set<String> directories = new HashSet<String>();
-    for (int i = 0; i < sources.getLength(); i++) {
-      String filename = sources.get(i).asString().getString();
-      int lastSlashPos = filename.lastIndexOf('/');
-      directories.add(lastSlashPos < 0 ? "" : filename.substring(0, lastSlashPos));
-    }
-
-    List<String> result = new ArrayList<String>();
-    result.addAll(directories);
-    Collections.sort(result);
-    return result;
+    return Collections.unmodifiableList(directories);
   }
 
   /**
@@ -85,20 +104,7 @@ class SourceMap {
       throw new IllegalArgumentException("unexpected: " + parent);
     }
 
-    JsonArray sources = (JsonArray) json.get("sources");
-
-    List<String> result = new ArrayList<String>();
-    for (int i = 0; i < sources.getLength(); i++) {
-      String candidate = sources.get(i).asString().getString();
-      if (!candidate.startsWith(parent)) {
-        continue;
-      }
-      int nameStart = candidate.lastIndexOf('/') + 1;
-      if (nameStart == parent.length()) {
-        result.add(candidate.substring(nameStart));
-      }
-    }
-
-    return result;
+    List<String> files = filesByParent.get(parent);
+    return files == null ? Collections.<String>emptyList() : Collections.unmodifiableList(files);
   }
 }
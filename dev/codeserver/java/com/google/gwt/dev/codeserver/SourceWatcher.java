@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.gwt.dev.codeserver;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.dev.resource.impl.ChangedFileAccumulator;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Recompiles modules in the background when source files change, so that the output is often
+ * ready (or partly done) by the time the browser asks for a recompile.
+ *
+ * <p>Edits are debounced: the recompiles start once no more changes were seen for a short
+ * while. Each outbox is recompiled with the binding properties that the browser asked for last;
+ * outboxes that weren't compiled on request yet are skipped.
+ */
+class SourceWatcher {
+
+  /**
+   * How long the source files must be left alone before recompiling.
+   */
+  private static final long QUIET_PERIOD_MILLIS = 500;
+
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  /**
+   * Starts watching the -src directories. (Returns immediately.)
+   */
+  static SourceWatcher start(TreeLogger logger, Options options, OutboxTable outboxes,
+      JobRunner runner) throws IOException {
+    List<ChangedFileAccumulator> accumulators = Lists.newArrayList();
+    for (File dir : options.getSourcePath()) {
+      if (dir.isDirectory()) {
+        accumulators.add(new ChangedFileAccumulator(dir.getAbsoluteFile().toPath()));
+      }
+    }
+    if (accumulators.isEmpty()) {
+      logger.log(Type.WARN, "No source directories to watch for speculative recompiles.");
+    }
+
+    SourceWatcher watcher = new SourceWatcher(logger, accumulators, outboxes, runner);
+    watcher.thread.start();
+    return watcher;
+  }
+
+  private final List<ChangedFileAccumulator> accumulators;
+  private final TreeLogger logger;
+  private final OutboxTable outboxes;
+  private final JobRunner runner;
+  private final Thread thread;
+
+  private SourceWatcher(TreeLogger logger, List<ChangedFileAccumulator> accumulators,
+      OutboxTable outboxes, JobRunner runner) {
+    this.accumulators = accumulators;
+    this.logger = logger;
+    this.outboxes = outboxes;
+    this.runner = runner;
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        watch();
+      }
+    }, "SourceWatcher");
+    // Don't prevent JVM shutdown.
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Stops watching.
+   */
+  void shutdown() {
+    thread.interrupt();
+    for (ChangedFileAccumulator accumulator : accumulators) {
+      accumulator.shutdown();
+    }
+  }
+
+  private void watch() {
+    boolean changesPending = false;
+    long lastChangeMillis = 0;
+    while (true) {
+      try {
+        Thread.sleep(POLL_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        // Shutdown has been requested.
+        return;
+      }
+
+      boolean changed = false;
+      for (ChangedFileAccumulator accumulator : accumulators) {
+        try {
+          for (File file : accumulator.getAndClearChangedFiles()) {
+            if (!isIgnored(file)) {
+              changed = true;
+            }
+          }
+        } catch (ExecutionException e) {
+          logger.log(Type.WARN, "Stopped watching for source changes.", e.getCause());
+          shutdown();
+          return;
+        }
+      }
+
+      long now = System.currentTimeMillis();
+      if (changed) {
+        runner.onSourcesChanged();
+        changesPending = true;
+        lastChangeMillis = now;
+      } else if (changesPending && now - lastChangeMillis >= QUIET_PERIOD_MILLIS) {
+        changesPending = false;
+        submitJobs();
+      }
+    }
+  }
+
+  private void submitJobs() {
+    for (Outbox box : outboxes.getOutboxes()) {
+      Map<String, String> bindingProperties = runner.getLastRequestedBindingProperties(box);
+      if (bindingProperties != null) {
+        Job job = box.makeSpeculativeJob(bindingProperties, logger);
+        job.getLogger().log(Type.INFO, "source files changed, recompiling ahead of request");
+        runner.submit(job);
+      }
+    }
+  }
+
+  /**
+   * Returns true for changes that can't affect the compile, such as editor backup files.
+   */
+  private static boolean isIgnored(File file) {
+    String name = file.getName();
+    return name.startsWith(".") || name.endsWith("~");
+  }
+}
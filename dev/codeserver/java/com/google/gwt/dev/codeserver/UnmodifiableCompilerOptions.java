@@ -180,6 +180,11 @@ abstract class UnmodifiableCompilerOptions implements CompilerOptions {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void setOptimizePrecompile(boolean enabled) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void setOrdinalizeEnums(boolean enabled) {
     throw new UnsupportedOperationException();
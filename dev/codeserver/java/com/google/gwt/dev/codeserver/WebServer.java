@@ -98,18 +98,25 @@ public class WebServer {
   private final JobRunner runner;
   private final JobEventTable eventTable;
 
+  /**
+   * Watches for source changes to start speculative recompiles, or null if disabled.
+   */
+  private final SourceWatcher sourceWatcher;
+
   private final String bindAddress;
   private final int port;
 
   private Server server;
 
   WebServer(SourceHandler handler, JsonExporter jsonExporter, OutboxTable outboxes,
-      JobRunner runner, JobEventTable eventTable, String bindAddress, int port) {
+      JobRunner runner, JobEventTable eventTable, SourceWatcher sourceWatcher,
+      String bindAddress, int port) {
     this.handler = handler;
     this.jsonExporter = jsonExporter;
     this.outboxes = outboxes;
     this.runner = runner;
     this.eventTable = eventTable;
+    this.sourceWatcher = sourceWatcher;
     this.bindAddress = bindAddress;
     this.port = port;
   }
@@ -150,6 +157,9 @@ public class WebServer {
   }
 
   public void stop() throws Exception {
+    if (sourceWatcher != null) {
+      sourceWatcher.shutdown();
+    }
     server.stop();
     server = null;
   }
@@ -18,6 +18,7 @@ package com.google.gwt.dev.codeserver;
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.MinimalRebuildCacheManager;
+import com.google.gwt.dev.cfg.ModuleDefLoader;
 import com.google.gwt.dev.codeserver.Job.Result;
 import com.google.gwt.dev.javac.UnitCache;
 import com.google.gwt.dev.javac.UnitCacheSingleton;
@@ -39,6 +40,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link Recompiler}
@@ -202,6 +205,50 @@ public class RecompilerTest extends TestCase {
     assertFalse(result.isOk());
   }
 
+  public void testRecompile_sourceMapsAreReloaded()
+      throws UnableToCompleteException, IOException, InterruptedException {
+    PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+    logger.setMaxDetail(TreeLogger.ERROR);
+
+    File sourcePath = Files.createTempDir();
+    Options options = new Options();
+    options.parseArgs(new String[] {
+        "-incremental", "-src", sourcePath.getAbsolutePath(), "com.foo.SimpleModule"});
+
+    List<MockResource> originalResources = Lists.newArrayList(simpleModuleResource,
+        referencesBarEntryPointResource, barReferencesBazResource, bazReferencesFooResource,
+        fooResource);
+    writeResourcesTo(originalResources, sourcePath);
+
+    File baseCacheDir = Files.createTempDir();
+    UnitCache unitCache = UnitCacheSingleton.get(logger, null, baseCacheDir);
+    MinimalRebuildCacheManager minimalRebuildCacheManager =
+        new MinimalRebuildCacheManager(logger, baseCacheDir);
+    Recompiler recompiler = new Recompiler(OutboxDir.create(Files.createTempDir(), logger), null,
+        "com.foo.SimpleModule", options, unitCache, minimalRebuildCacheManager);
+    Outbox outbox = new Outbox("SourceMaps", recompiler, options, logger);
+    JobRunner runner = new JobRunner(new JobEventTable(), minimalRebuildCacheManager);
+
+    // The parsed maps are shared between requests for the same compile.
+    SourceMap sourceMap = outbox.loadSourceMapForOnePermutation();
+    ReverseSourceMap reverseSourceMap = outbox.loadReverseSourceMapForOnePermutation(logger);
+    assertSame(sourceMap, outbox.loadSourceMapForOnePermutation());
+    assertSame(reverseSourceMap, outbox.loadReverseSourceMapForOnePermutation(logger));
+    assertTrue(sourceMap.getSourceFilesInDirectory("com/foo/").contains("TestEntryPoint.java"));
+
+    // A recompile publishes new maps, which must be parsed again.
+    Result result = compileWithChanges(logger, runner, outbox, sourcePath,
+        Lists.<MockResource> newArrayList(referencesBarEntryPointResource));
+    assertTrue(result.isOk());
+    SourceMap recompiledSourceMap = outbox.loadSourceMapForOnePermutation();
+    ReverseSourceMap recompiledReverseSourceMap =
+        outbox.loadReverseSourceMapForOnePermutation(logger);
+    assertNotSame(sourceMap, recompiledSourceMap);
+    assertNotSame(reverseSourceMap, recompiledReverseSourceMap);
+    assertSame(recompiledSourceMap, outbox.loadSourceMapForOnePermutation());
+    assertSame(recompiledReverseSourceMap, outbox.loadReverseSourceMapForOnePermutation(logger));
+  }
+
   public void testIncrementalRecompile_modulePropertyEditsWork() throws UnableToCompleteException,
       IOException, InterruptedException {
     PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
@@ -249,11 +296,111 @@ public class RecompilerTest extends TestCase {
     assertFalse(compiledJsFile1.getName().equals(compiledJsFile2.getName()));
   }
 
+  public void testConcurrentRecompiles_waitingJobsAreCoalesced()
+      throws UnableToCompleteException, IOException {
+    PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+    logger.setMaxDetail(TreeLogger.ERROR);
+
+    File sourcePath = Files.createTempDir();
+    Options options = new Options();
+    options.parseArgs(new String[] {"-incremental", "-maxConcurrentCompiles", "2", "-src",
+        sourcePath.getAbsolutePath(), "com.foo.SimpleModule", "com.foo.PropertyModule"});
+
+    // Prepare the resources of both modules.
+    List<MockResource> originalResources = Lists.newArrayList(simpleModuleResource,
+        referencesBarEntryPointResource, propertyIsFooModuleResource,
+        performsRebindEntryPointResource, barReferencesBazResource, bazReferencesFooResource,
+        fooResource);
+    writeResourcesTo(originalResources, sourcePath);
+
+    File baseCacheDir = Files.createTempDir();
+    UnitCache unitCache = UnitCacheSingleton.get(logger, null, baseCacheDir);
+    MinimalRebuildCacheManager minimalRebuildCacheManager =
+        new MinimalRebuildCacheManager(logger, baseCacheDir);
+    Recompiler simpleRecompiler = new Recompiler(OutboxDir.create(Files.createTempDir(), logger),
+        null, "com.foo.SimpleModule", options, unitCache, minimalRebuildCacheManager);
+    Outbox simpleOutbox = new Outbox("Simple", simpleRecompiler, options, logger);
+    Recompiler propertyRecompiler = new Recompiler(OutboxDir.create(Files.createTempDir(), logger),
+        null, "com.foo.PropertyModule", options, unitCache, minimalRebuildCacheManager);
+    Outbox propertyOutbox = new Outbox("Property", propertyRecompiler, options, logger);
+    JobRunner runner = new JobRunner(new JobEventTable(), minimalRebuildCacheManager,
+        options.getMaxConcurrentCompiles());
+
+    // Submit several identical jobs for one outbox and one for the other outbox.
+    Map<String, String> bindingProperties = new HashMap<String, String>();
+    Job firstSimpleJob = simpleOutbox.makeJob(bindingProperties, logger);
+    Job secondSimpleJob = simpleOutbox.makeJob(bindingProperties, logger);
+    Job thirdSimpleJob = simpleOutbox.makeJob(bindingProperties, logger);
+    Job propertyJob = propertyOutbox.makeJob(bindingProperties, logger);
+    runner.submit(firstSimpleJob);
+    runner.submit(secondSimpleJob);
+    runner.submit(thirdSimpleJob);
+    runner.submit(propertyJob);
+
+    assertTrue(firstSimpleJob.waitForResult().isOk());
+    assertTrue(secondSimpleJob.waitForResult().isOk());
+    assertTrue(propertyJob.waitForResult().isOk());
+    // The third job was still waiting when the second one was submitted, so it was not compiled
+    // separately.
+    assertSame(secondSimpleJob.waitForResult(), thirdSimpleJob.waitForResult());
+  }
+
+  public void testSpeculativeRecompile_requestJoinsRunningJob()
+      throws UnableToCompleteException, IOException, InterruptedException {
+    PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+    logger.setMaxDetail(TreeLogger.ERROR);
+
+    File sourcePath = Files.createTempDir();
+    Options options = new Options();
+    options.parseArgs(new String[] {
+        "-incremental", "-src", sourcePath.getAbsolutePath(), "com.foo.SimpleModule"});
+
+    List<MockResource> originalResources = Lists.newArrayList(simpleModuleResource,
+        referencesBarEntryPointResource, barReferencesBazResource, bazReferencesFooResource,
+        fooResource);
+    writeResourcesTo(originalResources, sourcePath);
+
+    File baseCacheDir = Files.createTempDir();
+    UnitCache unitCache = UnitCacheSingleton.get(logger, null, baseCacheDir);
+    MinimalRebuildCacheManager minimalRebuildCacheManager =
+        new MinimalRebuildCacheManager(logger, baseCacheDir);
+    Recompiler recompiler = new Recompiler(OutboxDir.create(Files.createTempDir(), logger), null,
+        "com.foo.SimpleModule", options, unitCache, minimalRebuildCacheManager);
+    Outbox outbox = new Outbox("Speculative", recompiler, options, logger);
+    final CountDownLatch compiling = new CountDownLatch(1);
+    JobEventTable eventTable = new JobEventTable() {
+      @Override
+      synchronized void publish(JobEvent event, TreeLogger logger) {
+        super.publish(event, logger);
+        if (event.getStatus() == JobEvent.Status.COMPILING) {
+          compiling.countDown();
+        }
+      }
+    };
+    JobRunner runner = new JobRunner(eventTable, minimalRebuildCacheManager);
+
+    // Start a speculative compile and wait until it is compiling.
+    Map<String, String> bindingProperties = new HashMap<String, String>();
+    Job speculativeJob = outbox.makeSpeculativeJob(bindingProperties, logger);
+    runner.submit(speculativeJob);
+    assertNull(runner.getLastRequestedBindingProperties(outbox));
+    assertTrue("Speculative job never started compiling", compiling.await(60, TimeUnit.SECONDS));
+
+    // A request for the same permutation gets the result of the speculative compile.
+    Job requestedJob = outbox.makeJob(bindingProperties, logger);
+    runner.submit(requestedJob);
+    assertEquals(bindingProperties, runner.getLastRequestedBindingProperties(outbox));
+    assertTrue(speculativeJob.waitForResult().isOk());
+    assertSame(speculativeJob.waitForResult(), requestedJob.waitForResult());
+  }
+
   @Override
   protected void setUp() throws Exception {
     super.setUp();
     // Make sure we're using a MemoryUnitCache.
     System.setProperty(UnitCacheSingleton.GWT_PERSISTENTUNITCACHE, "false");
+    // Don't reuse modules with the same name that other tests loaded from other directories.
+    ModuleDefLoader.clearModuleCache();
   }
 
   private Result compileWithChanges(TreeLogger logger, JobRunner runner, Outbox outbox,
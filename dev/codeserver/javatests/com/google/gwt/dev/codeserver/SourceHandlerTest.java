@@ -15,10 +15,24 @@
  */
 package com.google.gwt.dev.codeserver;
 
+import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.debugging.sourcemap.FilePosition;
+import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3;
+import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapParseException;
 
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Tests for {@link SourceHandler}
  */
@@ -52,6 +66,102 @@ public class SourceHandlerTest extends TestCase {
     checkNoStrongName(VALID_STRONG_NAME + "_sourcemap/json");
   }
 
+  public void testSourceMapListings() throws IOException {
+    List<String> sources = Arrays.asList("com/foo/client/A.java", "com/foo/client/B.java",
+        "com/foo/shared/C.java", "com/foo/D.java", "gen/com/foo/client/A_Impl.java",
+        "TopLevel.java", "com/foo/client/nested/E.java");
+    StringBuilder json = new StringBuilder("{\"version\":3,\"mappings\":\"\",\"sources\":[");
+    for (int i = 0; i < sources.size(); i++) {
+      json.append(i == 0 ? "\"" : ",\"").append(sources.get(i)).append('"');
+    }
+    json.append("]}");
+    File file = File.createTempFile("sourcemap", ".json");
+    try {
+      Util.writeStringAsFile(file, json.toString());
+      SourceMap map = SourceMap.load(file);
+
+      assertEquals(listDirectoriesLinearly(sources), map.getSourceDirectories());
+      for (String directory : map.getSourceDirectories()) {
+        String parent = directory + "/";
+        assertEquals(listFilesLinearly(sources, parent), map.getSourceFilesInDirectory(parent));
+      }
+      assertEquals(Collections.emptyList(), map.getSourceFilesInDirectory("com/bar/"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testReverseSourceMap() throws IOException, SourceMapParseException {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    int[][] linesByFile = {{1, 2, 5}, {3}, {}};
+    String[] files = {"com/foo/A.java", "com/foo/B.java", "com/foo/C.java"};
+    int jsLine = 0;
+    for (int i = 0; i < files.length; i++) {
+      for (int javaLine : linesByFile[i]) {
+        generator.addMapping(files[i], null, new FilePosition(javaLine - 1, 0),
+            new FilePosition(jsLine, 0), new FilePosition(jsLine, 10));
+        jsLine++;
+      }
+    }
+    // Mapped from the last JavaScript line, which SourceMapConsumerV3's reverse mapping misses.
+    generator.addMapping("com/foo/Last.java", null, new FilePosition(6, 0),
+        new FilePosition(jsLine, 0), new FilePosition(jsLine, 10));
+    StringBuilder json = new StringBuilder();
+    generator.appendTo(json, "test");
+
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(json.toString());
+    File file = File.createTempFile("sourcemap", ".json");
+    try {
+      Util.writeStringAsFile(file, json.toString());
+      ReverseSourceMap map = ReverseSourceMap.load(TreeLogger.NULL, file);
+
+      for (String path : files) {
+        for (int line = 0; line <= 6; line++) {
+          boolean linear = line > 0 && !consumer.getReverseMapping(path, line - 1, -1).isEmpty();
+          assertEquals(path + ":" + line, linear, map.appearsInJavaScript(path, line));
+        }
+      }
+      assertTrue(map.appearsInJavaScript("com/foo/Last.java", 7));
+      assertFalse(map.appearsInJavaScript("com/foo/Last.java", 6));
+      assertFalse(map.appearsInJavaScript("com/foo/Missing.java", 1));
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * The directory listing as it was computed before source maps were indexed.
+   */
+  private static List<String> listDirectoriesLinearly(List<String> sources) {
+    Set<String> directories = new HashSet<String>();
+    for (String filename : sources) {
+      int lastSlashPos = filename.lastIndexOf('/');
+      directories.add(lastSlashPos < 0 ? "" : filename.substring(0, lastSlashPos));
+    }
+    List<String> result = new ArrayList<String>(directories);
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * The file listing as it was computed before source maps were indexed.
+   */
+  private static List<String> listFilesLinearly(List<String> sources, String parent) {
+    List<String> result = new ArrayList<String>();
+    for (String candidate : sources) {
+      if (!candidate.startsWith(parent)) {
+        continue;
+      }
+      int nameStart = candidate.lastIndexOf('/') + 1;
+      if (nameStart == parent.length()) {
+        result.add(candidate.substring(nameStart));
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
   private void checkSourceMapRequest(String validUrl) {
     assertTrue("should be a valid sourcemap URL but isn't: " + validUrl,
       SourceHandler.isSourceMapRequest(validUrl));
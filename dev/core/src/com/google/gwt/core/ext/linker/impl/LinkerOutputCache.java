@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.ext.linker.impl;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.About;
+import com.google.gwt.dev.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A store of linker output that is kept on disk across builds, so that output that can be
+ * identified without generating it again doesn't need to be regenerated.
+ * <p>
+ * Entries are looked up by a key that the caller derives from everything that determines the
+ * output, such as a hash of the input. Since keys never refer to different content, entries are
+ * never updated; the directory may be deleted at any time to reclaim space.
+ * <p>
+ * The cache is disabled unless the {@value #DIR_PROPERTY} system property names a directory.
+ */
+public class LinkerOutputCache {
+
+  /**
+   * A Java system property naming the directory that holds the cache.
+   */
+  public static final String DIR_PROPERTY = "gwt.linker.outputCacheDir";
+
+  private static LinkerOutputCache instance;
+
+  private static boolean initialized;
+
+  /**
+   * Returns the cache in the directory named by {@value #DIR_PROPERTY}, or null if it's disabled
+   * or the directory can't be created.
+   */
+  public static synchronized LinkerOutputCache get(TreeLogger logger) {
+    if (!initialized) {
+      initialized = true;
+      String dirName = System.getProperty(DIR_PROPERTY);
+      if (dirName != null) {
+        File dir = new File(dirName);
+        if (dir.isDirectory() || dir.mkdirs()) {
+          instance = new LinkerOutputCache(dir);
+        } else {
+          logger.log(TreeLogger.WARN, "Unable to create linker output cache directory: "
+              + dir.getAbsolutePath() + "; the cache is disabled");
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Returns a key for output derived from the given parts. The GWT version is included, so that
+   * upgrading the compiler doesn't reuse the output of an older one.
+   */
+  public static String keyFor(String... parts) {
+    StringBuilder key = new StringBuilder(About.getGwtVersionNum());
+    for (String part : parts) {
+      key.append('\n').append(part);
+    }
+    return key.toString();
+  }
+
+  private final AtomicLong bytesReused = new AtomicLong();
+  private final File dir;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  LinkerOutputCache(File dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Returns the cached bytes for a key, or null if there is no such entry.
+   */
+  public byte[] getBytes(String key) {
+    File cached = fileFor(key);
+    byte[] bytes = cached.isFile() ? Util.readFileAsBytes(cached) : null;
+    if (bytes == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    bytesReused.addAndGet(bytes.length);
+    return bytes;
+  }
+
+  public long getBytesReused() {
+    return bytesReused.get();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Stores bytes under a key.
+   */
+  public void putBytes(String key, byte[] bytes) throws IOException {
+    File entry = fileFor(key);
+    File temp = createTempFile(entry);
+    try {
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+      install(temp, entry);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Logs how much output was reused so far.
+   */
+  public void logStats(TreeLogger logger) {
+    if (logger.isLoggable(TreeLogger.INFO)) {
+      logger.log(TreeLogger.INFO, "Linker output cache: " + hits.get() + " hits, "
+          + misses.get() + " misses, " + bytesReused.get() + " bytes reused");
+    }
+  }
+
+  /**
+   * Creates a temporary file next to an entry, creating the directory if needed. (The cache
+   * directory may have been deleted since the cache was opened.)
+   */
+  private File createTempFile(File entry) throws IOException {
+    File parent = entry.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException("Unable to create directory: " + parent);
+    }
+    return File.createTempFile("entry", ".tmp", parent);
+  }
+
+  private File fileFor(String key) {
+    String hash = Util.computeStrongName(Util.getBytes(key));
+    return new File(new File(dir, hash.substring(0, 2)), hash);
+  }
+
+  /**
+   * Moves a complete entry into place, so that readers never see a partial file.
+   */
+  private void install(File temp, File entry) throws IOException {
+    try {
+      Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -51,8 +51,10 @@ import com.google.gwt.dev.js.ast.JsName;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsScope;
 import com.google.gwt.dev.resource.ResourceOracle;
+import com.google.gwt.dev.util.DaemonThreadPools;
 import com.google.gwt.dev.util.DefaultTextOutput;
 import com.google.gwt.dev.util.OutputFileSet;
+import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.util.tools.Utility;
 
 import java.io.BufferedOutputStream;
@@ -65,10 +67,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * An implementation of {@link LinkerContext} that is initialized from a
@@ -116,6 +123,21 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
     }
   };
 
+  /**
+   * A Java system property that sets the number of threads that write artifacts, when the
+   * output supports concurrent writes. Defaults to the number of processors.
+   */
+  public static final String EMIT_THREADS_PROPERTY = "gwt.linker.emitThreads";
+
+  private static final int EMIT_THREADS = Math.max(1, Integer.getInteger(EMIT_THREADS_PROPERTY,
+      Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * Writes artifacts in parallel. (See {@link #produceOutput}.)
+   */
+  private static final ExecutorService emitExecutor =
+      DaemonThreadPools.newFixedThreadPool(EMIT_THREADS, "ArtifactEmitter-%d");
+
   private final SortedSet<ConfigurationProperty> configurationProperties;
 
   private final JsOutputOption outputOption;
@@ -499,13 +521,17 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
    * @param out where to emit the artifact contents
    */
   public void produceOutput(TreeLogger logger, ArtifactSet artifacts,
-      Visibility visibility, OutputFileSet out)
+      final Visibility visibility, final OutputFileSet out)
       throws UnableToCompleteException {
     logger = logger.branch(TreeLogger.TRACE, "Linking " + visibility
         + " artifacts into " + out.getPathDescription(), null);
 
-    for (EmittedArtifact artifact : artifacts.find(EmittedArtifact.class)) {
-      TreeLogger artifactLogger = logger.branch(TreeLogger.DEBUG,
+    boolean concurrent = out.isConcurrentWriteSupported() && EMIT_THREADS > 1;
+    // When several artifacts have the same path, the last one wins, as it does when they are
+    // written one after the other.
+    Map<String, Callable<Void>> emitTasksByPath = new LinkedHashMap<String, Callable<Void>>();
+    for (final EmittedArtifact artifact : artifacts.find(EmittedArtifact.class)) {
+      final TreeLogger artifactLogger = logger.branch(TreeLogger.DEBUG,
           "Emitting resource " + artifact.getPartialPath(), null);
 
       if (!artifact.getVisibility().matches(visibility)) {
@@ -521,21 +547,70 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
           partialPath = partialPath.substring(1);
         }
       }
-      OutputStream artifactStream = null;
-      try {
-        artifactStream = new BufferedOutputStream(out.openForWrite(partialPath,
-            artifact.getLastModified()));
-        artifact.writeTo(artifactLogger, artifactStream);
-      } catch (IOException e) {
-        artifactLogger.log(TreeLogger.ERROR,
-            "Fatal error emitting artifact: " + artifact.getPartialPath(), e);
-        // Do not fail for Private artifacts, just log the error
-        if (visibility != Visibility.Private) {
-          throw new UnableToCompleteException();
+      if (!concurrent) {
+        emitArtifact(artifactLogger, artifact, partialPath, visibility, out);
+        continue;
+      }
+
+      final String finalPartialPath = partialPath;
+      emitTasksByPath.put(partialPath, new Callable<Void>() {
+        @Override
+        public Void call() throws UnableToCompleteException {
+          emitArtifact(artifactLogger, artifact, finalPartialPath, visibility, out);
+          return null;
+        }
+      });
+    }
+
+    if (emitTasksByPath.isEmpty()) {
+      return;
+    }
+    // Wait for every artifact to be written before reporting a failure, so that no thread is
+    // still writing to the output when it gets closed.
+    boolean failed = false;
+    try {
+      for (Future<Void> result : emitExecutor.invokeAll(emitTasksByPath.values())) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (!(e.getCause() instanceof UnableToCompleteException)) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new InternalCompilerException("Unexpected error emitting artifacts",
+                e.getCause());
+          }
+          failed = true;
         }
-      } finally {
-        Utility.close(artifactStream);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.log(TreeLogger.ERROR, "Interrupted while emitting artifacts", e);
+      throw new UnableToCompleteException();
+    }
+    if (failed) {
+      throw new UnableToCompleteException();
+    }
+  }
+
+  /**
+   * Writes one artifact to <code>out</code>.
+   */
+  private void emitArtifact(TreeLogger artifactLogger, EmittedArtifact artifact,
+      String partialPath, Visibility visibility, OutputFileSet out)
+      throws UnableToCompleteException {
+    OutputStream artifactStream = null;
+    try {
+      artifactStream = new BufferedOutputStream(out.openForWrite(partialPath,
+          artifact.getLastModified()));
+      artifact.writeTo(artifactLogger, artifactStream);
+    } catch (IOException e) {
+      artifactLogger.log(TreeLogger.ERROR,
+          "Fatal error emitting artifact: " + artifact.getPartialPath(), e);
+      // Do not fail for Private artifacts, just log the error
+      if (visibility != Visibility.Private) {
+        throw new UnableToCompleteException();
+      }
+    } finally {
+      Utility.close(artifactStream);
     }
   }
 
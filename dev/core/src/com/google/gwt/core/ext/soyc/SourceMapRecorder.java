@@ -22,11 +22,13 @@ import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.dev.jjs.JsSourceMap;
 import com.google.gwt.dev.jjs.SourceInfo;
 import com.google.gwt.dev.jjs.SourceInfoCorrelation;
+import com.google.gwt.dev.util.DaemonThreadPools;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapParseException;
+import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
 
 import java.io.ByteArrayOutputStream;
@@ -34,6 +36,10 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Creates Closure Compatible SourceMaps.
@@ -72,6 +78,13 @@ public class SourceMapRecorder {
     }
   }
 
+  /**
+   * Encodes the sourcemaps of different fragments in parallel.
+   */
+  private static final ExecutorService executor =
+      DaemonThreadPools.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          "SourceMapRecorder-%d");
+
   private final int permutationId;
   private final List<JsSourceMap> fragmentMaps;
   private final String sourceRoot;
@@ -87,30 +100,58 @@ public class SourceMapRecorder {
       throws IOException, SourceMapParseException {
     Event event = SpeedTracerLogger.start(CompilerEventType.SOURCE_MAP_RECORDER);
     List<SyntheticArtifact> toReturn = Lists.newArrayList();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
-    int fragment = 0;
-    for (JsSourceMap sourceMap : fragmentMaps) {
-      generator.reset();
+    if (fragmentMaps.size() <= 1) {
+      for (int fragment = 0; fragment < fragmentMaps.size(); fragment++) {
+        toReturn.add(createArtifact(fragment));
+      }
+      event.end();
+      return toReturn;
+    }
 
-      if (sourceRoot != null) {
-        generator.setSourceRoot(sourceRoot);
+    // The fragments don't share any state, so their sourcemaps are encoded in parallel.
+    List<Callable<SyntheticArtifact>> tasks = Lists.newArrayList();
+    for (int i = 0; i < fragmentMaps.size(); i++) {
+      final int fragment = i;
+      tasks.add(new Callable<SyntheticArtifact>() {
+        @Override
+        public SyntheticArtifact call() throws Exception {
+          return createArtifact(fragment);
+        }
+      });
+    }
+    try {
+      for (Future<SyntheticArtifact> result : executor.invokeAll(tasks)) {
+        toReturn.add(result.get());
       }
-      addExtensions(generator, fragment);
-      addMappings(new SourceMappingWriter(generator), sourceMap);
-
-      baos.reset();
-      OutputStreamWriter out = new OutputStreamWriter(baos);
-      generator.appendTo(out, "sourceMap" + fragment);
-      out.flush();
-      toReturn.add(new SymbolMapsLinker.SourceMapArtifact(permutationId, fragment,
-          baos.toByteArray(), sourceRoot));
-      fragment++;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InternalCompilerException("Interrupted while writing sourcemaps", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class,
+          SourceMapParseException.class);
+      throw new InternalCompilerException(e.getCause().toString(), e.getCause());
     }
     event.end();
     return toReturn;
   }
 
+  private SyntheticArtifact createArtifact(int fragment)
+      throws IOException, SourceMapParseException {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    if (sourceRoot != null) {
+      generator.setSourceRoot(sourceRoot);
+    }
+    addExtensions(generator, fragment);
+    addMappings(new SourceMappingWriter(generator), fragmentMaps.get(fragment));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    OutputStreamWriter out = new OutputStreamWriter(baos);
+    generator.appendTo(out, "sourceMap" + fragment);
+    out.flush();
+    return new SymbolMapsLinker.SourceMapArtifact(permutationId, fragment,
+        baos.toByteArray(), sourceRoot);
+  }
+
   private void addExtensions(SourceMapGeneratorV3 generator, int fragment)
       throws SourceMapParseException {
     // We don't convert to a string here so that the values will be added
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.thirdparty.guava.common.base.Objects;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map that can be copied in constant time.
+ * <p>
+ * A copy shares the map it was copied from as its parent and only records its own changes. The
+ * parent is frozen and must not be modified afterwards. Once a chain of parents becomes too long
+ * it is flattened, so lookups stay cheap and the cost of copying the entries is only paid once
+ * every few copies.
+ * <p>
+ * The changes made since some ancestor can be serialized on their own (see
+ * {@link #setDeltaBase}), which lets {@link MinimalRebuildCacheManager} append just those changes
+ * to a persisted cache.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+class LayeredMap<K, V> implements Serializable {
+
+  private static final int MAX_DEPTH = 8;
+
+  private transient Map<K, V> changes = Maps.newHashMap();
+
+  /**
+   * Set by deserialization when only the changes relative to a base were read. (See
+   * {@link #rebase}.)
+   */
+  private transient boolean needsBase;
+
+  /**
+   * When set, serialization writes just the changes made since this ancestor.
+   */
+  private transient LayeredMap<K, V> deltaBase;
+
+  private transient int depth;
+  private transient boolean frozen;
+  private transient LayeredMap<K, V> parent;
+
+  /**
+   * Keys that exist in an ancestor but were removed here.
+   */
+  private transient Set<K> removals = Sets.newHashSet();
+
+  public void clear() {
+    assert !frozen : "A shared map can't be modified";
+    parent = null;
+    depth = 0;
+    changes.clear();
+    removals.clear();
+  }
+
+  public boolean containsKey(K key) {
+    for (LayeredMap<K, V> layer = this; layer != null; layer = layer.parent) {
+      if (layer.changes.containsKey(key)) {
+        return true;
+      }
+      if (layer.removals.contains(key)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Makes this map a copy of the given map, which is shared and frozen.
+   */
+  public void copyFrom(LayeredMap<K, V> that) {
+    assert !that.needsBase;
+    that.frozen = true;
+    parent = that.depth >= MAX_DEPTH ? that.flatten() : that;
+    depth = parent.depth + 1;
+    changes = Maps.newHashMap();
+    removals = Sets.newHashSet();
+    frozen = false;
+  }
+
+  public V get(K key) {
+    for (LayeredMap<K, V> layer = this; layer != null; layer = layer.parent) {
+      V value = layer.changes.get(key);
+      if (value != null || layer.changes.containsKey(key)) {
+        return value;
+      }
+      if (layer.removals.contains(key)) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  public boolean hasSameContent(LayeredMap<K, V> that) {
+    return Objects.equal(this.toMap(), that.toMap());
+  }
+
+  /**
+   * Returns whether this map is the given map or was copied from it, directly or through other
+   * copies.
+   */
+  public boolean isDerivedFrom(LayeredMap<K, V> ancestor) {
+    for (LayeredMap<K, V> layer = this; layer != null; layer = layer.parent) {
+      if (layer == ancestor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void put(K key, V value) {
+    assert !frozen : "A shared map can't be modified";
+    changes.put(key, value);
+    removals.remove(key);
+  }
+
+  /**
+   * Completes a map that was deserialized from a delta by placing its changes on top of the given
+   * map, which becomes shared and frozen.
+   */
+  public void rebase(LayeredMap<K, V> base) {
+    assert needsBase;
+    Map<K, V> deltaChanges = changes;
+    Set<K> deltaRemovals = removals;
+    copyFrom(base);
+    changes.putAll(deltaChanges);
+    removals.addAll(deltaRemovals);
+    needsBase = false;
+  }
+
+  public void remove(K key) {
+    assert !frozen : "A shared map can't be modified";
+    changes.remove(key);
+    if (parent != null && parent.containsKey(key)) {
+      removals.add(key);
+    }
+  }
+
+  /**
+   * Sets the ancestor relative to which the next serialization writes its changes, or null to
+   * serialize all entries.
+   */
+  public void setDeltaBase(LayeredMap<K, V> deltaBase) {
+    assert deltaBase == null || isDerivedFrom(deltaBase);
+    this.deltaBase = deltaBase;
+  }
+
+  /**
+   * Returns whether this map was deserialized from a delta and is waiting for {@link #rebase}.
+   */
+  public boolean needsBase() {
+    return needsBase;
+  }
+
+  /**
+   * Returns the entries in a new map.
+   */
+  public Map<K, V> toMap() {
+    Map<K, V> entries = Maps.newHashMap();
+    collectChangesSince(null, entries, Sets.<K> newHashSet());
+    return entries;
+  }
+
+  /**
+   * Collects into {@code entries} the entries that were put since {@code ancestor} and into
+   * {@code removedKeys} the keys that were removed since then.
+   */
+  private void collectChangesSince(LayeredMap<K, V> ancestor, Map<K, V> entries,
+      Set<K> removedKeys) {
+    // Visit the oldest layers first so that newer changes win.
+    if (parent != null && parent != ancestor) {
+      parent.collectChangesSince(ancestor, entries, removedKeys);
+    }
+    for (K removal : removals) {
+      entries.remove(removal);
+    }
+    removedKeys.addAll(removals);
+    removedKeys.removeAll(changes.keySet());
+    entries.putAll(changes);
+  }
+
+  private LayeredMap<K, V> flatten() {
+    LayeredMap<K, V> flattened = new LayeredMap<K, V>();
+    flattened.changes = toMap();
+    flattened.frozen = true;
+    return flattened;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    needsBase = in.readBoolean();
+    changes = (Map<K, V>) in.readObject();
+    removals = (Set<K>) in.readObject();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    Map<K, V> entries = Maps.newHashMap();
+    Set<K> removedKeys = Sets.newHashSet();
+    if (deltaBase == this) {
+      // Nothing changed.
+    } else if (deltaBase != null) {
+      collectChangesSince(deltaBase, entries, removedKeys);
+    } else {
+      entries = toMap();
+    }
+    out.writeBoolean(deltaBase != null);
+    out.writeObject(entries);
+    out.writeObject(removedKeys);
+  }
+}
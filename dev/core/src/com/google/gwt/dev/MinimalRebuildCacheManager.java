@@ -27,6 +27,11 @@ import com.google.gwt.util.tools.shared.StringUtils;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -45,6 +50,12 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * Changes are immediately performed in memory and are asynchronously persisted to disk in original
  * request order.
+ * <p>
+ * A cache file is a journal of length prefixed records, each holding one serialized
+ * MinimalRebuildCache. The first record is a complete snapshot. When the cache being persisted was
+ * copied from the one persisted last, only the per type output that changed since then is written
+ * and appended as a new record. Otherwise (for instance once the shared per type output has been
+ * flattened after several copies) the file is compacted by replacing it with a new snapshot.
  */
 public class MinimalRebuildCacheManager {
 
@@ -58,6 +69,12 @@ public class MinimalRebuildCacheManager {
   private final Cache<String, MinimalRebuildCache> minimalRebuildCachesByName =
       CacheBuilder.newBuilder().maximumSize(MEMORY_CACHE_COUNT_LIMIT).build();
 
+  /**
+   * The caches last written to or read from each cache file. Only accessed from the executor.
+   */
+  private final Cache<String, MinimalRebuildCache> persistedCachesByName =
+      CacheBuilder.newBuilder().maximumSize(MEMORY_CACHE_COUNT_LIMIT).build();
+
   public MinimalRebuildCacheManager(TreeLogger logger, File baseCacheDir) {
     this.logger = logger;
     if (baseCacheDir != null) {
@@ -136,6 +153,7 @@ public class MinimalRebuildCacheManager {
     return executorService.submit(new Callable<Void>() {
       @Override
       public Void call() {
+        persistedCachesByName.invalidateAll();
         for (File cacheFile : minimalRebuildCacheDir.listFiles()) {
           if (!cacheFile.delete()) {
             logger.log(TreeLogger.WARN, "Couldn't delete " + cacheFile);
@@ -162,24 +180,24 @@ public class MinimalRebuildCacheManager {
 
         // If the file exists.
         if (minimalRebuildCacheFile.exists()) {
-          ObjectInputStream objectInputStream = null;
+          DataInputStream inputStream = null;
           // Try to read it.
           try {
-            objectInputStream = new ObjectInputStream(
+            inputStream = new DataInputStream(
                 new BufferedInputStream(new FileInputStream(minimalRebuildCacheFile)));
-            return (MinimalRebuildCache) objectInputStream.readObject();
+            return readJournal(minimalRebuildCacheFile, inputStream);
           } catch (IOException e) {
             logger.log(TreeLogger.WARN,
                 "Unable to read the rebuild cache in " + minimalRebuildCacheFile + ".");
-            Utility.close(objectInputStream);
+            Utility.close(inputStream);
             minimalRebuildCacheFile.delete();
           } catch (ClassNotFoundException e) {
             logger.log(TreeLogger.WARN,
                 "Unable to read the rebuild cache in " + minimalRebuildCacheFile + ".");
-            Utility.close(objectInputStream);
+            Utility.close(inputStream);
             minimalRebuildCacheFile.delete();
           } finally {
-            Utility.close(objectInputStream);
+            Utility.close(inputStream);
           }
         }
         return null;
@@ -193,8 +211,9 @@ public class MinimalRebuildCacheManager {
    * Persisted caches are uniquely named based on the compiler version, current module name, binding
    * properties and the location where the JVM was launched.
    * <p>
-   * Care is taken to completely and successfully write a new cache (to a different location on
-   * disk) before replacing the old cache (at the regular location on disk).
+   * When the cache was copied from the one persisted last, only its changes are appended to the
+   * cache file. Otherwise care is taken to completely and successfully write a new cache (to a
+   * different location on disk) before replacing the old cache (at the regular location on disk).
    * <p>
    * Write requests will occur in the order requested and will queue up if requests are made faster
    * than they can be completed.
@@ -214,25 +233,44 @@ public class MinimalRebuildCacheManager {
         // Ensure the cache folder exists.
         oldMinimalRebuildCacheFile.getParentFile().mkdirs();
 
-        // Write the new cache to disk.
-        ObjectOutputStream objectOutputStream = null;
+        String cacheName = oldMinimalRebuildCacheFile.getName();
+        MinimalRebuildCache persistedCache = persistedCachesByName.getIfPresent(cacheName);
+        persistedCachesByName.invalidate(cacheName);
+        boolean append = persistedCache != null && oldMinimalRebuildCacheFile.exists()
+            && minimalRebuildCache.isDerivedFrom(persistedCache);
+
+        DataOutputStream outputStream = null;
         try {
-          objectOutputStream = new ObjectOutputStream(
-              new BufferedOutputStream(new FileOutputStream(newMinimalRebuildCacheFile)));
-          objectOutputStream.writeObject(minimalRebuildCache);
-          Utility.close(objectOutputStream);
-
-          // Replace the old cache file with the new one.
-          oldMinimalRebuildCacheFile.delete();
-          newMinimalRebuildCacheFile.renameTo(oldMinimalRebuildCacheFile);
+          byte[] record = serialize(minimalRebuildCache, append ? persistedCache : null);
+          if (append) {
+            // Add the changes to the end of the journal.
+            outputStream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(oldMinimalRebuildCacheFile, true)));
+            writeRecord(outputStream, record);
+            outputStream.close();
+          } else {
+            // Write the new cache to disk.
+            outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(newMinimalRebuildCacheFile)));
+            writeRecord(outputStream, record);
+            outputStream.close();
+
+            // Replace the old cache file with the new one.
+            oldMinimalRebuildCacheFile.delete();
+            newMinimalRebuildCacheFile.renameTo(oldMinimalRebuildCacheFile);
+          }
+          persistedCachesByName.put(cacheName, minimalRebuildCache);
         } catch (IOException e) {
           logger.log(TreeLogger.WARN,
               "Unable to update the cache in " + oldMinimalRebuildCacheFile + ".");
-          newMinimalRebuildCacheFile.delete();
-        } finally {
-          if (objectOutputStream != null) {
-            Utility.close(objectOutputStream);
+          if (append) {
+            // The end of the journal may be damaged.
+            oldMinimalRebuildCacheFile.delete();
+          } else {
+            newMinimalRebuildCacheFile.delete();
           }
+        } finally {
+          Utility.close(outputStream);
         }
         return null;
       }
@@ -280,6 +318,75 @@ public class MinimalRebuildCacheManager {
     return minimalRebuildCacheDir != null && minimalRebuildCacheDir.isDirectory();
   }
 
+  /**
+   * Reads all records of a cache file and returns the cache they add up to. Only called from the
+   * executor.
+   */
+  private MinimalRebuildCache readJournal(File minimalRebuildCacheFile,
+      DataInputStream inputStream) throws IOException, ClassNotFoundException {
+    MinimalRebuildCache minimalRebuildCache = null;
+    boolean complete = true;
+    while (true) {
+      int length;
+      try {
+        length = inputStream.readInt();
+      } catch (EOFException e) {
+        break;
+      }
+      if (length < 0 || length > minimalRebuildCacheFile.length()) {
+        throw new IOException("Invalid record length " + length);
+      }
+      byte[] record = new byte[length];
+      try {
+        inputStream.readFully(record);
+      } catch (EOFException e) {
+        // The last append was interrupted. Use the records before it.
+        complete = false;
+        break;
+      }
+      ObjectInputStream objectInputStream =
+          new ObjectInputStream(new ByteArrayInputStream(record));
+      MinimalRebuildCache recordedCache = (MinimalRebuildCache) objectInputStream.readObject();
+      if (recordedCache.needsBase()) {
+        if (minimalRebuildCache == null) {
+          throw new IOException("The first record is not a complete cache");
+        }
+        recordedCache.rebase(minimalRebuildCache);
+      }
+      minimalRebuildCache = recordedCache;
+    }
+    String cacheName = minimalRebuildCacheFile.getName();
+    if (minimalRebuildCache != null && complete
+        && persistedCachesByName.getIfPresent(cacheName) == null) {
+      // Further changes to copies of this cache can be appended.
+      persistedCachesByName.put(cacheName, minimalRebuildCache);
+    }
+    return minimalRebuildCache;
+  }
+
+  /**
+   * Serializes a cache, including only the per type output that changed since the given cache
+   * when it is not null.
+   */
+  private byte[] serialize(MinimalRebuildCache minimalRebuildCache,
+      MinimalRebuildCache deltaBase) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    minimalRebuildCache.setDeltaBase(deltaBase);
+    try {
+      ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes);
+      objectOutputStream.writeObject(minimalRebuildCache);
+      objectOutputStream.close();
+    } finally {
+      minimalRebuildCache.setDeltaBase(null);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void writeRecord(DataOutputStream outputStream, byte[] record) throws IOException {
+    outputStream.writeInt(record.length);
+    outputStream.write(record);
+  }
+
   private void syncDeleteMemoryCaches() {
     minimalRebuildCachesByName.invalidateAll();
   }
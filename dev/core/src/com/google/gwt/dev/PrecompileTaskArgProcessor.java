@@ -45,6 +45,7 @@ import com.google.gwt.dev.util.arg.ArgHandlerMethodNameDisplayMode;
 import com.google.gwt.dev.util.arg.ArgHandlerMissingDepsFile;
 import com.google.gwt.dev.util.arg.ArgHandlerNamespace;
 import com.google.gwt.dev.util.arg.ArgHandlerOptimize;
+import com.google.gwt.dev.util.arg.ArgHandlerOptimizePrecompile;
 import com.google.gwt.dev.util.arg.ArgHandlerOverlappingSourceWarnings;
 import com.google.gwt.dev.util.arg.ArgHandlerSaveSource;
 import com.google.gwt.dev.util.arg.ArgHandlerScriptStyle;
@@ -87,6 +88,7 @@ class PrecompileTaskArgProcessor extends CompileArgProcessor {
     registerHandler(new ArgHandlerMissingDepsFile());
     registerHandler(new ArgHandlerNamespace(options));
     registerHandler(new ArgHandlerOptimize(options));
+    registerHandler(new ArgHandlerOptimizePrecompile(options));
     registerHandler(new ArgHandlerOverlappingSourceWarnings());
     registerHandler(new ArgHandlerSaveSource(options));
     registerHandler(new ArgHandlerSetProperties(options));
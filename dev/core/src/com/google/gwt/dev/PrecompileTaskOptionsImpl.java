@@ -339,6 +339,11 @@ public class PrecompileTaskOptionsImpl extends CompileTaskOptionsImpl
     jjsOptions.setOptimizeDataflow(enabled);
   }
 
+  @Override
+  public void setOptimizePrecompile(boolean enabled) {
+    jjsOptions.setOptimizePrecompile(enabled);
+  }
+
   @Override
   public void setOrdinalizeEnums(boolean enabled) {
     jjsOptions.setOrdinalizeEnums(enabled);
@@ -433,6 +438,11 @@ public class PrecompileTaskOptionsImpl extends CompileTaskOptionsImpl
   public boolean shouldOptimizeDataflow() {
     return jjsOptions.shouldOptimizeDataflow();
   }
+  @Override
+  public boolean shouldOptimizePrecompile() {
+    return jjsOptions.shouldOptimizePrecompile();
+  }
+
   @Override
   public boolean shouldOrdinalizeEnums() {
     return jjsOptions.shouldOrdinalizeEnums();
@@ -25,15 +25,15 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.dev.util.xml.ReflectiveParser;
 import com.google.gwt.thirdparty.guava.common.annotations.VisibleForTesting;
 import com.google.gwt.thirdparty.guava.common.collect.MapMaker;
-import com.google.gwt.thirdparty.guava.common.collect.Maps;
 import com.google.gwt.util.tools.Utility;
 
 import java.io.File;
 import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The top-level API for loading module XML.
@@ -53,14 +53,14 @@ public class ModuleDefLoader {
    * tight. The current context class loader used as a key for modules cache.
    * The module's physical name is used as a key inside the cache.
    */
-  private static final Map<ClassLoader, Map<String, ModuleDef>> loadedModulesCaches =
+  private static final ConcurrentMap<ClassLoader, Map<String, ModuleDef>> loadedModulesCaches =
       new MapMaker().weakKeys().makeMap();
 
   /**
    * A mapping from effective to physical module names.
    */
   private static final Map<String, String> moduleEffectiveNameToPhysicalName =
-    new HashMap<String, String>();
+    new ConcurrentHashMap<String, String>();
 
   public static void clearModuleCache() {
     getModulesCache().clear();
@@ -216,8 +216,12 @@ public class ModuleDefLoader {
     ClassLoader keyClassLoader = Thread.currentThread().getContextClassLoader();
     Map<String, ModuleDef> cache = loadedModulesCaches.get(keyClassLoader);
     if (cache == null) {
-      cache = Maps.newHashMap();
-      loadedModulesCaches.put(keyClassLoader, cache);
+      // Modules may be loaded by concurrent compiles (in Super Dev Mode).
+      cache = new ConcurrentHashMap<String, ModuleDef>();
+      Map<String, ModuleDef> existingCache = loadedModulesCaches.putIfAbsent(keyClassLoader, cache);
+      if (existingCache != null) {
+        cache = existingCache;
+      }
     }
     return cache;
   }
@@ -54,6 +54,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages a centralized cache for compiled units.
@@ -83,6 +86,7 @@ public class CompilationStateBuilder {
           List<ImportReference> cudOriginaImports,
           List<CompiledClass> compiledClasses) {
         Event event = SpeedTracerLogger.start(DevModeEventType.CSB_PROCESS);
+        long processStartNanos = System.nanoTime();
         try {
           // Collect parameter method names event when the compilation unit has errors.
 
@@ -175,8 +179,10 @@ public class CompilationStateBuilder {
               .setClasses(compiledClasses)
               .setProblems(cud.compilationResult().getProblems());
 
+          processedBuilders.add(builder);
           buildQueue.add(builder);
         } finally {
+          processNanos += System.nanoTime() - processStartNanos;
           event.end();
         }
       }
@@ -191,6 +197,16 @@ public class CompilationStateBuilder {
 
     private transient LinkedBlockingQueue<CompilationUnitBuilder> buildQueue;
 
+    /**
+     * The builders handed to {@link #buildQueue}, in the order the JDT compiler processed them.
+     */
+    private transient List<CompilationUnitBuilder> processedBuilders;
+
+    /**
+     * Time spent checking units and constructing their GWT AST, in the current compile pass.
+     */
+    private transient long processNanos;
+
     /**
      * The JDT compiler.
      */
@@ -284,58 +300,93 @@ public class CompilationStateBuilder {
         final TreeLogger branch = logger.branch(TreeLogger.TRACE, "Compiling...");
         // Compile anything that needs to be compiled.
         buildQueue = new LinkedBlockingQueue<CompilationUnitBuilder>();
-        final List<CompilationUnit> newlyBuiltUnits = Lists.newArrayList();
+        processedBuilders = Lists.newArrayList();
+        processNanos = 0;
+        final Map<CompilationUnitBuilder, CompilationUnit> builtUnits = Collections.synchronizedMap(
+            new IdentityHashMap<CompilationUnitBuilder, CompilationUnit>());
         final CompilationUnitBuilder sentinel = CompilationUnitBuilder.create((GeneratedUnit) null);
         final Throwable[] workerException = new Throwable[1];
         final ProgressLogger progressLogger =
             new ProgressLogger(branch, TreeLogger.TRACE, builders.size(), 10);
-        Thread buildThread = new Thread() {
-          @Override
-          public void run() {
-            int processedCompilationUnitBuilders = 0;
-            try {
-              do {
-                CompilationUnitBuilder builder = buildQueue.take();
-                if (!progressLogger.isTimerStarted()) {
-                  // Set start time here, after first job has arrived, since it can take a little
-                  // while for the first job to arrive, and this helps with the accuracy of the
-                  // estimated times.
-                  progressLogger.startTimer();
-                }
-                if (builder == sentinel) {
-                  return;
+        final AtomicInteger processedCompilationUnitBuilders = new AtomicInteger();
+        final AtomicLong buildNanos = new AtomicLong();
+        Thread[] buildThreads = new Thread[getBuildThreadCount()];
+        for (int i = 0; i < buildThreads.length; i++) {
+          buildThreads[i] = new Thread() {
+            @Override
+            public void run() {
+              try {
+                do {
+                  CompilationUnitBuilder builder = buildQueue.take();
+                  synchronized (progressLogger) {
+                    if (!progressLogger.isTimerStarted()) {
+                      // Set start time here, after first job has arrived, since it can take a
+                      // little while for the first job to arrive, and this helps with the
+                      // accuracy of the estimated times.
+                      progressLogger.startTimer();
+                    }
+                  }
+                  if (builder == sentinel) {
+                    // Pass the sentinel on to the other build threads.
+                    buildQueue.add(sentinel);
+                    return;
+                  }
+                  // Expensive, must serialize GWT AST types to bytes. Safe to run on several
+                  // threads: each builder only reads its own unit's types (references to other
+                  // units are written as external stubs) and writes to the synchronized
+                  // DiskCache.
+                  long buildStartNanos = System.nanoTime();
+                  CompilationUnit unit = builder.build();
+                  buildNanos.addAndGet(System.nanoTime() - buildStartNanos);
+                  builtUnits.put(builder, unit);
+
+                  int processed = processedCompilationUnitBuilders.incrementAndGet();
+                  synchronized (progressLogger) {
+                    progressLogger.updateProgress(processed);
+                  }
+                } while (true);
+              } catch (Throwable e) {
+                synchronized (workerException) {
+                  if (workerException[0] == null) {
+                    workerException[0] = e;
+                  }
                 }
-                // Expensive, must serialize GWT AST types to bytes.
-                CompilationUnit unit = builder.build();
-                newlyBuiltUnits.add(unit);
-
-                processedCompilationUnitBuilders++;
-                progressLogger.updateProgress(processedCompilationUnitBuilders);
-              } while (true);
-            } catch (Throwable e) {
-              workerException[0] = e;
+              }
             }
-          }
-        };
-        buildThread.setName("CompilationUnitBuilder");
-        buildThread.start();
+          };
+          buildThreads[i].setName("CompilationUnitBuilder-" + i);
+          buildThreads[i].start();
+        }
         Event jdtCompilerEvent = SpeedTracerLogger.start(eventType);
         long compilationStartNanos = System.nanoTime();
+        long jdtNanos;
         try {
           compiler.doCompile(branch, builders);
         } finally {
+          jdtNanos = System.nanoTime() - compilationStartNanos - processNanos;
           jdtCompilerEvent.end();
         }
         buildQueue.add(sentinel);
+        final List<CompilationUnit> newlyBuiltUnits = Lists.newArrayList();
         try {
-          buildThread.join();
+          for (Thread buildThread : buildThreads) {
+            buildThread.join();
+          }
           long compilationNanos = System.nanoTime() - compilationStartNanos;
-          // Convert nanos to seconds.
-          double compilationSeconds = compilationNanos / (double) TimeUnit.SECONDS.toNanos(1);
-          branch.log(TreeLogger.TRACE,
-              String.format("Compilation completed in %.02f seconds", compilationSeconds));
-          if (workerException[0] != null) {
-            throw workerException[0];
+          branch.log(TreeLogger.TRACE, String.format(
+              "Compilation completed in %.02f seconds (JDT %.02f s, GWT AST %.02f s, "
+              + "serialization %.02f s on %d threads)", toSeconds(compilationNanos),
+              toSeconds(jdtNanos), toSeconds(processNanos), toSeconds(buildNanos.get()),
+              buildThreads.length));
+          synchronized (workerException) {
+            if (workerException[0] != null) {
+              throw workerException[0];
+            }
+          }
+          // Keep the order in which JDT processed the units, regardless of which thread built
+          // each of them.
+          for (CompilationUnitBuilder builder : processedBuilders) {
+            newlyBuiltUnits.add(builtUnits.get(builder));
           }
         } catch (RuntimeException e) {
           throw e;
@@ -343,6 +394,7 @@ public class CompilationStateBuilder {
           throw new RuntimeException("Exception processing units", e);
         } finally {
           buildQueue = null;
+          processedBuilders = null;
         }
         resultUnits.addAll(newlyBuiltUnits);
         builders.clear();
@@ -451,8 +503,24 @@ public class CompilationStateBuilder {
     }
   }
 
+  /**
+   * A Java system property that can be used to change the number of threads that serialize the
+   * units produced by the JDT compiler. Defaults to one less than the number of processors, since
+   * the JDT compiler keeps one busy.
+   */
+  public static final String BUILD_THREADS_PROPERTY = "gwt.javac.buildThreads";
+
   private static final CompilationStateBuilder instance = new CompilationStateBuilder();
 
+  private static int getBuildThreadCount() {
+    return Math.max(1, Integer.getInteger(BUILD_THREADS_PROPERTY,
+        Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  private static double toSeconds(long nanos) {
+    return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
   /**
    * Compiles the given source files and adds them to the CompilationState. See
    * {@link CompileMoreLater#compile} for details.
@@ -48,6 +48,14 @@ public class MemoryUnitCache implements UnitCache {
     public CompilationUnit getUnit() {
       return unit;
     }
+
+    public ContentId getContentId() {
+      return unit.getContentId();
+    }
+
+    public long getLastModified() {
+      return unit.getLastModified();
+    }
   }
 
   /**
@@ -90,7 +98,7 @@ public class MemoryUnitCache implements UnitCache {
     String resourcePath = newUnit.getResourcePath();
     UnitCacheEntry oldEntry = unitMap.get(resourcePath);
     if (oldEntry != null) {
-      remove(oldEntry.getUnit());
+      unitMapByContentId.remove(oldEntry.getContentId());
     }
     unitMap.put(resourcePath, newEntry);
     unitMapByContentId.put(newUnit.getContentId(), newEntry);
@@ -18,12 +18,14 @@ package com.google.gwt.dev.javac;
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.TreeLogger.Type;
 import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.javac.PersistentUnitCacheDir.UnitRecord;
 import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.thirdparty.guava.common.annotations.VisibleForTesting;
 import com.google.gwt.thirdparty.guava.common.base.Preconditions;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -46,10 +48,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * intended to support only a single PersistentUnitCache instance in the
  * compiler at a time.
  * <p>
- * As new units are compiled, the cache data is appended to a log. This allows
- * Java serialization to efficiently store references. The next time the cache
- * is started, all logs are replayed and loaded into the cache in chronological
- * order, with newer units taking precedence. A new cache file is created for
+ * As new units are compiled, the cache data is appended to a log. The next time
+ * the cache is started, the record headers of all logs are replayed in
+ * chronological order, with newer units taking precedence. Only the headers are
+ * read: a unit stays on disk until {@link #find} is asked for it, and it is
+ * deserialized then. A new cache file is created for
  * any newly compiled units in this session. After a threshold of a certain
  * number of files in the directory is reached
  * {@link PersistentUnitCache#CACHE_FILE_THRESHOLD} , the cache files are
@@ -68,10 +71,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Known Issues:
  *
  * <ul>
- * <li>This design uses an eager cache to load every unit in the cache on the
- * first reference to find() or add(). When the cache is large (10000 units), it
- * uses lots of heap and takes 5-10 seconds. Once the PersistentUnitCache is
- * created, it starts eagerly loading the cache in a background thread).</li>
+ * <li>The index of every unit in the cache is loaded on the first reference to
+ * find() or add(). Once the PersistentUnitCache is created, it starts loading
+ * the index in a background thread.</li>
  *
  * <li>Although units logged to disk with the same resource path are eventually
  * cleaned up, the most recently compiled unit stays in the cache forever. This
@@ -194,7 +196,7 @@ class PersistentUnitCache extends MemoryUnitCache {
   public CompilationUnit find(ContentId contentId) {
     backgroundService.waitForCacheToLoad();
     synchronized (this) {
-      return super.find(contentId);
+      return materialize(unitMapByContentId.get(contentId));
     }
   }
 
@@ -202,7 +204,7 @@ class PersistentUnitCache extends MemoryUnitCache {
   public CompilationUnit find(String resourcePath) {
     backgroundService.waitForCacheToLoad();
     synchronized (this) {
-      return super.find(resourcePath);
+      return materialize(unitMap.get(resourcePath));
     }
   }
 
@@ -220,35 +222,111 @@ class PersistentUnitCache extends MemoryUnitCache {
   }
 
   /**
-   * Adds a compilation unit from disk into the in-memory cache.
+   * Adds a compilation unit from disk into the in-memory cache, without deserializing it.
    * (Callback from {@link PersistentUnitCacheDir}.)
    */
-  synchronized void maybeAddLoadedUnit(CachedCompilationUnit unit) {
-    UnitCacheEntry entry = new UnitCacheEntry(unit, UnitOrigin.PERSISTENT);
-    UnitCacheEntry existingEntry = unitMap.get(unit.getResourcePath());
+  synchronized void maybeAddLoadedUnit(UnitRecord record) {
+    UnitCacheEntry entry = new LazyUnitCacheEntry(record);
+    UnitCacheEntry existingEntry = unitMap.get(record.resourcePath);
     /*
      * Don't assume that an existing entry is stale - an entry might have been loaded already from
      * another source that is more up to date. If the timestamps are the same, accept the latest
      * version. If it turns out to be stale, it will be recompiled and the updated unit will win
      * this test the next time the session starts.
      */
-    if (existingEntry != null
-        && unit.getLastModified() >= existingEntry.getUnit().getLastModified()) {
-      super.remove(existingEntry.getUnit());
-      unitMap.put(unit.getResourcePath(), entry);
-      unitMapByContentId.put(unit.getContentId(), entry);
+    if (existingEntry != null && record.lastModified >= existingEntry.getLastModified()) {
+      unitMapByContentId.remove(existingEntry.getContentId());
+      unitMap.put(record.resourcePath, entry);
+      unitMapByContentId.put(record.contentId, entry);
     } else if (existingEntry == null) {
-      unitMap.put(unit.getResourcePath(), entry);
-      unitMapByContentId.put(unit.getContentId(), entry);
+      unitMap.put(record.resourcePath, entry);
+      unitMapByContentId.put(record.contentId, entry);
     }
   }
 
-  private synchronized List<CompilationUnit> getUnitsToSaveToDisk() {
-    List<CompilationUnit> result = Lists.newArrayList();
-    for (UnitCacheEntry entry : unitMap.values()) {
-      result.add(Preconditions.checkNotNull(entry.getUnit()));
+  /**
+   * Returns the unit of an entry, deserializing it if it's still on disk. If it can't be read,
+   * the entry is dropped, so that the unit is compiled again.
+   */
+  private CompilationUnit materialize(UnitCacheEntry entry) {
+    if (entry == null) {
+      return null;
+    }
+    if (!(entry instanceof LazyUnitCacheEntry)) {
+      return entry.getUnit();
+    }
+    LazyUnitCacheEntry lazyEntry = (LazyUnitCacheEntry) entry;
+    try {
+      return lazyEntry.load();
+    } catch (IOException e) {
+      backgroundService.logger.log(TreeLogger.TRACE, "Ignoring unreadable cached unit "
+          + lazyEntry.record.resourcePath, e);
+    } catch (ClassNotFoundException e) {
+      backgroundService.logger.log(TreeLogger.TRACE, "Ignoring unreadable cached unit "
+          + lazyEntry.record.resourcePath, e);
+    }
+    unitMap.remove(lazyEntry.record.resourcePath);
+    unitMapByContentId.remove(lazyEntry.record.contentId);
+    return null;
+  }
+
+  private synchronized List<UnitCacheEntry> getUnitsToSaveToDisk() {
+    return Lists.newArrayList(unitMap.values());
+  }
+
+  /**
+   * Returns where the unit of an entry is currently stored.
+   */
+  private synchronized UnitRecord recordOf(LazyUnitCacheEntry entry) {
+    return entry.record;
+  }
+
+  /**
+   * Points the given entries to the copies of their units written during compaction.
+   */
+  private synchronized void relocate(List<LazyUnitCacheEntry> entries, List<UnitRecord> records) {
+    for (int i = 0; i < entries.size(); i++) {
+      entries.get(i).record = records.get(i);
+    }
+  }
+
+  /**
+   * An entry loaded from a cache file. The unit is read from the file the first time it's needed.
+   * (Guarded by the lock on the cache.)
+   */
+  private static class LazyUnitCacheEntry extends UnitCacheEntry {
+    private UnitRecord record;
+    private CompilationUnit unit;
+
+    LazyUnitCacheEntry(UnitRecord record) {
+      super(null, UnitOrigin.PERSISTENT);
+      this.record = record;
+    }
+
+    /**
+     * Returns the unit, or null if it hasn't been read yet.
+     */
+    @Override
+    public CompilationUnit getUnit() {
+      return unit;
+    }
+
+    @Override
+    public ContentId getContentId() {
+      return record.contentId;
+    }
+
+    @Override
+    public long getLastModified() {
+      return record.lastModified;
+    }
+
+    CompilationUnit load() throws IOException, ClassNotFoundException {
+      if (unit == null) {
+        unit = record.load();
+      }
+      return unit;
     }
-    return result;
   }
 
   /**
@@ -398,16 +476,30 @@ class PersistentUnitCache extends MemoryUnitCache {
      * @param cleanupInProgress a semaphore to release when done.
      * (The permit must already be acquired.)
      */
-    Future<?> asyncCompact(final List<CompilationUnit> unitsToSave,
+    Future<?> asyncCompact(final List<UnitCacheEntry> unitsToSave,
         final Semaphore cleanupInProgress) {
 
       return service.submit(new Runnable() {
         @Override
         public void run() {
           try {
-            for (CompilationUnit unit : unitsToSave) {
-              cacheDir.writeUnit(unit);
+            // Units that are still on disk are copied without deserializing them.
+            List<LazyUnitCacheEntry> movedEntries = Lists.newArrayList();
+            List<UnitRecord> movedRecords = Lists.newArrayList();
+            for (UnitCacheEntry entry : unitsToSave) {
+              if (entry instanceof LazyUnitCacheEntry) {
+                LazyUnitCacheEntry lazyEntry = (LazyUnitCacheEntry) entry;
+                UnitRecord copy = cacheDir.copyRecord(cacheToLoad.recordOf(lazyEntry));
+                if (copy != null) {
+                  movedEntries.add(lazyEntry);
+                  movedRecords.add(copy);
+                }
+              } else {
+                cacheDir.writeUnit(Preconditions.checkNotNull(entry.getUnit()));
+              }
             }
+            cacheDir.flush();
+            cacheToLoad.relocate(movedEntries, movedRecords);
             cacheDir.deleteClosedCacheFiles();
             cacheDir.rotate(); // Move to a new, empty file.
           } catch (UnableToCompleteException e) {
@@ -26,10 +26,17 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.thirdparty.guava.common.annotations.VisibleForTesting;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.io.ByteStreams;
+import com.google.gwt.thirdparty.guava.common.io.CountingInputStream;
+import com.google.gwt.thirdparty.guava.common.io.CountingOutputStream;
 import com.google.gwt.util.tools.Utility;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,18 +44,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * The directory containing persistent unit cache files.
  * (Helper class for {@link PersistentUnitCache}.)
+ *
+ * <p>A cache file starts with {@link #FILE_MAGIC} and {@link #FILE_FORMAT_VERSION}, followed by
+ * one record per unit. Each record has a small header, which holds the resource path, content id,
+ * last modified time, AST version and length of the unit. The header is followed by the unit
+ * itself, serialized on its own. The headers are all that is read when loading the cache, so
+ * units are only deserialized once somebody asks for them (see {@link UnitRecord#load}).</p>
  */
 class PersistentUnitCacheDir {
 
   private static final String DIRECTORY_NAME = "gwt-unitCache";
   private static final String CACHE_FILE_PREFIX = "gwt-unitCache-";
 
+  private static final int FILE_MAGIC = 0x47554331; // "GUC1"
+  private static final int FILE_FORMAT_VERSION = 1;
+
   static final String CURRENT_VERSION_CACHE_FILE_PREFIX =
       CACHE_FILE_PREFIX + CompilerVersion.getHash() + "-";
 
@@ -114,7 +131,8 @@ class PersistentUnitCacheDir {
   }
 
   /**
-   * Load everything cached on disk into memory.
+   * Loads the index of everything cached on disk into memory. The units themselves stay on disk
+   * until they are needed.
    */
   synchronized void loadUnitMap(PersistentUnitCache destination) {
     Event loadPersistentUnitEvent =
@@ -182,13 +200,37 @@ class PersistentUnitCacheDir {
 
   /**
    * Writes a compilation unit to the disk cache.
+   *
+   * @return the record written, or null if no file is open
    */
-  synchronized void writeUnit(CompilationUnit unit) throws UnableToCompleteException {
+  synchronized UnitRecord writeUnit(CompilationUnit unit) throws UnableToCompleteException {
     if (openFile == null) {
       logger.log(Type.TRACE, "Skipped writing compilation unit to cache because no file is open");
-      return;
+      return null;
+    }
+    return openFile.writeUnit(logger, unit);
+  }
+
+  /**
+   * Copies a unit that is still on disk to the currently open file, without deserializing it.
+   *
+   * @return the copied record, or null if no file is open
+   */
+  synchronized UnitRecord copyRecord(UnitRecord record) throws UnableToCompleteException {
+    if (openFile == null) {
+      logger.log(Type.TRACE, "Skipped copying compilation unit because no file is open");
+      return null;
+    }
+    return openFile.copyRecord(logger, record);
+  }
+
+  /**
+   * Flushes the currently open file, so that the records written to it can be read back.
+   */
+  synchronized void flush() throws UnableToCompleteException {
+    if (openFile != null) {
+      openFile.flush(logger);
     }
-    openFile.writeUnit(logger, unit);
   }
 
   /**
@@ -212,52 +254,53 @@ class PersistentUnitCacheDir {
   }
 
   /**
-   * Loads all the units in a cache file into the given cache.
+   * Loads the record headers of a cache file into the given cache.
    * Delete it if unable to read it.
    */
   private void loadOrDeleteCacheFile(File cacheFile, PersistentUnitCache destination) {
     FileInputStream fis = null;
-    BufferedInputStream bis = null;
-    ObjectInputStream inputStream = null;
+    DataInputStream inputStream = null;
 
     boolean ok = false;
     int unitsLoaded = 0;
     try {
       fis = new FileInputStream(cacheFile);
-      bis = new BufferedInputStream(fis);
-      /*
-       * It is possible for the next call to throw an exception, leaving
-       * inputStream null and fis still live.
-       */
-      inputStream = new StringInterningObjectInputStream(bis);
-
-      // Read objects until we get an EOF exception.
-      while (true) {
-        CachedCompilationUnit unit = (CachedCompilationUnit) inputStream.readObject();
-        if (unit == null) {
-          // Won't normally get here. Not sure why this check was here before.
-          logger.log(Type.WARN, "unexpected null in cache file: " + cacheFile);
+      long fileLength = fis.getChannel().size();
+      CountingInputStream countingStream =
+          new CountingInputStream(new BufferedInputStream(fis));
+      inputStream = new DataInputStream(countingStream);
+      if (inputStream.readInt() != FILE_MAGIC
+          || inputStream.readInt() != FILE_FORMAT_VERSION) {
+        throw new IOException("Not a unit cache file");
+      }
+
+      // Read record headers until we get to the end of the file, skipping over the units.
+      while (countingStream.getCount() < fileLength) {
+        UnitRecord record = UnitRecord.readHeader(inputStream, cacheFile,
+            countingStream.getCount());
+        if (record == null) {
+          // The last unit was not completely written; ignore it.
           break;
         }
-        if (unit.getTypesSerializedVersion() != GwtAstBuilder.getSerializationVersion()) {
+        if (record.offset + record.length > fileLength) {
+          break;
+        }
+        ByteStreams.skipFully(inputStream, record.length);
+        if (record.astVersion != GwtAstBuilder.getSerializationVersion()) {
           continue;
         }
-        destination.maybeAddLoadedUnit(unit);
+        destination.maybeAddLoadedUnit(record);
         unitsLoaded++;
       }
-
+      ok = true;
     } catch (EOFException ignored) {
-      // This is a normal exit. Go on to the next file.
+      // The file header hasn't been written yet. Go on to the next file.
       ok = true;
     } catch (IOException e) {
       logger.log(TreeLogger.TRACE, "Ignoring and deleting cache log "
           + cacheFile.getAbsolutePath() + " due to read error.", e);
-    } catch (ClassNotFoundException e) {
-      logger.log(TreeLogger.TRACE, "Ignoring and deleting cache log "
-          + cacheFile.getAbsolutePath() + " due to deserialization error.", e);
     } finally {
       Utility.close(inputStream);
-      Utility.close(bis);
       Utility.close(fis);
     }
 
@@ -335,6 +378,102 @@ class PersistentUnitCacheDir {
     return newFile;
   }
 
+  /**
+   * Where a unit is stored in a cache file, along with what the cache needs to know about it
+   * before deserializing it.
+   */
+  static class UnitRecord {
+    final File file;
+    /**
+     * The offset of the serialized unit in the file.
+     */
+    final long offset;
+    /**
+     * The length of the serialized unit.
+     */
+    final int length;
+    final String resourcePath;
+    final ContentId contentId;
+    final long lastModified;
+    final long astVersion;
+
+    private final String sourceTypeName;
+    private final String strongHash;
+
+    private UnitRecord(File file, long offset, int length, String resourcePath,
+        String sourceTypeName, String strongHash, long lastModified, long astVersion) {
+      this.file = file;
+      this.offset = offset;
+      this.length = length;
+      this.resourcePath = resourcePath;
+      this.sourceTypeName = sourceTypeName;
+      this.strongHash = strongHash;
+      this.contentId = new ContentId(sourceTypeName, strongHash);
+      this.lastModified = lastModified;
+      this.astVersion = astVersion;
+    }
+
+    /**
+     * Reads and deserializes the unit.
+     */
+    CachedCompilationUnit load() throws IOException, ClassNotFoundException {
+      byte[] bytes = new byte[length];
+      RandomAccessFile in = new RandomAccessFile(file, "r");
+      try {
+        in.seek(offset);
+        in.readFully(bytes);
+      } finally {
+        Utility.close(in);
+      }
+      ObjectInputStream objectStream =
+          new StringInterningObjectInputStream(new ByteArrayInputStream(bytes));
+      try {
+        return (CachedCompilationUnit) objectStream.readObject();
+      } finally {
+        Utility.close(objectStream);
+      }
+    }
+
+    /**
+     * Returns the same record, stored at another place.
+     */
+    private UnitRecord moveTo(File newFile, long newOffset) {
+      return new UnitRecord(newFile, newOffset, length, resourcePath, sourceTypeName,
+          strongHash, lastModified, astVersion);
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+      out.writeUTF(resourcePath);
+      out.writeUTF(sourceTypeName);
+      out.writeUTF(strongHash);
+      out.writeLong(lastModified);
+      out.writeLong(astVersion);
+      out.writeInt(length);
+    }
+
+    /**
+     * Reads the header of the record that starts at the given position of the stream.
+     * Returns null if the header was truncated.
+     */
+    private static UnitRecord readHeader(DataInputStream in, File file, long position)
+        throws IOException {
+      CountingInputStream countingStream = new CountingInputStream(in);
+      DataInputStream headerStream = new DataInputStream(countingStream);
+      try {
+        String resourcePath = headerStream.readUTF();
+        String sourceTypeName = headerStream.readUTF();
+        String strongHash = headerStream.readUTF();
+        long lastModified = headerStream.readLong();
+        long astVersion = headerStream.readLong();
+        int length = headerStream.readInt();
+        return new UnitRecord(file, position + countingStream.getCount(), length, resourcePath,
+            sourceTypeName, strongHash, lastModified, astVersion);
+      } catch (EOFException e) {
+        return null;
+      }
+    }
+  }
+
   /**
    * The current file and stream being written to by the persistent unit cache, if any.
    *
@@ -342,7 +481,8 @@ class PersistentUnitCacheDir {
    */
   private static class OpenFile {
     private final File file;
-    private final ObjectOutputStream stream;
+    private final CountingOutputStream countingStream;
+    private final DataOutputStream stream;
     private int unitsWritten = 0;
 
     /**
@@ -353,30 +493,91 @@ class PersistentUnitCacheDir {
     OpenFile(TreeLogger logger, File toOpen)
         throws UnableToCompleteException {
       logger.log(Type.TRACE, "Opening cache file: " + toOpen);
-      ObjectOutputStream newStream = openObjectStream(logger, toOpen);
+      FileOutputStream fstream = null;
+      try {
+        fstream = new FileOutputStream(toOpen);
+        this.countingStream = new CountingOutputStream(new BufferedOutputStream(fstream));
+        this.stream = new DataOutputStream(countingStream);
+        stream.writeInt(FILE_MAGIC);
+        stream.writeInt(FILE_FORMAT_VERSION);
+      } catch (IOException e) {
+        logger.log(Type.ERROR, "Can't open persistent unit cache file", e);
+        Utility.close(fstream);
+        throw new UnableToCompleteException();
+      }
 
       this.file = toOpen;
-      this.stream = newStream;
       unitsWritten = 0;
     }
 
     /**
-     * Writes a compilation unit to the currently open file, if any.
-     * @return true if written
+     * Writes a compilation unit to the currently open file.
+     * @return the record written
      * @throws UnableToCompleteException if the file was open but we can't append.
      */
-    boolean writeUnit(TreeLogger logger, CompilationUnit unit)
+    UnitRecord writeUnit(TreeLogger logger, CompilationUnit unit)
         throws UnableToCompleteException {
       try {
-        stream.writeObject(unit);
-        unitsWritten++;
-        return true;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream objectStream = new ObjectOutputStream(bytes);
+        objectStream.writeObject(unit);
+        objectStream.close();
+
+        ContentId contentId = unit.getContentId();
+        String sourceTypeName = contentId.getSourceTypeName();
+        // ContentId only keeps the strong hash as part of its key.
+        String strongHash = contentId.get().substring(sourceTypeName.length() + 1);
+        UnitRecord record = new UnitRecord(file, 0, bytes.size(), unit.getResourcePath(),
+            sourceTypeName, strongHash, unit.getLastModified(),
+            GwtAstBuilder.getSerializationVersion());
+        return write(record, bytes.toByteArray());
       } catch (IOException e) {
         logger.log(TreeLogger.ERROR, "Error saving compilation unit to cache file: " + file, e);
         throw new UnableToCompleteException();
       }
     }
 
+    /**
+     * Copies a record from another cache file to the currently open file.
+     * @return the record written
+     * @throws UnableToCompleteException if we can't read the record or append it.
+     */
+    UnitRecord copyRecord(TreeLogger logger, UnitRecord record)
+        throws UnableToCompleteException {
+      byte[] bytes = new byte[record.length];
+      try {
+        RandomAccessFile in = new RandomAccessFile(record.file, "r");
+        try {
+          in.seek(record.offset);
+          in.readFully(bytes);
+        } finally {
+          Utility.close(in);
+        }
+      } catch (IOException e) {
+        logger.log(TreeLogger.ERROR, "Error reading compilation unit from cache file: "
+            + record.file, e);
+        throw new UnableToCompleteException();
+      }
+      try {
+        return write(record, bytes);
+      } catch (IOException e) {
+        logger.log(TreeLogger.ERROR, "Error saving compilation unit to cache file: " + file, e);
+        throw new UnableToCompleteException();
+      }
+    }
+
+    /**
+     * Flushes buffered records to the file.
+     */
+    void flush(TreeLogger logger) throws UnableToCompleteException {
+      try {
+        stream.flush();
+      } catch (IOException e) {
+        logger.log(TreeLogger.ERROR, "Error flushing cache file: " + file, e);
+        throw new UnableToCompleteException();
+      }
+    }
+
     /**
      * Closes the current file and deletes it if it's empty. If no file is open, does nothing.
      */
@@ -396,18 +597,12 @@ class PersistentUnitCacheDir {
       }
     }
 
-    private static ObjectOutputStream openObjectStream(TreeLogger logger, File file)
-        throws UnableToCompleteException {
-
-      FileOutputStream fstream = null;
-      try {
-        fstream = new FileOutputStream(file);
-        return new ObjectOutputStream(new BufferedOutputStream(fstream));
-      } catch (IOException e) {
-        logger.log(Type.ERROR, "Can't open persistent unit cache file", e);
-        Utility.close(fstream);
-        throw new UnableToCompleteException();
-      }
+    private UnitRecord write(UnitRecord record, byte[] unitBytes) throws IOException {
+      record.writeHeader(stream);
+      UnitRecord written = record.moveTo(file, countingStream.getCount());
+      stream.write(unitBytes);
+      unitsWritten++;
+      return written;
     }
   }
 }
@@ -43,6 +43,7 @@ public class JJSOptionsImpl implements JJSOptions, Serializable {
   private JsNamespaceOption namespace = JsNamespaceOption.NONE;
   private int optimizationLevel = OptionOptimize.OPTIMIZE_LEVEL_DEFAULT;
   private boolean optimizeDataflow = true;
+  private boolean optimizePrecompile = false;
   private boolean ordinalizeEnums = true;
   private JsOutputOption output = JsOutputOption.OBFUSCATED;
   private boolean removeDuplicateFunctions = true;
@@ -77,6 +78,7 @@ public class JJSOptionsImpl implements JJSOptions, Serializable {
     setInlineLiteralParameters(other.shouldInlineLiteralParameters());
     setOptimizationLevel(other.getOptimizationLevel());
     setOptimizeDataflow(other.shouldOptimizeDataflow());
+    setOptimizePrecompile(other.shouldOptimizePrecompile());
     setOrdinalizeEnums(other.shouldOrdinalizeEnums());
     setOutput(other.getOutput());
     setRemoveDuplicateFunctions(other.shouldRemoveDuplicateFunctions());
@@ -290,6 +292,11 @@ public class JJSOptionsImpl implements JJSOptions, Serializable {
     optimizeDataflow = enabled;
   }
 
+  @Override
+  public void setOptimizePrecompile(boolean enabled) {
+    optimizePrecompile = enabled;
+  }
+
   @Override
   public void setOrdinalizeEnums(boolean enabled) {
     ordinalizeEnums = enabled;
@@ -370,6 +377,11 @@ public class JJSOptionsImpl implements JJSOptions, Serializable {
     return optimizeDataflow;
   }
 
+  @Override
+  public boolean shouldOptimizePrecompile() {
+    return optimizePrecompile;
+  }
+
   @Override
   public boolean shouldOrdinalizeEnums() {
     return ordinalizeEnums;
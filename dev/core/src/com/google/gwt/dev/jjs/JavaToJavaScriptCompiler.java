@@ -162,6 +162,7 @@ import com.google.gwt.dev.js.ast.JsParameter;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsVars;
 import com.google.gwt.dev.js.ast.JsVisitor;
+import com.google.gwt.dev.util.DaemonThreadPools;
 import com.google.gwt.dev.util.DefaultTextOutput;
 import com.google.gwt.dev.util.Memory;
 import com.google.gwt.dev.util.Name.SourceName;
@@ -173,9 +174,11 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.soyc.SoycDashboard;
 import com.google.gwt.soyc.io.ArtifactsOutputDirectory;
+import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.thirdparty.guava.common.collect.ImmutableMap;
 import com.google.gwt.thirdparty.guava.common.collect.Iterables;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
 import com.google.gwt.thirdparty.guava.common.collect.Multimap;
 import com.google.gwt.thirdparty.guava.common.collect.Sets;
 
@@ -196,6 +199,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -226,6 +233,12 @@ public final class JavaToJavaScriptCompiler {
    */
   private static final int MAX_PASSES = 100;
 
+  /**
+   * A Java system property that sets the number of threads that generate the Js code of the
+   * fragments of a permutation. Defaults to the number of processors. Read at each compile.
+   */
+  public static final String GENERATE_THREADS_PROPERTY = "gwt.js.generateThreads";
+
   static {
     // Preload the internal compiler exception just in case we run out of memory?.
     InternalCompilerException.preload();
@@ -408,8 +421,11 @@ public final class JavaToJavaScriptCompiler {
       JsBreakUpLargeVarStatements.exec(jsProgram, properties.getConfigurationProperties());
 
       // (8) Generate Js source
-      List<JsSourceMap> sourceInfoMaps = new ArrayList<JsSourceMap>();
       boolean isSourceMapsEnabled = properties.isTrueInAnyPermutation("compiler.useSourceMaps");
+      // Only collected when a source map or compile report needs them.
+      List<JsSourceMap> sourceInfoMaps =
+          isSourceMapsEnabled || options.isJsonSoycEnabled() || options.isSoycExtra()
+              ? new ArrayList<JsSourceMap>() : null;
       String[] jsFragments = new String[jsProgram.getFragmentCount()];
       StatementRanges[] ranges = new StatementRanges[jsFragments.length];
       SizeBreakdown[] sizeBreakdowns = options.isJsonSoycEnabled() || options.isSoycEnabled()
@@ -492,7 +508,7 @@ public final class JavaToJavaScriptCompiler {
 
   private void optimizeJava() throws InterruptedException {
     if (shouldOptimize()) {
-      optimizeJavaToFixedPoint();
+      optimizeJavaToFixedPoint(false);
       RemoveEmptySuperCalls.exec(jprogram);
     }
   }
@@ -745,9 +761,9 @@ public final class JavaToJavaScriptCompiler {
   /**
    * Generate Js code from the given Js ASTs. Also produces information about that transformation.
    */
-  private void generateJavaScriptCode(JavaToJavaScriptMap jjsMap, String[] jsFragments,
+  private void generateJavaScriptCode(final JavaToJavaScriptMap jjsMap, String[] jsFragments,
       StatementRanges[] ranges, SizeBreakdown[] sizeBreakdowns,
-      List<JsSourceMap> sourceInfoMaps, boolean sourceMapsEnabled) {
+      List<JsSourceMap> sourceInfoMaps, final boolean sourceMapsEnabled) {
 
     Event generateJavascriptEvent =
         SpeedTracerLogger.start(CompilerEventType.GENERATE_JAVASCRIPT);
@@ -760,58 +776,124 @@ public final class JavaToJavaScriptCompiler {
       return;
     }
 
+    final boolean sourceInfoMapsNeeded = sourceInfoMaps != null;
+    List<Callable<GeneratedFragment>> tasks = Lists.newArrayList();
     for (int i = 0; i < jsFragments.length; i++) {
-      DefaultTextOutput out = new DefaultTextOutput(!options.isIncrementalCompileEnabled() &&
-          options.getOutput().shouldMinimize());
-      JsReportGenerationVisitor v = new JsReportGenerationVisitor(out, jjsMap,
-          options.isJsonSoycEnabled());
-      v.accept(jsProgram.getFragmentBlock(i));
-
-      StatementRanges statementRanges = v.getStatementRanges();
-      String code = out.toString();
-      JsSourceMap infoMap = (sourceInfoMaps != null) ? v.getSourceInfoMap() : null;
-
-      JsAbstractTextTransformer transformer =
-          new JsNoopTransformer(code, statementRanges, infoMap);
-
-      /**
-       * Cut generated JS up on class boundaries and re-link the source (possibly making use of
-       * source from previous compiles, thus making it possible to perform partial recompiles).
-       */
-      if (options.isIncrementalCompileEnabled()) {
-        transformer = new JsTypeLinker(logger, transformer, v.getClassRanges(),
-            v.getProgramClassRange(), getMinimalRebuildCache(), jprogram.typeOracle);
-        transformer.exec();
-      }
+      final int fragment = i;
+      tasks.add(new Callable<GeneratedFragment>() {
+        @Override
+        public GeneratedFragment call() {
+          return generateFragment(fragment, jjsMap, sourceMapsEnabled, sourceInfoMapsNeeded);
+        }
+      });
+    }
 
-      /**
-       * Reorder function decls to improve compression ratios. Also restructures the top level
-       * blocks into sub-blocks if they exceed 32767 statements.
-       */
-      Event functionClusterEvent = SpeedTracerLogger.start(CompilerEventType.FUNCTION_CLUSTER);
-      // TODO(cromwellian) move to the Js AST optimization, re-enable sourcemaps + clustering
-      if (!sourceMapsEnabled && !options.isClosureCompilerFormatEnabled()
-          && options.shouldClusterSimilarFunctions()
-          && options.getNamespace() == JsNamespaceOption.NONE
-          && options.getOutput() == JsOutputOption.OBFUSCATED) {
-        transformer = new JsFunctionClusterer(transformer);
-        transformer.exec();
-      }
-      functionClusterEvent.end();
+    // JsTypeLinker updates the minimal rebuild cache, so incremental compiles stay serial.
+    int threads = Math.min(tasks.size(), Math.max(1,
+        Integer.getInteger(GENERATE_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())));
+    List<GeneratedFragment> fragments = options.isIncrementalCompileEnabled() || threads == 1
+        ? runSerially(tasks) : runInParallel(tasks, threads);
 
-      jsFragments[i] = transformer.getJs();
-      ranges[i] = transformer.getStatementRanges();
+    for (int i = 0; i < jsFragments.length; i++) {
+      GeneratedFragment fragment = fragments.get(i);
+      jsFragments[i] = fragment.js;
+      ranges[i] = fragment.ranges;
       if (sizeBreakdowns != null) {
-        sizeBreakdowns[i] = v.getSizeBreakdown();
+        sizeBreakdowns[i] = fragment.sizeBreakdown;
       }
       if (sourceInfoMaps != null) {
-        sourceInfoMaps.add(transformer.getSourceInfoMap());
+        sourceInfoMaps.add(fragment.sourceInfoMap);
       }
     }
 
     generateJavascriptEvent.end();
   }
 
+  /**
+   * Generates the Js code of one fragment. Only reads the Js AST, so that fragments can be
+   * generated concurrently (except when compiling incrementally). The fragment's source info map
+   * is null unless {@code sourceInfoMapNeeded}.
+   */
+  private GeneratedFragment generateFragment(int fragment, JavaToJavaScriptMap jjsMap,
+      boolean sourceMapsEnabled, boolean sourceInfoMapNeeded) {
+    DefaultTextOutput out = new DefaultTextOutput(!options.isIncrementalCompileEnabled() &&
+        options.getOutput().shouldMinimize());
+    JsReportGenerationVisitor v = new JsReportGenerationVisitor(out, jjsMap,
+        options.isJsonSoycEnabled());
+    v.accept(jsProgram.getFragmentBlock(fragment));
+
+    StatementRanges statementRanges = v.getStatementRanges();
+    String code = out.toString();
+    // JsTypeLinker relinks the source info map along with the code.
+    JsSourceMap infoMap = sourceInfoMapNeeded || options.isIncrementalCompileEnabled()
+        ? v.getSourceInfoMap() : null;
+
+    JsAbstractTextTransformer transformer =
+        new JsNoopTransformer(code, statementRanges, infoMap);
+
+    /**
+     * Cut generated JS up on class boundaries and re-link the source (possibly making use of
+     * source from previous compiles, thus making it possible to perform partial recompiles).
+     */
+    if (options.isIncrementalCompileEnabled()) {
+      transformer = new JsTypeLinker(logger, transformer, v.getClassRanges(),
+          v.getProgramClassRange(), getMinimalRebuildCache(), jprogram.typeOracle);
+      transformer.exec();
+    }
+
+    /**
+     * Reorder function decls to improve compression ratios. Also restructures the top level
+     * blocks into sub-blocks if they exceed 32767 statements.
+     */
+    Event functionClusterEvent = SpeedTracerLogger.start(CompilerEventType.FUNCTION_CLUSTER);
+    // TODO(cromwellian) move to the Js AST optimization, re-enable sourcemaps + clustering
+    if (!sourceMapsEnabled && !options.isClosureCompilerFormatEnabled()
+        && options.shouldClusterSimilarFunctions()
+        && options.getNamespace() == JsNamespaceOption.NONE
+        && options.getOutput() == JsOutputOption.OBFUSCATED) {
+      transformer = new JsFunctionClusterer(transformer);
+      transformer.exec();
+    }
+    functionClusterEvent.end();
+
+    return new GeneratedFragment(transformer.getJs(), transformer.getStatementRanges(),
+        v.getSizeBreakdown(), transformer.getSourceInfoMap());
+  }
+
+  private static <T> List<T> runSerially(List<Callable<T>> tasks) {
+    List<T> results = Lists.newArrayList();
+    for (Callable<T> task : tasks) {
+      try {
+        results.add(task.call());
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Runs the tasks on a pool of the given number of threads and returns their results in order,
+   * once all of them have finished.
+   */
+  private static <T> List<T> runInParallel(List<Callable<T>> tasks, int threads) {
+    ExecutorService executor = DaemonThreadPools.newFixedThreadPool(threads, "JsGenerator-%d");
+    List<T> results = Lists.newArrayList();
+    try {
+      for (Future<T> result : executor.invokeAll(tasks)) {
+        results.add(result.get());
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InternalCompilerException("Interrupted while generating JavaScript", e);
+    } finally {
+      executor.shutdown();
+    }
+    return results;
+  }
+
   private Collection<? extends Artifact<?>> makeSoycArtifacts(int permutationId, String[] js,
       SizeBreakdown[] sizeBreakdowns, List<JsSourceMap> sourceInfoMaps,
       SyntheticArtifact dependencies, JavaToJavaScriptMap jjsmap,
@@ -1182,6 +1264,11 @@ public final class JavaToJavaScriptCompiler {
       // TODO(stalcup): hide metrics gathering in a callback or subclass
       logAstTypeMetrics(precompilationMetrics);
 
+      // Optimize the unresolved Java AST once instead of in every permutation.
+      if (shouldOptimizePrecompile(singlePermutation)) {
+        optimizeJavaToFixedPoint(true);
+      }
+
       // (4) Construct and return a value.
       Event createUnifiedAstEvent = SpeedTracerLogger.start(CompilerEventType.CREATE_UNIFIED_AST);
       UnifiedAst result = new UnifiedAst(
@@ -1422,7 +1509,14 @@ public final class JavaToJavaScriptCompiler {
     event.end();
   }
 
-  private void optimizeJavaToFixedPoint() throws InterruptedException {
+  /**
+   * Runs the Java optimization loop until the AST stops changing, or the pass limit for the
+   * current optimization level is reached.
+   *
+   * @param unresolved whether the AST still contains permutation dependent values, in which case
+   *          only the passes whose results hold for every permutation are run
+   */
+  private void optimizeJavaToFixedPoint(boolean unresolved) throws InterruptedException {
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE);
 
     List<OptimizerStats> allOptimizerStats = Lists.newArrayList();
@@ -1434,6 +1528,7 @@ public final class JavaToJavaScriptCompiler {
     int passLimit = atMaxLevel ? MAX_PASSES : options.getOptimizationLevel();
     float minChangeRate = atMaxLevel ? FIXED_POINT_CHANGE_RATE : EFFICIENT_CHANGE_RATE;
     OptimizerContext optimizerCtx = new FullOptimizerContext(jprogram);
+    PassScheduler scheduler = new PassScheduler();
     while (true) {
       passCount++;
       if (passCount > passLimit) {
@@ -1444,7 +1539,8 @@ public final class JavaToJavaScriptCompiler {
         throw new InterruptedException();
       }
       AstDumper.maybeDumpAST(jprogram);
-      OptimizerStats stats = optimizeJavaOneTime("Pass " + passCount, nodeCount, optimizerCtx);
+      OptimizerStats stats = optimizeJavaOneTime("Pass " + passCount, nodeCount, optimizerCtx,
+          scheduler, unresolved);
       allOptimizerStats.add(stats);
       lastNodeCount = nodeCount;
       nodeCount = jprogram.getNodeCount();
@@ -1456,7 +1552,7 @@ public final class JavaToJavaScriptCompiler {
       }
     }
 
-    if (options.shouldOptimizeDataflow()) {
+    if (options.shouldOptimizeDataflow() && !unresolved) {
       // Just run it once, because it is very time consuming
       allOptimizerStats.add(DataflowOptimizer.exec(jprogram));
     }
@@ -1468,6 +1564,16 @@ public final class JavaToJavaScriptCompiler {
     return options.getOptimizationLevel() > OptionOptimize.OPTIMIZE_LEVEL_DRAFT;
   }
 
+  /**
+   * Whether the permutation independent optimizations should run once on the unresolved AST.
+   * Incremental compiles and coverage need to see the AST before any optimization, so they always
+   * optimize per permutation.
+   */
+  private boolean shouldOptimizePrecompile(boolean singlePermutation) {
+    return options.shouldOptimizePrecompile() && shouldOptimize() && !singlePermutation
+        && !options.isIncrementalCompileEnabled() && System.getProperty("gwt.coverage") == null;
+  }
+
   private TypeMapper getTypeMapper() {
 
     // Used to stabilize output for DeltaJS
@@ -1497,28 +1603,76 @@ public final class JavaToJavaScriptCompiler {
         : TypeOrder.FREQUENCY;
   }
 
+  /**
+   * Runs each optimization pass once, skipping the passes that the scheduler knows would find
+   * nothing to do.
+   */
   private OptimizerStats optimizeJavaOneTime(String passName, int numNodes,
-      OptimizerContext optimizerCtx) {
+      OptimizerContext optimizerCtx, PassScheduler scheduler, boolean unresolved) {
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "phase", "loop");
     // Clinits might have become empty become empty.
     jprogram.typeOracle.recomputeAfterOptimizations(jprogram.getDeclaredTypes());
     OptimizerStats stats = new OptimizerStats(passName);
     JavaAstVerifier.assertProgramIsConsistent(jprogram);
-    stats.add(Pruner.exec(jprogram, true, optimizerCtx).recordVisits(numNodes));
-    stats.add(Finalizer.exec(jprogram, optimizerCtx).recordVisits(numNodes));
-    stats.add(MakeCallsStatic.exec(jprogram, options.shouldAddRuntimeChecks(), optimizerCtx)
-        .recordVisits(numNodes));
-    stats.add(TypeTightener.exec(jprogram, optimizerCtx).recordVisits(numNodes));
-    stats.add(MethodCallTightener.exec(jprogram, optimizerCtx).recordVisits(numNodes));
+    if (scheduler.shouldRun(Pruner.class)) {
+      stats.add(scheduler.record(Pruner.class,
+          Pruner.exec(jprogram, true, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (scheduler.shouldRun(Finalizer.class)) {
+      stats.add(scheduler.record(Finalizer.class,
+          Finalizer.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (scheduler.shouldRun(MakeCallsStatic.class)) {
+      stats.add(scheduler.record(MakeCallsStatic.class,
+          MakeCallsStatic.exec(jprogram, options.shouldAddRuntimeChecks(), optimizerCtx)
+              .recordVisits(numNodes)));
+    }
+    if (unresolved) {
+      // Type flow depends on the rebind results, which are only known per permutation.
+      if (scheduler.shouldRun(MethodCallTightener.class)) {
+        stats.add(scheduler.record(MethodCallTightener.class,
+            MethodCallTightener.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+      }
+      if (scheduler.shouldRun(DeadCodeElimination.class)) {
+        stats.add(scheduler.record(DeadCodeElimination.class,
+            DeadCodeElimination.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+      }
+      if (scheduler.shouldRun(MethodInliner.class)) {
+        stats.add(scheduler.record(MethodInliner.class,
+            MethodInliner.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+      }
+      optimizeEvent.end();
+      return stats;
+    }
+    if (scheduler.shouldRun(TypeTightener.class)) {
+      stats.add(scheduler.record(TypeTightener.class,
+          TypeTightener.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (scheduler.shouldRun(MethodCallTightener.class)) {
+      stats.add(scheduler.record(MethodCallTightener.class,
+          MethodCallTightener.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
     // Note: Specialization should be done before inlining.
-    stats.add(MethodCallSpecializer.exec(jprogram, optimizerCtx).recordVisits(numNodes));
-    stats.add(DeadCodeElimination.exec(jprogram, optimizerCtx).recordVisits(numNodes));
-    stats.add(MethodInliner.exec(jprogram, optimizerCtx).recordVisits(numNodes));
-    if (options.shouldInlineLiteralParameters()) {
-      stats.add(SameParameterValueOptimizer.exec(jprogram, optimizerCtx).recordVisits(numNodes));
+    if (scheduler.shouldRun(MethodCallSpecializer.class)) {
+      stats.add(scheduler.record(MethodCallSpecializer.class,
+          MethodCallSpecializer.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (scheduler.shouldRun(DeadCodeElimination.class)) {
+      stats.add(scheduler.record(DeadCodeElimination.class,
+          DeadCodeElimination.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (scheduler.shouldRun(MethodInliner.class)) {
+      stats.add(scheduler.record(MethodInliner.class,
+          MethodInliner.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
     }
-    if (options.shouldOrdinalizeEnums()) {
-      stats.add(EnumOrdinalizer.exec(jprogram, optimizerCtx).recordVisits(numNodes));
+    if (options.shouldInlineLiteralParameters()
+        && scheduler.shouldRun(SameParameterValueOptimizer.class)) {
+      stats.add(scheduler.record(SameParameterValueOptimizer.class,
+          SameParameterValueOptimizer.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
+    }
+    if (options.shouldOrdinalizeEnums() && scheduler.shouldRun(EnumOrdinalizer.class)) {
+      stats.add(scheduler.record(EnumOrdinalizer.class,
+          EnumOrdinalizer.exec(jprogram, optimizerCtx).recordVisits(numNodes)));
     }
     optimizeEvent.end();
     return stats;
@@ -1528,6 +1682,59 @@ public final class JavaToJavaScriptCompiler {
     return compilerContext.getMinimalRebuildCache();
   }
 
+  /**
+   * Keeps track of which passes of the Java optimization loop have work to do.
+   * <p>
+   * A pass that made no changes the last time it ran would make none again on the same AST, so it
+   * is skipped until some other pass changes the program. Within a pass, the
+   * {@link OptimizerContext} narrows the work further down to the methods and fields affected by
+   * the changes made since the pass last ran.
+   */
+  private static class PassScheduler {
+    /**
+     * The number of pass runs that changed the program so far.
+     */
+    private int changeCount;
+
+    /**
+     * The change count at the time each pass last ran without making changes.
+     */
+    private final Map<Class<?>, Integer> changeCountWhenUnchanged = Maps.newHashMap();
+
+    public OptimizerStats record(Class<?> pass, OptimizerStats stats) {
+      if (stats.didChange()) {
+        changeCount++;
+        changeCountWhenUnchanged.remove(pass);
+      } else {
+        changeCountWhenUnchanged.put(pass, changeCount);
+      }
+      return stats;
+    }
+
+    public boolean shouldRun(Class<?> pass) {
+      Integer count = changeCountWhenUnchanged.get(pass);
+      return count == null || count != changeCount;
+    }
+  }
+
+  /**
+   * The Js code of a fragment and what is known about it.
+   */
+  private static class GeneratedFragment {
+    private final String js;
+    private final StatementRanges ranges;
+    private final SizeBreakdown sizeBreakdown;
+    private final JsSourceMap sourceInfoMap;
+
+    private GeneratedFragment(String js, StatementRanges ranges, SizeBreakdown sizeBreakdown,
+        JsSourceMap sourceInfoMap) {
+      this.js = js;
+      this.ranges = ranges;
+      this.sizeBreakdown = sizeBreakdown;
+      this.sourceInfoMap = sourceInfoMap;
+    }
+  }
+
   private static class PermutationResultImpl implements PermutationResult {
 
     private final ArtifactSet artifacts = new ArtifactSet();
@@ -60,6 +60,15 @@ public class JPermutationDependentValue extends JExpression {
         program.getTypeJavaLangString(), Collections.<JExpression>emptyList());
   }
 
+  /**
+   * Returns a copy of this node that evaluates to {@code resultExpressions} instead.
+   */
+  public JPermutationDependentValue copyWith(List<JExpression> resultExpressions) {
+    assert resultExpressions.size() == this.resultExpressions.size();
+    return new JPermutationDependentValue(getSourceInfo(), valueType, requestedValue, resultValues,
+        defaultValue, type, resultExpressions);
+  }
+
   public String getDefaultValue() {
     return defaultValue;
   }
@@ -18,14 +18,20 @@ import com.google.gwt.dev.jjs.ast.JMethod;
 import com.google.gwt.dev.jjs.ast.JMethodCall;
 import com.google.gwt.dev.jjs.ast.JProgram;
 import com.google.gwt.dev.jjs.ast.JVisitor;
-import com.google.gwt.thirdparty.guava.common.collect.HashMultimap;
+import com.google.gwt.dev.util.collect.IntGraph;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
 import com.google.gwt.thirdparty.guava.common.collect.Sets;
 
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Call graph, which records {callee->callers} and {caller->callees} pairs.
+ * <p>
+ * Methods are numbered by a {@link NodeIds} that may be shared with other graphs, and the pairs
+ * are kept in int arrays indexed by those numbers.
  */
 public class CallGraph {
 
@@ -37,40 +43,49 @@ public class CallGraph {
     // TODO(leafwang): This call graph does not take into account overloads nor calls that happen
     // in JSNI methods.
 
-    private JMethod currentMethod;
+    private int currentMethodId = -1;
 
     @Override
     public void endVisit(JMethod x, Context ctx) {
-      assert (currentMethod == x);
-      currentMethod = null;
+      assert (currentMethodId == methodIds.find(x));
+      currentMethodId = -1;
     }
 
     @Override
     public void endVisit(JMethodCall x, Context ctx) {
-      JMethod calleeMethod = x.getTarget();
-      assert (currentMethod != null);
-      calleeCallersPairs.put(calleeMethod, currentMethod);
-      callerCalleesPairs.put(currentMethod, calleeMethod);
+      assert (currentMethodId != -1);
+      calls.addEdge(currentMethodId, methodIds.get(x.getTarget()));
     }
 
     @Override
     public boolean visit(JMethod x, Context ctx) {
-      assert (currentMethod == null);
-      currentMethod = x;
+      assert (currentMethodId == -1);
+      currentMethodId = methodIds.get(x);
       return true;
     }
   }
 
-  private HashMultimap<JMethod, JMethod> calleeCallersPairs = HashMultimap.create();
-  private HashMultimap<JMethod, JMethod> callerCalleesPairs = HashMultimap.create();
+  /**
+   * Edges go from callers to callees.
+   */
+  private final IntGraph calls = new IntGraph();
+  private final NodeIds<JMethod> methodIds;
+
+  public CallGraph() {
+    this(new NodeIds<JMethod>());
+  }
+
+  CallGraph(NodeIds<JMethod> methodIds) {
+    this.methodIds = methodIds;
+  }
 
   /**
    * Add a caller method and its callee methods to the call graph.
    */
   public void addCallerMethod(JMethod callerMethod, Collection<JMethod> calleeMethods) {
-    callerCalleesPairs.putAll(callerMethod, calleeMethods);
+    int callerId = methodIds.get(callerMethod);
     for (JMethod calleeMethod : calleeMethods) {
-      calleeCallersPairs.put(calleeMethod, callerMethod);
+      calls.addEdge(callerId, methodIds.get(calleeMethod));
     }
   }
 
@@ -87,7 +102,15 @@ public class CallGraph {
    * Return all the callee methods in the call graph.
    */
   public Set<JMethod> getAllCallees() {
-    return calleeCallersPairs.keySet();
+    BitSet calleeIds = new BitSet();
+    for (int id = 0; id < calls.getPredecessorNodeLimit(); id++) {
+      if (calls.hasPredecessors(id)) {
+        calleeIds.set(id);
+      }
+    }
+    Set<JMethod> calleeMethods = Sets.newLinkedHashSet();
+    methodIds.addNodes(calleeIds, calleeMethods);
+    return calleeMethods;
   }
 
   /**
@@ -97,7 +120,10 @@ public class CallGraph {
     assert (callerMethods != null);
     Set<JMethod> calleeMethods = Sets.newLinkedHashSet();
     for (JMethod callerMethod : callerMethods) {
-      calleeMethods.addAll(callerCalleesPairs.get(callerMethod));
+      int callerId = methodIds.find(callerMethod);
+      if (callerId != -1) {
+        methodIds.addNodes(calls.getSuccessors(callerId), calleeMethods);
+      }
     }
     return calleeMethods;
   }
@@ -109,40 +135,40 @@ public class CallGraph {
     assert (calleeMethods != null);
     Set<JMethod> callerMethods = Sets.newLinkedHashSet();
     for (JMethod calleeMethod : calleeMethods) {
-      callerMethods.addAll(calleeCallersPairs.get(calleeMethod));
+      int calleeId = methodIds.find(calleeMethod);
+      if (calleeId != -1) {
+        methodIds.addNodes(calls.getPredecessors(calleeId), callerMethods);
+      }
     }
     return callerMethods;
   }
 
   /**
-   * Remove a callee method and all its caller methods in both
-   * {@code calleeCallersPairs} and {@code callerCalleesPairs}.
-   * Return its caller methods.
+   * Remove a callee method and all the calls to it. Return its caller methods.
    */
   public Set<JMethod> removeCalleeMethod(JMethod calleeMethod) {
-    Set<JMethod> callerMethods = calleeCallersPairs.removeAll(calleeMethod);
-    for (JMethod callerMethod : callerMethods) {
-      callerCalleesPairs.remove(callerMethod, calleeMethod);
+    Set<JMethod> callerMethods = Sets.newLinkedHashSet();
+    int calleeId = methodIds.find(calleeMethod);
+    if (calleeId != -1) {
+      methodIds.addNodes(calls.removePredecessors(calleeId), callerMethods);
     }
     return callerMethods;
   }
 
   /**
-   * Remove a caller method and all its callee methods in both
-   * {@code callerCalleesPairs} and {@code calleeCallersPairs}.
-   * Return its callee methods.
+   * Remove a caller method and all the calls it makes. Return its callee methods.
    */
   public Set<JMethod> removeCallerMethod(JMethod callerMethod) {
-    Set<JMethod> calleeMethods = callerCalleesPairs.removeAll(callerMethod);
-    for (JMethod calleeMethod : calleeMethods) {
-      calleeCallersPairs.remove(calleeMethod, callerMethod);
+    Set<JMethod> calleeMethods = Sets.newLinkedHashSet();
+    int callerId = methodIds.find(callerMethod);
+    if (callerId != -1) {
+      methodIds.addNodes(calls.removeSuccessors(callerId), calleeMethods);
     }
     return calleeMethods;
   }
 
   public void resetCallGraph() {
-    calleeCallersPairs.clear();
-    callerCalleesPairs.clear();
+    calls.clear();
   }
 
   /**
@@ -151,12 +177,29 @@ public class CallGraph {
    */
   public void updateCallGraphOfMethod(JMethod method, CallGraph deletedSubCallGraph,
       CallGraph addedSubCallGraph) {
-    Set<JMethod> calleeMethods = removeCallerMethod(method);
+    int methodId = methodIds.get(method);
+    int[] oldCalleeIds = calls.removeSuccessors(methodId);
     BuildCallGraphVisitor callSiteVisitor = new BuildCallGraphVisitor();
     callSiteVisitor.accept(method);
-    deletedSubCallGraph.addCallerMethod(method,
-        Sets.difference(calleeMethods, callerCalleesPairs.get(method)));
-    addedSubCallGraph.addCallerMethod(method,
-        Sets.difference(callerCalleesPairs.get(method), calleeMethods));
+    int[] newCalleeIds = calls.getSuccessors(methodId);
+    deletedSubCallGraph.addCallerMethod(method, difference(oldCalleeIds, newCalleeIds));
+    addedSubCallGraph.addCallerMethod(method, difference(newCalleeIds, oldCalleeIds));
+  }
+
+  /**
+   * Returns the methods whose ids are in {@code ids} but not in {@code excludedIds}.
+   */
+  private List<JMethod> difference(int[] ids, int[] excludedIds) {
+    BitSet excluded = new BitSet();
+    for (int id : excludedIds) {
+      excluded.set(id);
+    }
+    List<JMethod> methods = Lists.newArrayList();
+    for (int id : ids) {
+      if (!excluded.get(id)) {
+        methods.add(methodIds.getNode(id));
+      }
+    }
+    return methods;
   }
 }
@@ -256,9 +256,10 @@ public class CloneExpressionVisitor extends JVisitor {
   }
 
   @Override
-  public void endVisit(JPermutationDependentValue x, Context ctx) {
-    throw new IllegalStateException("AST should not contain permutation dependent values at " +
-        "this point but contains " + x);
+  public boolean visit(JPermutationDependentValue x, Context ctx) {
+    // Only present when optimizing before permutations are resolved (-XoptimizePrecompile).
+    expression = x.copyWith(cloneExpressions(x.getResultExpressions()));
+    return false;
   }
 
   @Override
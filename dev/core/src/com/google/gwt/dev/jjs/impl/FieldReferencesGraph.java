@@ -19,8 +19,7 @@ import com.google.gwt.dev.jjs.ast.JFieldRef;
 import com.google.gwt.dev.jjs.ast.JMethod;
 import com.google.gwt.dev.jjs.ast.JProgram;
 import com.google.gwt.dev.jjs.ast.JVisitor;
-import com.google.gwt.thirdparty.guava.common.collect.HashMultimap;
-import com.google.gwt.thirdparty.guava.common.collect.Multimap;
+import com.google.gwt.dev.util.collect.IntGraph;
 
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -28,6 +27,9 @@ import java.util.Set;
 
 /**
  * FieldReferences Graph, which records {referencedFields <-> methods} pairs.
+ * <p>
+ * Methods and fields are numbered by {@link NodeIds} that may be shared with other graphs, and
+ * the pairs are kept in int arrays indexed by those numbers.
  */
 public class FieldReferencesGraph {
 
@@ -35,33 +37,45 @@ public class FieldReferencesGraph {
    * Visitor used to build fieldReferencesGraph.
    */
   class BuildFieldReferencesGraphVisitor extends JVisitor {
-    private JMethod currentMethod;
+    private int currentMethodId = -1;
 
     @Override
     public void endVisit(JFieldRef x, Context ctx) {
-      JField field = x.getField();
-      if (currentMethod != null) {
-        methodsByReferencedField.put(field, currentMethod);
-        referencedFieldsByMethod.put(currentMethod, field);
+      if (currentMethodId != -1) {
+        references.addEdge(currentMethodId, fieldIds.get(x.getField()));
       }
     }
 
     @Override
     public void endVisit(JMethod x, Context ctx) {
-      assert (currentMethod == x);
-      currentMethod = null;
+      assert (currentMethodId == methodIds.find(x));
+      currentMethodId = -1;
     }
 
     @Override
     public boolean visit(JMethod x, Context ctx) {
-      assert (currentMethod == null);
-      currentMethod = x;
+      assert (currentMethodId == -1);
+      currentMethodId = methodIds.get(x);
       return true;
     }
   }
 
-  private Multimap<JField, JMethod> methodsByReferencedField = HashMultimap.create();
-  private Multimap<JMethod, JField> referencedFieldsByMethod = HashMultimap.create();
+  private final NodeIds<JField> fieldIds;
+  private final NodeIds<JMethod> methodIds;
+
+  /**
+   * Edges go from methods to the fields they reference.
+   */
+  private final IntGraph references = new IntGraph();
+
+  public FieldReferencesGraph() {
+    this(new NodeIds<JMethod>(), new NodeIds<JField>());
+  }
+
+  FieldReferencesGraph(NodeIds<JMethod> methodIds, NodeIds<JField> fieldIds) {
+    this.methodIds = methodIds;
+    this.fieldIds = fieldIds;
+  }
 
   /**
    * Build the field references graph of a JProgram.
@@ -79,7 +93,10 @@ public class FieldReferencesGraph {
     assert (methods != null);
     Set<JField> result = new LinkedHashSet<JField>();
     for (JMethod method : methods) {
-      result.addAll(referencedFieldsByMethod.get(method));
+      int methodId = methodIds.find(method);
+      if (methodId != -1) {
+        fieldIds.addNodes(references.getSuccessors(methodId), result);
+      }
     }
     return result;
   }
@@ -91,7 +108,10 @@ public class FieldReferencesGraph {
     assert (fields != null);
     Set<JMethod> referencingMethods = new LinkedHashSet<JMethod>();
     for (JField field : fields) {
-      referencingMethods.addAll(methodsByReferencedField.get(field));
+      int fieldId = fieldIds.find(field);
+      if (fieldId != -1) {
+        methodIds.addNodes(references.getPredecessors(fieldId), referencingMethods);
+      }
     }
     return referencingMethods;
   }
@@ -101,9 +121,9 @@ public class FieldReferencesGraph {
    * field.
    */
   public void removeField(JField field) {
-    Collection<JMethod> methods = methodsByReferencedField.removeAll(field);
-    for (JMethod method : methods) {
-      referencedFieldsByMethod.remove(method, field);
+    int fieldId = fieldIds.find(field);
+    if (fieldId != -1) {
+      references.removePredecessors(fieldId);
     }
   }
 
@@ -112,9 +132,9 @@ public class FieldReferencesGraph {
    * method.
    */
   public void removeMethod(JMethod method) {
-    Collection<JField> referencedFields = referencedFieldsByMethod.removeAll(method);
-    for (JField referencedField : referencedFields) {
-      methodsByReferencedField.remove(referencedField, method);
+    int methodId = methodIds.find(method);
+    if (methodId != -1) {
+      references.removeSuccessors(methodId);
     }
   }
 
@@ -122,8 +142,7 @@ public class FieldReferencesGraph {
    * Reset the graph.
    */
   public void reset() {
-    methodsByReferencedField.clear();
-    referencedFieldsByMethod.clear();
+    references.clear();
   }
 
   /**
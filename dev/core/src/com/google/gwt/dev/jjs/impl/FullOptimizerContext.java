@@ -38,8 +38,14 @@ import java.util.Set;
 public class FullOptimizerContext implements OptimizerContext {
   private int optimizationStep = -1;
 
-  private CallGraph callGraph = new CallGraph();
-  private FieldReferencesGraph fieldReferencesGraph = new FieldReferencesGraph();
+  /**
+   * The numbering of methods shared by the graphs below.
+   */
+  private NodeIds<JMethod> methodIds = new NodeIds<JMethod>();
+
+  private CallGraph callGraph = new CallGraph(methodIds);
+  private FieldReferencesGraph fieldReferencesGraph =
+      new FieldReferencesGraph(methodIds, new NodeIds<JField>());
 
   /**
    * The deleted sub call graph and added sub call graph at each step.
@@ -69,6 +75,11 @@ public class FullOptimizerContext implements OptimizerContext {
    */
   private List<Set<JField>> fieldsByModificationStep = Lists.newArrayList();
 
+  /**
+   * The most recent step in which a method was removed, or -1 if none was.
+   */
+  private int lastMethodRemovalStep = -1;
+
   /**
    * A mapping from optimizers to their last modification step.
    */
@@ -97,6 +108,16 @@ public class FullOptimizerContext implements OptimizerContext {
     return lastStepForOptimizer.count(optimizerName);
   }
 
+  @Override
+  public Set<JMethod> getMethodsAffectedSince(int stepSince) {
+    Set<JMethod> modifiedMethods = getModifiedMethodsSince(stepSince);
+    Set<JMethod> affectedMethods = Sets.newLinkedHashSet();
+    affectedMethods.addAll(modifiedMethods);
+    affectedMethods.addAll(getCallers(modifiedMethods));
+    affectedMethods.addAll(getMethodsByReferencedFields(getModifiedFieldsSince(stepSince)));
+    return affectedMethods;
+  }
+
   @Override
   public Set<JMethod> getMethodsByReferencedFields(Collection<JField> fields) {
     return fieldReferencesGraph.getReferencingMethodsForFields(fields);
@@ -139,12 +160,17 @@ public class FullOptimizerContext implements OptimizerContext {
     return removedCalleeMethods;
   }
 
+  @Override
+  public boolean hasRemovedMethodsSince(int stepSince) {
+    return lastMethodRemovalStep >= stepSince;
+  }
+
   @Override
   public void incOptimizationStep() {
     methodsByModificationStep.add(new LinkedHashSet<JMethod>());
     fieldsByModificationStep.add(new LinkedHashSet<JField>());
-    deletedSubCallGraphs.add(new CallGraph());
-    addedSubCallGraphs.add(new CallGraph());
+    deletedSubCallGraphs.add(new CallGraph(methodIds));
+    addedSubCallGraphs.add(new CallGraph(methodIds));
     optimizationStep++;
   }
 
@@ -180,6 +206,7 @@ public class FullOptimizerContext implements OptimizerContext {
   public void remove(JMethod method) {
     methodsByModificationStep.get(modificationStepByMethod.count(method)).remove(method);
     modificationStepByMethod.remove(method);
+    lastMethodRemovalStep = optimizationStep;
     Set<JMethod> calleeMethods = callGraph.removeCallerMethod(method);
     deletedSubCallGraphs.get(optimizationStep).addCallerMethod(method,
         Sets.difference(calleeMethods, callGraph.getCallees(Collections.singleton(method))));
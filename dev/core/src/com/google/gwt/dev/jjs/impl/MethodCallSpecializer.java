@@ -107,7 +107,14 @@ public class MethodCallSpecializer {
 
   private OptimizerStats execImpl(OptimizerContext optimizerCtx) {
     MethodCallSpecializingVisitor specializer = new MethodCallSpecializingVisitor(optimizerCtx);
-    specializer.accept(program);
+    int lastStep = optimizerCtx.getLastStepFor(NAME);
+    if (lastStep == 0 || optimizerCtx.hasRemovedMethodsSince(lastStep)) {
+      // First run, or the type hierarchy may have changed; look at every call.
+      specializer.accept(program);
+    } else {
+      optimizerCtx.traverse(specializer, optimizerCtx.getMethodsAffectedSince(lastStep));
+    }
+    optimizerCtx.setLastStepFor(NAME, optimizerCtx.getOptimizationStep());
     JavaAstVerifier.assertProgramIsConsistent(program);
     return new OptimizerStats(NAME).recordModified(specializer.getNumMods());
   }
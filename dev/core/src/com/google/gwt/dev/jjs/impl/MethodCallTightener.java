@@ -169,7 +169,14 @@ public class MethodCallTightener {
 
   private OptimizerStats execImpl(OptimizerContext optimizerCtx) {
     MethodCallTighteningVisitor tightener = new MethodCallTighteningVisitor(optimizerCtx);
-    tightener.accept(program);
+    int lastStep = optimizerCtx.getLastStepFor(NAME);
+    if (lastStep == 0 || optimizerCtx.hasRemovedMethodsSince(lastStep)) {
+      // First run, or the overriders of a target may have changed; look at every call.
+      tightener.accept(program);
+    } else {
+      optimizerCtx.traverse(tightener, optimizerCtx.getMethodsAffectedSince(lastStep));
+    }
+    optimizerCtx.setLastStepFor(NAME, optimizerCtx.getOptimizationStep());
     return new OptimizerStats(NAME).recordModified(tightener.getNumMods());
   }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.JNode;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Numbers AST nodes densely from zero, in the order they are first seen, so that graphs over them
+ * can be kept in an {@link com.google.gwt.dev.util.collect.IntGraph} and sets of them in a
+ * {@link BitSet}.
+ * <p>
+ * Ids are never reused, so an instance may be shared by several graphs over the same nodes.
+ *
+ * @param <T> the node type
+ */
+class NodeIds<T extends JNode> {
+
+  private final Map<T, Integer> idsByNode = Maps.newIdentityHashMap();
+  private final List<T> nodesById = Lists.newArrayList();
+
+  /**
+   * Adds the nodes with the given ids to a set, in id order.
+   */
+  void addNodes(BitSet ids, Set<T> nodes) {
+    for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+      nodes.add(nodesById.get(id));
+    }
+  }
+
+  /**
+   * Adds the nodes with the given ids to a collection, in the given order.
+   */
+  void addNodes(int[] ids, Collection<T> nodes) {
+    for (int id : ids) {
+      nodes.add(nodesById.get(id));
+    }
+  }
+
+  /**
+   * Returns the id of a node, or -1 if it doesn't have one yet.
+   */
+  int find(T node) {
+    Integer id = idsByNode.get(node);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the id of a node, giving it one if needed.
+   */
+  int get(T node) {
+    Integer id = idsByNode.get(node);
+    if (id == null) {
+      id = nodesById.size();
+      idsByNode.put(node, id);
+      nodesById.add(node);
+    }
+    return id;
+  }
+
+  T getNode(int id) {
+    return nodesById.get(id);
+  }
+}
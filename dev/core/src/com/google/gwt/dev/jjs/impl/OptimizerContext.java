@@ -98,6 +98,11 @@ public interface OptimizerContext {
       return null;
     }
 
+    @Override
+    public Set<JMethod> getMethodsAffectedSince(int stepSince) {
+      throw new UnsupportedOperationException();
+    }
+
     @Override
     public Set<JField> getReferencedFieldsByMethods(Collection<JMethod> methods) {
       return null;
@@ -112,6 +117,11 @@ public interface OptimizerContext {
       return null;
     }
 
+    @Override
+    public boolean hasRemovedMethodsSince(int stepSince) {
+      return true;
+    }
+
     @Override
     public void traverse(JVisitor visitor, Set<? extends JNode> nodes) {
       throw new UnsupportedOperationException();
@@ -193,6 +203,13 @@ public interface OptimizerContext {
    */
   Set<JMethod> getMethodsByReferencedFields(Collection<JField> fields);
 
+  /**
+   * Return the methods whose calls might have changed meaning since a given step: the methods
+   * modified since then, their callers (whose return types might have been tightened) and the
+   * methods that reference fields modified since then.
+   */
+  Set<JMethod> getMethodsAffectedSince(int stepSince);
+
   /**
    * Return fields that are referenced by {@code methods}.
    */
@@ -208,6 +225,12 @@ public interface OptimizerContext {
    */
   Set<JMethod> getRemovedCalleeMethodsSince(int stepSince);
 
+  /**
+   * Return whether any method (or type, which removes its methods) was removed from the program
+   * since a given step. Such removals can change how calls anywhere in the program dispatch.
+   */
+  boolean hasRemovedMethodsSince(int stepSince);
+
   /**
    * Traverse the affected methods and fields.
    */
@@ -60,6 +60,7 @@ import com.google.gwt.dev.util.collect.Stack;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
+import com.google.gwt.thirdparty.guava.common.base.Supplier;
 import com.google.gwt.thirdparty.guava.common.collect.HashMultiset;
 import com.google.gwt.thirdparty.guava.common.collect.ImmutableSet;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
@@ -642,7 +643,10 @@ public class JsInliner {
     public InliningVisitor(JsProgram program, Set<JsNode> whitelist) {
       this.program = program;
       this.whitelist = whitelist;
-      invocationCountingVisitor.accept(program);
+      for (InvocationCountingVisitor counts : TopLevelStatements.visitInParallel(program,
+          InvocationCountingVisitor.SUPPLIER)) {
+        invocationCountingVisitor.addCounts(counts);
+      }
       JsName defineClass = getFunctionName(program, "JavaClassHierarchySetupUtil.defineClass");
       // JsInlinerTest doesn't have these functions, but doesn't need them
       safeToInlineAtTopLevel = defineClass != null ? ImmutableSet.of(defineClass)
@@ -1077,9 +1081,24 @@ public class JsInliner {
    * complexity.
    */
   private static class InvocationCountingVisitor extends JsVisitor {
+    static final Supplier<InvocationCountingVisitor> SUPPLIER =
+        new Supplier<InvocationCountingVisitor>() {
+          @Override
+          public InvocationCountingVisitor get() {
+            return new InvocationCountingVisitor();
+          }
+        };
+
     private boolean removingCounts = false;
     private final Multiset<JsFunction> invocationCount = HashMultiset.create();
 
+    /**
+     * Adds the counts collected by another visitor.
+     */
+    public void addCounts(InvocationCountingVisitor that) {
+      invocationCount.addAll(that.invocationCount);
+    }
+
     @Override
     public void endVisit(JsInvocation x, JsContext ctx) {
       checkFunctionCall(x.getQualifier());
@@ -1130,6 +1149,14 @@ public class JsInliner {
     // Indicates multiple invocations were found (only identity is used).
     private static final JsFunction MULTIPLE = JsFunction.createSentinel();
 
+    static final Supplier<SingleInvocationVisitor> SUPPLIER =
+        new Supplier<SingleInvocationVisitor>() {
+          @Override
+          public SingleInvocationVisitor get() {
+            return new SingleInvocationVisitor();
+          }
+        };
+
     private final Stack<JsFunction> functionStack = new Stack<JsFunction>();
 
     @Override
@@ -1149,6 +1176,17 @@ public class JsInliner {
       return set;
     }
 
+    /**
+     * Adds the invocations seen by a visitor of later statements.
+     */
+    public void merge(SingleInvocationVisitor that) {
+      for (Map.Entry<JsFunction, JsFunction> entry : that.singleInvocations.entrySet()) {
+        JsFunction function = entry.getKey();
+        singleInvocations.put(function,
+            singleInvocations.containsKey(function) ? MULTIPLE : entry.getValue());
+      }
+    }
+
     @Override
     public boolean visit(JsFunction x, JsContext ctx) {
       functionStack.push(x);
@@ -1393,9 +1431,33 @@ public class JsInliner {
    * the lifetime of the program.
    */
   private static class RedefinedFunctionCollector extends JsVisitor {
+    static final Supplier<RedefinedFunctionCollector> SUPPLIER =
+        new Supplier<RedefinedFunctionCollector>() {
+          @Override
+          public RedefinedFunctionCollector get() {
+            return new RedefinedFunctionCollector();
+          }
+        };
+
     private final Map<JsName, JsFunction> nameMap = Maps.newIdentityHashMap();
     private final Set<JsFunction> redefined = Sets.newHashSet();
 
+    /**
+     * Adds the functions seen by a visitor of later statements.
+     */
+    public void merge(RedefinedFunctionCollector that) {
+      redefined.addAll(that.redefined);
+      for (Map.Entry<JsName, JsFunction> entry : that.nameMap.entrySet()) {
+        JsFunction original = nameMap.get(entry.getKey());
+        if (original != null) {
+          redefined.add(original);
+          redefined.add(entry.getValue());
+        } else {
+          nameMap.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
     /**
      * Look for assignments to JsNames whose static references are JsFunctions.
      */
@@ -1606,13 +1668,24 @@ public class JsInliner {
 
     // We are not covering the whole AST, hence we will try to inline functions with a single call
     // site as well as those produced by native methods and their callers.
+    //
+    // The analyses only read the AST, so they run over the top-level statements in parallel and
+    // their results are merged in program order. The inlining itself stays serial: each inlining
+    // changes the invocation counts and callee bodies that later decisions depend on, and the
+    // names it creates must be allocated in the same order on every run.
     SingleInvocationVisitor s = new SingleInvocationVisitor();
-    s.accept(program);
+    for (SingleInvocationVisitor chunk : TopLevelStatements.visitInParallel(program,
+        SingleInvocationVisitor.SUPPLIER)) {
+      s.merge(chunk);
+    }
     Set<JsNode> candidates = Sets.newLinkedHashSet(toInline);
     candidates.addAll(s.inliningCandidates());
 
     RedefinedFunctionCollector d = new RedefinedFunctionCollector();
-    d.accept(program);
+    for (RedefinedFunctionCollector chunk : TopLevelStatements.visitInParallel(program,
+        RedefinedFunctionCollector.SUPPLIER)) {
+      d.merge(chunk);
+    }
 
     RecursionCollector rc = new RecursionCollector();
     for (JsNode fn : candidates) {
@@ -53,6 +53,7 @@ import com.google.gwt.dev.util.Ieee754_64_Arithmetic;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
+import com.google.gwt.thirdparty.guava.common.base.Supplier;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -211,10 +212,19 @@ public class JsStaticEval {
      */
     @Override
     public void endVisit(JsBlock x, JsContext ctx) {
-      /*
-       * Remove any dead statements after an abrupt change in code flow and
-       * promote safe statements within nested blocks to this block.
-       */
+      pruneStatements(x);
+
+      if (ctx.canRemove() && x.getStatements().size() == 0) {
+        // Remove blocks with no effect
+        ctx.removeMe();
+      }
+    }
+
+    /**
+     * Remove any dead statements after an abrupt change in code flow and
+     * promote safe statements within nested blocks to this block.
+     */
+    private void pruneStatements(JsBlock x) {
       List<JsStatement> stmts = x.getStatements();
       for (int i = 0; i < stmts.size(); i++) {
         JsStatement stmt = stmts.get(i);
@@ -249,11 +259,6 @@ public class JsStaticEval {
           }
         }
       }
-
-      if (ctx.canRemove() && stmts.size() == 0) {
-        // Remove blocks with no effect
-        ctx.removeMe();
-      }
     }
 
     @Override
@@ -886,11 +891,30 @@ public class JsStaticEval {
   }
 
   public OptimizerStats execImpl() {
-    StaticEvalVisitor sev = new StaticEvalVisitor();
-    sev.accept(program);
     OptimizerStats stats = new OptimizerStats(NAME);
-    if (sev.didChange()) {
-      stats.recordModified();
+
+    // Static evaluation only looks at the statement being simplified, so the top-level statements
+    // can be simplified in parallel.
+    List<StaticEvalVisitor> visitors = TopLevelStatements.modifyInParallel(program,
+        new Supplier<StaticEvalVisitor>() {
+          @Override
+          public StaticEvalVisitor get() {
+            return new StaticEvalVisitor();
+          }
+        });
+
+    // Now prune the global blocks, as the traversal of a fragment would.
+    StaticEvalVisitor sev = new StaticEvalVisitor();
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      sev.pruneStatements(program.getFragmentBlock(i));
+    }
+    visitors.add(sev);
+
+    for (StaticEvalVisitor visitor : visitors) {
+      if (visitor.didChange()) {
+        stats.recordModified();
+        break;
+      }
     }
     return stats;
   }
@@ -29,6 +29,7 @@ import com.google.gwt.dev.util.collect.IdentityHashSet;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
+import com.google.gwt.thirdparty.guava.common.base.Supplier;
 
 import java.util.Set;
 
@@ -65,7 +66,8 @@ public class JsUnusedFunctionRemover {
   /**
    * Finds all function references in the program.
    */
-  private class RescueVisitor extends JsVisitor {
+  private static class RescueVisitor extends JsVisitor {
+    private final Set<JsName> seen = new IdentityHashSet<JsName>();
 
     @Override
     public void endVisit(JsNameRef x, JsContext ctx) {
@@ -93,8 +95,16 @@ public class JsUnusedFunctionRemover {
   public OptimizerStats execImpl() {
     OptimizerStats stats = new OptimizerStats(NAME);
 
-    // Rescue all referenced functions.
-    new RescueVisitor().accept(program);
+    // Rescue all referenced functions; the top-level statements are scanned in parallel.
+    for (RescueVisitor rescuer : TopLevelStatements.visitInParallel(program,
+        new Supplier<RescueVisitor>() {
+          @Override
+          public RescueVisitor get() {
+            return new RescueVisitor();
+          }
+        })) {
+      seen.addAll(rescuer.seen);
+    }
 
     // Remove the unused functions from the JsProgram
     RemovalVisitor removalVisitor = new RemovalVisitor();
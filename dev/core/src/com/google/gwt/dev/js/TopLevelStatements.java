@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.js;
+
+import com.google.gwt.dev.js.ast.JsBlock;
+import com.google.gwt.dev.js.ast.JsModVisitor;
+import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.js.ast.JsStatement;
+import com.google.gwt.dev.js.ast.JsVisitor;
+import com.google.gwt.thirdparty.guava.common.base.Supplier;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a JS pass over the top-level statements of a program on a shared ForkJoin pool.
+ * <p>
+ * The statements of each fragment's global block are split into contiguous chunks and each
+ * chunk is traversed by its own visitor, exactly as {@link JsBlock} would traverse it. The
+ * visitors are returned in program order, so a pass that merges their results in that order
+ * gets the same answer no matter how the chunks were scheduled. The program, fragment and global
+ * block themselves are not visited; passes that care about them must handle them afterwards.
+ * <p>
+ * A visitor must only modify the chunk it was given. Passes that update state shared by the whole
+ * program (such as creating names in a shared scope) must not use this class.
+ */
+final class TopLevelStatements {
+
+  /**
+   * A Java system property that sets the number of threads used by parallel JS passes. Passes
+   * run in the calling thread when it's 1.
+   */
+  static final String THREADS_PROPERTY = "gwt.js.optimizeThreads";
+
+  /**
+   * Chunks smaller than this aren't worth handing to another thread.
+   */
+  private static final int MIN_CHUNK_SIZE = 64;
+
+  /**
+   * How many chunks to make per thread, so that a few slow chunks don't hold up the pass.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static final int THREADS = Math.max(1, Integer.getInteger(THREADS_PROPERTY,
+      Runtime.getRuntime().availableProcessors()));
+
+  private static ForkJoinPool pool;
+
+  /**
+   * A contiguous run of statements in one global block.
+   */
+  private static class Chunk {
+    private final JsBlock block;
+    private final int from;
+    private final int to;
+
+    Chunk(JsBlock block, int from, int to) {
+      this.block = block;
+      this.from = from;
+      this.to = to;
+    }
+
+    List<JsStatement> getStatements() {
+      return block.getStatements().subList(from, to);
+    }
+  }
+
+  /**
+   * Traverses the top-level statements with one visitor per chunk and returns the visitors in
+   * program order.
+   */
+  static <V extends JsVisitor> List<V> visitInParallel(JsProgram program,
+      final Supplier<V> visitors) {
+    List<Callable<V>> tasks = Lists.newArrayList();
+    for (final Chunk chunk : split(program)) {
+      tasks.add(new Callable<V>() {
+        @Override
+        public V call() {
+          V visitor = visitors.get();
+          visitor.acceptWithInsertRemove(chunk.getStatements());
+          return visitor;
+        }
+      });
+    }
+    return invokeAll(tasks);
+  }
+
+  /**
+   * Rewrites the top-level statements with one visitor per chunk, which may replace, insert and
+   * remove statements, and returns the visitors in program order.
+   */
+  static <V extends JsModVisitor> List<V> modifyInParallel(JsProgram program,
+      final Supplier<V> visitors) {
+    List<Chunk> chunks = split(program);
+    List<Callable<List<JsStatement>>> tasks = Lists.newArrayList();
+    final List<V> visitorList = Lists.newArrayList();
+    for (final Chunk chunk : chunks) {
+      final V visitor = visitors.get();
+      visitorList.add(visitor);
+      tasks.add(new Callable<List<JsStatement>>() {
+        @Override
+        public List<JsStatement> call() {
+          // Work on a copy so that other chunks of the block stay where they are.
+          List<JsStatement> statements = new ArrayList<JsStatement>(chunk.getStatements());
+          visitor.acceptWithInsertRemove(statements);
+          return statements;
+        }
+      });
+    }
+    List<List<JsStatement>> results = invokeAll(tasks);
+
+    JsBlock lastBlock = null;
+    for (int i = 0; i < chunks.size(); i++) {
+      JsBlock block = chunks.get(i).block;
+      if (block != lastBlock) {
+        block.getStatements().clear();
+        lastBlock = block;
+      }
+      block.getStatements().addAll(results.get(i));
+    }
+    return visitorList;
+  }
+
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      // Worker threads are daemons and exit when idle.
+      pool = new ForkJoinPool(THREADS);
+    }
+    return pool;
+  }
+
+  /**
+   * Runs the tasks and returns their results in order. When there's nothing to run in parallel,
+   * the tasks are run in the calling thread.
+   */
+  private static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+    List<T> results = Lists.newArrayList();
+    if (THREADS == 1 || tasks.size() == 1) {
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          // The tasks don't throw checked exceptions.
+          throw new AssertionError(e);
+        }
+      }
+      return results;
+    }
+
+    final List<ForkJoinTask<T>> forkJoinTasks = Lists.newArrayList();
+    for (Callable<T> task : tasks) {
+      forkJoinTasks.add(ForkJoinTask.adapt(task));
+    }
+    // Rethrows the first failure unchecked.
+    getPool().invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        ForkJoinTask.invokeAll(forkJoinTasks);
+      }
+    });
+    for (ForkJoinTask<T> task : forkJoinTasks) {
+      results.add(task.join());
+    }
+    return results;
+  }
+
+  /**
+   * Splits the global blocks into chunks in program order. Every global block gets at least one
+   * (possibly empty) chunk.
+   */
+  private static List<Chunk> split(JsProgram program) {
+    int statementCount = 0;
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      statementCount += program.getFragmentBlock(i).getStatements().size();
+    }
+    int chunkSize = THREADS == 1 ? Integer.MAX_VALUE : Math.max(MIN_CHUNK_SIZE,
+        statementCount / (THREADS * CHUNKS_PER_THREAD) + 1);
+
+    List<Chunk> chunks = Lists.newArrayList();
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      JsBlock block = program.getFragmentBlock(i);
+      int size = block.getStatements().size();
+      int from = 0;
+      do {
+        int to = (int) Math.min(size, (long) from + chunkSize);
+        chunks.add(new Chunk(block, from, to));
+        from = to;
+      } while (from < size);
+    }
+    return chunks;
+  }
+
+  private TopLevelStatements() {
+  }
+}
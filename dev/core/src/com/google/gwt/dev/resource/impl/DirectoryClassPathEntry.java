@@ -20,18 +20,27 @@ import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.collect.Lists;
 import com.google.gwt.dev.util.msg.Message1String;
 import com.google.gwt.thirdparty.guava.common.annotations.VisibleForTesting;
+import com.google.gwt.thirdparty.guava.common.collect.MapMaker;
 import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 /**
  * A {@link ClassPathEntry} for a directory on the file system.
+ * <p>
+ * The resources found for each {@link PathPrefixSet} are kept and brought up to date on the next
+ * request, so that a refresh costs time proportional to the number of changed files rather than
+ * to the size of the tree. Changes are reported by a {@link ChangedFileAccumulator}. If file
+ * changes can't be watched, the last modified times of the directories are polled instead, and
+ * only the directories that changed are listed again.
  */
 public class DirectoryClassPathEntry extends ClassPathEntry {
 
@@ -39,6 +48,12 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
   private static final boolean WATCH_FILE_CHANGES =
       Boolean.parseBoolean(System.getProperty(GWT_WATCH_FILE_CHANGES_PROPERTY, "true"));
 
+  /**
+   * A directory modified this soon before a scan might be modified again without its last
+   * modified time changing, since file systems store it with a limited precision.
+   */
+  private static final long LAST_MODIFIED_PRECISION_MILLIS = 2000;
+
   private static class Messages {
     static final Message1String DESCENDING_INTO_DIR = new Message1String(
         TreeLogger.SPAM, "Descending into dir: $0");
@@ -50,6 +65,49 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
         TreeLogger.DEBUG, "Excluding file: $0");
   }
 
+  /**
+   * The resources found for one PathPrefixSet, along with the last modified time of each
+   * directory that was listed to find them.
+   */
+  private static class DirectorySnapshot {
+    private final Map<AbstractResource, ResourceResolution> resolutionsByResource =
+        Maps.newHashMap();
+
+    /**
+     * Keyed by the abstract path of the directory ("" for the root, otherwise ending with "/").
+     */
+    private final Map<String, Long> lastModifiedByDirectoryPath = Maps.newHashMap();
+
+    private long scanTime;
+  }
+
+  /**
+   * Entries by directory location. Values are held weakly, so an entry and the resources it found
+   * go away once no resource oracle uses it.
+   */
+  private static final Map<String, DirectoryClassPathEntry> entryCache =
+      new MapMaker().weakValues().makeMap();
+
+  public static synchronized void clearCache() {
+    entryCache.clear();
+  }
+
+  /**
+   * Returns the entry for a directory, which is shared with previous callers so that the
+   * resources it found so far can be reused.
+   *
+   * @param dir an absolute directory
+   */
+  public static synchronized DirectoryClassPathEntry get(File dir) {
+    String location = dir.toURI().toString();
+    DirectoryClassPathEntry entry = entryCache.get(location);
+    if (entry == null) {
+      entry = new DirectoryClassPathEntry(dir);
+      entryCache.put(location, entry);
+    }
+    return entry;
+  }
+
   /**
    * Absolute directory.
    */
@@ -57,12 +115,10 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
   private final String location;
 
   /**
-   * A cache of previously collected Resource/Resolution pairs for a given PathPrefixSet.
+   * The previously collected Resource/Resolution pairs for a given PathPrefixSet.
    */
-  private final
-      Map<PathPrefixSet, Map<AbstractResource, ResourceResolution>>
-      resolutionsByResourcePerPathPrefixSet =
-          new IdentityHashMap<PathPrefixSet, Map<AbstractResource, ResourceResolution>>();
+  private final Map<PathPrefixSet, DirectorySnapshot> snapshotsByPathPrefixSet =
+      new MapMaker().weakKeys().makeMap();
 
   /**
    * Whether changed file listening failed either to be started or at some point during execution.
@@ -70,29 +126,37 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
    */
   private boolean listeningFailed;
 
+  private final boolean watchFileChanges;
+
   /**
    * @param dir an absolute directory
    */
   public DirectoryClassPathEntry(File dir) {
+    this(dir, WATCH_FILE_CHANGES);
+  }
+
+  @VisibleForTesting
+  DirectoryClassPathEntry(File dir, boolean watchFileChanges) {
     assert (dir.isAbsolute());
     this.dir = dir;
     this.location = dir.toURI().toString();
+    this.watchFileChanges = watchFileChanges;
   }
 
   @Override
   public Map<AbstractResource, ResourceResolution> findApplicableResources(TreeLogger logger,
       PathPrefixSet pathPrefixSet) {
-    if (!WATCH_FILE_CHANGES) {
-      return scanRecursiveDirectory(logger, pathPrefixSet);
+    if (!watchFileChanges) {
+      return scanModifiedDirectories(logger, pathPrefixSet);
     }
 
     ensureListening(logger, pathPrefixSet);
 
     if (listeningFailed) {
-      return scanRecursiveDirectory(logger, pathPrefixSet);
+      return scanModifiedDirectories(logger, pathPrefixSet);
     }
 
-    boolean haveCachedResults = resolutionsByResourcePerPathPrefixSet.containsKey(pathPrefixSet);
+    boolean haveCachedResults = snapshotsByPathPrefixSet.containsKey(pathPrefixSet);
     // If this is the first request and thus the cache is empty.
     if (!haveCachedResults) {
       // Then perform a full scan and cache the results.
@@ -103,8 +167,8 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
       } catch (ExecutionException e) {
         listeningFailed = true;
         logger.log(TreeLogger.WARN, "The attempt to retrieve accumulated file changes in " + dir
-            + " failed. Will fall back on full directory scans.");
-        return scanRecursiveDirectory(logger, pathPrefixSet);
+            + " failed. Will fall back on polling for changes.");
+        return scanModifiedDirectories(logger, pathPrefixSet);
       }
     }
   }
@@ -116,7 +180,7 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
       } catch (IOException e) {
         listeningFailed = true;
         logger.log(TreeLogger.WARN, "The attempt to start listening for file changes in " + dir
-            + " failed. Will fall back on full directory scans.");
+            + " failed. Will fall back on polling for changes.");
       }
     }
   }
@@ -130,22 +194,29 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
       TreeLogger logger, PathPrefixSet pathPrefixSet) throws ExecutionException {
     // Get cached results.
     Map<AbstractResource, ResourceResolution> resolutionsByResource =
-        resolutionsByResourcePerPathPrefixSet.get(pathPrefixSet);
+        snapshotsByPathPrefixSet.get(pathPrefixSet).resolutionsByResource;
 
     // Update cached results.
     Collection<File> changedFiles =
         DirectoryPathPrefixChangeManager.getAndClearChangedFiles(this, pathPrefixSet);
     for (File changedFile : changedFiles) {
+      if (isInHiddenDirectory(changedFile)) {
+        continue;
+      }
       String changedRelativePath = Util.makeRelativePath(dir, changedFile);
       FileResource resource = FileResource.of(changedRelativePath, changedFile);
 
       if (!changedFile.exists()) {
-        if (resolutionsByResource.containsKey(resource)) {
-          resolutionsByResource.remove(resource);
+        if (resolutionsByResource.remove(resource) == null) {
+          // Maybe a directory; forget everything that was in it.
+          removeResourcesInDirectory(resolutionsByResource, changedRelativePath + "/");
         }
         continue;
       }
 
+      if (!changedFile.isFile()) {
+        continue;
+      }
       ResourceResolution resourceResolution = pathPrefixSet.includesResource(changedRelativePath);
       if (resourceResolution != null) {
         Messages.INCLUDING_FILE.log(logger, changedRelativePath, null);
@@ -157,16 +228,71 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
     return resolutionsByResource;
   }
 
+  /**
+   * Brings the cached results up to date by listing again the directories whose last modified
+   * time changed since the previous scan. (Adding, removing or renaming a file changes the last
+   * modified time of its directory; changes to the contents of a file don't matter here.)
+   */
+  private synchronized Map<AbstractResource, ResourceResolution> scanModifiedDirectories(
+      TreeLogger logger, PathPrefixSet pathPrefixSet) {
+    DirectorySnapshot snapshot = snapshotsByPathPrefixSet.get(pathPrefixSet);
+    if (snapshot == null) {
+      return scanRecursiveDirectory(logger, pathPrefixSet);
+    }
+
+    long scanTime = System.currentTimeMillis();
+    Set<String> modifiedDirectoryPaths = Sets.newHashSet();
+    Iterator<Map.Entry<String, Long>> entries =
+        snapshot.lastModifiedByDirectoryPath.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Long> entry = entries.next();
+      File directory = new File(dir, entry.getKey());
+      long lastModified = directory.lastModified();
+      if (lastModified == 0L && !directory.isDirectory()) {
+        // Deleted, or replaced by a file.
+        modifiedDirectoryPaths.add(entry.getKey());
+        entries.remove();
+      } else if (lastModified != entry.getValue()
+          || lastModified >= snapshot.scanTime - LAST_MODIFIED_PRECISION_MILLIS) {
+        modifiedDirectoryPaths.add(entry.getKey());
+      }
+    }
+    snapshot.scanTime = scanTime;
+    if (modifiedDirectoryPaths.isEmpty()) {
+      return snapshot.resolutionsByResource;
+    }
+
+    // Forget the files directly inside modified directories, then list those directories again.
+    Iterator<AbstractResource> resources = snapshot.resolutionsByResource.keySet().iterator();
+    while (resources.hasNext()) {
+      String path = resources.next().getPath();
+      if (modifiedDirectoryPaths.contains(path.substring(0, path.lastIndexOf('/') + 1))) {
+        resources.remove();
+      }
+    }
+    for (String directoryPath : modifiedDirectoryPaths) {
+      File directory = new File(dir, directoryPath);
+      if (snapshot.lastModifiedByDirectoryPath.containsKey(directoryPath)) {
+        descendToFindResources(logger, Lists.create(pathPrefixSet),
+            Lists.create(snapshot.resolutionsByResource), directory, directoryPath,
+            snapshot.lastModifiedByDirectoryPath);
+      }
+    }
+    return snapshot.resolutionsByResource;
+  }
+
   private synchronized Map<AbstractResource, ResourceResolution> scanRecursiveDirectory(
       TreeLogger logger, PathPrefixSet pathPrefixSet) {
-    Map<AbstractResource, ResourceResolution> resolutionsByResource = Maps.newHashMap();
-    descendToFindResources(logger, Lists.create(pathPrefixSet), Lists.create(resolutionsByResource),
-        dir, "");
+    DirectorySnapshot snapshot = new DirectorySnapshot();
+    snapshot.scanTime = System.currentTimeMillis();
+    descendToFindResources(logger, Lists.create(pathPrefixSet),
+        Lists.create(snapshot.resolutionsByResource), dir, "",
+        snapshot.lastModifiedByDirectoryPath);
 
     // Cache results.
-    resolutionsByResourcePerPathPrefixSet.put(pathPrefixSet, resolutionsByResource);
+    snapshotsByPathPrefixSet.put(pathPrefixSet, snapshot);
 
-    return resolutionsByResource;
+    return snapshot.resolutionsByResource;
   }
 
   @Override
@@ -188,12 +314,32 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
   void descendToFindResources(TreeLogger logger,
       List<PathPrefixSet> pathPrefixSets,
       List<Map<AbstractResource, ResourceResolution>> results, File dir, String dirPath) {
+    descendToFindResources(logger, pathPrefixSets, results, dir, dirPath, null);
+  }
+
+  /**
+   * Like {@link #descendToFindResources(TreeLogger, List, List, File, String)}, but also records
+   * the last modified time of every directory listed. Subdirectories that already have a recorded
+   * time are skipped.
+   */
+  private void descendToFindResources(TreeLogger logger,
+      List<PathPrefixSet> pathPrefixSets,
+      List<Map<AbstractResource, ResourceResolution>> results, File dir, String dirPath,
+      Map<String, Long> lastModifiedByDirectoryPath) {
     assert (dir.isDirectory()) : dir + " is not a directory";
     int len = pathPrefixSets.size();
 
     // Assert: this directory is included in the path prefix set.
 
+    if (lastModifiedByDirectoryPath != null) {
+      // Read before listing, so that changes made while listing are seen by the next scan.
+      lastModifiedByDirectoryPath.put(dirPath, dir.lastModified());
+    }
     File[] children = dir.listFiles();
+    if (children == null) {
+      // Deleted since we last looked at it.
+      return;
+    }
     for (File child : children) {
       String childPath = dirPath + child.getName();
       if (child.isDirectory()) {
@@ -203,11 +349,16 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
           continue;
         }
         String childDirPath = childPath + "/";
+        if (lastModifiedByDirectoryPath != null
+            && lastModifiedByDirectoryPath.containsKey(childDirPath)) {
+          // Already listed.
+          continue;
+        }
         for (int i = 0; i < len; ++i) {
           if (pathPrefixSets.get(i).includesDirectory(childDirPath)) {
             Messages.DESCENDING_INTO_DIR.log(logger, child.getPath(), null);
             descendToFindResources(logger, pathPrefixSets, results, child,
-                childDirPath);
+                childDirPath, lastModifiedByDirectoryPath);
             break;
           }
         }
@@ -225,4 +376,28 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
       }
     }
   }
+
+  /**
+   * Returns true if the file is below a hidden directory, which a full scan would not descend
+   * into.
+   */
+  private boolean isInHiddenDirectory(File file) {
+    for (File parent = file.getParentFile(); parent != null && !parent.equals(dir);
+        parent = parent.getParentFile()) {
+      if (parent.isHidden()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void removeResourcesInDirectory(
+      Map<AbstractResource, ResourceResolution> resolutionsByResource, String directoryPath) {
+    Iterator<AbstractResource> resources = resolutionsByResource.keySet().iterator();
+    while (resources.hasNext()) {
+      if (resources.next().getPath().startsWith(directoryPath)) {
+        resources.remove();
+      }
+    }
+  }
 }
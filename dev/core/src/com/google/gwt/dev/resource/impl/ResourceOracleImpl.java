@@ -168,6 +168,7 @@ public class ResourceOracleImpl extends AbstractResourceOracle {
 
   public static void clearCache() {
     classPathCache.clear();
+    DirectoryClassPathEntry.clearCache();
   }
 
   public static ClassPathEntry createEntryForUrl(TreeLogger logger, URL url)
@@ -176,7 +177,7 @@ public class ResourceOracleImpl extends AbstractResourceOracle {
       File f = new File(url.toURI());
       String lowerCaseFileName = f.getName().toLowerCase(Locale.ROOT);
       if (f.isDirectory()) {
-        return new DirectoryClassPathEntry(f);
+        return DirectoryClassPathEntry.get(f);
       } else if (f.isFile() && lowerCaseFileName.endsWith(".jar")) {
         return ZipFileClassPathEntry.get(f);
       } else if (f.isFile() && lowerCaseFileName.endsWith(".zip")) {
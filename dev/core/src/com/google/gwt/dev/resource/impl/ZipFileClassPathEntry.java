@@ -75,18 +75,19 @@ public class ZipFileClassPathEntry extends ClassPathEntry {
    */
   private static final Map<String, ZipFileClassPathEntry> entryCache = Maps.newHashMap();
 
-  public static void clearCache() {
+  public static synchronized void clearCache() {
     entryCache.clear();
   }
 
   /**
    * @return the {@link ZipFileClassPathEntry} instance for given jar or zip
-   *         file, may be shared with other users.
+   *         file, may be shared with other users. A new instance is returned
+   *         once the file has been modified.
    */
   public static synchronized ZipFileClassPathEntry get(File zipFile) throws IOException {
     String location = zipFile.toURI().toString();
     ZipFileClassPathEntry entry = entryCache.get(location);
-    if (entry == null) {
+    if (entry == null || entry.lastModified != zipFile.lastModified()) {
       entry = new ZipFileClassPathEntry(zipFile);
       entryCache.put(location, entry);
     }
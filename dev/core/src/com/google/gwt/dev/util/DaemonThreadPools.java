@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util;
+
+import com.google.gwt.thirdparty.guava.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the thread pools that compiler and linker steps share to work in parallel.
+ */
+public class DaemonThreadPools {
+
+  /**
+   * Returns a pool of up to the given number of threads with an unbounded queue. The threads are
+   * daemons, so that they don't keep the process alive once the work is done, and they stop after
+   * being idle for a minute.
+   *
+   * @param nameFormat the name of the threads, with %d replaced by a thread number
+   */
+  public static ExecutorService newFixedThreadPool(int threads, String nameFormat) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private DaemonThreadPools() {
+  }
+}
@@ -43,6 +43,11 @@ public class NullOutputFileSet extends OutputFileSet {
   public void close() {
   }
 
+  @Override
+  public boolean isConcurrentWriteSupported() {
+    return true;
+  }
+
   @Override
   protected OutputStream createNewOutputStream(String path,
       long lastModifiedTime) {
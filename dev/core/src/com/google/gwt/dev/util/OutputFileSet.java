@@ -54,6 +54,13 @@ public abstract class OutputFileSet {
     return pathDescription;
   }
 
+  /**
+   * Returns true if files may be opened and written from several threads at once.
+   */
+  public boolean isConcurrentWriteSupported() {
+    return false;
+  }
+
   /**
    * Opens a file for write. If writing to a zip file and the file already exists,
    * this has no effect. Otherwise, overwrites any existing file.
@@ -73,7 +80,9 @@ public abstract class OutputFileSet {
    */
   public OutputStream openForWrite(String path, long timeStampMillis)
       throws IOException {
-    pathsSeen.add(path);
+    synchronized (pathsSeen) {
+      pathsSeen.add(path);
+    }
     return createNewOutputStream(path, timeStampMillis);
   }
 
@@ -21,12 +21,92 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.Set;
 
 /**
  * An {@link OutputFileSet} on a directory.
+ * <p>
+ * Files that already exist are only modified if their content changes, so relinking into the
+ * same directory doesn't touch the output that stayed the same. Files may be written from
+ * several threads at once.
  */
 public class OutputFileSetOnDirectory extends OutputFileSet {
+
+  /**
+   * An output stream that overwrites an existing file. Written bytes are compared with the old
+   * content, and the file is only written to from the first difference on. If the content is
+   * unchanged, neither the file nor its timestamp is modified.
+   */
+  private static class UpdatingOutputStream extends OutputStream {
+    private final File file;
+    private final RandomAccessFile raf;
+    private final long oldLength;
+    private final long timeStampMillis;
+    private byte[] oldBytes = new byte[0];
+    private long position;
+    private boolean changed;
+    private boolean closed;
+
+    UpdatingOutputStream(File file, long timeStampMillis) throws IOException {
+      this.file = file;
+      this.raf = new RandomAccessFile(file, "rw");
+      this.oldLength = raf.length();
+      this.timeStampMillis = timeStampMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (changed || position != oldLength) {
+          changed = true;
+          raf.setLength(position);
+        }
+      } finally {
+        raf.close();
+      }
+      if (changed && timeStampMillis != TIMESTAMP_UNAVAILABLE) {
+        file.setLastModified(timeStampMillis);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (!changed) {
+        if (position + len <= oldLength && sameAsOldContent(b, off, len)) {
+          position += len;
+          return;
+        }
+        changed = true;
+        raf.seek(position);
+      }
+      raf.write(b, off, len);
+      position += len;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    private boolean sameAsOldContent(byte[] b, int off, int len) throws IOException {
+      if (oldBytes.length < len) {
+        oldBytes = new byte[len];
+      }
+      raf.readFully(oldBytes, 0, len);
+      for (int i = 0; i < len; i++) {
+        if (oldBytes[i] != b[off + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private final Set<String> createdDirs = new HashSet<String>();
   private final File dir;
   private final String prefix;
@@ -41,11 +121,19 @@ public class OutputFileSetOnDirectory extends OutputFileSet {
   public void close() {
   }
 
+  @Override
+  public boolean isConcurrentWriteSupported() {
+    return true;
+  }
+
   @Override
   protected OutputStream createNewOutputStream(String path,
       final long timeStampMillis) throws IOException {
     final File file = pathToFile(path);
     mkdirs(file.getParentFile());
+    if (file.isFile()) {
+      return new UpdatingOutputStream(file, timeStampMillis);
+    }
     return new FileOutputStream(file) {
       @Override
       public void close() throws IOException {
@@ -61,7 +149,7 @@ public class OutputFileSetOnDirectory extends OutputFileSet {
    * A faster bulk version of {@link File#mkdirs()} that avoids recreating the
    * same directory multiple times.
    */
-  private void mkdirs(File dir) throws IOException {
+  private synchronized void mkdirs(File dir) throws IOException {
     if (dir == null) {
       return;
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.arg;
+
+import com.google.gwt.util.tools.ArgHandlerFlag;
+
+/**
+ * Runs the permutation independent Java optimizations once during precompilation instead of
+ * repeating them in every permutation.
+ */
+public class ArgHandlerOptimizePrecompile extends ArgHandlerFlag {
+
+  private final OptionOptimizePrecompile option;
+
+  public ArgHandlerOptimizePrecompile(OptionOptimizePrecompile option) {
+    this.option = option;
+
+    addTagValue("-XoptimizePrecompile", true);
+  }
+
+  @Override
+  public String getPurposeSnippet() {
+    return "Run the permutation independent Java optimizations once during precompilation, "
+        + "before compiling the permutations.";
+  }
+
+  @Override
+  public String getLabel() {
+    return "optimizePrecompile";
+  }
+
+  @Override
+  public boolean setFlag(boolean value) {
+    option.setOptimizePrecompile(value);
+    return true;
+  }
+
+  @Override
+  public boolean isExperimental() {
+    return true;
+  }
+
+  @Override
+  public boolean getDefaultValue() {
+    return option.shouldOptimizePrecompile();
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.arg;
+
+/**
+ * Option to determine whether the permutation independent Java optimizations should run once
+ * during precompilation, so that every permutation starts from an already optimized AST.
+ */
+public interface OptionOptimizePrecompile {
+
+  /**
+   * Returns true if the compiler should optimize the unified AST during precompilation.
+   */
+  boolean shouldOptimizePrecompile();
+
+  /**
+   * Sets whether or not the compiler should optimize the unified AST during precompilation.
+   */
+  void setOptimizePrecompile(boolean enabled);
+}
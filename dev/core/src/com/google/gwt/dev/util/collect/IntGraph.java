@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.collect;
+
+import java.util.Arrays;
+
+/**
+ * A directed graph over small non-negative int ids that can't hold duplicate edges.
+ * <p>
+ * The successors and predecessors of each node are kept in int arrays indexed by node id, so a
+ * graph of a whole program takes a few bytes per edge rather than a few objects, and an empty
+ * graph allocates nothing. Edges may be added and removed at any time. Adjacent nodes are
+ * returned in the order their edges were added.
+ * <p>
+ * The two ends of an edge may come from different id spaces (for instance methods and the fields
+ * they reference), since successor and predecessor lists are indexed separately.
+ */
+public class IntGraph {
+
+  /**
+   * The adjacency lists of one direction of the graph.
+   * <p>
+   * Removed entries are overwritten with {@link #REMOVED} and squeezed out once they make up half
+   * of a list, so that removals stay cheap while the remaining entries keep their order. Lists
+   * longer than {@link #INDEX_THRESHOLD} also get an {@link IntIndex} from adjacent node to
+   * position, since the callers of a popular method or the readers of a popular field can number
+   * in the thousands.
+   */
+  private static class Adjacency {
+    private static final int[] EMPTY = new int[0];
+    private static final int REMOVED = -1;
+    private static final int INDEX_THRESHOLD = 16;
+
+    private int[][] lists = new int[0][];
+
+    /**
+     * The number of slots in use in each list, including removed entries.
+     */
+    private int[] ends = EMPTY;
+
+    /**
+     * The number of adjacent nodes in each list.
+     */
+    private int[] sizes = EMPTY;
+
+    /**
+     * The positions of the entries of the long lists.
+     */
+    private IntIndex[] indexes = new IntIndex[0];
+
+    void add(int node, int value) {
+      if (node >= lists.length) {
+        int length = Math.max(node + 1, lists.length * 2);
+        lists = Arrays.copyOf(lists, length);
+        ends = Arrays.copyOf(ends, length);
+        sizes = Arrays.copyOf(sizes, length);
+        indexes = Arrays.copyOf(indexes, length);
+      }
+      int[] list = lists[node];
+      int end = ends[node];
+      if (list == null) {
+        list = lists[node] = new int[4];
+      } else if (end == list.length) {
+        list = lists[node] = Arrays.copyOf(list, end * 2);
+      }
+      list[end] = value;
+      ends[node] = end + 1;
+      sizes[node]++;
+      if (indexes[node] != null) {
+        indexes[node].put(value, end);
+      } else if (end + 1 > INDEX_THRESHOLD) {
+        indexes[node] = buildIndex(list, end + 1);
+      }
+    }
+
+    void clear() {
+      lists = new int[0][];
+      ends = EMPTY;
+      sizes = EMPTY;
+      indexes = new IntIndex[0];
+    }
+
+    boolean contains(int node, int value) {
+      return indexOf(node, value) != -1;
+    }
+
+    int[] get(int node) {
+      if (node >= lists.length || sizes[node] == 0) {
+        return EMPTY;
+      }
+      int[] list = lists[node];
+      int end = ends[node];
+      if (sizes[node] == end) {
+        return Arrays.copyOf(list, end);
+      }
+      int[] values = new int[sizes[node]];
+      for (int i = 0, j = 0; i < end; i++) {
+        if (list[i] != REMOVED) {
+          values[j++] = list[i];
+        }
+      }
+      return values;
+    }
+
+    int getNodeLimit() {
+      return lists.length;
+    }
+
+    boolean remove(int node, int value) {
+      int index = indexOf(node, value);
+      if (index == -1) {
+        return false;
+      }
+      int size = --sizes[node];
+      if (size == 0) {
+        lists[node] = null;
+        ends[node] = 0;
+        indexes[node] = null;
+        return true;
+      }
+      lists[node][index] = REMOVED;
+      if (size * 2 < ends[node]) {
+        compact(node);
+      }
+      return true;
+    }
+
+    int[] removeAll(int node) {
+      int[] values = get(node);
+      if (node < lists.length) {
+        lists[node] = null;
+        ends[node] = 0;
+        sizes[node] = 0;
+        indexes[node] = null;
+      }
+      return values;
+    }
+
+    int size(int node) {
+      return node < sizes.length ? sizes[node] : 0;
+    }
+
+    private IntIndex buildIndex(int[] list, int end) {
+      IntIndex index = new IntIndex(end);
+      for (int i = 0; i < end; i++) {
+        if (list[i] != REMOVED) {
+          index.put(list[i], i);
+        }
+      }
+      return index;
+    }
+
+    /**
+     * Squeezes the removed entries out of a list, keeping the others in order.
+     */
+    private void compact(int node) {
+      int[] list = lists[node];
+      int end = ends[node];
+      int size = 0;
+      for (int i = 0; i < end; i++) {
+        if (list[i] != REMOVED) {
+          list[size++] = list[i];
+        }
+      }
+      ends[node] = size;
+      indexes[node] = size > INDEX_THRESHOLD ? buildIndex(list, size) : null;
+    }
+
+    private int indexOf(int node, int value) {
+      if (node >= lists.length || sizes[node] == 0) {
+        return -1;
+      }
+      int[] list = lists[node];
+      if (indexes[node] != null) {
+        // The index still holds the positions of removed entries, so check the list too.
+        int index = indexes[node].get(value);
+        return index != -1 && list[index] == value ? index : -1;
+      }
+      for (int i = 0, end = ends[node]; i < end; i++) {
+        if (list[i] == value) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * An open addressing hash map from non-negative ints to non-negative ints. Keys are never
+   * removed; the map is rebuilt instead.
+   */
+  private static class IntIndex {
+    private int[] keys;
+    private int[] values;
+    private int count;
+
+    IntIndex(int expectedSize) {
+      int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2) * 2;
+      keys = new int[capacity];
+      values = new int[capacity];
+      Arrays.fill(keys, -1);
+    }
+
+    /**
+     * Returns the value of a key, or -1 if there is none.
+     */
+    int get(int key) {
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; keys[i] != -1; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return -1;
+    }
+
+    void put(int key, int value) {
+      int mask = keys.length - 1;
+      int i = hash(key) & mask;
+      while (keys[i] != -1 && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      if (keys[i] == -1) {
+        keys[i] = key;
+        if (++count * 2 > keys.length) {
+          values[i] = value;
+          rehash();
+          return;
+        }
+      }
+      values[i] = value;
+    }
+
+    private static int hash(int key) {
+      int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+      int[] oldKeys = keys;
+      int[] oldValues = values;
+      keys = new int[oldKeys.length * 2];
+      values = new int[oldKeys.length * 2];
+      Arrays.fill(keys, -1);
+      count = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+  }
+
+  private final Adjacency predecessors = new Adjacency();
+  private final Adjacency successors = new Adjacency();
+
+  /**
+   * Adds an edge unless it's already in the graph. Returns whether it was added.
+   */
+  public boolean addEdge(int from, int to) {
+    assert from >= 0 && to >= 0;
+    // Successor lists are usually much shorter than predecessor lists, so check those; long lists
+    // are looked up through their index anyway.
+    if (successors.contains(from, to)) {
+      return false;
+    }
+    successors.add(from, to);
+    predecessors.add(to, from);
+    return true;
+  }
+
+  public void clear() {
+    predecessors.clear();
+    successors.clear();
+  }
+
+  public boolean containsEdge(int from, int to) {
+    return successors.contains(from, to);
+  }
+
+  /**
+   * Returns a copy of the predecessors of a node.
+   */
+  public int[] getPredecessors(int node) {
+    return predecessors.get(node);
+  }
+
+  /**
+   * Returns one more than the largest node id that may have predecessors.
+   */
+  public int getPredecessorNodeLimit() {
+    return predecessors.getNodeLimit();
+  }
+
+  /**
+   * Returns a copy of the successors of a node.
+   */
+  public int[] getSuccessors(int node) {
+    return successors.get(node);
+  }
+
+  /**
+   * Returns one more than the largest node id that may have successors.
+   */
+  public int getSuccessorNodeLimit() {
+    return successors.getNodeLimit();
+  }
+
+  public boolean hasPredecessors(int node) {
+    return predecessors.size(node) != 0;
+  }
+
+  public boolean hasSuccessors(int node) {
+    return successors.size(node) != 0;
+  }
+
+  public boolean removeEdge(int from, int to) {
+    if (!successors.remove(from, to)) {
+      return false;
+    }
+    predecessors.remove(to, from);
+    return true;
+  }
+
+  /**
+   * Removes the edges into a node and returns the nodes they came from.
+   */
+  public int[] removePredecessors(int node) {
+    int[] removed = predecessors.removeAll(node);
+    for (int from : removed) {
+      successors.remove(from, node);
+    }
+    return removed;
+  }
+
+  /**
+   * Removes the edges out of a node and returns the nodes they went to.
+   */
+  public int[] removeSuccessors(int node) {
+    int[] removed = successors.removeAll(node);
+    for (int to : removed) {
+      predecessors.remove(to, node);
+    }
+    return removed;
+  }
+}
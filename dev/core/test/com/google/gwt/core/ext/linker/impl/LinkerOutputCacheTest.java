@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.ext.linker.impl;
+
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link LinkerOutputCache}.
+ */
+public class LinkerOutputCacheTest extends TestCase {
+
+  private File work;
+
+  @Override
+  protected void setUp() throws Exception {
+    work = Utility.makeTemporaryDirectory(null, "linkeroutputcache");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Util.recursiveDelete(work, false);
+  }
+
+  public void testBytes() throws IOException {
+    LinkerOutputCache cache = new LinkerOutputCache(new File(work, "cache"));
+    String key = LinkerOutputCache.keyFor("gzip", "ABCD");
+
+    assertNull(cache.getBytes(key));
+    cache.putBytes(key, new byte[] {1, 2, 3});
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3}, cache.getBytes(key)));
+    assertNull(cache.getBytes(LinkerOutputCache.keyFor("gzip", "ABCE")));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(3, cache.getBytesReused());
+  }
+}
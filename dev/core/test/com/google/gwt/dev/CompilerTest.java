@@ -26,6 +26,7 @@ import com.google.gwt.dev.javac.UnitCacheSingleton;
 import com.google.gwt.dev.javac.testing.impl.JavaResourceBase;
 import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
 import com.google.gwt.dev.javac.testing.impl.MockResource;
+import com.google.gwt.dev.jjs.JavaToJavaScriptCompiler;
 import com.google.gwt.dev.jjs.JsOutputOption;
 import com.google.gwt.dev.jjs.impl.JjsUtils;
 import com.google.gwt.dev.util.Util;
@@ -35,6 +36,7 @@ import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
 import com.google.gwt.thirdparty.guava.common.base.Charsets;
 import com.google.gwt.thirdparty.guava.common.collect.ImmutableList;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
 import com.google.gwt.thirdparty.guava.common.collect.Sets;
 import com.google.gwt.thirdparty.guava.common.io.Files;
 import com.google.gwt.util.tools.Utility;
@@ -42,6 +44,7 @@ import com.google.gwt.util.tools.Utility;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -239,6 +242,91 @@ public class CompilerTest extends ArgProcessorTestBase {
           "</generate-with>",
           "</module>");
 
+  private MockResource codeSplitModuleResource =
+      JavaResourceBase.createMockResource("com/foo/CodeSplitModule.gwt.xml",
+          "<module>",
+          "<inherits name='com.google.gwt.core.Core'/>",
+          "<source path=''/>",
+          "<entry-point class='com.foo.SplitEntryPoint'/>",
+          "</module>");
+
+  private MockJavaResource splitEntryPointResource =
+      JavaResourceBase.createMockJavaResource("com.foo.SplitEntryPoint",
+          "package com.foo;",
+          "import com.google.gwt.core.client.EntryPoint;",
+          "import com.google.gwt.core.client.GWT;",
+          "import com.google.gwt.core.client.RunAsyncCallback;",
+          "public class SplitEntryPoint implements EntryPoint {",
+          "  static String message;",
+          "  static abstract class Callback implements RunAsyncCallback {",
+          "    public void onFailure(Throwable reason) { message = reason.getMessage(); }",
+          "  }",
+          "  static String describe(Object o) { return o.getClass().getName() + o.hashCode(); }",
+          "  public void onModuleLoad() {",
+          "    GWT.runAsync(new Callback() {",
+          "      public void onSuccess() { message = describe(new java.util.ArrayList()); }",
+          "    });",
+          "    GWT.runAsync(new Callback() {",
+          "      public void onSuccess() { message = describe(new java.util.HashMap()); }",
+          "    });",
+          "    GWT.runAsync(new Callback() {",
+          "      public void onSuccess() { message = describe(new java.util.TreeMap()); }",
+          "    });",
+          "  }",
+          "}");
+
+  private MockResource flavorModuleResource =
+      JavaResourceBase.createMockResource("com/foo/FlavorModule.gwt.xml",
+          "<module>",
+          "<inherits name='com.google.gwt.core.Core'/>",
+          "<source path=''/>",
+          "<define-property name='flavor' values='a,b'/>",
+          "<property-provider name='flavor'><![CDATA[return 'a';]]></property-provider>",
+          "<replace-with class='com.foo.FlavorA'>",
+          "  <when-type-is class='com.foo.Flavor'/>",
+          "  <when-property-is name='flavor' value='a'/>",
+          "</replace-with>",
+          "<replace-with class='com.foo.FlavorB'>",
+          "  <when-type-is class='com.foo.Flavor'/>",
+          "  <when-property-is name='flavor' value='b'/>",
+          "</replace-with>",
+          "<entry-point class='com.foo.FlavorEntryPoint'/>",
+          "</module>");
+
+  private MockJavaResource flavorResource =
+      JavaResourceBase.createMockJavaResource("com.foo.Flavor",
+          "package com.foo;",
+          "public interface Flavor {",
+          "  String name();",
+          "}");
+
+  private MockJavaResource flavorAResource =
+      JavaResourceBase.createMockJavaResource("com.foo.FlavorA",
+          "package com.foo;",
+          "public class FlavorA implements Flavor {",
+          "  public String name() { return \"flavor-a\"; }",
+          "}");
+
+  private MockJavaResource flavorBResource =
+      JavaResourceBase.createMockJavaResource("com.foo.FlavorB",
+          "package com.foo;",
+          "public class FlavorB implements Flavor {",
+          "  public String name() { return \"flavor-b\"; }",
+          "}");
+
+  private MockJavaResource flavorEntryPointResource =
+      JavaResourceBase.createMockJavaResource("com.foo.FlavorEntryPoint",
+          "package com.foo;",
+          "import com.google.gwt.core.client.EntryPoint;",
+          "import com.google.gwt.core.client.GWT;",
+          "public class FlavorEntryPoint implements EntryPoint {",
+          "  static String message;",
+          "  static Flavor create() { return GWT.create(Flavor.class); }",
+          "  public void onModuleLoad() {",
+          "    message = create().name();",
+          "  }",
+          "}");
+
   private MockResource barReferencesFooGeneratorModuleResource =
       JavaResourceBase.createMockResource("com/foo/SimpleModule.gwt.xml",
           "<module>",
@@ -848,7 +936,8 @@ public class CompilerTest extends ArgProcessorTestBase {
     assertProcessSuccess(argProcessor, new String[] {"-logLevel", "DEBUG", "-style",
         "PRETTY", "-ea", "-gen", "myGen",
         "-war", "myWar", "-workDir", "myWork", "-extra", "myExtra", "-incremental",
-        "-localWorkers", "2", "-sourceLevel", "1.7", "c.g.g.h.H", "my.Module"});
+        "-localWorkers", "2", "-sourceLevel", "1.7", "-XoptimizePrecompile", "c.g.g.h.H",
+        "my.Module"});
 
     assertEquals(new File("myGen").getAbsoluteFile(),
         options.getGenDir().getAbsoluteFile());
@@ -864,6 +953,7 @@ public class CompilerTest extends ArgProcessorTestBase {
     assertTrue(options.shouldClusterSimilarFunctions());
     assertTrue(options.shouldInlineLiteralParameters());
     assertTrue(options.shouldOptimizeDataflow());
+    assertTrue(options.shouldOptimizePrecompile());
     assertTrue(options.shouldOrdinalizeEnums());
     assertTrue(options.shouldRemoveDuplicateFunctions());
     assertTrue(options.isIncrementalCompileEnabled());
@@ -893,6 +983,7 @@ public class CompilerTest extends ArgProcessorTestBase {
     assertTrue(options.shouldClusterSimilarFunctions());
     assertTrue(options.shouldInlineLiteralParameters());
     assertTrue(options.shouldOptimizeDataflow());
+    assertFalse(options.shouldOptimizePrecompile());
     assertTrue(options.shouldOrdinalizeEnums());
     assertTrue(options.shouldRemoveDuplicateFunctions());
     assertFalse(options.isIncrementalCompileEnabled());
@@ -1072,6 +1163,46 @@ public class CompilerTest extends ArgProcessorTestBase {
     assertDeterministicBuild(HELLO_MODULE, 9);
   }
 
+  public void testDeterministicBuild_OptimizedPrecompile() throws UnableToCompleteException,
+      IOException {
+    CompilerOptionsImpl options = new CompilerOptionsImpl();
+    options.setOptimizePrecompile(true);
+    assertDeterministicBuild(options, HELLO_MODULE, 9);
+  }
+
+  public void testParallelJsGeneration_sameFragmentsAsSerial() throws Exception {
+    List<MockResource> resources =
+        Lists.<MockResource> newArrayList(codeSplitModuleResource, splitEntryPointResource);
+    Map<String, String> parallelFragments =
+        compileFragments(4, "com.foo.CodeSplitModule", resources);
+    Map<String, String> serialFragments =
+        compileFragments(1, "com.foo.CodeSplitModule", resources);
+
+    // The initial fragment, one per split point and the leftovers.
+    assertTrue(parallelFragments.keySet().toString(), parallelFragments.size() > 4);
+    assertEquals(serialFragments.keySet(), parallelFragments.keySet());
+    for (String path : serialFragments.keySet()) {
+      assertEquals(path, serialFragments.get(path), parallelFragments.get(path));
+    }
+  }
+
+  public void testOptimizePrecompile_inlinesPermutationDependentValue() throws Exception {
+    CompilerOptions options = new CompilerOptionsImpl();
+    options.setOptimizePrecompile(true);
+    // create() is inlined into onModuleLoad() before the GWT.create() is resolved.
+    Map<String, String> fragments = compileFragments(options, 1, "com.foo.FlavorModule",
+        Lists.<MockResource> newArrayList(flavorModuleResource, flavorResource, flavorAResource,
+            flavorBResource, flavorEntryPointResource));
+
+    assertEquals(fragments.keySet().toString(), 2, fragments.size());
+    Set<String> flavors = Sets.newHashSet();
+    for (String js : fragments.values()) {
+      assertTrue(js, js.contains("flavor-a") != js.contains("flavor-b"));
+      flavors.add(js.contains("flavor-a") ? "a" : "b");
+    }
+    assertEquals(Sets.newHashSet("a", "b"), flavors);
+  }
+
   // TODO(stalcup): add recompile tests for file deletion.
 
   public void testIncrementalRecompile_noop() throws UnableToCompleteException, IOException,
@@ -1846,8 +1977,11 @@ public class CompilerTest extends ArgProcessorTestBase {
 
   private void assertDeterministicBuild(String topLevelModule, int optimizationLevel)
       throws UnableToCompleteException, IOException {
+    assertDeterministicBuild(new CompilerOptionsImpl(), topLevelModule, optimizationLevel);
+  }
 
-    final CompilerOptionsImpl options = new CompilerOptionsImpl();
+  private void assertDeterministicBuild(CompilerOptionsImpl options, String topLevelModule,
+      int optimizationLevel) throws UnableToCompleteException, IOException {
     options.setOptimizationLevel(optimizationLevel);
 
     File firstCompileWorkDir = Utility.makeTemporaryDirectory(null, "hellowork");
@@ -1887,6 +2021,73 @@ public class CompilerTest extends ArgProcessorTestBase {
     }
   }
 
+  /**
+   * Compiles a module from scratch, generating its JavaScript on the given number of threads, and
+   * returns the contents of the fragments by their path in the output directory.
+   */
+  private Map<String, String> compileFragments(int generateThreads, String moduleName,
+      List<MockResource> applicationResources) throws IOException, UnableToCompleteException {
+    return compileFragments(new CompilerOptionsImpl(), generateThreads, moduleName,
+        applicationResources);
+  }
+
+  private Map<String, String> compileFragments(CompilerOptions compilerOptions,
+      int generateThreads, String moduleName, List<MockResource> applicationResources)
+      throws IOException, UnableToCompleteException {
+    String oldGenerateThreadsValue = System.setProperty(
+        JavaToJavaScriptCompiler.GENERATE_THREADS_PROPERTY, String.valueOf(generateThreads));
+    String oldPersistentUnitCacheValue =
+        System.setProperty(UnitCacheSingleton.GWT_PERSISTENTUNITCACHE, "false");
+    File applicationDir = Files.createTempDir();
+    try {
+      TreeLogger logger = TreeLogger.NULL;
+      for (MockResource applicationResource : applicationResources) {
+        writeResourceTo(applicationResource, applicationDir);
+      }
+      ResourceLoader resourceLoader = ResourceLoaders.forPathAndFallback(
+          ImmutableList.of(applicationDir), ResourceLoaders.forClassLoader(Thread.currentThread()));
+
+      compilerOptions.setWarDir(new File(applicationDir, "war"));
+      compilerOptions.setModuleNames(ImmutableList.of(moduleName));
+      compilerOptions.setOutput(JsOutputOption.PRETTY);
+      CompilerContext compilerContext =
+          new CompilerContext.Builder().options(compilerOptions).build();
+      ModuleDefLoader.clearModuleCache();
+      ModuleDefLoader.loadFromResources(logger, compilerContext, moduleName, resourceLoader, true);
+      assertTrue(new Compiler(compilerOptions).run(logger));
+
+      Map<String, String> fragments = Maps.newTreeMap();
+      File outputDir = new File(compilerOptions.getWarDir(), moduleName);
+      collectFragments(outputDir, "", fragments);
+      return fragments;
+    } finally {
+      restoreProperty(JavaToJavaScriptCompiler.GENERATE_THREADS_PROPERTY,
+          oldGenerateThreadsValue);
+      restoreProperty(UnitCacheSingleton.GWT_PERSISTENTUNITCACHE, oldPersistentUnitCacheValue);
+      Util.recursiveDelete(applicationDir, false);
+    }
+  }
+
+  private static void collectFragments(File dir, String path, Map<String, String> fragments)
+      throws IOException {
+    for (File file : dir.listFiles()) {
+      String filePath = path + "/" + file.getName();
+      if (file.isDirectory()) {
+        collectFragments(file, filePath, fragments);
+      } else if (file.getName().endsWith(".cache.js")) {
+        fragments.put(filePath, Files.toString(file, Charsets.UTF_8));
+      }
+    }
+  }
+
+  private static void restoreProperty(String key, String oldValue) {
+    if (oldValue == null) {
+      System.clearProperty(key);
+    } else {
+      System.setProperty(key, oldValue);
+    }
+  }
+
   private void checkRecompiledModifiedApp(String moduleName, List<MockResource> sharedResources,
       MockResource originalResource, MockResource modifiedResource,
       Set<String> expectedStaleTypeNamesOnModify, JsOutputOption output) throws IOException,
@@ -48,6 +48,51 @@ public class MinimalRebuildCacheManagerTest extends TestCase {
     assertTrue(emptyCache.hasSameContent(noSuchCache));
   }
 
+  public void testReloadAppendedChanges() throws InterruptedException {
+    File cacheDir = Files.createTempDir();
+
+    String moduleName = "com.google.FooModule";
+    MinimalRebuildCacheManager minimalRebuildCacheManager =
+        new MinimalRebuildCacheManager(TreeLogger.NULL, cacheDir);
+    PermutationDescription permutationDescription = new PermutationDescription();
+
+    // Make sure we start with a blank slate.
+    minimalRebuildCacheManager.deleteCaches();
+
+    // Save a first cache and then changes made to a copy of it.
+    MinimalRebuildCache startingCache =
+        minimalRebuildCacheManager.getCache(moduleName, permutationDescription);
+    startingCache.setJsForType(TreeLogger.NULL, "Foo", "Some Js for Foo");
+    startingCache.setJsForType(TreeLogger.NULL, "Bar", "Some Js for Bar");
+    minimalRebuildCacheManager.putCache(moduleName, permutationDescription, startingCache);
+
+    MinimalRebuildCache laterCache =
+        minimalRebuildCacheManager.getCache(moduleName, permutationDescription);
+    assertFalse(startingCache == laterCache);
+    laterCache.setJsForType(TreeLogger.NULL, "Foo", "Other Js for Foo");
+    laterCache.setJsForType(TreeLogger.NULL, "Baz", "Some Js for Baz");
+    minimalRebuildCacheManager.putCache(moduleName, permutationDescription, laterCache);
+
+    // The starting cache was not modified.
+    assertEquals("Some Js for Foo", startingCache.getJs("Foo"));
+    assertFalse(startingCache.hasJs("Baz"));
+
+    // Shutdown the cache manager and make sure it was successful.
+    assertTrue(minimalRebuildCacheManager.shutdown());
+
+    // Reread the saved caches in a new cache manager.
+    MinimalRebuildCacheManager reloadedMinimalRebuildCacheManager =
+        new MinimalRebuildCacheManager(TreeLogger.NULL, cacheDir);
+    MinimalRebuildCache reloadedCache =
+        reloadedMinimalRebuildCacheManager.syncReadDiskCache(moduleName, permutationDescription);
+
+    // Show that the reread cache contains the latest data.
+    assertTrue(laterCache.hasSameContent(reloadedCache));
+    assertEquals("Other Js for Foo", reloadedCache.getJs("Foo"));
+    assertEquals("Some Js for Bar", reloadedCache.getJs("Bar"));
+    assertEquals("Some Js for Baz", reloadedCache.getJs("Baz"));
+  }
+
   public void testReload() throws InterruptedException {
     File cacheDir = Files.createTempDir();
 
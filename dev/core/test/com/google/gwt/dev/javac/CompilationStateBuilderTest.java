@@ -15,14 +15,41 @@
  */
 package com.google.gwt.dev.javac;
 
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.CompilerContext;
 import com.google.gwt.dev.javac.testing.impl.JavaResourceBase;
 import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
+import com.google.gwt.dev.resource.Resource;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Regression tests for {@link CompilationStateBuilder}.
  */
 public class CompilationStateBuilderTest extends CheckerTestCase {
 
+  /**
+   * Tests that building units on several threads produces the same units as
+   * building them on one.
+   */
+  public void testBuildThreads_sameUnitsAsSerial() throws UnableToCompleteException {
+    Set<Resource> resources = Sets.newHashSet();
+    resources.addAll(Arrays.asList(JavaResourceBase.getStandardResources()));
+    for (int i = 0; i < 30; i++) {
+      resources.add(createChainedResource(i));
+    }
+
+    Map<String, String> serialUnits = buildWithThreads(resources, 1);
+    Map<String, String> parallelUnits = buildWithThreads(resources, 4);
+    assertEquals(resources.size(), serialUnits.size());
+    assertEquals(serialUnits, parallelUnits);
+  }
+
   /**
    * Tests that compiling a unit that declares a class that shadows another
    * results in the proper error message.
@@ -66,4 +93,58 @@ public class CompilationStateBuilderTest extends CheckerTestCase {
 
     shouldGenerateError(buggy, 6, "The nested type A cannot hide an enclosing type");
   }
+
+  /**
+   * Builds a fresh compilation state with the given number of build threads
+   * and describes each of its units.
+   */
+  private static Map<String, String> buildWithThreads(Set<Resource> resources, int threads)
+      throws UnableToCompleteException {
+    String oldThreads = System.getProperty(CompilationStateBuilder.BUILD_THREADS_PROPERTY);
+    System.setProperty(CompilationStateBuilder.BUILD_THREADS_PROPERTY, String.valueOf(threads));
+    try {
+      CompilationState state = new CompilationStateBuilder().doBuildFrom(
+          CompilationStateTestBase.createTreeLogger(), new CompilerContext(), resources);
+      Map<String, String> descriptions = Maps.newHashMap();
+      for (CompilationUnit unit : state.getCompilationUnits()) {
+        assertFalse(unit.getTypeName(), unit.isError());
+        StringBuilder description = new StringBuilder();
+        description.append(Util.computeStrongName(unit.getTypesSerialized()));
+        for (CompiledClass compiledClass : unit.getCompiledClasses()) {
+          description.append(' ').append(compiledClass.getInternalName()).append('=')
+              .append(Util.computeStrongName(compiledClass.getBytes()));
+        }
+        for (JsniMethod jsniMethod : unit.getJsniMethods()) {
+          description.append(' ').append(jsniMethod.name());
+        }
+        descriptions.put(unit.getTypeName(), description.toString());
+      }
+      return descriptions;
+    } finally {
+      if (oldThreads == null) {
+        System.clearProperty(CompilationStateBuilder.BUILD_THREADS_PROPERTY);
+      } else {
+        System.setProperty(CompilationStateBuilder.BUILD_THREADS_PROPERTY, oldThreads);
+      }
+    }
+  }
+
+  /**
+   * Returns a class with a JSNI method and a nested class that refers to the
+   * previous class in the chain.
+   */
+  private static MockJavaResource createChainedResource(int i) {
+    String previous = i == 0 ? "Object" : "C" + (i - 1);
+    return JavaResourceBase.createMockJavaResource("chain.C" + i,
+        "package chain;",
+        "public class C" + i + " extends " + previous + " {",
+        "  static int f" + i + ";",
+        "  static class Nested {",
+        "    " + previous + " previous = new " + previous + "();",
+        "  }",
+        "  native int jsni" + i + "() /*-{",
+        "    return @chain.C" + i + "::f" + i + ";",
+        "  }-*/;",
+        "}");
+  }
 }
@@ -29,6 +29,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
@@ -271,6 +272,47 @@ public class PersistentUnitCacheTest extends TestCase {
     assertNotNull(cache.find("com/example/Qux.java"));
   }
 
+  /**
+   * Units are only deserialized when they are looked up. If a unit can't be read then, it
+   * should be dropped from the cache so that it gets compiled again.
+   */
+  public void testUnreadableUnit() throws IOException, UnableToCompleteException,
+      InterruptedException, ExecutionException {
+    File parentDir = lastParentDir = File.createTempFile("PersistentUnitTest-unreadable", "");
+    File unitCacheDir = mkCacheDir(parentDir);
+
+    PersistentUnitCache cache = new PersistentUnitCache(logger, parentDir);
+    MockCompilationUnit foo = new MockCompilationUnit("com.example.Foo", "Foo Source");
+    MockCompilationUnit bar = new MockCompilationUnit("com.example.Bar", "Bar Source");
+    cache.internalAdd(foo).get();
+    cache.internalAdd(bar).get();
+    cache.shutdown();
+    assertNumCacheFiles(unitCacheDir, 1);
+
+    // Overwrite the serialization header of the first unit, leaving the record headers intact.
+    RandomAccessFile file = new RandomAccessFile(unitCacheDir.listFiles()[0], "rw");
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      file.readFully(bytes);
+      int unitStart = 0;
+      while (bytes[unitStart] != (byte) 0xAC || bytes[unitStart + 1] != (byte) 0xED) {
+        unitStart++;
+      }
+      file.seek(unitStart);
+      file.writeShort(0);
+    } finally {
+      file.close();
+    }
+
+    cache = new PersistentUnitCache(logger, parentDir);
+    assertNull(cache.find(foo.getContentId()));
+    assertNull(cache.find("com/example/Foo.java"));
+    CompilationUnit result = cache.find("com/example/Bar.java");
+    assertNotNull(result);
+    assertEquals(bar.getContentId(), result.getContentId());
+    cache.shutdown();
+  }
+
   private void assertNumCacheFiles(File unitCacheDir, int expected) {
     String[] actualFiles = unitCacheDir.list();
     if (expected == actualFiles.length) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.thirdparty.guava.common.base.Joiner;
+
+/**
+ * Verifies that optimizing through one {@link OptimizerContext}, where passes only revisit the
+ * methods affected by changes since they last ran, produces the same AST as running every pass
+ * over the whole program.
+ */
+public class IncrementalOptimizationTest extends JJSTestBase {
+
+  private static final int MAX_PASSES = 20;
+
+  public void testTighteningAfterPruning() throws Exception {
+    addSnippetClassDecl(
+        "static abstract class Shape { abstract int area(); }",
+        "static class Square extends Shape { int area() { return 4; } }",
+        "static class Circle extends Shape { int area() { return 3; } }",
+        "static Shape makeSquare() { return new Square(); }",
+        "static Shape makeCircle() { return new Circle(); }",
+        "static boolean never() { return false; }",
+        "static Shape shape = makeSquare();");
+    assertIncrementalMatchesFull("int",
+        "Shape other = never() ? makeCircle() : makeSquare();",
+        "return shape.area() + other.area() + makeSquare().area();");
+  }
+
+  public void testTighteningThroughCallers() throws Exception {
+    addSnippetClassDecl(
+        "static class A { int value() { return 1; } }",
+        "static class B extends A { int value() { return 2; } }",
+        "static class C extends A { int value() { return 3; } }",
+        "static A field = new B();",
+        "static A viaField() { return field; }",
+        "static A viaCaller() { return viaField(); }",
+        "static A other() { return new C(); }");
+    assertIncrementalMatchesFull("int",
+        "int sum = viaCaller().value() + viaField().value();",
+        "return sum + other().value();");
+  }
+
+  private void assertIncrementalMatchesFull(String returnType, String... codeSnippet)
+      throws Exception {
+    String snippet = Joiner.on("\n").join(codeSnippet);
+    String unoptimized = toSource(compile(returnType, snippet));
+
+    JProgram fullProgram = compile(returnType, snippet);
+    optimizeToFixedPoint(fullProgram, false);
+    JProgram incrementalProgram = compile(returnType, snippet);
+    optimizeToFixedPoint(incrementalProgram, true);
+
+    String full = toSource(fullProgram);
+    assertFalse("The snippet was not optimized", unoptimized.equals(full));
+    assertEquals(full, toSource(incrementalProgram));
+  }
+
+  private JProgram compile(String returnType, String snippet) throws Exception {
+    JProgram program = compileSnippet(returnType, snippet, true);
+    program.addEntryMethod(findMainMethod(program));
+    return program;
+  }
+
+  /**
+   * Runs a subset of the passes of JJS.optimizeLoop() until none makes changes. If
+   * {@code incremental} is false each pass gets a fresh context, so that it looks at every method.
+   */
+  private static void optimizeToFixedPoint(JProgram program, boolean incremental) {
+    OptimizerContext optimizerCtx = new FullOptimizerContext(program);
+    for (int pass = 0; pass < MAX_PASSES; pass++) {
+      boolean didChange = false;
+      didChange |= Pruner.exec(program, true,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      didChange |= TypeTightener.exec(program,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      didChange |= MethodCallTightener.exec(program,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      didChange |= MethodCallSpecializer.exec(program,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      didChange |= DeadCodeElimination.exec(program,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      didChange |= MethodInliner.exec(program,
+          contextFor(program, optimizerCtx, incremental)).didChange();
+      if (!didChange) {
+        return;
+      }
+    }
+    fail("No fixed point after " + MAX_PASSES + " passes");
+  }
+
+  private static OptimizerContext contextFor(JProgram program, OptimizerContext optimizerCtx,
+      boolean incremental) {
+    return incremental ? optimizerCtx : new FullOptimizerContext(program);
+  }
+
+  private static String toSource(JProgram program) {
+    StringBuilder sb = new StringBuilder();
+    for (JDeclaredType type : program.getModuleDeclaredTypes()) {
+      if (type.getName().startsWith("test.")) {
+        sb.append(type.toSource());
+      }
+    }
+    return sb.toString();
+  }
+}
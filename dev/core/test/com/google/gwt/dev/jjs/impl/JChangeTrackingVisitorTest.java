@@ -558,9 +558,11 @@ public class JChangeTrackingVisitorTest extends JJSTestBase {
     assertTrue(optimizerCtx.getModifiedMethodsSince(first).contains(
         JJSTestBase.findMethod(program.getFromTypeMap("test.EntryPoint$A"), "fun5")));
 
+    assertFalse(optimizerCtx.hasRemovedMethodsSince(first));
     RemoveMethodsWithThreeParamsVisitor removeMethodsWithThreeParamsVisitor =
         new RemoveMethodsWithThreeParamsVisitor(optimizerCtx);
     removeMethodsWithThreeParamsVisitor.accept(program.getFromTypeMap("test.EntryPoint$A"));
+    assertTrue(optimizerCtx.hasRemovedMethodsSince(first));
     assertEquals(3, optimizerCtx.getModifiedMethodsSince(first).size());
     assertTrue(optimizerCtx.getModifiedMethodsSince(first).contains(
         JJSTestBase.findMethod(program.getFromTypeMap("test.EntryPoint$A"), "fun2")));
@@ -225,6 +225,22 @@ public class JsInlinerTest extends OptimizerTestBase {
     verifyNoChange(code.toString());
   }
 
+  public void testRedefinedFunctionFarApart() throws Exception {
+    // Enough statements in between that the definitions are likely analyzed on different
+    // threads.
+    StringBuilder filler = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      filler.append("x" + i + "=" + i + ";");
+    }
+    String input = "function a() { return 1 } function c() { return a() }" + filler
+        + "function a() { return 2 } y = c();";
+
+    String expected = "function a() { return 1 }" + filler
+        + "function a() { return 2 } y = a();";
+
+    verifyOptimized(expected, input);
+  }
+
   public void testSelfRecursion() throws Exception {
     String input = "function a1() { return blah && b1() }"
         + "function b1() { return bar && a1()}" + "function c() { a1() } c()";
@@ -31,6 +31,17 @@ public class JsStaticEvalTest extends OptimizerTestBase {
     assertEquals("alert('2004318071');", optimize("alert(2004318071 + '');"));
   }
 
+  public void testManyStatements() throws Exception {
+    // Enough statements that they are likely simplified on different threads.
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      input.append("alert(" + i + "+1);{a" + i + "();}1;");
+      expected.append("alert(" + (i + 1) + ");a" + i + "();");
+    }
+    assertEquals(expected.toString(), optimize(input.toString()));
+  }
+
   public void testAssociativity() throws Exception {
     // Simple test
     assertEquals("alert(a||b||c||d);", optimize("alert((a||b)||(c||d));"));
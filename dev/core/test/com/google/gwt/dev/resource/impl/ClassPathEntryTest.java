@@ -16,8 +16,10 @@
 package com.google.gwt.dev.resource.impl;
 
 import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.util.Util;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
 import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
 import com.google.gwt.thirdparty.guava.common.io.Files;
 
 import java.io.File;
@@ -62,6 +64,43 @@ public class ClassPathEntryTest extends AbstractResourceOrientedTestBase {
     assertTrue(foundFiles.get(0).isEmpty());
   }
 
+  public void testEntriesAreShared() throws IOException, URISyntaxException {
+    File tempDir = Files.createTempDir();
+    ClassPathEntry entry =
+        ResourceOracleImpl.createEntryForUrl(TreeLogger.NULL, tempDir.toURI().toURL());
+    assertTrue(entry instanceof DirectoryClassPathEntry);
+    assertSame(entry,
+        ResourceOracleImpl.createEntryForUrl(TreeLogger.NULL, tempDir.toURI().toURL()));
+
+    ResourceOracleImpl.clearCache();
+    assertNotSame(entry,
+        ResourceOracleImpl.createEntryForUrl(TreeLogger.NULL, tempDir.toURI().toURL()));
+  }
+
+  public void testPollForChanges() throws IOException {
+    // Setup a /tmp/sub/Existing.java folder structure.
+    File tempDir = Files.createTempDir();
+    File subDir = new File(tempDir, "sub");
+    subDir.mkdir();
+    new File(subDir, "Existing.java").createNewFile();
+
+    DirectoryClassPathEntry cpe = new DirectoryClassPathEntry(tempDir, false);
+    PathPrefixSet pathPrefixSet = createInclusivePathPrefixSet();
+    assertEquals(Sets.newHashSet("sub/Existing.java"),
+        getPaths(cpe.findApplicableResources(TreeLogger.NULL, pathPrefixSet)));
+
+    // Files in new directories are found.
+    File nestedDir = new File(subDir, "nested");
+    nestedDir.mkdir();
+    new File(nestedDir, "Created.java").createNewFile();
+    assertEquals(Sets.newHashSet("sub/Existing.java", "sub/nested/Created.java"),
+        getPaths(cpe.findApplicableResources(TreeLogger.NULL, pathPrefixSet)));
+
+    // Files in deleted directories are forgotten.
+    Util.recursiveDelete(subDir, false);
+    assertTrue(cpe.findApplicableResources(TreeLogger.NULL, pathPrefixSet).isEmpty());
+  }
+
   public void testResourceCreated() throws IOException, InterruptedException {
     // With just 1 filter definition.
     testResourceCreated(Lists.newArrayList(createInclusivePathPrefixSet()));
@@ -490,6 +529,14 @@ public class ClassPathEntryTest extends AbstractResourceOrientedTestBase {
     }
   }
 
+  private static Set<String> getPaths(Map<AbstractResource, ResourceResolution> resources) {
+    Set<String> paths = Sets.newHashSet();
+    for (AbstractResource resource : resources.keySet()) {
+      paths.add(resource.getPath());
+    }
+    return paths;
+  }
+
   private static PathPrefixSet createInclusivePathPrefixSet() {
     PathPrefixSet pathPrefixes = new PathPrefixSet();
     pathPrefixes.add(new PathPrefix("", null));
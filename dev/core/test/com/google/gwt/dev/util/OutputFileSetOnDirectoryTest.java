@@ -18,7 +18,6 @@ import com.google.gwt.util.tools.Utility;
 import junit.framework.TestCase;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -53,13 +52,9 @@ public class OutputFileSetOnDirectoryTest extends TestCase {
     try {
       OutputFileSetOnDirectory output = new OutputFileSetOnDirectory(work, "test/");
 
-      OutputStream firstStream = output.createNewOutputStream("path/to/file", 1000);
-      assertTrue(firstStream instanceof FileOutputStream);
-      firstStream.close();
-
-      OutputStream secondStream = output.createNewOutputStream("path/to/file", 1000);
-      assertTrue(secondStream instanceof FileOutputStream);
-      secondStream.close();
+      writeFile(output, "path/to/file", 1000, "first");
+      writeFile(output, "path/to/file", 1000, "second");
+      assertEquals("second", Util.readFileAsString(new File(work, "test/path/to/file")));
     } finally {
       Util.recursiveDelete(work, false);
     }
@@ -70,15 +65,59 @@ public class OutputFileSetOnDirectoryTest extends TestCase {
     try {
       OutputFileSetOnDirectory output = new OutputFileSetOnDirectory(work, "test/");
 
-      OutputStream firstStream = output.createNewOutputStream("path/to/file", 2000);
-      assertTrue(firstStream instanceof FileOutputStream);
-      firstStream.close();
+      writeFile(output, "path/to/file", 2000, "first");
+      writeFile(output, "path/to/file", 1000, "second");
+      File file = new File(work, "test/path/to/file");
+      assertEquals("second", Util.readFileAsString(file));
+      assertEquals(1000, file.lastModified());
+    } finally {
+      Util.recursiveDelete(work, false);
+    }
+  }
+
+  public void testOverwriteWithPrefixOrLongerContent() throws IOException {
+    File work = Utility.makeTemporaryDirectory(null, "outputfileset");
+    try {
+      OutputFileSetOnDirectory output = new OutputFileSetOnDirectory(work, "test/");
+      File file = new File(work, "test/file");
+
+      writeFile(output, "file", 1000, "abcdef");
+      writeFile(output, "file", 2000, "abc");
+      assertEquals("abc", Util.readFileAsString(file));
+      assertEquals(2000, file.lastModified());
+
+      writeFile(output, "file", 3000, "abcxyz");
+      assertEquals("abcxyz", Util.readFileAsString(file));
+      assertEquals(3000, file.lastModified());
+    } finally {
+      Util.recursiveDelete(work, false);
+    }
+  }
+
+  public void testUnchangedFileIsNotModified() throws IOException {
+    File work = Utility.makeTemporaryDirectory(null, "outputfileset");
+    try {
+      OutputFileSetOnDirectory output = new OutputFileSetOnDirectory(work, "test/");
+      File file = new File(work, "test/file");
 
-      OutputStream secondStream = output.createNewOutputStream("path/to/file", 1000);
-      assertTrue(secondStream instanceof FileOutputStream);
-      secondStream.close();
+      writeFile(output, "file", 1000, "content");
+      writeFile(output, "file", 2000, "content");
+      assertEquals("content", Util.readFileAsString(file));
+      assertEquals(1000, file.lastModified());
     } finally {
       Util.recursiveDelete(work, false);
     }
   }
+
+  private static void writeFile(OutputFileSet output, String path, long timeStampMillis,
+      String content) throws IOException {
+    OutputStream stream = output.createNewOutputStream(path, timeStampMillis);
+    try {
+      for (byte b : content.getBytes("UTF-8")) {
+        stream.write(b);
+      }
+    } finally {
+      stream.close();
+    }
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.collect;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link IntGraph}.
+ */
+public class IntGraphTest extends TestCase {
+
+  public void testAddAndRemoveEdges() {
+    IntGraph graph = new IntGraph();
+    assertTrue(graph.addEdge(0, 5));
+    assertTrue(graph.addEdge(0, 3));
+    assertTrue(graph.addEdge(2, 3));
+    assertFalse(graph.addEdge(0, 5));
+
+    assertSameIds(new int[] {5, 3}, graph.getSuccessors(0));
+    assertSameIds(new int[] {0, 2}, graph.getPredecessors(3));
+    assertSameIds(new int[] {0}, graph.getPredecessors(5));
+    assertSameIds(new int[0], graph.getSuccessors(100));
+    assertTrue(graph.containsEdge(2, 3));
+    assertFalse(graph.containsEdge(3, 2));
+
+    assertTrue(graph.removeEdge(0, 5));
+    assertFalse(graph.removeEdge(0, 5));
+    assertFalse(graph.hasPredecessors(5));
+    assertSameIds(new int[] {3}, graph.getSuccessors(0));
+  }
+
+  public void testClear() {
+    IntGraph graph = new IntGraph();
+    graph.addEdge(1, 2);
+    graph.clear();
+    assertFalse(graph.hasSuccessors(1));
+    assertFalse(graph.hasPredecessors(2));
+    assertTrue(graph.addEdge(1, 2));
+  }
+
+  public void testRemovePredecessors() {
+    IntGraph graph = new IntGraph();
+    graph.addEdge(0, 1);
+    graph.addEdge(2, 1);
+    graph.addEdge(2, 3);
+
+    assertSameIds(new int[] {0, 2}, graph.removePredecessors(1));
+    assertFalse(graph.hasSuccessors(0));
+    assertSameIds(new int[] {3}, graph.getSuccessors(2));
+    assertSameIds(new int[0], graph.removePredecessors(1));
+  }
+
+  public void testRemoveSuccessors() {
+    IntGraph graph = new IntGraph();
+    for (int i = 0; i < 20; i++) {
+      graph.addEdge(7, i);
+      graph.addEdge(8, i);
+    }
+
+    int[] removed = graph.removeSuccessors(7);
+    assertEquals(20, removed.length);
+    for (int i = 0; i < 20; i++) {
+      assertSameIds(new int[] {8}, graph.getPredecessors(i));
+    }
+    assertFalse(graph.hasSuccessors(7));
+  }
+
+  public void testHighDegreeNode() {
+    IntGraph graph = new IntGraph();
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(graph.addEdge(i, 0));
+    }
+    assertFalse(graph.addEdge(999, 0));
+
+    // Remove every edge from an even node, in an order unrelated to the insertion order.
+    for (int i = 998; i >= 0; i -= 2) {
+      assertTrue(graph.removeEdge(i, 0));
+      assertFalse(graph.removeEdge(i, 0));
+    }
+    int[] expected = new int[500];
+    for (int i = 0; i < 500; i++) {
+      expected[i] = 2 * i + 1;
+    }
+    assertSameIds(expected, graph.getPredecessors(0));
+    assertTrue(graph.containsEdge(501, 0));
+    assertFalse(graph.containsEdge(500, 0));
+
+    // Edges added back go to the end.
+    assertTrue(graph.addEdge(500, 0));
+    assertFalse(graph.addEdge(501, 0));
+    int[] predecessors = graph.getPredecessors(0);
+    assertEquals(501, predecessors.length);
+    assertEquals(500, predecessors[500]);
+
+    for (int i = 1; i < 1000; i += 2) {
+      assertTrue(graph.removeEdge(i, 0));
+    }
+    assertSameIds(new int[] {500}, graph.getPredecessors(0));
+    assertSameIds(new int[] {500}, graph.removePredecessors(0));
+    assertFalse(graph.hasPredecessors(0));
+    assertFalse(graph.hasSuccessors(500));
+  }
+
+  public void testRemoveSomeSuccessorsOfHighDegreeNode() {
+    IntGraph graph = new IntGraph();
+    for (int i = 0; i < 100; i++) {
+      graph.addEdge(1, i);
+    }
+    for (int i = 0; i < 100; i += 3) {
+      graph.removeEdge(1, i);
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 3 != 0, graph.containsEdge(1, i));
+      assertEquals(i % 3 != 0, graph.hasPredecessors(i));
+    }
+    assertEquals(66, graph.removeSuccessors(1).length);
+    for (int i = 0; i < 100; i++) {
+      assertFalse(graph.hasPredecessors(i));
+    }
+  }
+
+  private static void assertSameIds(int[] expected, int[] actual) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.tools.rpcbenchmarks;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+import com.google.gwt.user.client.rpc.RemoteService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The service called by the benchmarks. Every method returns its argument, so
+ * that requests and responses carry the same payload.
+ */
+public interface BenchmarkService extends RemoteService {
+
+  /**
+   * An enum sent in bulk.
+   */
+  enum Color implements IsSerializable {
+    RED, ORANGE, YELLOW, GREEN, BLUE, INDIGO, VIOLET
+  }
+
+  /**
+   * A DTO made mostly of longs and doubles.
+   */
+  class Measurement implements IsSerializable {
+    long id;
+    long timestamp;
+    double value;
+    double min;
+    double max;
+    int sampleCount;
+    Color color;
+
+    Measurement() {
+    }
+
+    Measurement(long id, long timestamp, double value, double min, double max, int sampleCount,
+        Color color) {
+      this.id = id;
+      this.timestamp = timestamp;
+      this.value = value;
+      this.min = min;
+      this.max = max;
+      this.sampleCount = sampleCount;
+      this.color = color;
+    }
+  }
+
+  /**
+   * A tree node with a back reference to its parent, so that object graphs
+   * contain both nesting and shared references.
+   */
+  class Node implements IsSerializable {
+    String name;
+    Node parent;
+    ArrayList<Node> children = new ArrayList<Node>();
+
+    Node() {
+    }
+
+    Node(String name, Node parent) {
+      this.name = name;
+      this.parent = parent;
+      if (parent != null) {
+        parent.children.add(this);
+      }
+    }
+  }
+
+  Color[] echoColors(Color[] colors);
+
+  Node echoGraph(Node root);
+
+  HashMap<String, Integer> echoMap(HashMap<String, Integer> map);
+
+  ArrayList<Measurement> echoMeasurements(ArrayList<Measurement> measurements);
+
+  ArrayList<String> echoStrings(ArrayList<String> strings);
+}
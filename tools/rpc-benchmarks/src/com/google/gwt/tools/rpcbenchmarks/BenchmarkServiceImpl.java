@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.tools.rpcbenchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Echoes every argument back, so that the benchmarks measure RPC overhead
+ * only.
+ */
+public class BenchmarkServiceImpl implements BenchmarkService {
+
+  @Override
+  public Color[] echoColors(Color[] colors) {
+    return colors;
+  }
+
+  @Override
+  public Node echoGraph(Node root) {
+    return root;
+  }
+
+  @Override
+  public HashMap<String, Integer> echoMap(HashMap<String, Integer> map) {
+    return map;
+  }
+
+  @Override
+  public ArrayList<Measurement> echoMeasurements(ArrayList<Measurement> measurements) {
+    return measurements;
+  }
+
+  @Override
+  public ArrayList<String> echoStrings(ArrayList<String> strings) {
+    return strings;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.tools.rpcbenchmarks;
+
+import com.google.gwt.tools.rpcbenchmarks.BenchmarkService.Color;
+import com.google.gwt.tools.rpcbenchmarks.BenchmarkService.Measurement;
+import com.google.gwt.tools.rpcbenchmarks.BenchmarkService.Node;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * The payloads sent through {@link BenchmarkService}. All of them are built
+ * from a fixed seed, so every run measures the same data.
+ */
+public enum Payload {
+
+  /**
+   * A tree of about a thousand nodes, each referring back to its parent.
+   */
+  DEEP_GRAPH("echoGraph", Node.class) {
+    @Override
+    Object create(Random random) {
+      Node root = new Node("root", null);
+      addChildren(root, 6, random);
+      return root;
+    }
+
+    private void addChildren(Node parent, int depth, Random random) {
+      if (depth == 0) {
+        return;
+      }
+      for (int i = 0; i < 3; i++) {
+        addChildren(new Node(parent.name + "/" + random.nextInt(1000), parent), depth - 1,
+            random);
+      }
+    }
+  },
+
+  /**
+   * A large {@link ArrayList} of distinct plain strings.
+   */
+  LARGE_LIST("echoStrings", ArrayList.class) {
+    @Override
+    Object create(Random random) {
+      ArrayList<String> strings = new ArrayList<String>();
+      for (int i = 0; i < 10000; i++) {
+        strings.add("item-" + i + "-" + Long.toHexString(random.nextLong()));
+      }
+      return strings;
+    }
+  },
+
+  /**
+   * A large {@link HashMap} from strings to boxed integers.
+   */
+  LARGE_MAP("echoMap", HashMap.class) {
+    @Override
+    Object create(Random random) {
+      HashMap<String, Integer> map = new HashMap<String, Integer>();
+      for (int i = 0; i < 10000; i++) {
+        map.put("key-" + i, random.nextInt());
+      }
+      return map;
+    }
+  },
+
+  /**
+   * Strings full of characters that need escaping on the way in (separators,
+   * backslashes, NULs, surrogates) and on the way out (quotes, control and
+   * non-ASCII characters).
+   */
+  ESCAPED_STRINGS("echoStrings", ArrayList.class) {
+    @Override
+    Object create(Random random) {
+      String alphabet = "ab|\\\u0000\"'<>\n\t\u00e9\u2028\u4e2d\ud83d\ude00";
+      ArrayList<String> strings = new ArrayList<String>();
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 2000; i++) {
+        sb.setLength(0);
+        for (int j = 0; j < 40; j++) {
+          sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        strings.add(sb.toString());
+      }
+      return strings;
+    }
+  },
+
+  /**
+   * DTOs dominated by long and double fields.
+   */
+  NUMERIC_DTOS("echoMeasurements", ArrayList.class) {
+    @Override
+    Object create(Random random) {
+      Color[] colors = Color.values();
+      ArrayList<Measurement> measurements = new ArrayList<Measurement>();
+      for (int i = 0; i < 5000; i++) {
+        double value = random.nextGaussian() * 1000;
+        measurements.add(new Measurement(random.nextLong(), 1400000000000L + i * 1000L, value,
+            value - random.nextDouble(), value + random.nextDouble(), random.nextInt(100),
+            colors[random.nextInt(colors.length)]));
+      }
+      return measurements;
+    }
+  },
+
+  /**
+   * A large array of enum values.
+   */
+  ENUMS("echoColors", Color[].class) {
+    @Override
+    Object create(Random random) {
+      Color[] colors = Color.values();
+      Color[] result = new Color[20000];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = colors[random.nextInt(colors.length)];
+      }
+      return result;
+    }
+  };
+
+  private final Method method;
+
+  private Payload(String methodName, Class<?> parameterType) {
+    try {
+      method = BenchmarkService.class.getMethod(methodName, parameterType);
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns a new instance of the payload.
+   */
+  public Object create() {
+    return create(new Random(42));
+  }
+
+  /**
+   * Returns the service method that accepts and returns this payload.
+   */
+  public Method getMethod() {
+    return method;
+  }
+
+  abstract Object create(Random random);
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.tools.rpcbenchmarks;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStreamWriter;
+import com.google.gwt.user.server.Base64Utils;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.impl.SerializabilityUtil;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Encodes RPC requests the way the client-side proxies do, so that the
+ * benchmarks can feed realistic requests to the server without a browser.
+ * Mirrors {@code ClientSerializationStreamWriter} and the field layout used by
+ * {@code ServerSerializationStreamWriter}; it only supports what the benchmark
+ * payloads need, i.e. no enhanced classes and no type name elision.
+ */
+class RequestEncoder extends AbstractSerializationStreamWriter {
+
+  /**
+   * Encodes a call to a method with the given arguments.
+   */
+  static String encodeRequest(Method method, Object[] args, SerializationPolicy policy)
+      throws SerializationException {
+    RequestEncoder encoder = new RequestEncoder(policy);
+    encoder.prepareToWrite();
+    encoder.writeString(method.getDeclaringClass().getName());
+    encoder.writeString(method.getName());
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    encoder.writeInt(parameterTypes.length);
+    for (Class<?> parameterType : parameterTypes) {
+      encoder.writeString(SerializabilityUtil.getSerializedTypeName(parameterType));
+    }
+    for (int i = 0; i < args.length; i++) {
+      encoder.writeValue(parameterTypes[i], args[i]);
+    }
+    return encoder.toString();
+  }
+
+  /**
+   * Quotes the characters the client quotes in string table entries.
+   */
+  private static String quoteString(String str) {
+    StringBuilder sb = new StringBuilder(str.length());
+    for (int i = 0; i < str.length(); i++) {
+      char ch = str.charAt(i);
+      if (ch == 0) {
+        sb.append("\\0");
+      } else if (ch == '\\') {
+        sb.append("\\\\");
+      } else if (ch == RPC_SEPARATOR_CHAR) {
+        sb.append("\\!");
+      } else if (ch >= '\uD800') {
+        String hex = Integer.toHexString(ch);
+        sb.append("\\u0000", 0, 6 - hex.length()).append(hex);
+      } else {
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
+  }
+
+  private final StringBuilder payload = new StringBuilder();
+
+  private final SerializationPolicy policy;
+
+  private RequestEncoder(SerializationPolicy policy) {
+    this.policy = policy;
+  }
+
+  @Override
+  public void prepareToWrite() {
+    super.prepareToWrite();
+    payload.setLength(0);
+
+    // Module base URL and strong name
+    writeString("http://localhost/benchmark/");
+    writeString("BENCHMARK");
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder();
+    append(buffer, String.valueOf(getVersion()));
+    append(buffer, String.valueOf(getFlags()));
+    List<String> stringTable = getStringTable();
+    append(buffer, String.valueOf(stringTable.size()));
+    for (String s : stringTable) {
+      append(buffer, quoteString(s));
+    }
+    buffer.append(payload);
+    return buffer.toString();
+  }
+
+  @Override
+  public void writeLong(long value) {
+    append(Base64Utils.toBase64(value));
+  }
+
+  @Override
+  protected void append(String token) {
+    append(payload, token);
+  }
+
+  @Override
+  protected String getObjectTypeSignature(Object instance) {
+    return SerializabilityUtil.encodeSerializedInstanceReference(getClassForSerialization(instance),
+        policy);
+  }
+
+  @Override
+  protected void serialize(Object instance, String typeSignature)
+      throws SerializationException {
+    serializeImpl(instance, getClassForSerialization(instance));
+  }
+
+  private void append(StringBuilder buffer, String token) {
+    buffer.append(token).append(RPC_SEPARATOR_CHAR);
+  }
+
+  private Class<?> getClassForSerialization(Object instance) {
+    if (instance instanceof Enum<?>) {
+      return ((Enum<?>) instance).getDeclaringClass();
+    }
+    return instance.getClass();
+  }
+
+  private void serializeImpl(Object instance, Class<?> instanceClass)
+      throws SerializationException {
+    try {
+      Class<?> customSerializer = SerializabilityUtil.hasCustomFieldSerializer(instanceClass);
+      if (customSerializer != null) {
+        for (Method method : customSerializer.getMethods()) {
+          if ("serialize".equals(method.getName())) {
+            method.invoke(null, this, instance);
+            return;
+          }
+        }
+        throw new SerializationException("No serialize method in " + customSerializer);
+      } else if (instanceClass.isArray()) {
+        Class<?> componentType = instanceClass.getComponentType();
+        int length = Array.getLength(instance);
+        writeInt(length);
+        for (int i = 0; i < length; i++) {
+          writeValue(componentType, Array.get(instance, i));
+        }
+      } else if (instanceClass.isEnum()) {
+        writeInt(((Enum<?>) instance).ordinal());
+      } else {
+        for (Field field : SerializabilityUtil.applyFieldSerializationPolicy(instanceClass,
+            policy)) {
+          field.setAccessible(true);
+          writeValue(field.getType(), field.get(instance));
+        }
+        Class<?> superClass = instanceClass.getSuperclass();
+        if (policy.shouldSerializeFields(superClass)) {
+          serializeImpl(instance, superClass);
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new SerializationException(e);
+    } catch (InvocationTargetException e) {
+      throw new SerializationException(e.getCause());
+    }
+  }
+
+  private void writeValue(Class<?> type, Object value) throws SerializationException {
+    if (type == boolean.class) {
+      writeBoolean((Boolean) value);
+    } else if (type == byte.class) {
+      writeByte((Byte) value);
+    } else if (type == char.class) {
+      writeChar((Character) value);
+    } else if (type == double.class) {
+      writeDouble((Double) value);
+    } else if (type == float.class) {
+      writeFloat((Float) value);
+    } else if (type == int.class) {
+      writeInt((Integer) value);
+    } else if (type == long.class) {
+      writeLong((Long) value);
+    } else if (type == short.class) {
+      writeShort((Short) value);
+    } else if (type == String.class) {
+      writeString((String) value);
+    } else {
+      writeObject(value);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.tools.rpcbenchmarks;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStream;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.RPCRequest;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the server side of GWT-RPC: decoding requests, invoking the service
+ * and encoding responses, for each of the {@link Payload}s. Run it with the
+ * GC profiler ({@code -prof gc}) to also get the allocation rate per
+ * operation; see README.txt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ServerRpcBenchmark {
+
+  /**
+   * The flags used by every benchmark that encodes a response, so that the
+   * measurements can be compared with each other.
+   */
+  private static final int FLAGS = AbstractSerializationStream.DEFAULT_FLAGS;
+
+  /**
+   * A writer that discards everything, so that writing a response measures
+   * only the encoding.
+   */
+  private static final class NullWriter extends Writer {
+    private long count;
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      count += len;
+    }
+  }
+
+  @Param
+  private Payload payload;
+
+  private final BenchmarkService service = new BenchmarkServiceImpl();
+
+  private Method method;
+
+  private SerializationPolicy policy;
+
+  private String request;
+
+  private Object value;
+
+  @Setup
+  public void setUp() throws SerializationException {
+    method = payload.getMethod();
+    policy = RPC.getDefaultSerializationPolicy();
+    value = payload.create();
+    request = RequestEncoder.encodeRequest(method, new Object[] {value}, policy);
+  }
+
+  /**
+   * Parses a request and deserializes its arguments.
+   */
+  @Benchmark
+  public RPCRequest decodeRequest() {
+    return RPC.decodeRequest(request);
+  }
+
+  /**
+   * Serializes a return value into a response string.
+   */
+  @Benchmark
+  public String encodeResponse() throws SerializationException {
+    return RPC.encodeResponseForSuccess(method, value, policy, FLAGS);
+  }
+
+  /**
+   * Serializes a return value and writes it out without building the whole
+   * response string, as done for large responses.
+   */
+  @Benchmark
+  public long writeResponse() throws IOException, SerializationException {
+    NullWriter writer = new NullWriter();
+    RPC.serializeResponseForSuccess(method, value, policy, FLAGS).writeTo(writer);
+    return writer.count;
+  }
+
+  /**
+   * Runs a whole call: decodes the request, invokes the service and encodes
+   * the response.
+   */
+  @Benchmark
+  public String roundTrip() throws SerializationException {
+    RPCRequest rpcRequest = RPC.decodeRequest(request);
+    return RPC.invokeAndEncodeResponse(service, rpcRequest.getMethod(),
+        rpcRequest.getParameters(), rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
+  }
+}
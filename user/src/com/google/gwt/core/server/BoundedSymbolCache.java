@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.server;
+
+import com.google.gwt.thirdparty.guava.common.cache.Cache;
+import com.google.gwt.thirdparty.guava.common.cache.CacheBuilder;
+import com.google.gwt.thirdparty.guava.common.cache.CacheStats;
+import com.google.gwt.thirdparty.guava.common.cache.Weigher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link StackTraceDeobfuscator.SymbolCache} that holds at most a fixed amount of symbol data
+ * across all permutations, evicting the least recently used symbols first. Lookups do not take a
+ * global lock, and hit, miss and eviction counts are recorded.
+ * <p>
+ * The size of the cache is measured in characters of symbol names and data, which is roughly
+ * proportional to the memory they use.
+ */
+public class BoundedSymbolCache implements StackTraceDeobfuscator.SymbolCache {
+
+  /**
+   * Identifies one symbol of one permutation.
+   */
+  private static final class SymbolKey {
+    private final String strongName;
+    private final String symbol;
+
+    SymbolKey(String strongName, String symbol) {
+      this.strongName = strongName;
+      this.symbol = symbol;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof SymbolKey)) {
+        return false;
+      }
+      SymbolKey other = (SymbolKey) o;
+      return symbol.equals(other.symbol) && strongName.equals(other.strongName);
+    }
+
+    @Override
+    public int hashCode() {
+      return strongName.hashCode() * 31 + symbol.hashCode();
+    }
+  }
+
+  private static final Weigher<SymbolKey, String> SYMBOL_WEIGHER =
+      new Weigher<SymbolKey, String>() {
+        @Override
+        public int weigh(SymbolKey key, String symbolData) {
+          return key.symbol.length() + symbolData.length();
+        }
+      };
+
+  private final Cache<SymbolKey, String> cache;
+
+  /**
+   * Creates a cache holding at most {@code maxChars} characters of symbol names and data.
+   */
+  public BoundedSymbolCache(long maxChars) {
+    if (maxChars <= 0) {
+      throw new IllegalArgumentException("maxChars must be positive: " + maxChars);
+    }
+    cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxChars)
+        .weigher(SYMBOL_WEIGHER)
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  public void putAll(String strongName, Map<String, String> symbolMap) {
+    if (strongName == null) {
+      return;
+    }
+    for (Map.Entry<String, String> entry : symbolMap.entrySet()) {
+      cache.put(new SymbolKey(strongName, entry.getKey()), entry.getValue());
+    }
+  }
+
+  @Override
+  public Map<String, String> getAll(String strongName, Set<String> symbols) {
+    Map<String, String> toReturn = new HashMap<String, String>();
+    if (strongName == null) {
+      return toReturn;
+    }
+    for (String symbol : symbols) {
+      String symbolData = cache.getIfPresent(new SymbolKey(strongName, symbol));
+      if (symbolData != null) {
+        toReturn.put(symbol, symbolData);
+      }
+    }
+    return toReturn;
+  }
+
+  /**
+   * Discards all cached symbols. Statistics are kept.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the number of symbol lookups that were answered from the cache.
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Returns the number of symbol lookups that had to go back to the symbol map.
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Returns the number of symbols dropped to stay within the size bound.
+   */
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  /**
+   * Returns the number of symbols currently cached.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = cache.stats();
+    return "BoundedSymbolCache[size=" + cache.size() + ", hits=" + stats.hitCount()
+        + ", misses=" + stats.missCount() + ", evictions=" + stats.evictionCount() + "]";
+  }
+}
@@ -93,49 +93,63 @@ public abstract class StackTraceDeobfuscator {
    * A cache that maps obfuscated symbols to arbitrary non-null string values. The cache can assume
    * each (strongName, symbol) pair always maps to the same value (never goes invalid), but must
    * treat data as an opaque string.
+   * <p>
+   * Implementations must be safe for concurrent use and are free to drop entries at any time; a
+   * symbol that is no longer cached is simply read again from the symbol map. See
+   * {@link BoundedSymbolCache} for an implementation that caps memory usage.
    */
-  private static class SymbolCache {
-    // TODO(srogoff): This SymbolCache implementation never drops old entries. If clients ever need
-    // to cap memory usage even with lazy loading, consider making SymbolCache an interface.
-    // This could allow clients to pass their own implementation to the StackTraceDeobfuscator
-    // constructor, backed by a Guava Cache or other entry-evicting mapping.
+  public interface SymbolCache {
+    /**
+     * Adds some symbol data to the cache for the given strong name.
+     */
+    void putAll(String strongName, Map<String, String> symbolMap);
 
-    private final ConcurrentHashMap<String, HashMap<String, String>> symbolMaps;
+    /**
+     * Returns the data for each of the specified symbols that's currently cached for the given
+     * strong name. There will be no entry for symbols that are not in the cache. If none of the
+     * symbols are cached, an empty Map is returned.
+     */
+    Map<String, String> getAll(String strongName, Set<String> symbols);
+  }
+
+  /**
+   * The default {@link SymbolCache}, which never drops old entries.
+   */
+  private static class UnboundedSymbolCache implements SymbolCache {
 
-    SymbolCache() {
-      symbolMaps = new ConcurrentHashMap<String, HashMap<String, String>>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> symbolMaps;
+
+    UnboundedSymbolCache() {
+      symbolMaps = new ConcurrentHashMap<String, ConcurrentHashMap<String, String>>();
     }
 
-    /**
-     * Adds some symbol data to the cache for the given strong name.
-     */
-    void putAll(String strongName, Map<String, String> symbolMap) {
+    @Override
+    public void putAll(String strongName, Map<String, String> symbolMap) {
       if (strongName == null || symbolMap.size() == 0) {
         return;
       }
-      symbolMaps.putIfAbsent(strongName, new HashMap<String, String>());
-      HashMap<String, String> existingMap = symbolMaps.get(strongName);
-      synchronized (existingMap) {
-        existingMap.putAll(symbolMap);
+      ConcurrentHashMap<String, String> existingMap = symbolMaps.get(strongName);
+      if (existingMap == null) {
+        symbolMaps.putIfAbsent(strongName, new ConcurrentHashMap<String, String>());
+        existingMap = symbolMaps.get(strongName);
       }
+      existingMap.putAll(symbolMap);
     }
 
-    /**
-     * Returns the data for each of the specified symbols that's currently cached for the given
-     * strong name. There will be no entry for symbols that are not in the cache. If none of the
-     * symbols are cached, an empty Map is returned.
-     */
-    Map<String, String> getAll(String strongName, Set<String> symbols) {
+    @Override
+    public Map<String, String> getAll(String strongName, Set<String> symbols) {
       Map<String, String> toReturn = new HashMap<String, String>();
-      if (strongName == null || !symbolMaps.containsKey(strongName) || symbols.isEmpty()) {
+      if (strongName == null || symbols.isEmpty()) {
         return toReturn;
       }
-      HashMap<String, String> existingMap = symbolMaps.get(strongName);
-      synchronized (existingMap) {
-        for (String symbol : symbols) {
-          if (existingMap.containsKey(symbol)) {
-            toReturn.put(symbol, existingMap.get(symbol));
-          }
+      ConcurrentHashMap<String, String> existingMap = symbolMaps.get(strongName);
+      if (existingMap == null) {
+        return toReturn;
+      }
+      for (String symbol : symbols) {
+        String symbolData = existingMap.get(symbol);
+        if (symbolData != null) {
+          toReturn.put(symbol, symbolData);
         }
       }
       return toReturn;
@@ -148,7 +162,7 @@ public abstract class StackTraceDeobfuscator {
   private static final String SYMBOL_DATA_UNKNOWN = "";
 
   private final Map<String, SourceMapping> sourceMaps = new HashMap<String, SourceMapping>();
-  private final SymbolCache symbolCache = new SymbolCache();
+  private volatile SymbolCache symbolCache = new UnboundedSymbolCache();
   private boolean lazyLoad = false;
 
   /**
@@ -160,6 +174,19 @@ public abstract class StackTraceDeobfuscator {
     this.lazyLoad = lazyLoad;
   }
 
+  /**
+   * Replaces the cache used to hold symbols read from symbol map files. By default every symbol
+   * ever loaded is kept forever; a {@link BoundedSymbolCache} caps memory usage instead. Combine
+   * it with {@link #setLazyLoad(boolean) lazy loading} so that only requested symbols compete for
+   * space in the cache. Symbols cached so far are discarded.
+   */
+  public void setSymbolCache(SymbolCache symbolCache) {
+    if (symbolCache == null) {
+      throw new NullPointerException("symbolCache");
+    }
+    this.symbolCache = symbolCache;
+  }
+
   /**
    * Replaces the stack traces in the given Throwable and its causes with deobfuscated stack traces
    * wherever possible.
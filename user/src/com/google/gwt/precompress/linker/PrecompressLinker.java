@@ -26,14 +26,24 @@ import com.google.gwt.core.ext.linker.EmittedArtifact.Visibility;
 import com.google.gwt.core.ext.linker.LinkerOrder;
 import com.google.gwt.core.ext.linker.LinkerOrder.Order;
 import com.google.gwt.core.ext.linker.Shardable;
+import com.google.gwt.core.ext.linker.impl.LinkerOutputCache;
+import com.google.gwt.dev.util.DaemonThreadPools;
+import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.collect.HashSet;
+import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.util.regexfilter.RegexFilter;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
@@ -87,6 +97,13 @@ public class PrecompressLinker extends AbstractLinker {
 
   private static final String PROP_PATH_REGEXES = "precompress.path.regexes";
 
+  /**
+   * Compresses artifacts in parallel.
+   */
+  private static final ExecutorService executor =
+      DaemonThreadPools.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          "PrecompressLinker-%d");
+
   private static ConfigurationProperty findProperty(
       TreeLogger logger,
       Iterable<com.google.gwt.core.ext.linker.ConfigurationProperty> properties,
@@ -126,61 +143,130 @@ public class PrecompressLinker extends AbstractLinker {
       allPaths.add(art.getPartialPath());
     }
 
-    try {
-      // Buffer for streaming data to be compressed
-      byte[] buf = new byte[BUF_SIZE];
+    final LinkerOutputCache outputCache = LinkerOutputCache.get(logger);
 
-      ArtifactSet updated = new ArtifactSet(artifacts);
-      for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
-        if (art.getVisibility() != Visibility.Public) {
-          // only compress things that will be served to the client
-          continue;
-        }
-        if (art.getPartialPath().endsWith(".gz")) {
-          // Already a compressed artifact
-          continue;
-        }
-        if (allPaths.contains(art.getPartialPath() + ".gz")) {
-          // It's already been compressed
-          continue;
-        }
-        if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
-            "Checking the path patterns"), art.getPartialPath())) {
-          continue;
-        }
+    // Pick the artifacts to compress, then compress them in parallel.
+    List<EmittedArtifact> toCompress = new ArrayList<EmittedArtifact>();
+    List<TreeLogger> compressBranches = new ArrayList<TreeLogger>();
+    List<Callable<byte[]>> compressTasks = new ArrayList<Callable<byte[]>>();
+    for (final EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
+      if (art.getVisibility() != Visibility.Public) {
+        // only compress things that will be served to the client
+        continue;
+      }
+      if (art.getPartialPath().endsWith(".gz")) {
+        // Already a compressed artifact
+        continue;
+      }
+      if (allPaths.contains(art.getPartialPath() + ".gz")) {
+        // It's already been compressed
+        continue;
+      }
+      if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
+          "Checking the path patterns"), art.getPartialPath())) {
+        continue;
+      }
 
-        TreeLogger compressBranch = logger.branch(TreeLogger.TRACE,
-            "Compressing " + art.getPartialPath());
-
-        InputStream originalBytes = art.getContents(compressBranch);
-        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = new GZIPOutputStream(compressedBytes) {
-            {
-              def.setLevel(Deflater.BEST_COMPRESSION);
-            }
-        };
-
-        int originalLength = 0;
-        int n;
-        while ((n = originalBytes.read(buf)) > 0) {
-          originalLength += n;
-          gzip.write(buf, 0, n);
+      final TreeLogger compressBranch = logger.branch(TreeLogger.TRACE,
+          "Compressing " + art.getPartialPath());
+      toCompress.add(art);
+      compressBranches.add(compressBranch);
+      compressTasks.add(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException, UnableToCompleteException {
+          return compress(compressBranch, art, outputCache);
         }
-        gzip.close();
+      });
+    }
 
-        byte[] compressed = compressedBytes.toByteArray();
-        if (compressed.length < originalLength) {
-          updated.add(emitBytes(compressBranch, compressed,
+    try {
+      List<Future<byte[]>> results = executor.invokeAll(compressTasks);
+      ArtifactSet updated = new ArtifactSet(artifacts);
+      for (int i = 0; i < toCompress.size(); i++) {
+        EmittedArtifact art = toCompress.get(i);
+        byte[] compressed = results.get(i).get();
+        if (compressed != null) {
+          updated.add(emitBytes(compressBranches.get(i), compressed,
               art.getPartialPath() + ".gz"));
           if (!leaveOriginals) {
             updated.remove(art);
           }
         }
       }
+      if (outputCache != null) {
+        outputCache.logStats(logger);
+      }
       return updated;
-    } catch (IOException e) {
-      logger.log(TreeLogger.ERROR, "Unexpected exception", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UnableToCompleteException) {
+        throw (UnableToCompleteException) e.getCause();
+      }
+      Throwables.propagateIfPossible(e.getCause());
+      logger.log(TreeLogger.ERROR, "Unexpected exception", e.getCause());
+      throw new UnableToCompleteException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.log(TreeLogger.ERROR, "Interrupted while compressing", e);
       throw new UnableToCompleteException();
     }
   }
+
+  /**
+   * Returns the gzipped contents of an artifact, or null if compressing doesn't make it smaller.
+   * The result is looked up in the linker output cache (if enabled) by a hash of the contents.
+   * (Called from several threads at once.)
+   */
+  private static byte[] compress(TreeLogger logger, EmittedArtifact art,
+      LinkerOutputCache outputCache) throws IOException, UnableToCompleteException {
+    InputStream originalBytes = art.getContents(logger);
+    if (outputCache == null) {
+      return compress(originalBytes);
+    }
+
+    // Closes the stream.
+    byte[] original = Util.readStreamAsBytes(originalBytes);
+    if (original == null) {
+      throw new IOException("Unable to read " + art.getPartialPath());
+    }
+    String key = LinkerOutputCache.keyFor(PrecompressLinker.class.getName(),
+        Util.computeStrongName(original));
+    byte[] compressed = outputCache.getBytes(key);
+    if (compressed == null) {
+      compressed = compress(new ByteArrayInputStream(original));
+      try {
+        // An empty entry records that compressing didn't help.
+        outputCache.putBytes(key, compressed == null ? new byte[0] : compressed);
+      } catch (IOException e) {
+        logger.log(TreeLogger.WARN, "Unable to add to the linker output cache", e);
+      }
+    }
+    return compressed == null || compressed.length == 0 ? null : compressed;
+  }
+
+  private static byte[] compress(InputStream originalBytes) throws IOException {
+    // Buffer for streaming data to be compressed
+    byte[] buf = new byte[BUF_SIZE];
+
+    ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(compressedBytes) {
+        {
+          def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    };
+
+    int originalLength = 0;
+    int n;
+    try {
+      while ((n = originalBytes.read(buf)) > 0) {
+        originalLength += n;
+        gzip.write(buf, 0, n);
+      }
+    } finally {
+      originalBytes.close();
+    }
+    gzip.close();
+
+    byte[] compressed = compressedBytes.toByteArray();
+    return compressed.length < originalLength ? compressed : null;
+  }
 }
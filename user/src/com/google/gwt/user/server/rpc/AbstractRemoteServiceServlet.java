@@ -18,7 +18,10 @@ package com.google.gwt.user.server.rpc;
 import static com.google.gwt.user.client.rpc.RpcRequestBuilder.STRONG_NAME_HEADER;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -44,32 +47,38 @@ public abstract class AbstractRemoteServiceServlet extends HttpServlet {
    * This doPost method swallows ALL exceptions, logs them in the
    * ServletContext, and returns a GENERIC_FAILURE_MSG response with status code
    * 500.
+   * <p>
+   * If {@link #getAsyncExecutor()} returns an executor and the request supports
+   * asynchronous processing, the request is processed on that executor and the
+   * container thread is released right away.
    */
   @Override
-  public final void doPost(HttpServletRequest request,
-      HttpServletResponse response) {
-    // Ensure the thread-local data fields have been initialized
+  public final void doPost(final HttpServletRequest request,
+      final HttpServletResponse response) {
+    Executor executor = getAsyncExecutor();
+    if (executor == null || !request.isAsyncSupported()) {
+      doPostInThread(request, response);
+      return;
+    }
 
-    try {
-      // Store the request & response objects in thread-local storage.
-      //
-      synchronized (this) {
-        validateThreadLocalData();
-        perThreadRequest.set(request);
-        perThreadResponse.set(response);
+    final AsyncContext asyncContext = request.startAsync(request, response);
+    // Like a synchronous call, an asynchronous one may take as long as it needs
+    asyncContext.setTimeout(0);
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          doPostInThread(request, response);
+        } finally {
+          asyncContext.complete();
+        }
       }
-
-      processPost(request, response);
-
-    } catch (Throwable e) {
-      // Give a subclass a chance to either handle the exception or rethrow it
-      //
-      doUnexpectedFailure(e);
-    } finally {
-      // null the thread-locals to avoid holding request/response
-      //
-      perThreadRequest.set(null);
-      perThreadResponse.set(null);
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // The executor is saturated, so push back on the container instead
+      task.run();
     }
   }
 
@@ -111,6 +120,25 @@ public abstract class AbstractRemoteServiceServlet extends HttpServlet {
         getThreadLocalResponse(), e);
   }
 
+  /**
+   * Override this method to process requests asynchronously. The default
+   * implementation returns {@code null}, which processes each request in the
+   * container thread that received it.
+   * <p>
+   * When an executor is returned, each request that supports asynchronous
+   * processing (which requires {@code <async-supported>true</async-supported>}
+   * in the servlet's deployment descriptor and a Servlet 3.0 container) is
+   * read, decoded, invoked and answered on a thread of that executor, and
+   * {@link #getThreadLocalRequest()} and {@link #getThreadLocalResponse()}
+   * refer to it there. Requests the executor rejects are processed in the
+   * container thread. The same executor should be returned for every call.
+   * 
+   * @return the executor to process requests on, or {@code null}
+   */
+  protected Executor getAsyncExecutor() {
+    return null;
+  }
+
   /**
    * Returns the strong name of the permutation, as reported by the client that
    * issued the request, or <code>null</code> if it could not be determined.
@@ -182,6 +210,37 @@ public abstract class AbstractRemoteServiceServlet extends HttpServlet {
     return RPCServletUtils.readContentAsGwtRpc(request);
   }
 
+  /**
+   * Processes a POST in the current thread, making the request and response
+   * available to it through the thread-locals.
+   */
+  private void doPostInThread(HttpServletRequest request,
+      HttpServletResponse response) {
+    // Ensure the thread-local data fields have been initialized
+
+    try {
+      // Store the request & response objects in thread-local storage.
+      //
+      synchronized (this) {
+        validateThreadLocalData();
+        perThreadRequest.set(request);
+        perThreadResponse.set(response);
+      }
+
+      processPost(request, response);
+
+    } catch (Throwable e) {
+      // Give a subclass a chance to either handle the exception or rethrow it
+      //
+      doUnexpectedFailure(e);
+    } finally {
+      // null the thread-locals to avoid holding request/response
+      //
+      perThreadRequest.set(null);
+      perThreadResponse.set(null);
+    }
+  }
+
   /**
    * Initializes the perThreadRequest and perThreadResponse fields if they are
    * null. This will occur the first time they are accessed after an instance of
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import com.google.gwt.user.server.rpc.RpcCallStats.Phase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * An {@link RpcMetrics} that keeps histograms of the calls to each service method in memory and
+ * publishes them as {@link RpcMethodMetricsMXBean}s.
+ * <p>
+ * The MXBean of a method is registered when it is first called, under the name
+ * {@code com.google.gwt.user.server.rpc:type=RpcMethodMetrics,context="<context path>",
+ * servlet="<servlet>",method="<method signature>"}, where the signature is in JSNI style, such as
+ * {@code com.example.EchoService::echo(Ljava/lang/String;I)}, so that overloads are counted
+ * separately. Calls whose request couldn't be decoded are counted under the method
+ * {@value #UNDECODED_METHOD}.
+ */
+public class JmxRpcMetrics implements RpcMetrics {
+
+  /**
+   * The method name under which calls that couldn't be decoded are counted.
+   */
+  public static final String UNDECODED_METHOD = "(undecoded)";
+
+  private static final String DOMAIN = "com.google.gwt.user.server.rpc";
+  private static final Logger log = Logger.getLogger(JmxRpcMetrics.class.getName());
+  private static final Phase[] PHASES = Phase.values();
+
+  /**
+   * Returns the JSNI-style signature of a method, which includes the binary name of the class
+   * that declares it and the JNI descriptors of its parameter types.
+   */
+  static String getSignature(Method method) {
+    StringBuilder sb = new StringBuilder(method.getDeclaringClass().getName());
+    sb.append("::").append(method.getName()).append('(');
+    for (Class<?> type : method.getParameterTypes()) {
+      appendDescriptor(sb, type);
+    }
+    return sb.append(')').toString();
+  }
+
+  private static void appendDescriptor(StringBuilder sb, Class<?> type) {
+    if (type.isArray()) {
+      // The name of an array class is already in descriptor form, with dots for slashes
+      sb.append(type.getName().replace('.', '/'));
+    } else if (!type.isPrimitive()) {
+      sb.append('L').append(type.getName().replace('.', '/')).append(';');
+    } else if (type == boolean.class) {
+      sb.append('Z');
+    } else if (type == byte.class) {
+      sb.append('B');
+    } else if (type == char.class) {
+      sb.append('C');
+    } else if (type == double.class) {
+      sb.append('D');
+    } else if (type == float.class) {
+      sb.append('F');
+    } else if (type == int.class) {
+      sb.append('I');
+    } else if (type == long.class) {
+      sb.append('J');
+    } else if (type == short.class) {
+      sb.append('S');
+    } else {
+      sb.append('V');
+    }
+  }
+
+  /**
+   * The statistics of one service method.
+   */
+  private static class MethodMetrics implements RpcMethodMetricsMXBean {
+    private final AtomicLong failures = new AtomicLong();
+    private volatile String lastPolicyStrongName;
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong serviceExceptions = new AtomicLong();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    MethodMetrics() {
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new LatencyHistogram();
+      }
+    }
+
+    @Override
+    public long getCalls() {
+      return total.getCount();
+    }
+
+    @Override
+    public long getFailures() {
+      return failures.get();
+    }
+
+    @Override
+    public String getLastPolicyStrongName() {
+      return lastPolicyStrongName;
+    }
+
+    @Override
+    public double getMeanMillis() {
+      return toMillis(total.getMean());
+    }
+
+    @Override
+    public Map<String, Double> getMeanPhaseMillis() {
+      Map<String, Double> toReturn = new LinkedHashMap<String, Double>();
+      for (Phase phase : PHASES) {
+        toReturn.put(phase.name(), toMillis(phases[phase.ordinal()].getMean()));
+      }
+      return toReturn;
+    }
+
+    @Override
+    public double getMedianMillis() {
+      return toMillis(total.getPercentile(50));
+    }
+
+    @Override
+    public double getPercentile99Millis() {
+      return toMillis(total.getPercentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getPercentile99PhaseMillis() {
+      Map<String, Double> toReturn = new LinkedHashMap<String, Double>();
+      for (Phase phase : PHASES) {
+        toReturn.put(phase.name(), toMillis(phases[phase.ordinal()].getPercentile(99)));
+      }
+      return toReturn;
+    }
+
+    @Override
+    public long getRequestBytes() {
+      return requestBytes.get();
+    }
+
+    @Override
+    public long getResponseBytes() {
+      return responseBytes.get();
+    }
+
+    @Override
+    public long getServiceExceptions() {
+      return serviceExceptions.get();
+    }
+
+    void record(RpcCallStats call) {
+      for (Phase phase : PHASES) {
+        phases[phase.ordinal()].record(call.getNanos(phase));
+      }
+      if (call.isFailed()) {
+        failures.incrementAndGet();
+      }
+      if (call.isServiceException()) {
+        serviceExceptions.incrementAndGet();
+      }
+      if (call.getRequestBytes() > 0) {
+        requestBytes.addAndGet(call.getRequestBytes());
+      }
+      if (call.getResponseBytes() > 0) {
+        responseBytes.addAndGet(call.getResponseBytes());
+      }
+      if (call.getPolicyStrongName() != null) {
+        lastPolicyStrongName = call.getPolicyStrongName();
+      }
+      // Last, so that a call isn't counted before the rest of it is recorded
+      total.record(call.getTotalNanos());
+    }
+
+    private static double toMillis(double nanos) {
+      return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+
+  private final String contextPath;
+  private final ConcurrentMap<String, MethodMetrics> methods =
+      new ConcurrentHashMap<String, MethodMetrics>();
+
+  /**
+   * The names of the MXBeans registered so far. Guarded by itself, together with
+   * {@link #unregistered}, so that no MXBean is registered once {@link #unregister()} has run.
+   */
+  private final Map<String, ObjectName> registered = new HashMap<String, ObjectName>();
+  private final MBeanServer server;
+  private final String servletName;
+  private boolean unregistered;
+
+  /**
+   * Creates metrics that are published in the platform MBean server.
+   *
+   * @param contextPath the context path of the web application that contains the servlet, which
+   *          distinguishes its MXBeans from those of other web applications in the same server
+   * @param servletName the name of the servlet whose calls are measured, which distinguishes
+   *          its MXBeans from those of other servlets
+   */
+  public JmxRpcMetrics(String contextPath, String servletName) {
+    this(contextPath, servletName, ManagementFactory.getPlatformMBeanServer());
+  }
+
+  /**
+   * Creates metrics that are published in the given MBean server, or only kept in memory if it
+   * is {@code null}.
+   */
+  public JmxRpcMetrics(String contextPath, String servletName, MBeanServer server) {
+    this.contextPath = contextPath;
+    this.servletName = servletName;
+    this.server = server;
+  }
+
+  /**
+   * Returns the statistics of a method, or {@code null} if it hasn't been called.
+   *
+   * @param method the JSNI-style signature of the method, such as
+   *          {@code com.example.EchoService::echo(Ljava/lang/String;I)}, or
+   *          {@value #UNDECODED_METHOD}
+   */
+  public RpcMethodMetricsMXBean getMethodMetrics(String method) {
+    return methods.get(method);
+  }
+
+  @Override
+  public void onCall(RpcCallStats call) {
+    Method method = call.getMethod();
+    String key = method == null ? UNDECODED_METHOD : getSignature(method);
+    MethodMetrics metrics = methods.get(key);
+    if (metrics == null) {
+      metrics = new MethodMetrics();
+      MethodMetrics existing = methods.putIfAbsent(key, metrics);
+      if (existing == null) {
+        register(key, metrics);
+      } else {
+        metrics = existing;
+      }
+    }
+    metrics.record(call);
+  }
+
+  /**
+   * Removes the MXBeans from the MBean server. The statistics are still kept, but methods called
+   * from now on are not published.
+   */
+  public void unregister() {
+    synchronized (registered) {
+      unregistered = true;
+      for (ObjectName name : registered.values()) {
+        try {
+          server.unregisterMBean(name);
+        } catch (JMException e) {
+          log.log(Level.WARNING, "Could not unregister " + name, e);
+        }
+      }
+      registered.clear();
+    }
+  }
+
+  private void register(String key, MethodMetrics metrics) {
+    if (server == null) {
+      return;
+    }
+    Hashtable<String, String> properties = new Hashtable<String, String>();
+    properties.put("type", "RpcMethodMetrics");
+    properties.put("context", ObjectName.quote(contextPath));
+    properties.put("servlet", ObjectName.quote(servletName));
+    properties.put("method", ObjectName.quote(key));
+    synchronized (registered) {
+      if (unregistered) {
+        return;
+      }
+      try {
+        ObjectName name = new ObjectName(DOMAIN, properties);
+        server.registerMBean(metrics, name);
+        registered.put(key, name);
+      } catch (JMException e) {
+        // Keep the statistics in memory; they're still available from getMethodMetrics()
+        log.log(Level.WARNING, "Could not register the RPC metrics of " + key, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative durations with logarithmic buckets, used by
+ * {@link JmxRpcMetrics}.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} buckets, so any duration is counted in
+ * a bucket at most 25% wider than its lower bound, and the whole histogram takes a couple of
+ * kilobytes no matter how many values are recorded.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+  /**
+   * Returns the bucket that counts a value.
+   */
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+  }
+
+  /**
+   * Returns the largest value counted by a bucket.
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    int subBucket = bucket & (SUB_BUCKETS - 1);
+    long lowerBound = (long) (SUB_BUCKETS | subBucket) << (exponent - SUB_BUCKET_BITS);
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+
+  long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the mean of the recorded values, or 0 if there are none.
+   */
+  double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the recorded values, or 0 if there are
+   * none.
+   *
+   * @param percentile a number between 0 and 100
+   */
+  long getPercentile(double percentile) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return upperBound(i);
+      }
+    }
+    // Values recorded while we were scanning
+    return upperBound(BUCKETS - 1);
+  }
+
+  void record(long value) {
+    assert value >= 0;
+    counts.incrementAndGet(bucketOf(value));
+    sum.addAndGet(value);
+    count.incrementAndGet();
+  }
+}
@@ -341,11 +341,20 @@ public final class RPC {
    */
   public static String encodeResponseForFailedRequest(RPCRequest rpcRequest, Throwable cause)
       throws SerializationException {
+    return serializeResponseForFailedRequest(rpcRequest, cause).toString();
+  }
+
+  /**
+   * Like {@link #encodeResponseForFailedRequest(RPCRequest, Throwable)}, but
+   * returns the serialized response without turning it into a string.
+   */
+  public static RPCResponse serializeResponseForFailedRequest(RPCRequest rpcRequest,
+      Throwable cause) throws SerializationException {
     if (rpcRequest == null) {
-      return RPC.encodeResponseForFailure(null, cause,
+      return RPC.serializeResponseForFailure(null, cause,
           getDefaultSerializationPolicy(), AbstractSerializationStream.DEFAULT_FLAGS);
     } else {
-      return RPC.encodeResponseForFailure(null, cause,
+      return RPC.serializeResponseForFailure(null, cause,
           rpcRequest.getSerializationPolicy(), rpcRequest.getFlags());
     }
   }
@@ -403,6 +412,16 @@ public final class RPC {
 
   public static String encodeResponseForFailure(Method serviceMethod, Throwable cause,
       SerializationPolicy serializationPolicy, int flags) throws SerializationException {
+    return serializeResponseForFailure(serviceMethod, cause, serializationPolicy, flags)
+        .toString();
+  }
+
+  /**
+   * Like {@link #encodeResponseForFailure(Method, Throwable, SerializationPolicy, int)},
+   * but returns the serialized response without turning it into a string.
+   */
+  public static RPCResponse serializeResponseForFailure(Method serviceMethod, Throwable cause,
+      SerializationPolicy serializationPolicy, int flags) throws SerializationException {
     if (cause == null) {
       throw new NullPointerException("cause cannot be null");
     }
@@ -416,7 +435,7 @@ public final class RPC {
           + "' threw an unexpected exception: " + cause.toString(), cause);
     }
 
-    return encodeResponse(cause.getClass(), cause, true, flags, serializationPolicy);
+    return serializeResponse(cause.getClass(), cause, true, flags, serializationPolicy);
   }
 
   /**
@@ -470,6 +489,16 @@ public final class RPC {
 
   public static String encodeResponseForSuccess(Method serviceMethod, Object object,
       SerializationPolicy serializationPolicy, int flags) throws SerializationException {
+    return serializeResponseForSuccess(serviceMethod, object, serializationPolicy, flags)
+        .toString();
+  }
+
+  /**
+   * Like {@link #encodeResponseForSuccess(Method, Object, SerializationPolicy, int)},
+   * but returns the serialized response without turning it into a string.
+   */
+  public static RPCResponse serializeResponseForSuccess(Method serviceMethod, Object object,
+      SerializationPolicy serializationPolicy, int flags) throws SerializationException {
     if (serviceMethod == null) {
       throw new NullPointerException("serviceMethod cannot be null");
     }
@@ -494,7 +523,7 @@ public final class RPC {
       }
     }
 
-    return encodeResponse(methodReturnType, object, false, flags, serializationPolicy);
+    return serializeResponse(methodReturnType, object, false, flags, serializationPolicy);
   }
 
   /**
@@ -574,6 +603,32 @@ public final class RPC {
 
   public static String invokeAndEncodeResponse(Object target, Method serviceMethod, Object[] args,
       SerializationPolicy serializationPolicy, int flags) throws SerializationException {
+    return invokeAndSerializeResponse(target, serviceMethod, args, serializationPolicy, flags)
+        .toString();
+  }
+
+  /**
+   * Like {@link #invokeAndEncodeResponse(Object, Method, Object[], SerializationPolicy, int)},
+   * but returns the serialized response without turning it into a string, so
+   * that it can be written directly to an output stream.
+   */
+  public static RPCResponse invokeAndSerializeResponse(Object target, Method serviceMethod,
+      Object[] args, SerializationPolicy serializationPolicy, int flags)
+      throws SerializationException {
+    return invokeAndSerializeResponse(target, serviceMethod, args, serializationPolicy, flags,
+        null);
+  }
+
+  /**
+   * Like {@link #invokeAndSerializeResponse(Object, Method, Object[], SerializationPolicy, int)},
+   * but also ends the {@link RpcCallStats.Phase#INVOKE} phase of a call when the service method
+   * returns.
+   *
+   * @param call the call being measured, or <code>null</code>
+   */
+  static RPCResponse invokeAndSerializeResponse(Object target, Method serviceMethod,
+      Object[] args, SerializationPolicy serializationPolicy, int flags, RpcCallStats call)
+      throws SerializationException {
     if (serviceMethod == null) {
       throw new NullPointerException("serviceMethod");
     }
@@ -582,11 +637,15 @@ public final class RPC {
       throw new NullPointerException("serializationPolicy");
     }
 
-    String responsePayload;
+    RPCResponse responsePayload;
     try {
       Object result = serviceMethod.invoke(target, args);
+      if (call != null) {
+        call.endPhase(RpcCallStats.Phase.INVOKE);
+      }
 
-      responsePayload = encodeResponseForSuccess(serviceMethod, result, serializationPolicy, flags);
+      responsePayload = serializeResponseForSuccess(serviceMethod, result, serializationPolicy,
+          flags);
     } catch (IllegalAccessException e) {
       SecurityException securityException =
           new SecurityException(formatIllegalAccessErrorMessage(target, serviceMethod));
@@ -601,8 +660,13 @@ public final class RPC {
       // Try to encode the caught exception
       //
       Throwable cause = e.getCause();
+      if (call != null) {
+        call.endPhase(RpcCallStats.Phase.INVOKE);
+        call.setServiceException();
+      }
 
-      responsePayload = encodeResponseForFailure(serviceMethod, cause, serializationPolicy, flags);
+      responsePayload = serializeResponseForFailure(serviceMethod, cause, serializationPolicy,
+          flags);
     }
 
     return responsePayload;
@@ -622,18 +686,19 @@ public final class RPC {
   }
 
   /**
-   * Returns a string that encodes the results of an RPC call. Private overload
-   * that takes a flag signaling the preamble of the response payload.
+   * Serializes the results of an RPC call. Private overload that takes a flag
+   * signaling the preamble of the response payload.
    * 
    * @param object the object that we wish to send back to the client
    * @param wasThrown if true, the object being returned was an exception thrown
    *          by the service method; if false, it was the result of the service
    *          method's invocation
-   * @return a string that encodes the response from a service method
+   * @return the serialized response from a service method
    * @throws SerializationException if the object cannot be serialized
    */
-  private static String encodeResponse(Class<?> responseClass, Object object, boolean wasThrown,
-      int flags, SerializationPolicy serializationPolicy) throws SerializationException {
+  private static RPCResponse serializeResponse(Class<?> responseClass, Object object,
+      boolean wasThrown, int flags, SerializationPolicy serializationPolicy)
+      throws SerializationException {
 
     ServerSerializationStreamWriter stream =
         new ServerSerializationStreamWriter(serializationPolicy, getRpcVersion());
@@ -644,8 +709,7 @@ public final class RPC {
       stream.serializeValue(object, responseClass);
     }
 
-    String bufferStr = (wasThrown ? "//EX" : "//OK") + stream.toString();
-    return bufferStr;
+    return new RPCResponse(stream, wasThrown);
   }
 
   private static String formatIllegalAccessErrorMessage(Object target, Method serviceMethod) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import com.google.gwt.user.server.rpc.impl.ServerSerializationStreamWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Describes a serialized RPC response that has not been turned into text yet.
+ * The response can either be converted to the same string returned by
+ * {@link RPC#encodeResponseForSuccess(java.lang.reflect.Method, Object)} and
+ * friends, or written incrementally to a {@link Writer}, which avoids holding
+ * large responses in memory as a whole.
+ */
+public final class RPCResponse {
+
+  private static final String EXCEPTION_PREFIX = "//EX";
+
+  private static final String SUCCESS_PREFIX = "//OK";
+
+  private final ServerSerializationStreamWriter stream;
+
+  private final boolean wasThrown;
+
+  RPCResponse(ServerSerializationStreamWriter stream, boolean wasThrown) {
+    this.stream = stream;
+    this.wasThrown = wasThrown;
+  }
+
+  /**
+   * Returns a rough estimate of the number of characters in the encoded
+   * response.
+   */
+  public int getEstimatedLength() {
+    return SUCCESS_PREFIX.length() + stream.getEstimatedLength();
+  }
+
+  /**
+   * Returns <code>true</code> if the response encodes an exception thrown by
+   * the service method, <code>false</code> if it encodes a return value.
+   */
+  public boolean wasThrown() {
+    return wasThrown;
+  }
+
+  /**
+   * Writes the encoded response to the given writer. The writer is neither
+   * flushed nor closed.
+   */
+  public void writeTo(Writer out) throws IOException {
+    out.write(wasThrown ? EXCEPTION_PREFIX : SUCCESS_PREFIX);
+    stream.writeTo(out);
+  }
+
+  /**
+   * Returns the encoded response.
+   */
+  @Override
+  public String toString() {
+    StringWriter writer = new StringWriter(getEstimatedLength());
+    try {
+      writeTo(writer);
+    } catch (IOException e) {
+      // StringWriter does not throw
+      throw new RuntimeException(e);
+    }
+    return writer.toString();
+  }
+}
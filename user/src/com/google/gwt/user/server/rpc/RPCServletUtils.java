@@ -16,9 +16,13 @@
 package com.google.gwt.user.server.rpc;
 
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.Locale;
@@ -334,6 +338,19 @@ public class RPCServletUtils {
   public static void writeResponse(ServletContext servletContext,
       HttpServletResponse response, String responseContent, boolean gzipResponse)
       throws IOException {
+    writeResponseAndCount(servletContext, response, responseContent, gzipResponse, null);
+  }
+
+  /**
+   * Like {@link #writeResponse(ServletContext, HttpServletResponse, String, boolean)},
+   * but returns the number of bytes written, or -1 if the response couldn't be
+   * compressed and an error was sent instead. If <code>call</code> is not
+   * <code>null</code>, its {@link RpcCallStats.Phase#GZIP} phase is ended
+   * once the response is ready to be written.
+   */
+  static int writeResponseAndCount(ServletContext servletContext,
+      HttpServletResponse response, String responseContent, boolean gzipResponse,
+      RpcCallStats call) throws IOException {
 
     byte[] responseBytes = responseContent.getBytes(CHARSET_UTF8);
     if (gzipResponse) {
@@ -364,10 +381,14 @@ public class RPCServletUtils {
       if (caught != null) {
         servletContext.log("Unable to compress response", caught);
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        return;
+        return -1;
       }
     }
 
+    if (call != null) {
+      call.endPhase(RpcCallStats.Phase.GZIP);
+    }
+
     // Send the reply.
     //
     response.setContentLength(responseBytes.length);
@@ -375,6 +396,48 @@ public class RPCServletUtils {
     response.setStatus(HttpServletResponse.SC_OK);
     response.setHeader(CONTENT_DISPOSITION, ATTACHMENT);
     response.getOutputStream().write(responseBytes);
+    return responseBytes.length;
+  }
+
+  /**
+   * Write an RPC response into the {@link HttpServletResponse} while it is
+   * being encoded, without first building the whole response as a string. If
+   * <code>gzipResponse</code> is <code>true</code>, the response content is
+   * gzipped on the fly. Since the length of the response is not known in
+   * advance, no Content-Length header is set.
+   *
+   * @param servletContext servlet context for this response
+   * @param response response instance
+   * @param responsePayload the serialized RPC response
+   * @param gzipResponse if <code>true</code> the response content will be gzip
+   *          encoded while being written into the response
+   * @throws IOException if writing to the response's output stream fails
+   */
+  public static void writeResponse(ServletContext servletContext,
+      HttpServletResponse response, RPCResponse responsePayload, boolean gzipResponse)
+      throws IOException {
+    response.setContentType(CONTENT_TYPE_APPLICATION_JSON_UTF8);
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setHeader(CONTENT_DISPOSITION, ATTACHMENT);
+    if (gzipResponse) {
+      setGzipEncodingHeader(response);
+    }
+
+    OutputStream output = response.getOutputStream();
+    GZIPOutputStream gzipOutputStream = null;
+    if (gzipResponse) {
+      gzipOutputStream = new GZIPOutputStream(output, BUFFER_SIZE);
+      output = gzipOutputStream;
+    }
+
+    // Only BUFFER_SIZE characters are held at a time; the container decides
+    // how much of the output stream is buffered before it is sent.
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, CHARSET_UTF8), BUFFER_SIZE);
+    responsePayload.writeTo(writer);
+    writer.flush();
+    if (gzipOutputStream != null) {
+      gzipOutputStream.finish();
+    }
   }
 
   /**
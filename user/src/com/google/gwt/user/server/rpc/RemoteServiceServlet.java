@@ -20,14 +20,15 @@ import static com.google.gwt.user.client.rpc.RpcRequestBuilder.MODULE_BASE_HEADE
 import com.google.gwt.user.client.rpc.IncompatibleRemoteServiceException;
 import com.google.gwt.user.client.rpc.RpcTokenException;
 import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RpcCallStats.Phase;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -121,14 +122,69 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
     return serializationPolicy;
   }
 
+  /**
+   * The servlet init parameter holding the maximum number of serialization
+   * policies to cache. Unlimited if not set.
+   */
+  public static final String POLICY_CACHE_MAX_ENTRIES_PARAM = "serializationPolicyCacheMaxEntries";
+
+  /**
+   * The servlet init parameter holding the number of seconds a serialization
+   * policy is cached after being loaded. Cached forever if not set.
+   */
+  public static final String POLICY_CACHE_TTL_SECONDS_PARAM = "serializationPolicyCacheTtlSeconds";
+
+  /**
+   * The servlet init parameter holding the estimated size, in characters, at
+   * or above which responses are written to the client while they are being
+   * encoded instead of being built as a string first. Disabled if not set.
+   */
+  public static final String STREAMING_RESPONSE_THRESHOLD_PARAM = "streamingResponseThreshold";
+
+  /**
+   * The servlet init parameter that, when set to <code>true</code>, publishes
+   * the statistics of each service method through JMX. See
+   * {@link #createRpcMetrics()}.
+   */
+  public static final String RPC_METRICS_JMX_PARAM = "rpcMetricsJmx";
+
   private static final SerializationPolicyClient CODE_SERVER_CLIENT =
       new SerializationPolicyClient(5000, 5000);
 
+  /**
+   * The call being processed by each thread, if it is being measured.
+   */
+  private static final ThreadLocal<RpcCallStats> perThreadCall = new ThreadLocal<RpcCallStats>();
+
+  /**
+   * Ends a phase of the call being processed by this thread, if it is being
+   * measured.
+   */
+  private static void endPhase(Phase phase) {
+    RpcCallStats call = perThreadCall.get();
+    if (call != null) {
+      call.endPhase(phase);
+    }
+  }
+
+  /**
+   * Records that the call being processed by this thread, if it is being
+   * measured, failed in the RPC framework.
+   */
+  private static void setCallFailed() {
+    RpcCallStats call = perThreadCall.get();
+    if (call != null) {
+      call.setFailed();
+    }
+  }
+
   /**
    * A cache of moduleBaseURL and serialization policy strong name to
-   * {@link SerializationPolicy}.
+   * {@link SerializationPolicy}. Replaced in {@link #init(ServletConfig)} if
+   * the cache is configured.
    */
-  private final Map<String, SerializationPolicy> serializationPolicyCache = new HashMap<String, SerializationPolicy>();
+  private volatile SerializationPolicyCache serializationPolicyCache =
+      new SerializationPolicyCache();
 
   /**
    * The implementation of the service.
@@ -142,6 +198,17 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
    */
   private int codeServerPort = 0;
 
+  /**
+   * See {@link #getStreamingResponseThreshold()}.
+   */
+  private int streamingResponseThreshold = 0;
+
+  /**
+   * Receives the measurements of each call, if any. Set in
+   * {@link #init(ServletConfig)}.
+   */
+  private volatile RpcMetrics rpcMetrics;
+
   /**
    * The default constructor used by service implementations that
    * extend this class.  The servlet will delegate AJAX requests to
@@ -161,12 +228,118 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
   }
 
   /**
-   * Overridden to load the gwt.codeserver.port system property.
+   * Overridden to unregister the {@link JmxRpcMetrics} created by
+   * {@link #createRpcMetrics()}, if any.
+   */
+  @Override
+  public void destroy() {
+    if (rpcMetrics instanceof JmxRpcMetrics) {
+      ((JmxRpcMetrics) rpcMetrics).unregister();
+    }
+    super.destroy();
+  }
+
+  /**
+   * Overridden to load the gwt.codeserver.port system property, the
+   * serialization policy cache settings and the call metrics.
    */
   @Override
   public void init(ServletConfig config) throws ServletException {
     super.init(config);
     codeServerPort = getCodeServerPort();
+    serializationPolicyCache = createSerializationPolicyCache();
+    streamingResponseThreshold = getNonNegativeInitParameter(STREAMING_RESPONSE_THRESHOLD_PARAM);
+    rpcMetrics = createRpcMetrics();
+  }
+
+  /**
+   * Returns the receiver of the measurements of the calls handled by this
+   * servlet, or <code>null</code> if they are not measured.
+   */
+  public final RpcMetrics getRpcMetrics() {
+    return rpcMetrics;
+  }
+
+  /**
+   * Returns the cache of serialization policies used by this servlet, for
+   * example to report its statistics.
+   */
+  public final SerializationPolicyCache getSerializationPolicyCache() {
+    return serializationPolicyCache;
+  }
+
+  /**
+   * Creates the cache of serialization policies. The default implementation
+   * reads the {@value #POLICY_CACHE_MAX_ENTRIES_PARAM} and
+   * {@value #POLICY_CACHE_TTL_SECONDS_PARAM} init parameters from the servlet
+   * config or, failing that, the servlet context. Called from
+   * {@link #init(ServletConfig)}.
+   *
+   * @throws ServletException if a parameter has an invalid value.
+   */
+  protected SerializationPolicyCache createSerializationPolicyCache() throws ServletException {
+    int maxEntries = getNonNegativeInitParameter(POLICY_CACHE_MAX_ENTRIES_PARAM);
+    int ttlSeconds = getNonNegativeInitParameter(POLICY_CACHE_TTL_SECONDS_PARAM);
+    return new SerializationPolicyCache(maxEntries, ttlSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates the receiver of the measurements of each call, such as the time
+   * spent decoding the request and invoking the service method, or returns
+   * <code>null</code> to not measure calls. Called from
+   * {@link #init(ServletConfig)}.
+   * <p>
+   * The default implementation returns a {@link JmxRpcMetrics} if the
+   * {@value #RPC_METRICS_JMX_PARAM} init parameter of the servlet config or,
+   * failing that, the servlet context is <code>true</code>, and
+   * <code>null</code> otherwise.
+   *
+   * @throws ServletException if the metrics can't be created
+   */
+  protected RpcMetrics createRpcMetrics() throws ServletException {
+    if (!Boolean.parseBoolean(getInitParameterValue(RPC_METRICS_JMX_PARAM))) {
+      return null;
+    }
+    return new JmxRpcMetrics(getServletContext().getContextPath(), getServletName());
+  }
+
+  /**
+   * Returns the value of an init parameter of the servlet config or, failing
+   * that, the servlet context, or <code>null</code> if neither defines it.
+   */
+  private String getInitParameterValue(String name) {
+    String value = getServletConfig().getInitParameter(name);
+    if (value == null) {
+      value = getServletContext().getInitParameter(name);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the value of a non-negative integer init parameter, or zero if not
+   * defined.
+   *
+   * @throws ServletException if the parameter has an invalid value.
+   */
+  private int getNonNegativeInitParameter(String name) throws ServletException {
+    String value = getInitParameterValue(name);
+    if (value == null) {
+      return 0;
+    }
+
+    try {
+      int result = Integer.parseInt(value.trim());
+      if (result >= 0) {
+        return result;
+      }
+      // invalid because negative; fall through
+
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+
+    throw new ServletException("Invalid value of the " + name
+        + " init parameter; expected a non-negative integer but got: " + value);
   }
 
   /**
@@ -222,16 +395,31 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
   }
 
   @Override
-  public final SerializationPolicy getSerializationPolicy(String moduleBaseURL,
-      String strongName) {
-
-    SerializationPolicy serializationPolicy = getCachedSerializationPolicy(
-        moduleBaseURL, strongName);
-    if (serializationPolicy != null) {
-      return serializationPolicy;
+  public final SerializationPolicy getSerializationPolicy(final String moduleBaseURL,
+      final String strongName) {
+    RpcCallStats call = perThreadCall.get();
+    if (call != null) {
+      call.setPolicyStrongName(strongName);
     }
 
-    serializationPolicy = doGetSerializationPolicy(getThreadLocalRequest(),
+    // Only one thread loads a missing policy; others asking for it wait for
+    // the result. Whatever is loaded, we will not attempt to look it up again.
+    return serializationPolicyCache.get(moduleBaseURL, strongName,
+        new Callable<SerializationPolicy>() {
+          @Override
+          public SerializationPolicy call() {
+            return loadUncachedSerializationPolicy(moduleBaseURL, strongName);
+          }
+        });
+  }
+
+  /**
+   * Loads a serialization policy that was not found in the cache, falling back
+   * to the code server and then to the legacy policy.
+   */
+  private SerializationPolicy loadUncachedSerializationPolicy(String moduleBaseURL,
+      String strongName) {
+    SerializationPolicy serializationPolicy = doGetSerializationPolicy(getThreadLocalRequest(),
         moduleBaseURL, strongName);
 
     // Try SuperDevMode, if configured.
@@ -253,10 +441,6 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
       serializationPolicy = RPC.getDefaultSerializationPolicy();
     }
 
-    // This could cache null or an actual instance. Either way we will not
-    // attempt to lookup the policy again.
-    putCachedSerializationPolicy(moduleBaseURL, strongName, serializationPolicy);
-
     return serializationPolicy;
   }
 
@@ -294,7 +478,10 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
     RPCRequest rpcRequest;
     try {
       rpcRequest = RPC.decodeRequest(payload, delegate.getClass(), this);
+      endPhase(Phase.DECODE);
     } catch (IncompatibleRemoteServiceException ex) {
+      endPhase(Phase.DECODE);
+      setCallFailed();
       log(
           "An IncompatibleRemoteServiceException was thrown while processing this call.",
           ex);
@@ -303,6 +490,77 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
     return processCall(rpcRequest);
   }
 
+  /**
+   * Like {@link #processCall(String)}, but returns the serialized response
+   * without turning it into a string. Used instead of
+   * {@link #processCall(String)} when response streaming is enabled; see
+   * {@link #getStreamingResponseThreshold()}.
+   *
+   * @param payload the UTF-8 request payload
+   * @return the serialized response
+   * @throws SerializationException if we cannot serialize the response
+   * @throws UnexpectedException if the invocation throws a checked exception
+   *           that is not declared in the service method's signature
+   * @throws RuntimeException if the service method throws an unchecked
+   *           exception (the exception will be the one thrown by the service)
+   */
+  public RPCResponse serializeCall(String payload) throws SerializationException {
+    // First, check for possible XSRF situation
+    checkPermutationStrongName();
+
+    RPCRequest rpcRequest;
+    try {
+      rpcRequest = RPC.decodeRequest(payload, delegate.getClass(), this);
+      endPhase(Phase.DECODE);
+    } catch (IncompatibleRemoteServiceException ex) {
+      endPhase(Phase.DECODE);
+      setCallFailed();
+      log(
+          "An IncompatibleRemoteServiceException was thrown while processing this call.",
+          ex);
+      return RPC.serializeResponseForFailedRequest(null, ex);
+    }
+    return serializeCall(rpcRequest);
+  }
+
+  /**
+   * Like {@link #processCall(RPCRequest)}, but returns the serialized response
+   * without turning it into a string. Used instead of
+   * {@link #processCall(RPCRequest)} when response streaming is enabled; see
+   * {@link #getStreamingResponseThreshold()}.
+   *
+   * @param rpcRequest the already decoded RPC request
+   * @return the serialized response
+   * @throws SerializationException if we cannot serialize the response
+   * @throws UnexpectedException if the invocation throws a checked exception
+   *           that is not declared in the service method's signature
+   * @throws RuntimeException if the service method throws an unchecked
+   *           exception (the exception will be the one thrown by the service)
+   */
+  public RPCResponse serializeCall(RPCRequest rpcRequest) throws SerializationException {
+    RpcCallStats call = perThreadCall.get();
+    if (call != null) {
+      call.setMethod(rpcRequest.getMethod());
+    }
+    try {
+      onAfterRequestDeserialized(rpcRequest);
+      return RPC.invokeAndSerializeResponse(delegate, rpcRequest.getMethod(),
+          rpcRequest.getParameters(), rpcRequest.getSerializationPolicy(),
+          rpcRequest.getFlags(), call);
+    } catch (IncompatibleRemoteServiceException ex) {
+      setCallFailed();
+      log(
+          "An IncompatibleRemoteServiceException was thrown while processing this call.",
+          ex);
+      return RPC.serializeResponseForFailedRequest(rpcRequest, ex);
+    } catch (RpcTokenException tokenException) {
+      setCallFailed();
+      log("An RpcTokenException was thrown while processing this call.",
+          tokenException);
+      return RPC.serializeResponseForFailedRequest(rpcRequest, tokenException);
+    }
+  }
+
   /**
    * Process an already decoded RPC request. Uses the
    * {@link RPC#invokeAndEncodeResponse(Object, java.lang.reflect.Method, Object[])}
@@ -328,21 +586,7 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
    *           exception (the exception will be the one thrown by the service)
    */
   public String processCall(RPCRequest rpcRequest) throws SerializationException {
-    try {
-      onAfterRequestDeserialized(rpcRequest);
-      return RPC.invokeAndEncodeResponse(delegate, rpcRequest.getMethod(),
-          rpcRequest.getParameters(), rpcRequest.getSerializationPolicy(),
-          rpcRequest.getFlags());
-    } catch (IncompatibleRemoteServiceException ex) {
-      log(
-          "An IncompatibleRemoteServiceException was thrown while processing this call.",
-          ex);
-      return RPC.encodeResponseForFailedRequest(rpcRequest, ex);
-    } catch (RpcTokenException tokenException) {
-      log("An RpcTokenException was thrown while processing this call.",
-          tokenException);
-      return RPC.encodeResponseForFailedRequest(rpcRequest, tokenException);
-    }
+    return serializeCall(rpcRequest).toString();
   }
 
   /**
@@ -359,9 +603,36 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
   public final void processPost(HttpServletRequest request,
       HttpServletResponse response) throws IOException, ServletException,
       SerializationException {
+    RpcMetrics metrics = rpcMetrics;
+    if (metrics == null) {
+      processPostInThread(request, response);
+      return;
+    }
+
+    RpcCallStats call = new RpcCallStats();
+    call.setRequestBytes(request.getContentLength());
+    perThreadCall.set(call);
+    try {
+      processPostInThread(request, response);
+    } catch (Throwable e) {
+      call.setFailed();
+      throw e;
+    } finally {
+      perThreadCall.remove();
+      metrics.onCall(call);
+    }
+  }
+
+  /**
+   * Processes a POST, measuring it if this thread's call is being measured.
+   */
+  private void processPostInThread(HttpServletRequest request,
+      HttpServletResponse response) throws IOException, SerializationException,
+      ServletException {
     // Read the request fully.
     //
     String requestPayload = readContent(request);
+    endPhase(Phase.READ);
 
     // Let subclasses see the serialized request.
     //
@@ -370,7 +641,26 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
     // Invoke the core dispatching logic, which returns the serialized
     // result.
     //
-    String responsePayload = processCall(requestPayload);
+    String responsePayload;
+    int streamingThreshold = getStreamingResponseThreshold();
+    if (streamingThreshold > 0) {
+      RPCResponse rpcResponse = serializeCall(requestPayload);
+      if (rpcResponse.getEstimatedLength() >= streamingThreshold) {
+        endPhase(Phase.ENCODE);
+        // Large responses are written while being encoded and are not passed
+        // to onAfterResponseSerialized. There is no payload string to decide
+        // compression on, so shouldCompressResponse is passed null.
+        boolean gzipEncode = RPCServletUtils.acceptsGzipEncoding(request)
+            && shouldCompressResponse(request, response, (String) null);
+        RPCServletUtils.writeResponse(getServletContext(), response, rpcResponse, gzipEncode);
+        endPhase(Phase.WRITE);
+        return;
+      }
+      responsePayload = rpcResponse.toString();
+    } else {
+      responsePayload = processCall(requestPayload);
+    }
+    endPhase(Phase.ENCODE);
 
     // Let subclasses see the serialized response.
     //
@@ -378,7 +668,12 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
 
     // Write the response.
     //
-    writeResponse(request, response, responsePayload);
+    int responseBytes = writeResponse(request, response, responsePayload);
+    RpcCallStats call = perThreadCall.get();
+    if (call != null) {
+      call.endPhase(Phase.WRITE);
+      call.setResponseBytes(responseBytes);
+    }
   }
 
   /**
@@ -402,7 +697,8 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
   /**
    * Loads the {@link SerializationPolicy} for given module base URL and strong name.
    * Returns the policy if successful or null if not found. Due to caching, this method
-   * will only be called once for each combination of moduleBaseURL and strongName.</p>
+   * will only be called once for each combination of moduleBaseURL and strongName, unless
+   * the serialization policy cache is configured to evict or expire policies.</p>
    *
    * <p>The default implementation loads serialization policies stored as servlet resources
    * in the same ServletContext as this servlet.
@@ -420,6 +716,22 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
     return RemoteServiceServlet.loadSerializationPolicy(this, request, moduleBaseURL, strongName);
   }
 
+  /**
+   * Returns the estimated response size, in characters, at or above which a
+   * response is written to the client while it is being encoded, or zero if
+   * responses are never streamed. Streaming avoids holding several copies of
+   * a large response in memory, but responses that are streamed are not passed
+   * to {@link #onAfterResponseSerialized(String)}. When streaming is enabled,
+   * calls are processed by {@link #serializeCall(String)} rather than
+   * {@link #processCall(String)}.
+   *
+   * <p>The default implementation returns the value of the
+   * {@value #STREAMING_RESPONSE_THRESHOLD_PARAM} init parameter.
+   */
+  protected int getStreamingResponseThreshold() {
+    return streamingResponseThreshold;
+  }
+
   /**
    * Returns a URL for fetching a serialization policy from a Super Dev Mode code server.
    *
@@ -468,6 +780,11 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
    * Override this method to examine the serialized response that will be
    * returned to the client. The default implementation does nothing and need
    * not be called by subclasses.
+   * <p>
+   * This method is not called for responses that are streamed to the client
+   * (see {@link #getStreamingResponseThreshold()}), since they are never
+   * turned into a string.
+   * </p>
    * 
    * @param serializedResponse
    */
@@ -493,39 +810,36 @@ public class RemoteServiceServlet extends AbstractRemoteServiceServlet
    * string's estimated byte length is longer than 256 bytes. Subclasses can
    * override this logic.
    * </p>
+   * <p>
+   * Responses that are streamed (see {@link #getStreamingResponseThreshold()})
+   * are never turned into a string, so for them responsePayload is
+   * <code>null</code>. Such responses are at least as long as the streaming
+   * threshold, and this implementation compresses them.
+   * </p>
    * 
    * @param request the request being served
    * @param response the response that will be written into
-   * @param responsePayload the payload that is about to be sent to the client
+   * @param responsePayload the payload that is about to be sent to the client,
+   *          or <code>null</code> if the response is streamed
    * @return <code>true</code> if responsePayload should be GZIP compressed,
    *         otherwise <code>false</code>.
    */
   protected boolean shouldCompressResponse(HttpServletRequest request,
       HttpServletResponse response, String responsePayload) {
-    return RPCServletUtils.exceedsUncompressedContentLengthLimit(responsePayload);
-  }
-
-  private SerializationPolicy getCachedSerializationPolicy(
-      String moduleBaseURL, String strongName) {
-    synchronized (serializationPolicyCache) {
-      return serializationPolicyCache.get(moduleBaseURL + strongName);
-    }
+    return responsePayload == null
+        || RPCServletUtils.exceedsUncompressedContentLengthLimit(responsePayload);
   }
 
-  private void putCachedSerializationPolicy(String moduleBaseURL,
-      String strongName, SerializationPolicy serializationPolicy) {
-    synchronized (serializationPolicyCache) {
-      serializationPolicyCache.put(moduleBaseURL + strongName,
-          serializationPolicy);
-    }
-  }
-
-  private void writeResponse(HttpServletRequest request,
+  /**
+   * Writes a response and returns its length in bytes, or -1 if an error was
+   * sent instead.
+   */
+  private int writeResponse(HttpServletRequest request,
       HttpServletResponse response, String responsePayload) throws IOException {
     boolean gzipEncode = RPCServletUtils.acceptsGzipEncoding(request)
         && shouldCompressResponse(request, response, responsePayload);
 
-    RPCServletUtils.writeResponse(getServletContext(), response,
-        responsePayload, gzipEncode);
+    return RPCServletUtils.writeResponseAndCount(getServletContext(), response,
+        responsePayload, gzipEncode, perThreadCall.get());
   }
 }
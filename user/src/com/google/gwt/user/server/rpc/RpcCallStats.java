@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import java.lang.reflect.Method;
+
+/**
+ * The measurements of one GWT-RPC call handled by a {@link RemoteServiceServlet}, as passed to
+ * its {@link RpcMetrics}.
+ * <p>
+ * Each phase is timed from the end of the previous one. If a call fails, or a subclass of the
+ * servlet bypasses part of the processing, the phases that weren't reached take no time and the
+ * time spent is counted in the next phase that was.
+ */
+public final class RpcCallStats {
+
+  /**
+   * The phases of an RPC call that are timed separately.
+   */
+  public enum Phase {
+    /**
+     * Reading the request body.
+     */
+    READ,
+    /**
+     * Decoding the request, which includes loading its serialization policy.
+     */
+    DECODE,
+    /**
+     * Invoking the service method.
+     */
+    INVOKE,
+    /**
+     * Serializing the return value or exception.
+     */
+    ENCODE,
+    /**
+     * Converting the response to bytes and, if gzip encoding is used, compressing them. Responses
+     * that are streamed are compressed while being written, so for them this phase takes no time.
+     */
+    GZIP,
+    /**
+     * Writing the response. Responses that are streamed are also encoded and compressed while
+     * being written.
+     */
+    WRITE
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final long[] nanos = new long[PHASES.length];
+  private long phaseStart = System.nanoTime();
+  private boolean failed;
+  private Method method;
+  private String policyStrongName;
+  private long requestBytes = -1;
+  private long responseBytes = -1;
+  private boolean serviceException;
+
+  RpcCallStats() {
+  }
+
+  /**
+   * Returns the service method that was called, which is declared by the service interface, or
+   * {@code null} if the request couldn't be decoded.
+   */
+  public Method getMethod() {
+    return method;
+  }
+
+  /**
+   * Returns the time spent in one phase of the call, in nanoseconds.
+   */
+  public long getNanos(Phase phase) {
+    return nanos[phase.ordinal()];
+  }
+
+  /**
+   * Returns the strong name of the serialization policy of the request, or {@code null} if it
+   * wasn't read.
+   */
+  public String getPolicyStrongName() {
+    return policyStrongName;
+  }
+
+  /**
+   * Returns the length of the request body in bytes, or -1 if the client didn't send it.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Returns the number of bytes written as the response body, after compression, or -1 if it is
+   * not known. Responses that are streamed to the client have no known length.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Returns the time spent in all phases of the call, in nanoseconds.
+   */
+  public long getTotalNanos() {
+    long total = 0;
+    for (long phaseNanos : nanos) {
+      total += phaseNanos;
+    }
+    return total;
+  }
+
+  /**
+   * Returns {@code true} if the call failed in the RPC framework, either because the request
+   * was rejected or because an unexpected exception escaped.
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns {@code true} if the service method threw an exception, which was sent to the client.
+   */
+  public boolean isServiceException() {
+    return serviceException;
+  }
+
+  /**
+   * Ends a phase of the call, which started when the previous one ended.
+   */
+  void endPhase(Phase phase) {
+    long now = System.nanoTime();
+    nanos[phase.ordinal()] += now - phaseStart;
+    phaseStart = now;
+  }
+
+  void setFailed() {
+    failed = true;
+  }
+
+  void setMethod(Method method) {
+    this.method = method;
+  }
+
+  void setPolicyStrongName(String policyStrongName) {
+    this.policyStrongName = policyStrongName;
+  }
+
+  void setRequestBytes(long requestBytes) {
+    this.requestBytes = requestBytes;
+  }
+
+  void setResponseBytes(long responseBytes) {
+    this.responseBytes = responseBytes;
+  }
+
+  void setServiceException() {
+    serviceException = true;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import java.util.Map;
+
+/**
+ * The statistics that {@link JmxRpcMetrics} publishes for each service method. Times are
+ * estimated from histograms whose buckets are at most 25% wide.
+ */
+public interface RpcMethodMetricsMXBean {
+
+  long getCalls();
+
+  /**
+   * Returns the number of calls that failed in the RPC framework.
+   */
+  long getFailures();
+
+  /**
+   * Returns the strong name of the serialization policy of the latest call.
+   */
+  String getLastPolicyStrongName();
+
+  double getMeanMillis();
+
+  /**
+   * Returns the mean time of each phase of a call, keyed by {@link RpcCallStats.Phase} name.
+   */
+  Map<String, Double> getMeanPhaseMillis();
+
+  double getMedianMillis();
+
+  double getPercentile99Millis();
+
+  /**
+   * Returns the 99th percentile of the time of each phase of a call, keyed by
+   * {@link RpcCallStats.Phase} name.
+   */
+  Map<String, Double> getPercentile99PhaseMillis();
+
+  /**
+   * Returns the total size of the request bodies whose length was sent.
+   */
+  long getRequestBytes();
+
+  /**
+   * Returns the total size of the response bodies whose length is known.
+   */
+  long getResponseBytes();
+
+  /**
+   * Returns the number of calls where the service method threw an exception.
+   */
+  long getServiceExceptions();
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+/**
+ * Receives the measurements of the GWT-RPC calls handled by a {@link RemoteServiceServlet}, for
+ * instance to find out which service methods are slow.
+ * <p>
+ * {@link #onCall(RpcCallStats)} is called in the thread that processed the call, after its
+ * response has been written, so implementations must be thread-safe and should return quickly.
+ *
+ * @see RemoteServiceServlet#createRpcMetrics()
+ * @see JmxRpcMetrics
+ */
+public interface RpcMetrics {
+
+  /**
+   * Records a call that has been processed.
+   */
+  void onCall(RpcCallStats call);
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import com.google.gwt.thirdparty.guava.common.cache.Cache;
+import com.google.gwt.thirdparty.guava.common.cache.CacheBuilder;
+import com.google.gwt.thirdparty.guava.common.cache.CacheStats;
+import com.google.gwt.thirdparty.guava.common.util.concurrent.ExecutionError;
+import com.google.gwt.thirdparty.guava.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe cache of {@link SerializationPolicy} instances keyed by module base URL and
+ * strong name, as used by {@link RemoteServiceServlet}.
+ * <p>
+ * Lookups of cached policies do not block each other. When several threads ask for the same
+ * missing policy at once, only one of them loads it and the others wait for its result, so each
+ * policy file is read once even when many clients of a new deployment arrive together.
+ * <p>
+ * The cache can optionally be bounded in size, evicting the least recently used policies, and
+ * can expire policies a fixed time after they were loaded.
+ */
+public final class SerializationPolicyCache {
+
+  /**
+   * Identifies a serialization policy.
+   */
+  private static final class PolicyKey {
+    private final String moduleBaseURL;
+    private final String strongName;
+
+    PolicyKey(String moduleBaseURL, String strongName) {
+      this.moduleBaseURL = moduleBaseURL;
+      this.strongName = strongName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PolicyKey)) {
+        return false;
+      }
+      PolicyKey other = (PolicyKey) o;
+      return equal(strongName, other.strongName) && equal(moduleBaseURL, other.moduleBaseURL);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(moduleBaseURL) * 31 + hash(strongName);
+    }
+
+    private static boolean equal(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+    private static int hash(String s) {
+      return s == null ? 0 : s.hashCode();
+    }
+  }
+
+  private final Cache<PolicyKey, SerializationPolicy> cache;
+
+  /**
+   * Creates a cache that never drops policies.
+   */
+  public SerializationPolicyCache() {
+    this(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a cache with the given limits.
+   *
+   * @param maxEntries the maximum number of policies to keep, or zero for no limit
+   * @param timeToLive how long a policy is kept after it was loaded, or zero to keep it forever
+   * @param unit the unit of {@code timeToLive}
+   */
+  public SerializationPolicyCache(int maxEntries, long timeToLive, TimeUnit unit) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must not be negative: " + maxEntries);
+    }
+    if (timeToLive < 0) {
+      throw new IllegalArgumentException("timeToLive must not be negative: " + timeToLive);
+    }
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (maxEntries > 0) {
+      builder.maximumSize(maxEntries);
+    }
+    if (timeToLive > 0) {
+      builder.expireAfterWrite(timeToLive, unit);
+    }
+    cache = builder.build();
+  }
+
+  /**
+   * Returns the cached policy for the given module base URL and strong name, calling
+   * {@code loader} to load it if it is not cached. Concurrent requests for the same policy wait
+   * for a single load. If the loader throws, nothing is cached and the exception is rethrown.
+   *
+   * @param loader loads the policy; must not return {@code null}
+   */
+  public SerializationPolicy get(String moduleBaseURL, String strongName,
+      Callable<? extends SerializationPolicy> loader) {
+    try {
+      return cache.get(new PolicyKey(moduleBaseURL, strongName), loader);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    } catch (ExecutionError e) {
+      throw (Error) e.getCause();
+    }
+  }
+
+  /**
+   * Returns the cached policy for the given module base URL and strong name, or {@code null} if
+   * it is not cached.
+   */
+  public SerializationPolicy getIfPresent(String moduleBaseURL, String strongName) {
+    return cache.getIfPresent(new PolicyKey(moduleBaseURL, strongName));
+  }
+
+  /**
+   * Discards all cached policies. Statistics are kept.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the approximate number of cached policies.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of lookups that found a cached policy.
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Returns the number of lookups that had to load a policy, or wait for another thread to
+   * load it.
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Returns the number of policies that were loaded.
+   */
+  public long getLoadCount() {
+    return cache.stats().loadCount();
+  }
+
+  /**
+   * Returns the total time spent loading policies, in nanoseconds.
+   */
+  public long getTotalLoadTimeNanos() {
+    return cache.stats().totalLoadTime();
+  }
+
+  /**
+   * Returns the number of policies dropped because the cache was full.
+   */
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = cache.stats();
+    return "SerializationPolicyCache[size=" + cache.size() + ", hits=" + stats.hitCount()
+        + ", misses=" + stats.missCount() + ", loads=" + stats.loadCount()
+        + ", totalLoadTimeNanos=" + stats.totalLoadTime() + "]";
+  }
+}
@@ -47,6 +47,10 @@ class CharVector {
     return chars;
   }
 
+  public void clear() {
+    size = 0;
+  }
+
   public char get(int index) {
     assert (index < size);
 
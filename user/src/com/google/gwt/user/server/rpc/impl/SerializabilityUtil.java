@@ -27,8 +27,10 @@ import com.google.gwt.user.server.rpc.ServerCustomFieldSerializer;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -90,6 +92,23 @@ public class SerializabilityUtil {
   private static final Map<Class<?>, Class<?>> classServerCustomSerializerCache =
       new ConcurrentHashMap<Class<?>, Class<?>>();
 
+  /**
+   * A permanent cache of the accessible no-argument constructors used to
+   * instantiate classes during deserialization. This is safe to do because a
+   * Class is guaranteed not to change within the lifetime of a ClassLoader (and
+   * thus, this Map).
+   */
+  private static final Map<Class<?>, Constructor<?>> classDefaultConstructorCache =
+      new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+  /**
+   * A permanent cache of the setter methods of enhanced classes, keyed by field
+   * name. This is safe to do because a Class is guaranteed not to change within
+   * the lifetime of a ClassLoader (and thus, this Map).
+   */
+  private static final Map<Class<?>, Map<String, Method>> classSettersCache =
+      new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+
   /**
    * Map of {@link Class} objects to singleton instances of that
    * {@link CustomFieldSerializer}.
@@ -485,6 +504,58 @@ public class SerializabilityUtil {
     return false;
   }
 
+  /**
+   * Returns the no-argument constructor of a class, with access checks
+   * suppressed. The result is computed once for each class and cached.
+   */
+  static Constructor<?> getDefaultConstructor(Class<?> instanceType)
+      throws NoSuchMethodException {
+    Constructor<?> constructor = classDefaultConstructorCache.get(instanceType);
+    if (constructor == null) {
+      constructor = instanceType.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      classDefaultConstructorCache.put(instanceType, constructor);
+    }
+    return constructor;
+  }
+
+  /**
+   * Returns a Map from a field name to the setter method for that field, for a
+   * given class. The results are computed once for each class and cached.
+   *
+   * @param instanceType the class to query
+   * @return a Map from Strings to Methods such that the name <code>XXX</code>
+   *         (corresponding to the field <code>T XXX</code>) maps to the method
+   *         <code>void setXXX(T value)</code>, or null if no such method
+   *         exists.
+   */
+  static Map<String, Method> getSetters(Class<?> instanceType) {
+    Map<String, Method> setters = classSettersCache.get(instanceType);
+    if (setters == null) {
+      setters = new HashMap<String, Method>();
+
+      // Iterate over each field and locate a suitable setter method
+      Field[] fields = instanceType.getDeclaredFields();
+      for (Field field : fields) {
+        // Consider non-static, non-transient (or @GwtTransient) fields only
+        if (isNotStaticOrTransient(field) && isNotFinal(field)) {
+          String fieldName = field.getName();
+          String setterName =
+              "set" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+          try {
+            Method setter = instanceType.getMethod(setterName, field.getType());
+            setters.put(fieldName, setter);
+          } catch (NoSuchMethodException e) {
+            // Just leave this field out of the map
+          }
+        }
+      }
+
+      classSettersCache.put(instanceType, setters);
+    }
+    return setters;
+  }
+
   static boolean isNotStaticOrTransient(Field field) {
     int fieldModifiers = field.getModifiers();
     return !Modifier.isStatic(fieldModifiers)
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc.impl;
+
+import com.google.gwt.thirdparty.guava.common.cache.CacheBuilder;
+import com.google.gwt.thirdparty.guava.common.cache.CacheLoader;
+import com.google.gwt.thirdparty.guava.common.cache.LoadingCache;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything the server-side streams need to know to serialize or deserialize
+ * the fields of one class under one {@link SerializationPolicy}: the custom
+ * field serializers, the fields in stream order with their types, and how to
+ * continue with the superclass. Plans are computed once per class and policy,
+ * so that the streams do not repeat the reflective lookups for every instance.
+ */
+final class SerializationPlan {
+
+  /**
+   * The plans computed for one policy.
+   */
+  static final class Cache {
+    /**
+     * Held weakly, since the cache is the value of a weak-keyed map entry and
+     * would otherwise keep its own key alive. The streams using the cache hold
+     * the policy strongly.
+     */
+    private final WeakReference<SerializationPolicy> policy;
+
+    private final Map<Class<?>, SerializationPlan> plans =
+        new ConcurrentHashMap<Class<?>, SerializationPlan>();
+
+    private Cache(SerializationPolicy policy) {
+      this.policy = new WeakReference<SerializationPolicy>(policy);
+    }
+
+    /**
+     * Returns the plan for a class, computing it if needed.
+     */
+    SerializationPlan get(Class<?> instanceClass) {
+      SerializationPlan plan = plans.get(instanceClass);
+      if (plan == null) {
+        // Racing threads compute equivalent plans, so it does not matter which one wins
+        plan = new SerializationPlan(instanceClass, this);
+        plans.put(instanceClass, plan);
+      }
+      return plan;
+    }
+
+    private SerializationPolicy getPolicy() {
+      SerializationPolicy toReturn = policy.get();
+      if (toReturn == null) {
+        throw new IllegalStateException("The serialization policy is no longer in use");
+      }
+      return toReturn;
+    }
+  }
+
+  /**
+   * One field as it appears in the stream.
+   */
+  static final class FieldPlan {
+    final Field field;
+    final Type genericType;
+    final ValueKind kind;
+    final String name;
+
+    /**
+     * The setter to call instead of setting the field directly, or
+     * <code>null</code>. Only used for enhanced classes.
+     */
+    final Method setter;
+
+    final Class<?> type;
+
+    private FieldPlan(Field field, Method setter) {
+      this.field = field;
+      this.genericType = field.getGenericType();
+      this.name = field.getName();
+      this.setter = setter;
+      this.type = field.getType();
+      this.kind = ValueKind.of(type);
+    }
+  }
+
+  /**
+   * How a value of a given declared type is written to and read from the
+   * stream.
+   */
+  enum ValueKind {
+    BOOLEAN, BYTE, CHAR, DOUBLE, FLOAT, INT, LONG, SHORT, STRING, OBJECT;
+
+    static ValueKind of(Class<?> type) {
+      if (type == boolean.class) {
+        return BOOLEAN;
+      } else if (type == byte.class) {
+        return BYTE;
+      } else if (type == char.class) {
+        return CHAR;
+      } else if (type == double.class) {
+        return DOUBLE;
+      } else if (type == float.class) {
+        return FLOAT;
+      } else if (type == int.class) {
+        return INT;
+      } else if (type == long.class) {
+        return LONG;
+      } else if (type == short.class) {
+        return SHORT;
+      } else if (type == String.class) {
+        return STRING;
+      } else {
+        return OBJECT;
+      }
+    }
+  }
+
+  private static final FieldPlan[] NO_FIELDS = new FieldPlan[0];
+
+  private static final Field[] NO_SERVER_ONLY_FIELDS = new Field[0];
+
+  /**
+   * Plans by policy. Policies are held weakly, since they may be dropped by
+   * the servlet's policy cache at any time.
+   */
+  private static final LoadingCache<SerializationPolicy, Cache> CACHES =
+      CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<SerializationPolicy, Cache>() {
+        @Override
+        public Cache load(SerializationPolicy policy) {
+          return new Cache(policy);
+        }
+      });
+
+  /**
+   * Returns the plans for a policy.
+   */
+  static Cache forPolicy(SerializationPolicy policy) {
+    return CACHES.getUnchecked(policy);
+  }
+
+  /**
+   * The fields known to the client, if the class is enhanced, or
+   * <code>null</code>.
+   */
+  final Set<String> clientFieldNames;
+
+  /**
+   * The custom field serializer used when writing, or <code>null</code>.
+   */
+  final Class<?> customSerializer;
+
+  /**
+   * The fields written to and read from the stream, in order. Empty for
+   * arrays, enums and classes that always use custom field serializers.
+   */
+  final FieldPlan[] fields;
+
+  final Class<?> instanceClass;
+
+  /**
+   * The custom field serializer used when reading, or <code>null</code>.
+   */
+  final Class<?> serverCustomSerializer;
+
+  /**
+   * The fields of an enhanced class that are not known to the client and are
+   * sent as serialized Java data.
+   */
+  final Field[] serverOnlyFields;
+
+  /**
+   * Whether the fields of the superclass are read, after the fields of this
+   * class.
+   */
+  final boolean shouldDeserializeSuperclass;
+
+  /**
+   * Whether the fields of the superclass are written, after the fields of this
+   * class.
+   */
+  final boolean shouldSerializeSuperclass;
+
+  /**
+   * <code>true</code> for top-level classes and interfaces without type
+   * parameters.
+   */
+  final boolean simpleClass;
+
+  final TypeVariable<?>[] typeParameters;
+
+  private final Cache cache;
+
+  private volatile String typeSignature;
+
+  private SerializationPlan(Class<?> instanceClass, Cache cache) {
+    SerializationPolicy policy = cache.getPolicy();
+    this.cache = cache;
+    this.instanceClass = instanceClass;
+    this.typeParameters = instanceClass.getTypeParameters();
+    this.simpleClass = typeParameters.length == 0 && instanceClass.getEnclosingClass() == null;
+    this.customSerializer = SerializabilityUtil.hasCustomFieldSerializer(instanceClass);
+    this.serverCustomSerializer = SerializabilityUtil.hasServerCustomFieldSerializer(instanceClass);
+
+    if (instanceClass.isArray() || instanceClass.isEnum() || instanceClass.isInterface()
+        || instanceClass.isPrimitive()
+        || (customSerializer != null && serverCustomSerializer != null)) {
+      // Fields are never accessed directly
+      clientFieldNames = null;
+      fields = NO_FIELDS;
+      serverOnlyFields = NO_SERVER_ONLY_FIELDS;
+      shouldSerializeSuperclass = false;
+      shouldDeserializeSuperclass = false;
+      return;
+    }
+
+    clientFieldNames = policy.getClientFieldNamesForEnhancedClass(instanceClass);
+    Map<String, Method> setters =
+        clientFieldNames == null ? null : SerializabilityUtil.getSetters(instanceClass);
+    List<FieldPlan> fieldList = new ArrayList<FieldPlan>();
+    List<Field> serverOnlyList = new ArrayList<Field>();
+    for (Field field : SerializabilityUtil.applyFieldSerializationPolicy(instanceClass, policy)) {
+      if (clientFieldNames != null && !clientFieldNames.contains(field.getName())) {
+        field.setAccessible(true);
+        serverOnlyList.add(field);
+        continue;
+      }
+      int modifiers = field.getModifiers();
+      if (!Modifier.isPublic(modifiers) || Modifier.isFinal(modifiers)) {
+        // Override access restrictions
+        field.setAccessible(true);
+      }
+      fieldList.add(new FieldPlan(field, setters == null ? null : setters.get(field.getName())));
+    }
+    fields = fieldList.toArray(new FieldPlan[fieldList.size()]);
+    Class<?> superclass = instanceClass.getSuperclass();
+    serverOnlyFields = serverOnlyList.toArray(new Field[serverOnlyList.size()]);
+    shouldSerializeSuperclass = superclass != null && policy.shouldSerializeFields(superclass);
+    shouldDeserializeSuperclass =
+        superclass != null && policy.shouldDeserializeFields(superclass);
+  }
+
+  /**
+   * Returns the plan for the superclass.
+   */
+  SerializationPlan getSuperclassPlan() {
+    return cache.get(instanceClass.getSuperclass());
+  }
+
+  /**
+   * Returns the type signature written for instances of the class when type
+   * names are not elided.
+   */
+  String getTypeSignature() {
+    String signature = typeSignature;
+    if (signature == null) {
+      signature = SerializabilityUtil.encodeSerializedInstanceReference(instanceClass,
+          cache.getPolicy());
+      typeSignature = signature;
+    }
+    return signature;
+  }
+}
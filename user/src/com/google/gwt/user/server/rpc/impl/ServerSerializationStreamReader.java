@@ -35,15 +35,13 @@ import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -60,6 +58,12 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
    */
   private static final Pattern ALLOWED_STRONG_NAME = Pattern.compile("[a-zA-Z0-9_]+");
 
+  /**
+   * Returned by {@link #parseIntToken(int)} when a token is not a plain decimal
+   * number that fits in an int.
+   */
+  private static final long NOT_AN_INT = Long.MIN_VALUE;
+
   /**
    * Used to accumulate elements while deserializing array types. The generic
    * type of the BoundedList will vary from the component type of the array it
@@ -369,20 +373,35 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
   private SerializationPolicy serializationPolicy = RPC.getDefaultSerializationPolicy();
 
+  private SerializationPlan.Cache plans = SerializationPlan.forPolicy(serializationPolicy);
+
   private final SerializationPolicyProvider serializationPolicyProvider;
 
   /**
-   * Used to look up setter methods of the form 'void Class.setXXX(T value)'
-   * given a Class type and a field name XXX corresponding to a field of type T.
+   * Classes already resolved from type signatures in the current request, so
+   * that objects of the same type are not looked up and validated repeatedly.
    */
-  private final Map<Class<?>, Map<String, Method>> settersByClass =
-      new HashMap<Class<?>, Map<String, Method>>();
+  private final Map<String, Class<?>> classesBySignature = new HashMap<String, Class<?>>();
+
+  /**
+   * The request being read. Tokens are not copied out of it, but located by
+   * their offsets.
+   */
+  private String encodedTokens;
 
   private String[] stringTable;
 
-  private final ArrayList<String> tokenList = new ArrayList<String>();
+  private int tokenCount;
 
-  private int tokenListIndex;
+  private int tokenIndex;
+
+  /**
+   * The offset of the first character of each token in {@link #encodedTokens},
+   * followed by the offset just past the separator of the last token. Token
+   * <code>i</code> spans <code>tokenStarts[i]</code> up to, but not including,
+   * <code>tokenStarts[i + 1] - 1</code>.
+   */
+  private int[] tokenStarts = new int[64];
 
   {
     CLASS_TO_VECTOR_READER.put(boolean[].class, VectorReader.BOOLEAN_VECTOR);
@@ -436,7 +455,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
   }
 
   public int getNumberOfTokens() {
-    return tokenList.size();
+    return tokenCount;
   }
 
   public SerializationPolicy getSerializationPolicy() {
@@ -445,16 +464,20 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
   @Override
   public void prepareToRead(String encodedTokens) throws SerializationException {
-    tokenList.clear();
-    tokenListIndex = 0;
+    this.encodedTokens = encodedTokens;
+    classesBySignature.clear();
+    tokenCount = 0;
+    tokenIndex = 0;
     stringTable = null;
 
     int idx = 0, nextIdx;
     while (-1 != (nextIdx = encodedTokens.indexOf(RPC_SEPARATOR_CHAR, idx))) {
-      String current = encodedTokens.substring(idx, nextIdx);
-      tokenList.add(current);
+      addTokenStart(idx);
       idx = nextIdx + 1;
     }
+    // Terminate the last token
+    addTokenStart(idx);
+    tokenCount--;
     if (idx == 0) {
       // Didn't find any separator, assume an older version with different
       // separators and get the version as the sequence of digits at the
@@ -508,17 +531,25 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
       if (serializationPolicy == null) {
         throw new NullPointerException("serializationPolicyProvider.getSerializationPolicy()");
       }
+      plans = SerializationPlan.forPolicy(serializationPolicy);
     }
   }
 
   @Override
   public boolean readBoolean() throws SerializationException {
-    return !extract().equals("0");
+    int token = nextToken();
+    int start = tokenStarts[token];
+    return tokenStarts[token + 1] - start != 2 || encodedTokens.charAt(start) != '0';
   }
 
   @Override
   public byte readByte() throws SerializationException {
-    String value = extract();
+    int token = nextToken();
+    long parsed = parseIntToken(token);
+    if (parsed >= Byte.MIN_VALUE && parsed <= Byte.MAX_VALUE) {
+      return (byte) parsed;
+    }
+    String value = getToken(token);
     try {
       return Byte.parseByte(value);
     } catch (NumberFormatException e) {
@@ -544,7 +575,12 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
   @Override
   public int readInt() throws SerializationException {
-    String value = extract();
+    int token = nextToken();
+    long parsed = parseIntToken(token);
+    if (parsed != NOT_AN_INT) {
+      return (int) parsed;
+    }
+    String value = getToken(token);
     try {
       return Integer.parseInt(value);
     } catch (NumberFormatException e) {
@@ -594,7 +630,12 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
   @Override
   public short readShort() throws SerializationException {
-    String value = extract();
+    int token = nextToken();
+    long parsed = parseIntToken(token);
+    if (parsed >= Short.MIN_VALUE && parsed <= Short.MAX_VALUE) {
+      return (short) parsed;
+    }
+    String value = getToken(token);
     try {
       return Short.parseShort(value);
     } catch (NumberFormatException e) {
@@ -616,24 +657,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
       DequeMap<TypeVariable<?>, Type> resolvedTypes) throws SerializationException {
     Object instance = null;
     try {
-      Class<?> instanceClass;
-      if (hasFlags(FLAG_ELIDE_TYPE_NAMES)) {
-        if (getSerializationPolicy() instanceof TypeNameObfuscator) {
-          TypeNameObfuscator obfuscator = (TypeNameObfuscator) getSerializationPolicy();
-          String instanceClassName = obfuscator.getClassNameForTypeId(typeSignature);
-          instanceClass = Class.forName(instanceClassName, false, classLoader);
-        } else {
-          throw new SerializationException(
-              "The GWT module was compiled with RPC type name elision enabled, but "
-                  + getSerializationPolicy().getClass().getName() + " does not implement "
-                  + TypeNameObfuscator.class.getName());
-        }
-      } else {
-        SerializedInstanceReference serializedInstRef =
-            SerializabilityUtil.decodeSerializedInstanceReference(typeSignature);
-        instanceClass = Class.forName(serializedInstRef.getName(), false, classLoader);
-        validateTypeVersions(instanceClass, serializedInstRef);
-      }
+      Class<?> instanceClass = resolveClass(typeSignature);
 
       if (resolvedTypes == null) {
         // We can find ourselves with a null resolvedTypes map if a class
@@ -651,7 +675,8 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
       // In looking for the expected parameter types, we also find out the
       // way in which the instance meets the expected type, and hence can find
       // out when it does not meet expectations.
-      TypeVariable<?>[] instanceParameterTypes = instanceClass.getTypeParameters();
+      SerializationPlan plan = plans.get(instanceClass);
+      TypeVariable<?>[] instanceParameterTypes = plan.typeParameters;
       Type[] expectedParameterTypes = null;
       if (expectedType != null) {
         SerializabilityUtil.resolveTypes(expectedType, resolvedTypes);
@@ -675,7 +700,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
       serializationPolicy.validateDeserialize(instanceClass);
 
-      Class<?> customSerializer = SerializabilityUtil.hasServerCustomFieldSerializer(instanceClass);
+      Class<?> customSerializer = plan.serverCustomSerializer;
 
       int index = reserveDecodedObjectIndex();
 
@@ -684,8 +709,8 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
 
       rememberDecodedObject(index, instance);
 
-      Object replacement = deserializeImpl(customSerializer, instanceClass, instance, expectedType,
-          expectedParameterTypes, resolvedTypes);
+      Object replacement = deserializeImpl(plan, instance, expectedType, expectedParameterTypes,
+          resolvedTypes);
 
       // Remove resolved types that were added for this instance.
       if (expectedParameterTypes != null) {
@@ -730,6 +755,13 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
     return stringTable[index - 1];
   }
 
+  private void addTokenStart(int start) {
+    if (tokenCount == tokenStarts.length) {
+      tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+    }
+    tokenStarts[tokenCount++] = start;
+  }
+
   /**
    * Deserialize an instance that is an array. Will default to deserializing as
    * an Object vector if the instance is not a primitive vector.
@@ -777,24 +809,17 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
     }
   }
 
-  private void deserializeClass(Class<?> instanceClass, Object instance, Type expectedType,
-      Type[] expectedParameterTypes, DequeMap<TypeVariable<?>, Type> resolvedTypes) throws
-      SerializationException, IllegalAccessException, NoSuchMethodException,
-      InvocationTargetException, ClassNotFoundException {
-    /**
-     * A map from field names to corresponding setter methods. The reference
-     * will be null for classes that do not require special handling for
-     * server-only fields.
-     */
-    Map<String, Method> setters = null;
+  private void deserializeClass(SerializationPlan plan, Object instance, Type expectedType,
+      DequeMap<TypeVariable<?>, Type> resolvedTypes) throws SerializationException,
+      IllegalAccessException, NoSuchMethodException, InvocationTargetException,
+      ClassNotFoundException {
+    Class<?> instanceClass = plan.instanceClass;
 
     /**
      * A list of fields of this class known to the client. If null, assume the
      * class is not enhanced and don't attempt to deal with server-only fields.
      */
-    Set<String> clientFieldNames =
-        serializationPolicy.getClientFieldNamesForEnhancedClass(instanceClass);
-    if (clientFieldNames != null) {
+    if (plan.clientFieldNames != null) {
       // Read and set server-only instance fields encoded in the RPC data
       try {
         String encodedData = readString();
@@ -817,60 +842,80 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
       } catch (NoSuchFieldException e) {
         throw new SerializationException(e);
       }
-
-      setters = getSetters(instanceClass);
     }
 
-    Field[] serializableFields = SerializabilityUtil.applyFieldSerializationPolicy(instanceClass,
-        serializationPolicy);
-    for (Field declField : serializableFields) {
-      assert (declField != null);
-      if ((clientFieldNames != null) && !clientFieldNames.contains(declField.getName())) {
-        continue;
-      }
-
-      Type declGenericType = declField.getGenericType();
-      Object value = deserializeValue(declField.getType(), declGenericType, resolvedTypes);
-
-      String fieldName = declField.getName();
-      Method setter;
+    for (SerializationPlan.FieldPlan fieldPlan : plan.fields) {
       /*
-       * If setters is non-null and there is a setter method for the given
-       * field, call the setter. Otherwise, set the field value directly. For
-       * persistence APIs such as JDO, the setter methods have been enhanced to
-       * manipulate additional object state, causing direct field writes to fail
-       * to update the object state properly.
+       * If there is a setter method for the given field, call the setter.
+       * Otherwise, set the field value directly. For persistence APIs such as
+       * JDO, the setter methods have been enhanced to manipulate additional
+       * object state, causing direct field writes to fail to update the object
+       * state properly.
        */
-      if ((setters != null) && ((setter = setters.get(fieldName)) != null)) {
-        setter.invoke(instance, value);
+      if (fieldPlan.setter != null) {
+        Object value = deserializeValue(fieldPlan.type, fieldPlan.genericType, resolvedTypes);
+        fieldPlan.setter.invoke(instance, value);
       } else {
-        boolean isAccessible = declField.isAccessible();
-        boolean needsAccessOverride = (!isAccessible
-            && !Modifier.isPublic(declField.getModifiers()))
-            || Modifier.isFinal(declField.getModifiers());
-        if (needsAccessOverride) {
-          // Override access restrictions
-          declField.setAccessible(true);
-        }
-
-        declField.set(instance, value);
+        deserializeField(instance, fieldPlan, resolvedTypes);
       }
     }
 
-    Class<?> superClass = instanceClass.getSuperclass();
-    if (serializationPolicy.shouldDeserializeFields(superClass)) {
+    if (plan.shouldDeserializeSuperclass) {
+      SerializationPlan superPlan = plan.getSuperclassPlan();
+      Class<?> superClass = superPlan.instanceClass;
       Type[] superParameterTypes = SerializabilityUtil.findExpectedParameterTypes(
           superClass, superClass, resolvedTypes);
-      deserializeImpl(SerializabilityUtil.hasServerCustomFieldSerializer(superClass), superClass,
-          instance, expectedType, superParameterTypes, resolvedTypes);
+      deserializeImpl(superPlan, instance, expectedType, superParameterTypes, resolvedTypes);
     }
   }
 
-  private Object deserializeImpl(Class<?> customSerializer, Class<?> instanceClass,
-      Object instance, Type expectedType, Type[] expectedParameterTypes,
-      DequeMap<TypeVariable<?>, Type> resolvedTypes)
+  /**
+   * Reads the value of a field and sets it, without boxing primitive values.
+   */
+  private void deserializeField(Object instance, SerializationPlan.FieldPlan fieldPlan,
+      DequeMap<TypeVariable<?>, Type> resolvedTypes) throws IllegalAccessException,
+      SerializationException {
+    Field field = fieldPlan.field;
+    switch (fieldPlan.kind) {
+      case BOOLEAN:
+        field.setBoolean(instance, readBoolean());
+        break;
+      case BYTE:
+        field.setByte(instance, readByte());
+        break;
+      case CHAR:
+        field.setChar(instance, readChar());
+        break;
+      case DOUBLE:
+        field.setDouble(instance, readDouble());
+        break;
+      case FLOAT:
+        field.setFloat(instance, readFloat());
+        break;
+      case INT:
+        field.setInt(instance, readInt());
+        break;
+      case LONG:
+        field.setLong(instance, readLong());
+        break;
+      case SHORT:
+        field.setShort(instance, readShort());
+        break;
+      case STRING:
+        field.set(instance, readString());
+        break;
+      default:
+        field.set(instance, readObject(fieldPlan.genericType, resolvedTypes));
+        break;
+    }
+  }
+
+  private Object deserializeImpl(SerializationPlan plan, Object instance, Type expectedType,
+      Type[] expectedParameterTypes, DequeMap<TypeVariable<?>, Type> resolvedTypes)
       throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException,
       InvocationTargetException, SerializationException, ClassNotFoundException {
+    Class<?> customSerializer = plan.serverCustomSerializer;
+    Class<?> instanceClass = plan.instanceClass;
 
     if (customSerializer != null) {
       @SuppressWarnings("unchecked")
@@ -903,8 +948,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
     } else if (instanceClass.isEnum()) {
       // Enums are deserialized when they are instantiated
     } else {
-      deserializeClass(instanceClass, instance, expectedType, expectedParameterTypes,
-          resolvedTypes);
+      deserializeClass(plan, instance, expectedType, resolvedTypes);
     }
 
     return instance;
@@ -914,49 +958,56 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
     int typeNameCount = readInt();
     BoundedList<String> buffer = new BoundedList<String>(String.class, typeNameCount);
     for (int typeNameIndex = 0; typeNameIndex < typeNameCount; ++typeNameIndex) {
-      String str = extract();
+      int token = nextToken();
+      int start = tokenStarts[token];
+      int end = tokenStarts[token + 1] - 1;
       // Change quoted characters back.
-      int idx = str.indexOf('\\');
-      if (idx >= 0) {
-        StringBuilder buf = new StringBuilder();
-        int pos = 0;
-        while (idx >= 0) {
-          buf.append(str.substring(pos, idx));
-          if (++idx == str.length()) {
-            throw new SerializationException("Unmatched backslash: \"" + str + "\"");
-          }
-          char ch = str.charAt(idx);
-          pos = idx + 1;
-          switch (ch) {
-            case '0':
-              buf.append('\u0000');
-              break;
-            case '!':
-              buf.append(RPC_SEPARATOR_CHAR);
-              break;
-            case '\\':
-              buf.append(ch);
-              break;
-            case 'u':
-              try {
-                ch = (char) Integer.parseInt(str.substring(idx + 1, idx + 5), 16);
-              } catch (NumberFormatException e) {
-                throw new SerializationException("Invalid Unicode escape sequence in \"" + str
-                    + "\"");
+      int idx = indexOfBackslash(start, end);
+      if (idx < 0) {
+        buffer.add(encodedTokens.substring(start, end));
+        continue;
+      }
+      String str = encodedTokens;
+      StringBuilder buf = new StringBuilder(end - start);
+      int pos = start;
+      while (idx >= 0) {
+        buf.append(str, pos, idx);
+        if (++idx == end) {
+          throw new SerializationException("Unmatched backslash: \"" + getToken(token) + "\"");
+        }
+        char ch = str.charAt(idx);
+        pos = idx + 1;
+        switch (ch) {
+          case '0':
+            buf.append('\u0000');
+            break;
+          case '!':
+            buf.append(RPC_SEPARATOR_CHAR);
+            break;
+          case '\\':
+            buf.append(ch);
+            break;
+          case 'u':
+            try {
+              if (idx + 5 > end) {
+                throw new NumberFormatException();
               }
-              buf.append(ch);
-              pos += 4;
-              break;
-            default:
-              throw new SerializationException("Unexpected escape character " + ch
-                  + " after backslash: \"" + str + "\"");
-          }
-          idx = str.indexOf('\\', pos);
+              ch = (char) Integer.parseInt(str.substring(idx + 1, idx + 5), 16);
+            } catch (NumberFormatException e) {
+              throw new SerializationException("Invalid Unicode escape sequence in \""
+                  + getToken(token) + "\"");
+            }
+            buf.append(ch);
+            pos += 4;
+            break;
+          default:
+            throw new SerializationException("Unexpected escape character " + ch
+                + " after backslash: \"" + getToken(token) + "\"");
         }
-        buf.append(str.substring(pos));
-        str = buf.toString();
+        idx = indexOfBackslash(pos, end);
       }
-      buffer.add(str);
+      buf.append(str, pos, end);
+      buffer.add(buf.toString());
     }
 
     if (buffer.size() != buffer.getExpectedSize()) {
@@ -991,11 +1042,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
   }
 
   private String extract() throws SerializationException {
-    try {
-      return tokenList.get(tokenListIndex++);
-    } catch (IndexOutOfBoundsException e) {
-      throw new SerializationException("Too few tokens in RPC request", e);
-    }
+    return getToken(nextToken());
   }
 
   /**
@@ -1029,44 +1076,23 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
   }
 
   /**
-   * Returns a Map from a field name to the setter method for that field, for a
-   * given class. The results are computed once for each class and cached.
-   * 
-   * @param instanceClass the class to query
-   * @return a Map from Strings to Methods such that the name <code>XXX</code>
-   *         (corresponding to the field <code>T XXX</code>) maps to the method
-   *         <code>void setXXX(T value)</code>, or null if no such method
-   *         exists.
+   * Returns the text of a token.
    */
-  private Map<String, Method> getSetters(Class<?> instanceClass) {
-    synchronized (settersByClass) {
-      Map<String, Method> setters = settersByClass.get(instanceClass);
-      if (setters == null) {
-        setters = new HashMap<String, Method>();
-
-        // Iterate over each field and locate a suitable setter method
-        Field[] fields = instanceClass.getDeclaredFields();
-        for (Field field : fields) {
-          // Consider non-static, non-transient (or @GwtTransient) fields only
-          if (SerializabilityUtil.isNotStaticOrTransient(field)
-              && SerializabilityUtil.isNotFinal(field)) {
-            String fieldName = field.getName();
-            String setterName =
-                "set" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
-            try {
-              Method setter = instanceClass.getMethod(setterName, field.getType());
-              setters.put(fieldName, setter);
-            } catch (NoSuchMethodException e) {
-              // Just leave this field out of the map
-            }
-          }
-        }
+  private String getToken(int token) {
+    return encodedTokens.substring(tokenStarts[token], tokenStarts[token + 1] - 1);
+  }
 
-        settersByClass.put(instanceClass, setters);
+  /**
+   * Returns the offset of the first backslash in the given range of
+   * {@link #encodedTokens}, or -1 if there is none.
+   */
+  private int indexOfBackslash(int start, int end) {
+    for (int idx = start; idx < end; idx++) {
+      if (encodedTokens.charAt(idx) == '\\') {
+        return idx;
       }
-
-      return setters;
     }
+    return -1;
   }
 
   private Object instantiate(Class<?> customSerializer, Class<?> instanceClass,
@@ -1105,8 +1131,7 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
       assert (ordinal >= 0 && ordinal < enumConstants.length);
       return enumConstants[ordinal];
     } else {
-      Constructor<?> constructor = instanceClass.getDeclaredConstructor();
-      constructor.setAccessible(true);
+      Constructor<?> constructor = SerializabilityUtil.getDefaultConstructor(instanceClass);
       return constructor.newInstance();
     }
   }
@@ -1137,8 +1162,78 @@ public final class ServerSerializationStreamReader extends AbstractSerialization
     if (!(t instanceof Class)) {
       return false;
     }
-    Class cl = (Class) t;
-    return cl.getTypeParameters().length == 0 && cl.getEnclosingClass() == null;
+    return plans.get((Class<?>) t).simpleClass;
+  }
+
+  /**
+   * Returns the index of the next token and advances past it.
+   */
+  private int nextToken() throws SerializationException {
+    if (tokenIndex >= tokenCount) {
+      throw new SerializationException("Too few tokens in RPC request");
+    }
+    return tokenIndex++;
+  }
+
+  /**
+   * Parses a token holding an optionally negative decimal number of up to nine
+   * digits without copying it out of the request, which covers practically
+   * all numbers sent by clients. Returns {@link #NOT_AN_INT} for anything else,
+   * in which case callers fall back to the regular parsing and error handling.
+   */
+  private long parseIntToken(int token) {
+    int pos = tokenStarts[token];
+    int end = tokenStarts[token + 1] - 1;
+    boolean negative = pos < end && encodedTokens.charAt(pos) == '-';
+    if (negative) {
+      pos++;
+    }
+    if (pos == end || end - pos > 9) {
+      return NOT_AN_INT;
+    }
+    int value = 0;
+    for (; pos < end; pos++) {
+      char ch = encodedTokens.charAt(pos);
+      if (ch < '0' || ch > '9') {
+        return NOT_AN_INT;
+      }
+      value = value * 10 + (ch - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Returns the class named by a type signature, checking that the client's
+   * idea of the class matches the server's. Results are remembered for the
+   * rest of the request.
+   */
+  private Class<?> resolveClass(String typeSignature) throws SerializationException,
+      ClassNotFoundException {
+    Class<?> instanceClass = classesBySignature.get(typeSignature);
+    if (instanceClass != null) {
+      return instanceClass;
+    }
+
+    if (hasFlags(FLAG_ELIDE_TYPE_NAMES)) {
+      if (getSerializationPolicy() instanceof TypeNameObfuscator) {
+        TypeNameObfuscator obfuscator = (TypeNameObfuscator) getSerializationPolicy();
+        String instanceClassName = obfuscator.getClassNameForTypeId(typeSignature);
+        instanceClass = Class.forName(instanceClassName, false, classLoader);
+      } else {
+        throw new SerializationException(
+            "The GWT module was compiled with RPC type name elision enabled, but "
+                + getSerializationPolicy().getClass().getName() + " does not implement "
+                + TypeNameObfuscator.class.getName());
+      }
+    } else {
+      SerializedInstanceReference serializedInstRef =
+          SerializabilityUtil.decodeSerializedInstanceReference(typeSignature);
+      instanceClass = Class.forName(serializedInstRef.getName(), false, classLoader);
+      validateTypeVersions(instanceClass, serializedInstRef);
+    }
+
+    classesBySignature.put(typeSignature, instanceClass);
+    return instanceClass;
   }
 
   private void validateTypeVersions(Class<?> instanceClass,
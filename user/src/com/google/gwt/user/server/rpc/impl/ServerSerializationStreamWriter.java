@@ -24,16 +24,15 @@ import com.google.gwt.user.server.rpc.SerializationPolicy;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.IdentityHashMap;
-import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * For internal use only. Used for server call serialization. This class is
@@ -114,6 +113,72 @@ public final class ServerSerializationStreamWriter extends
     }
   }
 
+  /**
+   * Writes the same text as {@link LengthConstrainedArray} directly to a
+   * {@link Writer}, one token at a time, instead of buffering it.
+   */
+  private static class StreamingArray {
+    private final Writer out;
+    private int count = 0;
+    private boolean needsComma = false;
+    private int total = 0;
+    private boolean javascript = false;
+
+    StreamingArray(Writer out) throws IOException {
+      this.out = out;
+      out.write('[');
+    }
+
+    /**
+     * Writes the separator before the next token. The caller then writes the
+     * token itself.
+     */
+    void startToken() throws IOException {
+      total++;
+      if (count++ == LengthConstrainedArray.MAXIMUM_ARRAY_LENGTH) {
+        if (total == LengthConstrainedArray.MAXIMUM_ARRAY_LENGTH + 1) {
+          out.write(LengthConstrainedArray.PRELUDE);
+          javascript = true;
+        } else {
+          out.write("],[");
+        }
+        count = 0;
+        needsComma = false;
+      }
+
+      if (needsComma) {
+        out.write(',');
+      } else {
+        needsComma = true;
+      }
+    }
+
+    void addToken(String token) throws IOException {
+      startToken();
+      out.write(String.valueOf(token));
+    }
+
+    void addToken(int i) throws IOException {
+      addToken(String.valueOf(i));
+    }
+
+    void close() throws IOException {
+      if (total > LengthConstrainedArray.MAXIMUM_ARRAY_LENGTH) {
+        out.write(LengthConstrainedArray.POSTLUDE);
+      } else {
+        out.write(']');
+      }
+    }
+
+    boolean isJavaScript() {
+      return javascript;
+    }
+
+    void setJavaScript(boolean javascript) {
+      this.javascript = javascript;
+    }
+  }
+
   /**
    * Enumeration used to provided typed instance writers.
    */
@@ -413,10 +478,26 @@ public final class ServerSerializationStreamWriter extends
   private static String escapeString(String toEscape, boolean splitNodes,
       LengthConstrainedArray array) {
     // Since escaped characters will increase the output size, allocate extra room to start.
-    int length = toEscape.length();
-    int capacityIncrement = Math.max(length, 16);
+    int capacityIncrement = Math.max(toEscape.length(), 16);
     CharVector charVector = new CharVector(capacityIncrement * 2, capacityIncrement);
 
+    if (appendEscapedString(toEscape, splitNodes, charVector) && array != null) {
+      array.setJavaScript(true);
+    }
+    return String.valueOf(charVector.asArray(), 0, charVector.getSize());
+  }
+
+  /**
+   * Appends the JavaScript string literal for a string to the given vector.
+   *
+   * @return <code>true</code> if the literal was split into several nodes, which
+   *         makes it JavaScript rather than JSON
+   */
+  private static boolean appendEscapedString(String toEscape, boolean splitNodes,
+      CharVector charVector) {
+    int length = toEscape.length();
+    boolean split = false;
+
     charVector.add(JS_QUOTE_CHAR);
 
     int i = 0;
@@ -442,14 +523,12 @@ public final class ServerSerializationStreamWriter extends
         charVector.add(JS_QUOTE_CHAR);
         charVector.add('+');
         charVector.add(JS_QUOTE_CHAR);
-        if (array != null) {
-          array.setJavaScript(true);
-        }
+        split = true;
       }
     }
 
     charVector.add(JS_QUOTE_CHAR);
-    return String.valueOf(charVector.asArray(), 0, charVector.getSize());
+    return split;
   }
 
   /**
@@ -574,6 +653,8 @@ public final class ServerSerializationStreamWriter extends
     }
   }
 
+  private final SerializationPlan.Cache plans;
+
   private final SerializationPolicy serializationPolicy;
 
   private ArrayList<String> tokenList = new ArrayList<String>();
@@ -582,6 +663,9 @@ public final class ServerSerializationStreamWriter extends
 
   public ServerSerializationStreamWriter(SerializationPolicy serializationPolicy) {
     this.serializationPolicy = serializationPolicy;
+    // Writers that only write primitive values and strings may have no policy
+    this.plans =
+        serializationPolicy == null ? null : SerializationPlan.forPolicy(serializationPolicy);
   }
 
   public ServerSerializationStreamWriter(SerializationPolicy serializationPolicy, int version) {
@@ -607,6 +691,19 @@ public final class ServerSerializationStreamWriter extends
     }
   }
 
+  /**
+   * Returns a rough estimate of the number of characters {@link #toString()}
+   * would produce, without building the string. The estimate ignores escaping.
+   */
+  public int getEstimatedLength() {
+    long length = tokenListCharCount + tokenList.size();
+    for (String s : getStringTable()) {
+      // Quotes and separator
+      length += s.length() + 3;
+    }
+    return (int) Math.min(length, Integer.MAX_VALUE);
+  }
+
   /**
    * Build an array of JavaScript string literals that can be decoded by the
    * client via the eval function.
@@ -616,16 +713,31 @@ public final class ServerSerializationStreamWriter extends
    */
   @Override
   public String toString() {
-    // Build a JavaScript string (with escaping, of course).
     // We take a guess at how big to make to buffer to avoid numerous resizes.
     //
     int capacityGuess = 2 * tokenListCharCount + 2 * tokenList.size();
-    LengthConstrainedArray stream = new LengthConstrainedArray(capacityGuess);
+    StringWriter writer = new StringWriter(capacityGuess);
+    try {
+      writeTo(writer);
+    } catch (IOException e) {
+      // StringWriter does not throw
+      throw new RuntimeException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes the same text as {@link #toString()} to the given writer as it is
+   * produced, so that large responses never have to be held in memory as a
+   * whole. The writer is neither flushed nor closed.
+   */
+  public void writeTo(Writer out) throws IOException {
+    // Build a JavaScript string (with escaping, of course).
+    StreamingArray stream = new StreamingArray(out);
     writePayload(stream);
-    writeStringTable(stream);
+    writeStringTable(stream, out);
     writeHeader(stream);
-
-    return stream.toString();
+    stream.close();
   }
   
   @Override
@@ -679,7 +791,7 @@ public final class ServerSerializationStreamWriter extends
           + serializationPolicy.getClass().getName() + " does not implement "
           + TypeNameObfuscator.class.getName());
     } else {
-      return SerializabilityUtil.encodeSerializedInstanceReference(clazz, serializationPolicy);
+      return plans.get(clazz).getTypeSignature();
     }
   }
 
@@ -695,7 +807,7 @@ public final class ServerSerializationStreamWriter extends
     } catch (SerializationException e) {
       throw new SerializationException(e.getMessage() + ": instance = " + instance);
     }
-    serializeImpl(instance, clazz);
+    serializeImpl(instance, plans.get(clazz));
   }
 
   /**
@@ -719,38 +831,23 @@ public final class ServerSerializationStreamWriter extends
     }
   }
 
-  private void serializeClass(Object instance, Class<?> instanceClass)
+  private void serializeClass(Object instance, SerializationPlan plan)
       throws SerializationException {
     assert (instance != null);
-    Field[] serializableFields = SerializabilityUtil.applyFieldSerializationPolicy(instanceClass,
-        serializationPolicy);
 
     /**
-     * If clientFieldNames is non-null, identify any additional server-only fields and serialize
-     * them separately.  Java serialization is used to construct a byte array, which is encoded
-     * as a String and written prior to the rest of the field data.
+     * If the class is enhanced, serialize any additional server-only fields separately. Java
+     * serialization is used to construct a byte array, which is encoded as a String and written
+     * prior to the rest of the field data.
      */
-    Set<String> clientFieldNames = serializationPolicy.getClientFieldNamesForEnhancedClass(instanceClass);
-    if (clientFieldNames != null) {
-      List<Field> serverFields = new ArrayList<Field>();
-      for (Field declField : serializableFields) {
-        assert (declField != null);
-        
-        // Identify server-only fields
-        if (!clientFieldNames.contains(declField.getName())) {
-          serverFields.add(declField);
-          continue;
-        }
-      }
-      
+    if (plan.clientFieldNames != null) {
       // Serialize the server-only fields into a byte array and encode as a String
       try {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeInt(serverFields.size());
-        for (Field f : serverFields) {
+        oos.writeInt(plan.serverOnlyFields.length);
+        for (Field f : plan.serverOnlyFields) {
           oos.writeObject(f.getName());
-          f.setAccessible(true);
           Object fieldData = f.get(instance);
           oos.writeObject(fieldData);
         }
@@ -765,26 +862,11 @@ public final class ServerSerializationStreamWriter extends
         throw new SerializationException(e);
       }
     }
-    
-    // Write the client-visible field data
-    for (Field declField : serializableFields) {
-      if ((clientFieldNames != null) && !clientFieldNames.contains(declField.getName())) {
-        // Skip server-only fields
-        continue;
-      }
 
-      boolean isAccessible = declField.isAccessible();
-      boolean needsAccessOverride = !isAccessible
-          && !Modifier.isPublic(declField.getModifiers());
-      if (needsAccessOverride) {
-        // Override the access restrictions
-        declField.setAccessible(true);
-      }
-
-      Object value;
+    // Write the client-visible field data
+    for (SerializationPlan.FieldPlan fieldPlan : plan.fields) {
       try {
-        value = declField.get(instance);
-        serializeValue(value, declField.getType());
+        serializeField(instance, fieldPlan);
 
       } catch (IllegalArgumentException e) {
         throw new SerializationException(e);
@@ -794,17 +876,57 @@ public final class ServerSerializationStreamWriter extends
       }
     }
 
-    Class<?> superClass = instanceClass.getSuperclass();
-    if (serializationPolicy.shouldSerializeFields(superClass)) {
-      serializeImpl(instance, superClass);
+    if (plan.shouldSerializeSuperclass) {
+      serializeImpl(instance, plan.getSuperclassPlan());
     }
   }
 
-  private void serializeImpl(Object instance, Class<?> instanceClass)
+  /**
+   * Writes the value of a field, reading primitive values without boxing them.
+   */
+  private void serializeField(Object instance, SerializationPlan.FieldPlan fieldPlan)
+      throws IllegalAccessException, SerializationException {
+    Field field = fieldPlan.field;
+    switch (fieldPlan.kind) {
+      case BOOLEAN:
+        writeBoolean(field.getBoolean(instance));
+        break;
+      case BYTE:
+        writeByte(field.getByte(instance));
+        break;
+      case CHAR:
+        writeChar(field.getChar(instance));
+        break;
+      case DOUBLE:
+        writeDouble(field.getDouble(instance));
+        break;
+      case FLOAT:
+        writeFloat(field.getFloat(instance));
+        break;
+      case INT:
+        writeInt(field.getInt(instance));
+        break;
+      case LONG:
+        writeLong(field.getLong(instance));
+        break;
+      case SHORT:
+        writeShort(field.getShort(instance));
+        break;
+      case STRING:
+        writeString((String) field.get(instance));
+        break;
+      default:
+        writeObject(field.get(instance));
+        break;
+    }
+  }
+
+  private void serializeImpl(Object instance, SerializationPlan plan)
       throws SerializationException {
     assert (instance != null);
 
-    Class<?> customSerializer = SerializabilityUtil.hasCustomFieldSerializer(instanceClass);
+    Class<?> instanceClass = plan.instanceClass;
+    Class<?> customSerializer = plan.customSerializer;
     if (customSerializer != null) {
       // Use custom field serializer
       @SuppressWarnings("unchecked")
@@ -823,7 +945,7 @@ public final class ServerSerializationStreamWriter extends
       writeInt(((Enum<?>) instance).ordinal());
     } else {
       // Regular class instance
-      serializeClass(instance, instanceClass);
+      serializeClass(instance, plan);
     }
   }
 
@@ -861,7 +983,7 @@ public final class ServerSerializationStreamWriter extends
    * Notice that the field are written in reverse order that the client can just
    * pop items out of the stream.
    */
-  private void writeHeader(LengthConstrainedArray stream) {
+  private void writeHeader(StreamingArray stream) throws IOException {
     stream.addToken(getFlags());
     if (stream.isJavaScript() && getVersion() >= SERIALIZATION_STREAM_JSON_VERSION) {
       // Ensure we are not using the JSON supported version if stream is Javascript instead of JSON
@@ -871,19 +993,27 @@ public final class ServerSerializationStreamWriter extends
     }
   }
 
-  private void writePayload(LengthConstrainedArray stream) {
+  private void writePayload(StreamingArray stream) throws IOException {
     ListIterator<String> tokenIterator = tokenList.listIterator(tokenList.size());
     while (tokenIterator.hasPrevious()) {
       stream.addToken(tokenIterator.previous());
     }
   }
 
-  private void writeStringTable(LengthConstrainedArray stream) {
-    LengthConstrainedArray tableStream = new LengthConstrainedArray();
+  private void writeStringTable(StreamingArray stream, Writer out) throws IOException {
+    stream.startToken();
+    StreamingArray tableStream = new StreamingArray(out);
+    // Reused for every string to avoid allocating a buffer per string.
+    CharVector charVector = new CharVector(64, 0);
     for (String s : getStringTable()) {
-      tableStream.addEscapedToken(s);
+      tableStream.startToken();
+      charVector.clear();
+      if (appendEscapedString(s, true, charVector)) {
+        tableStream.setJavaScript(true);
+      }
+      out.write(charVector.asArray(), 0, charVector.getSize());
     }
-    stream.addToken(tableStream.toString());
+    tableStream.close();
     stream.setJavaScript(stream.isJavaScript() || tableStream.isJavaScript());
   }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.web.bindery.autobean.vm.impl;
+
+/**
+ * A pull parser that reads one JSON token at a time from a string.
+ * <p>
+ * Objects and arrays can be skipped over without building anything, which lets
+ * {@link JsonSplittable} leave nested values unparsed until they are needed. Skipping still checks
+ * the syntax, so a malformed payload is rejected as soon as the enclosing value is parsed.
+ */
+final class JsonScanner {
+
+  /**
+   * Returns the end of the string literal that starts at {@code start}, which must be a quote.
+   */
+  private static int skipString(String json, int start) {
+    for (int i = start + 1, length = json.length(); i < length; i++) {
+      char c = json.charAt(i);
+      if (c == '"') {
+        return i + 1;
+      } else if (c == '\\') {
+        i++;
+      }
+    }
+    throw new RuntimeException("Unterminated string at position " + start);
+  }
+
+  private final String json;
+  private int pos;
+
+  JsonScanner(String json, int pos) {
+    this.json = json;
+    this.pos = pos;
+  }
+
+  /**
+   * Consumes the next non-whitespace character, which must be {@code expected}.
+   */
+  void expect(char expected) {
+    char c = next();
+    if (c != expected) {
+      throw syntaxError("Expected '" + expected + "' but found '" + c + "'");
+    }
+  }
+
+  /**
+   * Checks that only whitespace is left.
+   */
+  void expectEnd() {
+    skipWhitespace();
+    if (pos < json.length()) {
+      throw syntaxError("Unexpected trailing characters");
+    }
+  }
+
+  /**
+   * Consumes and returns the next non-whitespace character.
+   */
+  char next() {
+    char c = peek();
+    pos++;
+    return c;
+  }
+
+  /**
+   * Returns the next non-whitespace character without consuming it.
+   */
+  char peek() {
+    skipWhitespace();
+    if (pos >= json.length()) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return json.charAt(pos);
+  }
+
+  int position() {
+    return pos;
+  }
+
+  /**
+   * Reads a number, {@code true}, {@code false} or {@code null}, returning a Double, a Boolean or
+   * null.
+   */
+  Object readLiteral() {
+    char c = peek();
+    int start = pos;
+    while (pos < json.length() && isLiteralPart(json.charAt(pos))) {
+      pos++;
+    }
+    String literal = json.substring(start, pos);
+    if (c == 't' && literal.equals("true")) {
+      return Boolean.TRUE;
+    } else if (c == 'f' && literal.equals("false")) {
+      return Boolean.FALSE;
+    } else if (c == 'n' && literal.equals("null")) {
+      return null;
+    } else if (c == '-' || (c >= '0' && c <= '9')) {
+      try {
+        return Double.valueOf(literal);
+      } catch (NumberFormatException e) {
+        // Fall through.
+      }
+    }
+    pos = start;
+    throw syntaxError("Unexpected literal '" + literal + "'");
+  }
+
+  /**
+   * Reads a string literal.
+   */
+  String readString() {
+    if (peek() != '"') {
+      throw syntaxError("Expected a string");
+    }
+    int start = pos + 1;
+    int end = skipString(json, pos) - 1;
+    pos = end + 1;
+    int escape = json.indexOf('\\', start);
+    if (escape == -1 || escape >= end) {
+      return json.substring(start, end);
+    }
+
+    StringBuilder toReturn = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char c = json.charAt(i);
+      if (c != '\\') {
+        toReturn.append(c);
+        continue;
+      }
+      c = json.charAt(++i);
+      switch (c) {
+        case 'b':
+          toReturn.append('\b');
+          break;
+        case 'f':
+          toReturn.append('\f');
+          break;
+        case 'n':
+          toReturn.append('\n');
+          break;
+        case 'r':
+          toReturn.append('\r');
+          break;
+        case 't':
+          toReturn.append('\t');
+          break;
+        case 'u':
+          if (i + 4 >= end) {
+            pos = i;
+            throw syntaxError("Truncated unicode escape");
+          }
+          try {
+            toReturn.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+          } catch (NumberFormatException e) {
+            pos = i;
+            throw syntaxError("Invalid unicode escape");
+          }
+          i += 4;
+          break;
+        default:
+          // Covers \", \\ and \/ as well as escapes that JSON doesn't define.
+          toReturn.append(c);
+          break;
+      }
+    }
+    return toReturn.toString();
+  }
+
+  /**
+   * Skips over the next value of any kind and returns the position just after it.
+   */
+  int skipValue() {
+    char c = peek();
+    switch (c) {
+      case '{':
+        pos++;
+        if (peek() == '}') {
+          pos++;
+          break;
+        }
+        do {
+          if (peek() != '"') {
+            throw syntaxError("Expected a property name");
+          }
+          pos = skipString(json, pos);
+          expect(':');
+          skipValue();
+          c = next();
+        } while (c == ',');
+        if (c != '}') {
+          pos--;
+          throw syntaxError("Expected ',' or '}'");
+        }
+        break;
+      case '[':
+        pos++;
+        if (peek() == ']') {
+          pos++;
+          break;
+        }
+        do {
+          skipValue();
+          c = next();
+        } while (c == ',');
+        if (c != ']') {
+          pos--;
+          throw syntaxError("Expected ',' or ']'");
+        }
+        break;
+      case '"':
+        pos = skipString(json, pos);
+        break;
+      default:
+        readLiteral();
+        break;
+    }
+    return pos;
+  }
+
+  RuntimeException syntaxError(String message) {
+    return new RuntimeException("Could not parse payload: " + message + " at position " + pos);
+  }
+
+  private boolean isLiteralPart(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+        || c == '-' || c == '+' || c == '.';
+  }
+
+  private void skipWhitespace() {
+    while (pos < json.length()) {
+      char c = json.charAt(pos);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      pos++;
+    }
+  }
+}
@@ -15,66 +15,78 @@
  */
 package com.google.web.bindery.autobean.vm.impl;
 
-import com.google.gwt.core.client.impl.WeakMapping;
-import com.google.gwt.thirdparty.json.JSONArray;
-import com.google.gwt.thirdparty.json.JSONException;
-import com.google.gwt.thirdparty.json.JSONObject;
 import com.google.web.bindery.autobean.shared.Splittable;
 import com.google.web.bindery.autobean.shared.impl.HasSplittable;
-import com.google.web.bindery.autobean.shared.impl.StringQuoter;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Uses the org.json packages to slice and dice request payloads.
+ * Slices and dices request payloads.
+ * <p>
+ * Keyed and indexed values parsed from a payload are only parsed one level deep, when their
+ * contents are first needed; nested objects and arrays are kept as ranges of the payload until
+ * then. A value that was never looked at is written back out by copying its text, so the parts of
+ * a payload that are just passed along are never turned into objects.
+ * <p>
+ * The properties of a keyed value and the elements of an indexed one are kept as JsonSplittables
+ * (for keyed and indexed values), Strings, Doubles, Booleans or null, and are written out the way
+ * org.json would write them.
  */
 public class JsonSplittable implements Splittable, HasSplittable {
 
   public static JsonSplittable create() {
-    return new JsonSplittable(new JSONObject());
+    JsonSplittable toReturn = new JsonSplittable();
+    toReturn.isNull = false;
+    toReturn.obj = new LinkedHashMap<String, Object>();
+    return toReturn;
   }
 
   public static Splittable create(String payload) {
-    try {
-      switch (payload.charAt(0)) {
-        case '{':
-          return new JsonSplittable(new JSONObject(payload));
-        case '[':
-          return new JsonSplittable(new JSONArray(payload));
-        case '"':
-          return new JsonSplittable(new JSONArray("[" + payload + "]").getString(0));
-        case '-':
-        case '0':
-        case '1':
-        case '2':
-        case '3':
-        case '4':
-        case '5':
-        case '6':
-        case '7':
-        case '8':
-        case '9':
-          return new JsonSplittable(Double.parseDouble(payload));
-        case 't':
-        case 'f':
-          return new JsonSplittable(Boolean.parseBoolean(payload));
-        case 'n':
-          return null;
-        default:
-          throw new RuntimeException("Could not parse payload: payload[0] = " + payload.charAt(0));
-      }
-    } catch (JSONException e) {
-      throw new RuntimeException("Could not parse payload", e);
+    switch (payload.charAt(0)) {
+      case '{':
+      case '[':
+        JsonScanner scanner = new JsonScanner(payload, 0);
+        int end = scanner.skipValue();
+        scanner.expectEnd();
+        return new JsonSplittable(payload, 0, end);
+      case '"':
+        scanner = new JsonScanner(payload, 0);
+        String string = scanner.readString();
+        scanner.expectEnd();
+        return new JsonSplittable(string);
+      case '-':
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+        return new JsonSplittable(Double.parseDouble(payload));
+      case 't':
+      case 'f':
+        return new JsonSplittable(Boolean.parseBoolean(payload));
+      case 'n':
+        return null;
+      default:
+        throw new RuntimeException("Could not parse payload: payload[0] = " + payload.charAt(0));
     }
   }
 
   public static Splittable createIndexed() {
-    return new JsonSplittable(new JSONArray());
+    JsonSplittable toReturn = new JsonSplittable();
+    toReturn.isNull = false;
+    toReturn.array = new ArrayList<Object>();
+    return toReturn;
   }
 
   public static Splittable createNull() {
@@ -82,33 +94,112 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   /**
-   * Private equivalent of com.google.gwt.thirdparty.json.JSONObject.getNames(JSONObject) since that
-   * method is not available in Android 2.2. Used to represent a null value.
+   * Creates a quoted JSON string, escaping the same characters as org.json.
    */
-  private static String[] getNames(JSONObject json) {
-    int length = json.length();
-    if (length == 0) {
-      return null;
+  public static String quote(String raw) {
+    if (raw == null) {
+      return "\"\"";
     }
-    String[] names = new String[length];
-    Iterator<?> i = json.keys();
-    int j = 0;
-    while (i.hasNext()) {
-      names[j++] = (String) i.next();
+    StringBuilder out = new StringBuilder(raw.length() + 2);
+    try {
+      appendQuoted(out, raw);
+    } catch (IOException e) {
+      // StringBuilder doesn't throw IOExceptions.
+      throw new RuntimeException(e);
+    }
+    return out.toString();
+  }
+
+  private static void appendQuoted(Appendable out, String raw) throws IOException {
+    out.append('"');
+    int unescaped = 0;
+    for (int i = 0, length = raw.length(); i < length; i++) {
+      char c = raw.charAt(i);
+      String escape;
+      switch (c) {
+        case '"':
+          escape = "\\\"";
+          break;
+        case '/':
+          escape = "\\/";
+          break;
+        case '\\':
+          escape = "\\\\";
+          break;
+        case '\b':
+          escape = "\\b";
+          break;
+        case '\f':
+          escape = "\\f";
+          break;
+        case '\n':
+          escape = "\\n";
+          break;
+        case '\r':
+          escape = "\\r";
+          break;
+        case '\t':
+          escape = "\\t";
+          break;
+        default:
+          if (c > 0x1f) {
+            continue;
+          }
+          escape = String.format("\\u%04x", (int) c);
+          break;
+      }
+      out.append(raw, unescaped, i).append(escape);
+      unescaped = i + 1;
+    }
+    out.append(raw, unescaped, raw.length()).append('"');
+  }
+
+  /**
+   * Writes a number the way org.json does, which drops the fraction of integral values.
+   */
+  private static void appendNumber(Appendable out, double number) throws IOException {
+    long asLong = (long) number;
+    if (number == asLong && !(number == 0 && 1 / number < 0)) {
+      out.append(Long.toString(asLong));
+    } else if (number == 0) {
+      out.append("-0");
+    } else {
+      out.append(Double.toString(number));
     }
-    return names;
   }
 
-  private JSONArray array;
+  private static void appendValue(Appendable out, Object value) throws IOException {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof JsonSplittable) {
+      ((JsonSplittable) value).writePayload(out);
+    } else if (value instanceof String) {
+      appendQuoted(out, (String) value);
+    } else if (value instanceof Double) {
+      appendNumber(out, (Double) value);
+    } else {
+      out.append(value.toString());
+    }
+  }
+
+  private List<Object> array;
   private Boolean bool;
   /**
    * Used to represent a null value.
    */
   private boolean isNull;
   private Double number;
-  private JSONObject obj;
+  private Map<String, Object> obj;
+  private Map<String, Object> reified;
+
+  /**
+   * The payload that an unparsed keyed or indexed value comes from, or null once it's parsed.
+   * (Assigned last by {@link #parse}, so that other threads see the parsed contents.)
+   */
+  private volatile String source;
+  private int sourceEnd;
+  private int sourceStart;
   private String string;
-  private final Map<String, Object> reified = new HashMap<String, Object>();
 
   /**
    * Constructor for a null value.
@@ -125,17 +216,16 @@ public class JsonSplittable implements Splittable, HasSplittable {
     this.number = value;
   }
 
-  private JsonSplittable(JSONArray array) {
-    this.array = array;
-  }
-
-  private JsonSplittable(JSONObject obj) {
-    this.obj = obj;
+  /**
+   * Constructor for an unparsed keyed or indexed value.
+   */
+  private JsonSplittable(String source, int start, int end) {
+    this.source = source;
+    this.sourceStart = start;
+    this.sourceEnd = end;
   }
 
   private JsonSplittable(String string) {
-    this.array = null;
-    this.obj = null;
     this.string = string;
   }
 
@@ -148,18 +238,21 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public void assign(Splittable parent, int index) {
-    try {
-      ((JsonSplittable) parent).array.put(index, value());
-    } catch (JSONException e) {
-      throw new RuntimeException(e);
+    List<Object> parentArray = ((JsonSplittable) parent).array();
+    while (parentArray.size() <= index) {
+      parentArray.add(null);
     }
+    parentArray.set(index, value());
   }
 
   public void assign(Splittable parent, String propertyName) {
-    try {
-      ((JsonSplittable) parent).obj.put(propertyName, value());
-    } catch (JSONException e) {
-      throw new RuntimeException(e);
+    Map<String, Object> parentObj = ((JsonSplittable) parent).obj();
+    Object value = value();
+    if (value == null) {
+      // Like org.json, assigning null removes the property.
+      parentObj.remove(propertyName);
+    } else {
+      parentObj.put(propertyName, value);
     }
   }
 
@@ -172,33 +265,42 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public Splittable get(int index) {
-    try {
-      return makeSplittable(array.get(index));
-    } catch (JSONException e) {
-      throw new RuntimeException(e);
+    List<Object> list = array();
+    if (index < 0 || index >= list.size()) {
+      throw new RuntimeException("Index " + index + " out of range [0.." + list.size() + ")");
     }
+    return makeSplittable(list.get(index));
   }
 
   public Splittable get(String key) {
-    try {
-      return makeSplittable(obj.get(key));
-    } catch (JSONException e) {
-      throw new RuntimeException(key, e);
+    Map<String, Object> map = obj();
+    Object value = map.get(key);
+    if (value == null && !map.containsKey(key)) {
+      throw new RuntimeException(key);
     }
+    return makeSplittable(value);
   }
 
   public String getPayload() {
     if (isNull) {
       return "null";
     }
-    if (obj != null) {
-      return obj.toString();
+    String unparsed = source;
+    if (unparsed != null) {
+      return unparsed.substring(sourceStart, sourceEnd);
     }
-    if (array != null) {
-      return array.toString();
+    if (obj != null || array != null) {
+      StringBuilder out = new StringBuilder();
+      try {
+        writePayload(out);
+      } catch (IOException e) {
+        // StringBuilder doesn't throw IOExceptions.
+        throw new RuntimeException(e);
+      }
+      return out.toString();
     }
     if (string != null) {
-      return StringQuoter.quote(string);
+      return quote(string);
     }
     if (number != null) {
       return String.valueOf(number);
@@ -210,16 +312,11 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public List<String> getPropertyKeys() {
-    String[] names = getNames(obj);
-    if (names == null) {
-      return Collections.emptyList();
-    } else {
-      return Collections.unmodifiableList(Arrays.asList(names));
-    }
+    return Collections.unmodifiableList(new ArrayList<String>(obj().keySet()));
   }
 
   public Object getReified(String key) {
-    return reified.get(key);
+    return reified == null ? null : reified.get(key);
   }
 
   public Splittable getSplittable() {
@@ -231,20 +328,23 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public boolean isIndexed() {
-    return array != null;
+    String unparsed = source;
+    return unparsed != null ? unparsed.charAt(sourceStart) == '[' : array != null;
   }
 
   public boolean isKeyed() {
-    return obj != null;
+    String unparsed = source;
+    return unparsed != null ? unparsed.charAt(sourceStart) == '{' : obj != null;
   }
 
   public boolean isNull(int index) {
-    return array.isNull(index);
+    List<Object> list = array();
+    return index >= list.size() || list.get(index) == null;
   }
 
   public boolean isNull(String key) {
     // Treat undefined and null as the same
-    return !obj.has(key) || obj.isNull(key);
+    return obj().get(key) == null;
   }
 
   public boolean isNumber() {
@@ -252,7 +352,7 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public boolean isReified(String key) {
-    return reified.containsKey(key);
+    return reified != null && reified.containsKey(key);
   }
 
   public boolean isString() {
@@ -260,74 +360,156 @@ public class JsonSplittable implements Splittable, HasSplittable {
   }
 
   public boolean isUndefined(String key) {
-    return !obj.has(key);
+    return !obj().containsKey(key);
   }
 
   @Override
   public void removeReified(String key) {
-    reified.remove(key);
+    if (reified != null) {
+      reified.remove(key);
+    }
   }
 
   public void setReified(String key, Object object) {
+    if (reified == null) {
+      reified = new HashMap<String, Object>();
+    }
     reified.put(key, object);
   }
 
   public void setSize(int size) {
-    // This is terrible, but there's no API support for resizing or splicing
-    JSONArray newArray = new JSONArray();
-    for (int i = 0; i < size; i++) {
-      try {
-        newArray.put(i, array.get(i));
-      } catch (JSONException e) {
-        throw new RuntimeException(e);
-      }
+    List<Object> list = array();
+    if (size < list.size()) {
+      list.subList(size, list.size()).clear();
+    }
+    while (list.size() < size) {
+      list.add(null);
     }
-    array = newArray;
   }
 
   public int size() {
-    return array.length();
+    return array().size();
   }
 
-  private synchronized JsonSplittable makeSplittable(Object object) {
-    if (JSONObject.NULL.equals(object)) {
+  /**
+   * Writes the payload to {@code out}, which is cheaper than {@link #getPayload()} for a large
+   * keyed or indexed value.
+   */
+  public void writePayload(Appendable out) throws IOException {
+    String unparsed = source;
+    if (unparsed != null) {
+      out.append(unparsed, sourceStart, sourceEnd);
+    } else if (obj != null) {
+      out.append('{');
+      boolean first = true;
+      for (Map.Entry<String, Object> entry : obj.entrySet()) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+        appendQuoted(out, entry.getKey());
+        out.append(':');
+        appendValue(out, entry.getValue());
+      }
+      out.append('}');
+    } else if (array != null) {
+      out.append('[');
+      for (int i = 0, j = array.size(); i < j; i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        appendValue(out, array.get(i));
+      }
+      out.append(']');
+    } else {
+      out.append(getPayload());
+    }
+  }
+
+  private List<Object> array() {
+    if (source != null) {
+      parse();
+    }
+    return array;
+  }
+
+  private JsonSplittable makeSplittable(Object object) {
+    if (object == null) {
       return null;
     }
-    /*
-     * Maintain a 1:1 mapping between object instances and JsonSplittables.
-     * Doing this with a WeakHashMap doesn't work, since our c.g.g.thirdparty.json
-     * arrays, coming from Android, appear to have value-based equality.
-     */
-    JsonSplittable seen = (JsonSplittable) WeakMapping.get(object, JsonSplittable.class.getName());
-    if (seen == null) {
-      if (object instanceof JSONObject) {
-        seen = new JsonSplittable((JSONObject) object);
-        WeakMapping.setWeak(object, JsonSplittable.class.getName(), seen);
-      } else if (object instanceof JSONArray) {
-        seen = new JsonSplittable((JSONArray) object);
-        WeakMapping.setWeak(object, JsonSplittable.class.getName(), seen);
-      } else if (object instanceof String) {
-        seen = new JsonSplittable(object.toString());
-      } else if (object instanceof Number) {
-        seen = new JsonSplittable(((Number) object).doubleValue());
-      } else if (object instanceof Boolean) {
-        seen = new JsonSplittable((Boolean) object);
-      } else {
-        throw new RuntimeException("Unhandled type " + object.getClass());
+    // Keyed and indexed values are stored as JsonSplittables, so they keep their identity.
+    if (object instanceof JsonSplittable) {
+      return (JsonSplittable) object;
+    } else if (object instanceof String) {
+      return new JsonSplittable((String) object);
+    } else if (object instanceof Double) {
+      return new JsonSplittable(((Double) object).doubleValue());
+    } else if (object instanceof Boolean) {
+      return new JsonSplittable(((Boolean) object).booleanValue());
+    } else {
+      throw new RuntimeException("Unhandled type " + object.getClass());
+    }
+  }
+
+  private Map<String, Object> obj() {
+    if (source != null) {
+      parse();
+    }
+    return obj;
+  }
+
+  /**
+   * Parses the top level of an unparsed keyed or indexed value.
+   */
+  private synchronized void parse() {
+    String unparsed = source;
+    if (unparsed == null) {
+      // Parsed by another thread.
+      return;
+    }
+    JsonScanner scanner = new JsonScanner(unparsed, sourceStart);
+    if (scanner.next() == '{') {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      if (scanner.peek() != '}') {
+        do {
+          String key = scanner.readString();
+          scanner.expect(':');
+          map.put(key, readValue(scanner, unparsed));
+        } while (scanner.next() == ',');
       }
+      obj = map;
+    } else {
+      List<Object> list = new ArrayList<Object>();
+      if (scanner.peek() != ']') {
+        do {
+          list.add(readValue(scanner, unparsed));
+        } while (scanner.next() == ',');
+      }
+      array = list;
+    }
+    // The closing bracket was checked when this value was skipped over.
+    source = null;
+  }
+
+  private Object readValue(JsonScanner scanner, String unparsed) {
+    switch (scanner.peek()) {
+      case '{':
+      case '[':
+        int start = scanner.position();
+        return new JsonSplittable(unparsed, start, scanner.skipValue());
+      case '"':
+        return scanner.readString();
+      default:
+        return scanner.readLiteral();
     }
-    return seen;
   }
 
   private Object value() {
     if (isNull) {
       return null;
     }
-    if (obj != null) {
-      return obj;
-    }
-    if (array != null) {
-      return array;
+    if (source != null || obj != null || array != null) {
+      return this;
     }
     if (string != null) {
       return string;
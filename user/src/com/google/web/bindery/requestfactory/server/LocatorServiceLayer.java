@@ -27,6 +27,13 @@ import com.google.web.bindery.requestfactory.shared.ServiceName;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Adds support to the ServiceLayer chain for using {@link Locator} and
@@ -34,6 +41,84 @@ import java.lang.reflect.Modifier;
  */
 final class LocatorServiceLayer extends ServiceLayerDecorator {
 
+  /**
+   * Groups the indices of a list of types by type, in order of first
+   * appearance.
+   */
+  private static Map<Class<?>, List<Integer>> groupByType(List<? extends Class<?>> types) {
+    Map<Class<?>, List<Integer>> toReturn = new LinkedHashMap<Class<?>, List<Integer>>();
+    for (int i = 0, j = types.size(); i < j; i++) {
+      List<Integer> indices = toReturn.get(types.get(i));
+      if (indices == null) {
+        indices = new ArrayList<Integer>();
+        toReturn.put(types.get(i), indices);
+      }
+      indices.add(i);
+    }
+    return toReturn;
+  }
+
+  /**
+   * Stores {@code values} into {@code list} at the given indices.
+   */
+  private static <E> void scatter(List<? extends E> values, List<Integer> indices, List<E> list) {
+    for (int i = 0, j = indices.size(); i < j; i++) {
+      list.set(indices.get(i), values.get(i));
+    }
+  }
+
+  /**
+   * Returns the elements of {@code list} at the given indices.
+   */
+  private static <E> List<E> select(List<? extends E> list, List<Integer> indices) {
+    List<E> toReturn = new ArrayList<E>(indices.size());
+    for (int index : indices) {
+      toReturn.add(list.get(index));
+    }
+    return toReturn;
+  }
+
+  /**
+   * Whether each Locator type overrides {@link Locator#areLive}.
+   */
+  private final ConcurrentMap<Class<?>, Boolean> overridesAreLive =
+      new ConcurrentHashMap<Class<?>, Boolean>();
+
+  /**
+   * Whether each Locator type overrides {@link Locator#findAll}.
+   */
+  private final ConcurrentMap<Class<?>, Boolean> overridesFindAll =
+      new ConcurrentHashMap<Class<?>, Boolean>();
+
+  /**
+   * Checks entities that have a Locator overriding {@link Locator#areLive} in
+   * one call per type. Other entities are passed down the chain.
+   */
+  @Override
+  public List<Boolean> areLive(List<Object> domainObjects) {
+    List<Class<?>> types = new ArrayList<Class<?>>(domainObjects.size());
+    for (Object domainObject : domainObjects) {
+      types.add(domainObject.getClass());
+    }
+
+    List<Boolean> toReturn =
+        new ArrayList<Boolean>(Collections.<Boolean> nCopies(domainObjects.size(), null));
+    List<Integer> unbatched = new ArrayList<Integer>();
+    for (Map.Entry<Class<?>, List<Integer>> entry : groupByType(types).entrySet()) {
+      Locator<?, ?> l = getBulkLocator(entry.getKey(), overridesAreLive, "areLive", List.class);
+      if (l == null) {
+        unbatched.addAll(entry.getValue());
+      } else {
+        scatter(doAreLive(l, select(domainObjects, entry.getValue())), entry.getValue(), toReturn);
+      }
+    }
+    if (!unbatched.isEmpty()) {
+      Collections.sort(unbatched);
+      scatter(super.areLive(select(domainObjects, unbatched)), unbatched, toReturn);
+    }
+    return toReturn;
+  }
+
   @Override
   public <T> T createDomainObject(Class<T> clazz) {
     Locator<T, ?> l = getLocator(clazz);
@@ -90,6 +175,38 @@ final class LocatorServiceLayer extends ServiceLayerDecorator {
     return doLoadDomainObject(clazz, domainId);
   }
 
+  /**
+   * Loads the entities of each type that has a Locator overriding
+   * {@link Locator#findAll} in one call. Other entities are passed down the
+   * chain, which loads them one at a time.
+   */
+  @Override
+  public List<Object> loadDomainObjects(List<Class<?>> classes, List<Object> domainIds) {
+    if (classes.size() != domainIds.size()) {
+      return super.loadDomainObjects(classes, domainIds);
+    }
+
+    List<Object> toReturn = new ArrayList<Object>(Collections.nCopies(classes.size(), null));
+    List<Integer> unbatched = new ArrayList<Integer>();
+    for (Map.Entry<Class<?>, List<Integer>> entry : groupByType(classes).entrySet()) {
+      Locator<?, ?> l = getBulkLocator(entry.getKey(), overridesFindAll, "findAll",
+          Class.class, List.class);
+      if (l == null) {
+        unbatched.addAll(entry.getValue());
+      } else {
+        scatter(doFindAll(l, entry.getKey(), select(domainIds, entry.getValue())),
+            entry.getValue(), toReturn);
+      }
+    }
+    if (!unbatched.isEmpty()) {
+      Collections.sort(unbatched);
+      List<Object> loaded =
+          super.loadDomainObjects(select(classes, unbatched), select(domainIds, unbatched));
+      scatter(loaded, unbatched, toReturn);
+    }
+    return toReturn;
+  }
+
   /**
    * Returns true if the context method returns a {@link Request} and the domain
    * method is non-static.
@@ -158,6 +275,33 @@ final class LocatorServiceLayer extends ServiceLayerDecorator {
     return locatorType;
   }
 
+  private <T> List<Boolean> doAreLive(Locator<T, ?> l, List<Object> domainObjects) {
+    List<T> toCheck = new ArrayList<T>(domainObjects.size());
+    for (Object domainObject : domainObjects) {
+      toCheck.add(l.getDomainType().cast(domainObject));
+    }
+    List<Boolean> toReturn = l.areLive(toCheck);
+    if (toReturn == null || toReturn.size() != toCheck.size()) {
+      die(null, "%s.areLive() did not return one value per domain object", l.getClass()
+          .getCanonicalName());
+    }
+    return toReturn;
+  }
+
+  private <T, I> List<T> doFindAll(Locator<T, I> l, Class<?> clazz, List<Object> domainIds) {
+    List<I> ids = new ArrayList<I>(domainIds.size());
+    for (Object domainId : domainIds) {
+      ids.add(l.getIdType().cast(domainId));
+    }
+    @SuppressWarnings("unchecked")
+    Class<T> domainType = (Class<T>) clazz;
+    List<T> toReturn = l.findAll(domainType, ids);
+    if (toReturn == null || toReturn.size() != ids.size()) {
+      die(null, "%s.findAll() did not return one value per id", l.getClass().getCanonicalName());
+    }
+    return toReturn;
+  }
+
   private <T> Object doGetId(T domainObject) {
     @SuppressWarnings("unchecked")
     Class<T> clazz = (Class<T>) domainObject.getClass();
@@ -198,6 +342,32 @@ final class LocatorServiceLayer extends ServiceLayerDecorator {
     return l.find(clazz, id);
   }
 
+  /**
+   * Returns the Locator for a domain type if it overrides one of the bulk
+   * methods of {@link Locator}, or {@code null}. Whether a Locator type
+   * overrides the method is only looked up once, and then kept in
+   * {@code overrides}.
+   */
+  private Locator<?, ?> getBulkLocator(Class<?> domainType,
+      ConcurrentMap<Class<?>, Boolean> overrides, String methodName, Class<?>... parameterTypes) {
+    Locator<?, ?> l = getLocator(domainType);
+    if (l == null) {
+      return null;
+    }
+    Class<?> locatorType = l.getClass();
+    Boolean overridden = overrides.get(locatorType);
+    if (overridden == null) {
+      try {
+        Method method = locatorType.getMethod(methodName, parameterTypes);
+        overridden = !Locator.class.equals(method.getDeclaringClass());
+      } catch (NoSuchMethodException e) {
+        return die(e, "Could not find %s.%s()", locatorType.getCanonicalName(), methodName);
+      }
+      overrides.put(locatorType, overridden);
+    }
+    return overridden ? l : null;
+  }
+
   @SuppressWarnings("unchecked")
   private <T, I> Locator<T, I> getLocator(Class<T> domainType) {
     Class<? extends Locator<?, ?>> locatorType = getTop().resolveLocator(domainType);
@@ -80,6 +80,15 @@ final class ReflectiveServiceLayer extends ServiceLayerDecorator {
     return null;
   }
 
+  @Override
+  public List<Boolean> areLive(List<Object> domainObjects) {
+    List<Boolean> toReturn = new ArrayList<Boolean>(domainObjects.size());
+    for (Object domainObject : domainObjects) {
+      toReturn.add(getTop().isLive(domainObject));
+    }
+    return toReturn;
+  }
+
   @Override
   public <T> T createDomainObject(Class<T> clazz) {
     Throwable ex;
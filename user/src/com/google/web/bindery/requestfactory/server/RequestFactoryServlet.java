@@ -20,9 +20,12 @@ import com.google.web.bindery.requestfactory.shared.RequestFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -106,6 +109,10 @@ public class RequestFactoryServlet extends HttpServlet {
 
   /**
    * Processes a POST to the server.
+   * <p>
+   * If {@link #getAsyncExecutor()} returns an executor and the request supports
+   * asynchronous processing, the request is processed on that executor and the
+   * container thread is released right away.
    * 
    * @param request an {@link HttpServletRequest} instance
    * @param response an {@link HttpServletResponse} instance
@@ -113,9 +120,82 @@ public class RequestFactoryServlet extends HttpServlet {
    * @throws ServletException if an error occurs in the servlet
    */
   @Override
-  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+  protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
       throws IOException, ServletException {
+    Executor executor = getAsyncExecutor();
+    if (executor == null || !request.isAsyncSupported()) {
+      processPost(request, response);
+      return;
+    }
 
+    final AsyncContext asyncContext = request.startAsync(request, response);
+    // Like a synchronous request, an asynchronous one may take as long as it needs
+    asyncContext.setTimeout(0);
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processPost(request, response);
+        } catch (IOException e) {
+          failAsync(response, e);
+        } catch (ServletException e) {
+          failAsync(response, e);
+        } finally {
+          asyncContext.complete();
+        }
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // The executor is saturated, so push back on the container instead
+      task.run();
+    }
+  }
+
+  /**
+   * Override this method to process requests asynchronously. The default
+   * implementation returns {@code null}, which processes each request in the
+   * container thread that received it.
+   * <p>
+   * When an executor is returned, each request that supports asynchronous
+   * processing (which requires {@code <async-supported>true</async-supported>}
+   * in the servlet's deployment descriptor and a Servlet 3.0 container) is
+   * read, processed and answered on a thread of that executor, and the
+   * thread-local accessors of this class refer to it there. Requests the
+   * executor rejects are processed in the container thread. The same executor
+   * should be returned for every call.
+   * 
+   * @return the executor to process requests on, or {@code null}
+   */
+  protected Executor getAsyncExecutor() {
+    return null;
+  }
+
+  private void ensureConfig() {
+    String symbolMapsDirectory = getServletConfig().getInitParameter("symbolMapsDirectory");
+    if (symbolMapsDirectory != null) {
+      Logging.setSymbolMapsDirectory(symbolMapsDirectory);
+    }
+  }
+
+  /**
+   * Reports a failure of an asynchronous request, which the container can no
+   * longer turn into an error response by itself.
+   */
+  private void failAsync(HttpServletResponse response, Exception e) {
+    log.log(Level.SEVERE, "Unexpected error", e);
+    if (!response.isCommitted()) {
+      try {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      } catch (IOException ignored) {
+        // The client has gone away
+      }
+    }
+  }
+
+  private void processPost(HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException {
     perThreadContext.set(getServletContext());
     perThreadRequest.set(request);
     perThreadResponse.set(response);
@@ -130,15 +210,18 @@ public class RequestFactoryServlet extends HttpServlet {
       }
 
       try {
-        String payload = processor.process(jsonRequestString);
-        if (DUMP_PAYLOAD) {
-          System.out.println("<<< " + payload);
-        }
         response.setStatus(HttpServletResponse.SC_OK);
         response.setContentType(RequestFactory.JSON_CONTENT_TYPE_UTF8);
-        // The Writer must be obtained after setting the content type
+        // The Writer must be obtained after setting the content type. Nothing is written to it
+        // if processing fails, so the response can still be turned into an error.
         PrintWriter writer = response.getWriter();
-        writer.print(payload);
+        if (DUMP_PAYLOAD) {
+          String payload = processor.process(jsonRequestString);
+          System.out.println("<<< " + payload);
+          writer.print(payload);
+        } else {
+          processor.process(jsonRequestString, writer);
+        }
         writer.flush();
       } catch (RuntimeException e) {
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -150,11 +233,4 @@ public class RequestFactoryServlet extends HttpServlet {
       perThreadResponse.set(null);
     }
   }
-
-  private void ensureConfig() {
-    String symbolMapsDirectory = getServletConfig().getInitParameter("symbolMapsDirectory");
-    if (symbolMapsDirectory != null) {
-      Logging.setSymbolMapsDirectory(symbolMapsDirectory);
-    }
-  }
 }
@@ -35,9 +35,13 @@ import com.google.web.bindery.requestfactory.shared.messages.IdMessage.Strength;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Encapsulates all state relating to the processing of a single request so that
@@ -47,12 +51,18 @@ class RequestState implements EntityCodex.EntitySource {
   final IdToEntityMap beans = new IdToEntityMap();
   private final IdentityHashMap<Object, SimpleProxyId<?>> domainObjectsToId;
   private final IdFactory idFactory;
+  /**
+   * The domain objects loaded for persistent ids, shared by all of the states
+   * of a request so that no entity is loaded twice.
+   */
+  private final Map<SimpleProxyId<?>, Object> loadedDomainObjects;
   private final ServiceLayer service;
   private final Resolver resolver;
 
   public RequestState(RequestState parent) {
     idFactory = parent.idFactory;
     domainObjectsToId = parent.domainObjectsToId;
+    loadedDomainObjects = parent.loadedDomainObjects;
     service = parent.service;
     resolver = new Resolver(this);
   }
@@ -82,6 +92,7 @@ class RequestState implements EntityCodex.EntitySource {
       }
     };
     domainObjectsToId = new IdentityHashMap<Object, SimpleProxyId<?>>();
+    loadedDomainObjects = new HashMap<SimpleProxyId<?>, Object>();
     resolver = new Resolver(this);
   }
 
@@ -227,10 +238,11 @@ class RequestState implements EntityCodex.EntitySource {
     List<Class<?>> domainClasses = new ArrayList<Class<?>>(ids.size());
     List<Object> domainIds = new ArrayList<Object>(ids.size());
     List<SimpleProxyId<?>> idsToLoad = new ArrayList<SimpleProxyId<?>>();
+    Set<SimpleProxyId<?>> queued = new HashSet<SimpleProxyId<?>>();
 
     /*
      * Create proxies for ephemeral or synthetic ids that we haven't seen. Queue
-     * up the domain ids for entities that need to be loaded.
+     * up the domain ids for entities that haven't been loaded by this request.
      */
     for (SimpleProxyId<?> id : ids) {
       Class<?> domainClass = service.resolveDomainClass(id.getProxyClass());
@@ -246,7 +258,10 @@ class RequestState implements EntityCodex.EntitySource {
         AutoBean<? extends BaseProxy> bean = createProxyBean(id, domain);
         beans.put(id, bean);
         domainObjectsToId.put(domain, id);
-      } else {
+      } else if (loadedDomainObjects.containsKey(id)) {
+        // Loaded by another state of this request
+        createProxyBean(id, loadedDomainObjects.get(id));
+      } else if (queued.add(id)) {
         // Decode the domain parameter
         Splittable split = StringQuoter.split(id.getServerId());
         Class<?> param = service.getIdType(domainClass);
@@ -276,6 +291,7 @@ class RequestState implements EntityCodex.EntitySource {
       Iterator<Object> itLoaded = loaded.iterator();
       for (SimpleProxyId<?> id : idsToLoad) {
         Object domain = itLoaded.next();
+        loadedDomainObjects.put(id, domain);
         domainObjectsToId.put(domain, id);
         AutoBean<? extends BaseProxy> bean = createProxyBean(id, domain);
         beans.put(id, bean);
@@ -54,6 +54,9 @@ public abstract class ServiceLayer {
   /**
    * Create a RequestFactory ServiceLayer that is optionally modified by the
    * given decorators.
+   * <p>
+   * The ServiceLayer caches the results of its idempotent methods, so a single
+   * instance should be reused for all requests rather than created per request.
    * 
    * @param decorators the decorators that will modify the behavior of the core
    *          service layer implementation
@@ -102,6 +105,20 @@ public abstract class ServiceLayer {
   ServiceLayer() {
   }
 
+  /**
+   * Returns values indicating which of several domain objects are still live in
+   * the backing store. This method is intended to allow all of the entities
+   * referenced in an outgoing payload to be checked at once.
+   * <p>
+   * The default implementation of this method will delegate to
+   * {@link #isLive(Object)}.
+   * 
+   * @param domainObjects the domain entities to check
+   * @return one value per domain entity, in the same order as
+   *         {@code domainObjects}
+   */
+  public abstract List<Boolean> areLive(List<Object> domainObjects);
+
   /**
    * Create an instance of the requested domain type.
    * 
@@ -21,17 +21,22 @@ import com.google.web.bindery.requestfactory.shared.RequestContext;
 import com.google.web.bindery.requestfactory.shared.RequestFactory;
 import com.google.web.bindery.requestfactory.shared.ServiceLocator;
 
-import java.lang.ref.SoftReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A cache for idempotent methods in {@link ServiceLayer}. The caching is
  * separate from {@link ReflectiveServiceLayer} so that the cache can be applied
  * to any decorators injected by the user.
+ * <p>
+ * Each ServiceLayer chain has its own cache, which lives as long as the chain
+ * does (typically as long as the servlet that created it) and is never dropped
+ * under memory pressure. It is bounded so that payloads naming arbitrary
+ * properties can't make it grow without limit.
  */
 class ServiceLayerCache extends ServiceLayerDecorator {
 
@@ -41,7 +46,12 @@ class ServiceLayerCache extends ServiceLayerDecorator {
    */
   private static final Object NULL_MARKER = new Object();
 
-  private static SoftReference<Map<Method, Map<Object, Object>>> methodCache;
+  /**
+   * The most values that will be cached for any one method. Well-formed
+   * payloads only refer to a fixed set of types, operations and properties, so
+   * this is only reached by bad ones.
+   */
+  private static final int MAX_CACHED_VALUES = 10000;
 
   private static final Method createLocator;
   private static final Method createServiceInstance;
@@ -85,15 +95,6 @@ class ServiceLayerCache extends ServiceLayerDecorator {
     resolveTypeToken = getMethod("resolveTypeToken", Class.class);
   }
 
-  private static Map<Method, Map<Object, Object>> getCache() {
-    Map<Method, Map<Object, Object>> toReturn = methodCache == null ? null : methodCache.get();
-    if (toReturn == null) {
-      toReturn = new ConcurrentHashMap<Method, Map<Object, Object>>();
-      methodCache = new SoftReference<Map<Method, Map<Object, Object>>>(toReturn);
-    }
-    return toReturn;
-  }
-
   private static Method getMethod(String name, Class<?>... argTypes) {
     try {
       return ServiceLayer.class.getMethod(name, argTypes);
@@ -104,7 +105,8 @@ class ServiceLayerCache extends ServiceLayerDecorator {
     }
   }
 
-  private final Map<Method, Map<Object, Object>> methodMap = getCache();
+  private final ConcurrentMap<Method, Map<Object, Object>> methodMap =
+      new ConcurrentHashMap<Method, Map<Object, Object>>();
 
   @Override
   public <T extends Locator<?, ?>> T createLocator(Class<T> clazz) {
@@ -219,7 +221,10 @@ class ServiceLayerCache extends ServiceLayerDecorator {
     Map<Object, Object> map = methodMap.get(method);
     if (map == null) {
       map = new ConcurrentHashMap<Object, Object>();
-      methodMap.put(method, map);
+      Map<Object, Object> existing = methodMap.putIfAbsent(method, map);
+      if (existing != null) {
+        map = existing;
+      }
     }
     Object raw = map.get(key);
     if (raw == NULL_MARKER) {
@@ -230,7 +235,9 @@ class ServiceLayerCache extends ServiceLayerDecorator {
       Throwable ex = null;
       try {
         toReturn = valueType.cast(method.invoke(getNext(), args));
-        map.put(key, toReturn == null ? NULL_MARKER : toReturn);
+        if (map.size() < MAX_CACHED_VALUES) {
+          map.put(key, toReturn == null ? NULL_MARKER : toReturn);
+        }
       } catch (InvocationTargetException e) {
         // The next layer threw an exception
         Throwable cause = e.getCause();
@@ -46,6 +46,11 @@ public class ServiceLayerDecorator extends ServiceLayer {
    */
   ServiceLayer next;
 
+  @Override
+  public List<Boolean> areLive(List<Object> domainObjects) {
+    return getNext().areLive(domainObjects);
+  }
+
   @Override
   public <T> T createDomainObject(Class<T> clazz) {
     return getNext().createDomainObject(clazz);
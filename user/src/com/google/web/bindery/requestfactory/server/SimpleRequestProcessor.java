@@ -24,6 +24,7 @@ import com.google.web.bindery.autobean.shared.Splittable;
 import com.google.web.bindery.autobean.shared.ValueCodex;
 import com.google.web.bindery.autobean.vm.AutoBeanFactorySource;
 import com.google.web.bindery.autobean.vm.Configuration;
+import com.google.web.bindery.autobean.vm.impl.JsonSplittable;
 import com.google.web.bindery.autobean.vm.impl.TypeUtils;
 import com.google.web.bindery.requestfactory.shared.BaseProxy;
 import com.google.web.bindery.requestfactory.shared.EntityProxyId;
@@ -48,13 +49,16 @@ import com.google.web.bindery.requestfactory.shared.messages.ResponseMessage;
 import com.google.web.bindery.requestfactory.shared.messages.ServerFailureMessage;
 import com.google.web.bindery.requestfactory.shared.messages.ViolationMessage;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -129,6 +133,33 @@ public class SimpleRequestProcessor {
    * @return a payload to return to the client
    */
   public String process(String payload) {
+    // Return a JSON-formatted payload
+    return AutoBeanCodex.encode(processToResponse(payload)).getPayload();
+  }
+
+  /**
+   * Process a payload sent by a RequestFactory client, writing the response to {@code out}
+   * rather than building it as a String. Nothing is written if processing fails with an
+   * exception.
+   *
+   * @param payload the payload sent by the client
+   * @param out receives the payload to return to the client
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void process(String payload, Writer out) throws IOException {
+    Splittable response = AutoBeanCodex.encode(processToResponse(payload));
+    if (response instanceof JsonSplittable) {
+      ((JsonSplittable) response).writePayload(out);
+    } else {
+      out.write(response.getPayload());
+    }
+  }
+
+  public void setExceptionHandler(ExceptionHandler exceptionHandler) {
+    this.exceptionHandler = exceptionHandler;
+  }
+
+  private AutoBean<ResponseMessage> processToResponse(String payload) {
     RequestMessage req = AutoBeanCodex.decode(FACTORY, RequestMessage.class, payload).as();
     AutoBean<ResponseMessage> responseBean = FACTORY.response();
     try {
@@ -138,12 +169,7 @@ public class SimpleRequestProcessor {
       responseBean = FACTORY.response();
       responseBean.as().setGeneralFailure(createFailureMessage(e).as());
     }
-    // Return a JSON-formatted payload
-    return AutoBeanCodex.encode(responseBean).getPayload();
-  }
-
-  public void setExceptionHandler(ExceptionHandler exceptionHandler) {
-    this.exceptionHandler = exceptionHandler;
+    return responseBean;
   }
 
   /**
@@ -263,12 +289,12 @@ public class SimpleRequestProcessor {
 
   private void createReturnOperations(List<OperationMessage> operations, RequestState returnState,
       IdToEntityMap toProcess) {
+    // Find the persistent entities and check whether they are still live in one call
+    List<Object> toCheck = new ArrayList<Object>();
+    Map<Object, Boolean> liveness = new IdentityHashMap<Object, Boolean>();
     for (Map.Entry<SimpleProxyId<?>, AutoBean<? extends BaseProxy>> entry : toProcess.entrySet()) {
       SimpleProxyId<?> id = entry.getKey();
-
-      AutoBean<? extends BaseProxy> bean = entry.getValue();
-      Object domainObject = bean.getTag(Constants.DOMAIN_OBJECT);
-      WriteOperation writeOperation;
+      Object domainObject = entry.getValue().getTag(Constants.DOMAIN_OBJECT);
 
       if (id.isEphemeral() && returnState.isEntityType(id.getProxyClass())) {
         // See if the entity has been persisted in the meantime
@@ -276,10 +302,33 @@ public class SimpleRequestProcessor {
             Collections.<String> emptySet());
       }
 
+      if (!id.isEphemeral() && !id.isSynthetic() && domainObject != null
+          && liveness.put(domainObject, Boolean.FALSE) == null) {
+        toCheck.add(domainObject);
+      }
+    }
+    if (!toCheck.isEmpty()) {
+      List<Boolean> live = service.areLive(toCheck);
+      if (live.size() != toCheck.size()) {
+        throw new UnexpectedException("Expected " + toCheck.size()
+            + " liveness values, got " + live.size(), null);
+      }
+      for (int i = 0, j = toCheck.size(); i < j; i++) {
+        liveness.put(toCheck.get(i), live.get(i));
+      }
+    }
+
+    for (Map.Entry<SimpleProxyId<?>, AutoBean<? extends BaseProxy>> entry : toProcess.entrySet()) {
+      SimpleProxyId<?> id = entry.getKey();
+
+      AutoBean<? extends BaseProxy> bean = entry.getValue();
+      Object domainObject = bean.getTag(Constants.DOMAIN_OBJECT);
+      WriteOperation writeOperation;
+
       if (id.isEphemeral() || id.isSynthetic() || domainObject == null) {
         // If the object isn't persistent, there's no reason to send an update
         writeOperation = null;
-      } else if (!service.isLive(domainObject)) {
+      } else if (!Boolean.TRUE.equals(liveness.get(domainObject))) {
         writeOperation = WriteOperation.DELETE;
       } else if (id.wasEphemeral()) {
         writeOperation = WriteOperation.PERSIST;
@@ -15,6 +15,9 @@
  */
 package com.google.web.bindery.requestfactory.shared;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A Locator allows entity types that do not conform to the RequestFactory
  * entity protocol to be used. Instead of attempting to use a {@code findFoo()},
@@ -32,6 +35,25 @@ package com.google.web.bindery.requestfactory.shared;
  * @see ProxyFor#locator()
  */
 public abstract class Locator<T, I> {
+  /**
+   * Returns values indicating which of several domain objects are still
+   * accessible, as {@link #isLive(Object)} would for each of them.
+   * <p>
+   * The default implementation of this method calls {@link #isLive(Object)}
+   * once per object. The RequestFactory service layer only calls this method
+   * for Locators that override it.
+   * 
+   * @param domainObjects the objects to check
+   * @return one value per object, in the same order as {@code domainObjects}
+   */
+  public List<Boolean> areLive(List<T> domainObjects) {
+    List<Boolean> toReturn = new ArrayList<Boolean>(domainObjects.size());
+    for (T domainObject : domainObjects) {
+      toReturn.add(isLive(domainObject));
+    }
+    return toReturn;
+  }
+
   /**
    * Create a new instance of the requested type.
    * 
@@ -50,6 +72,29 @@ public abstract class Locator<T, I> {
    */
   public abstract T find(Class<? extends T> clazz, I id);
 
+  /**
+   * Retrieve several objects of the same type at once, so that they can be
+   * fetched from the backing store in a single round-trip. Elements of the
+   * returned list may be {@code null} to indicate that the corresponding object
+   * could not be found.
+   * <p>
+   * The default implementation of this method calls
+   * {@link #find(Class, Object)} once per id. The RequestFactory service layer
+   * only calls this method for Locators that override it; the ids of other
+   * Locators are loaded one at a time.
+   * 
+   * @param clazz the type of objects to retrieve
+   * @param ids ids previously returned from {@link #getId(Object)}
+   * @return the requested objects, in the same order as {@code ids}
+   */
+  public List<T> findAll(Class<? extends T> clazz, List<I> ids) {
+    List<T> toReturn = new ArrayList<T>(ids.size());
+    for (I id : ids) {
+      toReturn.add(find(clazz, id));
+    }
+    return toReturn;
+  }
+
   /**
    * Returns the {@code T} type.
    */
@@ -17,6 +17,7 @@ package com.google.gwt.core;
 
 import com.google.gwt.core.client.impl.AsyncFragmentLoaderTest;
 import com.google.gwt.core.client.testing.StubSchedulerTest;
+import com.google.gwt.core.server.BoundedSymbolCacheTest;
 import com.google.gwt.dev.StrictModeTest;
 import com.google.gwt.lang.RuntimePropertyRegistryTest;
 
@@ -30,6 +31,7 @@ public class CoreJreSuite {
   public static Test suite() {
     TestSuite suite = new TestSuite("All core tests");
     suite.addTestSuite(AsyncFragmentLoaderTest.class);
+    suite.addTestSuite(BoundedSymbolCacheTest.class);
     suite.addTestSuite(RuntimePropertyRegistryTest.class);
     suite.addTestSuite(StrictModeTest.class);
     suite.addTestSuite(StubSchedulerTest.class);
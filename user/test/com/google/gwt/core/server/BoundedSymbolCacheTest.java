@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.server;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link BoundedSymbolCache}.
+ */
+public class BoundedSymbolCacheTest extends TestCase {
+
+  private static final String SYMBOL_MAP = "# jsName, jsniIdent, className, memberName, "
+      + "sourceUri, sourceLine, fragmentNumber\n"
+      + "a,com.example.Foo::bar(),com.example.Foo,bar,com/example/Foo.java,10,0\n"
+      + "b,com.example.Foo::baz(),com.example.Foo,baz,com/example/Foo.java,20,0\n";
+
+  public void testHitsAndMisses() {
+    BoundedSymbolCache cache = new BoundedSymbolCache(1000);
+    cache.putAll("S1", Collections.singletonMap("a", "dataA"));
+
+    Map<String, String> found = cache.getAll("S1", setOf("a", "b"));
+    assertEquals(1, found.size());
+    assertEquals("dataA", found.get("a"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    // Symbols are cached per strong name.
+    assertTrue(cache.getAll("S2", setOf("a")).isEmpty());
+    assertTrue(cache.getAll(null, setOf("a")).isEmpty());
+  }
+
+  public void testEviction() {
+    // Each entry weighs 2 characters, so only two fit.
+    BoundedSymbolCache cache = new BoundedSymbolCache(4);
+    Map<String, String> symbols = new HashMap<String, String>();
+    symbols.put("a", "1");
+    symbols.put("b", "2");
+    symbols.put("c", "3");
+    cache.putAll("S1", symbols);
+
+    assertTrue(cache.size() <= 2);
+    assertTrue(cache.getEvictionCount() >= 1);
+    assertEquals(cache.size(), cache.getAll("S1", setOf("a", "b", "c")).size());
+  }
+
+  public void testDeobfuscatorUsesCache() {
+    final int[] opened = new int[1];
+    StackTraceDeobfuscator deobfuscator = new StackTraceDeobfuscator() {
+      @Override
+      protected InputStream openInputStream(String fileName) throws IOException {
+        opened[0]++;
+        return new ByteArrayInputStream(SYMBOL_MAP.getBytes("UTF-8"));
+      }
+    };
+    BoundedSymbolCache cache = new BoundedSymbolCache(1000);
+    deobfuscator.setSymbolCache(cache);
+    deobfuscator.setLazyLoad(true);
+
+    StackTraceElement ste = new StackTraceElement("Unknown", "a", "S1.cache.js", 3);
+    StackTraceElement resymbolized = deobfuscator.resymbolize(ste, "S1");
+    assertEquals("com.example.Foo", resymbolized.getClassName());
+    assertEquals("bar", resymbolized.getMethodName());
+    assertEquals(1, opened[0]);
+
+    deobfuscator.resymbolize(ste, "S1");
+    assertEquals(1, opened[0]);
+    assertEquals(1, cache.size());
+  }
+
+  private static Set<String> setOf(String... values) {
+    Set<String> set = new HashSet<String>();
+    Collections.addAll(set, values);
+    return set;
+  }
+}
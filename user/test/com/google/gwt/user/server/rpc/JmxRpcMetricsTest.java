@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc;
+
+import com.google.gwt.user.client.rpc.RemoteService;
+import com.google.gwt.user.server.rpc.RpcCallStats.Phase;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+/**
+ * Tests {@link JmxRpcMetrics} and its {@link LatencyHistogram}.
+ */
+public class JmxRpcMetricsTest extends TestCase {
+
+  private interface EchoService extends RemoteService {
+    String echo(String value);
+
+    String echo(String[][] values, int times);
+  }
+
+  private MBeanServer server;
+
+  public void testHistogramBuckets() {
+    long[] values = {0, 1, 3, 4, 5, 7, 8, 9, 100, 1000, 123456789, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      assertTrue(value + " is above its bucket", value <= LatencyHistogram.upperBound(bucket));
+      if (bucket > 0) {
+        assertTrue(value + " fits the previous bucket",
+            value > LatencyHistogram.upperBound(bucket - 1));
+      }
+      assertTrue(value + " is in a bucket that is too wide",
+          LatencyHistogram.upperBound(bucket) - value <= Math.max(1, value / 4));
+    }
+  }
+
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(50));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(50.5, histogram.getMean());
+    long median = histogram.getPercentile(50);
+    assertTrue(median >= 50 && median <= 50 * 5 / 4);
+    long p99 = histogram.getPercentile(99);
+    assertTrue(p99 >= 99 && p99 <= 99 * 5 / 4);
+  }
+
+  public void testRecordsPerMethod() throws Exception {
+    JmxRpcMetrics metrics = new JmxRpcMetrics("/app", "test", server);
+    Method echo = EchoService.class.getMethod("echo", String.class);
+
+    RpcCallStats first = new RpcCallStats();
+    first.setMethod(echo);
+    first.setPolicyStrongName("ABCD");
+    first.setRequestBytes(100);
+    first.setResponseBytes(40);
+    first.endPhase(Phase.READ);
+    metrics.onCall(first);
+
+    RpcCallStats second = new RpcCallStats();
+    second.setMethod(echo);
+    second.setServiceException();
+    second.setResponseBytes(-1);
+    metrics.onCall(second);
+
+    RpcCallStats undecoded = new RpcCallStats();
+    undecoded.setFailed();
+    metrics.onCall(undecoded);
+
+    RpcMethodMetricsMXBean echoMetrics =
+        metrics.getMethodMetrics(EchoService.class.getName() + "::echo(Ljava/lang/String;)");
+    assertEquals(2, echoMetrics.getCalls());
+    assertEquals(0, echoMetrics.getFailures());
+    assertEquals(1, echoMetrics.getServiceExceptions());
+    assertEquals(100, echoMetrics.getRequestBytes());
+    assertEquals(40, echoMetrics.getResponseBytes());
+    assertEquals("ABCD", echoMetrics.getLastPolicyStrongName());
+    assertEquals(Phase.values().length, echoMetrics.getMeanPhaseMillis().size());
+
+    RpcMethodMetricsMXBean undecodedMetrics =
+        metrics.getMethodMetrics(JmxRpcMetrics.UNDECODED_METHOD);
+    assertEquals(1, undecodedMetrics.getCalls());
+    assertEquals(1, undecodedMetrics.getFailures());
+  }
+
+  public void testSeparatesOverloads() throws Exception {
+    JmxRpcMetrics metrics = new JmxRpcMetrics("/app", "test", server);
+    Method overload = EchoService.class.getMethod("echo", String[][].class, int.class);
+    String signature = EchoService.class.getName() + "::echo([[Ljava/lang/String;I)";
+    assertEquals(signature, JmxRpcMetrics.getSignature(overload));
+
+    RpcCallStats call = new RpcCallStats();
+    call.setMethod(overload);
+    metrics.onCall(call);
+    assertEquals(1, metrics.getMethodMetrics(signature).getCalls());
+    assertNull(
+        metrics.getMethodMetrics(EchoService.class.getName() + "::echo(Ljava/lang/String;)"));
+  }
+
+  public void testRegistersMXBeans() throws Exception {
+    JmxRpcMetrics metrics = new JmxRpcMetrics("/app", "test", server);
+    RpcCallStats call = new RpcCallStats();
+    call.setMethod(EchoService.class.getMethod("echo", String.class));
+    metrics.onCall(call);
+    metrics.onCall(call);
+
+    Set<ObjectName> names =
+        server.queryNames(new ObjectName("com.google.gwt.user.server.rpc:*"), null);
+    assertEquals(1, names.size());
+    ObjectName name = names.iterator().next();
+    assertEquals("\"/app\"", name.getKeyProperty("context"));
+    assertEquals("\"test\"", name.getKeyProperty("servlet"));
+    assertEquals(2L, server.getAttribute(name, "Calls"));
+
+    metrics.unregister();
+    assertTrue(server.queryNames(new ObjectName("com.google.gwt.user.server.rpc:*"), null)
+        .isEmpty());
+
+    // Methods first called after unregistering are not published.
+    call.setMethod(EchoService.class.getMethod("echo", String[][].class, int.class));
+    metrics.onCall(call);
+    assertTrue(server.queryNames(new ObjectName("com.google.gwt.user.server.rpc:*"), null)
+        .isEmpty());
+  }
+
+  public void testSeparatesContexts() throws Exception {
+    JmxRpcMetrics first = new JmxRpcMetrics("/first", "test", server);
+    JmxRpcMetrics second = new JmxRpcMetrics("/second", "test", server);
+    RpcCallStats call = new RpcCallStats();
+    call.setMethod(EchoService.class.getMethod("echo", String.class));
+    first.onCall(call);
+    second.onCall(call);
+
+    // The same servlet in two web applications registers two MXBeans.
+    assertEquals(2,
+        server.queryNames(new ObjectName("com.google.gwt.user.server.rpc:*"), null).size());
+    first.unregister();
+    Set<ObjectName> names =
+        server.queryNames(new ObjectName("com.google.gwt.user.server.rpc:*"), null);
+    assertEquals(1, names.size());
+    assertEquals("\"/second\"", names.iterator().next().getKeyProperty("context"));
+    second.unregister();
+  }
+
+  @Override
+  protected void setUp() {
+    server = MBeanServerFactory.newMBeanServer();
+  }
+}
@@ -29,7 +29,9 @@ import com.google.gwt.user.server.rpc.impl.TypeNameObfuscator;
 
 import junit.framework.TestCase;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.util.Set;
 
@@ -849,6 +851,66 @@ public class RPCTest extends TestCase {
     }, A_method1, null);
   }
 
+  /**
+   * Tests that serialized responses render to the same text as encoded ones,
+   * whether converted to a string or written to a writer.
+   */
+  public void testSerializeResponse() throws SecurityException, NoSuchMethodException,
+      SerializationException, IOException {
+    Method A_method1 = A.class.getMethod("method1");
+    Method A_method2 = A.class.getMethod("method2");
+    SerializationPolicy policy = RPC.getDefaultSerializationPolicy();
+    int flags = AbstractSerializationStream.DEFAULT_FLAGS;
+
+    RPCResponse success = RPC.serializeResponseForSuccess(A_method2, 42, policy, flags);
+    assertFalse(success.wasThrown());
+    assertEquals(RPC.encodeResponseForSuccess(A_method2, 42, policy, flags),
+        success.toString());
+    StringWriter writer = new StringWriter();
+    success.writeTo(writer);
+    assertEquals(success.toString(), writer.toString());
+
+    RPCResponse failure = RPC.serializeResponseForFailure(A_method1,
+        new SerializableException(), policy, flags);
+    assertTrue(failure.wasThrown());
+    assertTrue(failure.toString().startsWith("//EX"));
+    assertTrue(failure.toString().indexOf("SerializableException") != -1);
+  }
+
+  public void testSerializationStreamNumbers() throws SerializationException {
+    ServerSerializationStreamReader reader = new ServerSerializationStreamReader(null, null);
+    reader.prepareToRead("" + AbstractSerializationStream.SERIALIZATION_STREAM_VERSION
+        + RPC_SEPARATOR_CHAR + "0" + RPC_SEPARATOR_CHAR // flags
+        + "0" + RPC_SEPARATOR_CHAR // string table entry count
+        + "0" + RPC_SEPARATOR_CHAR + "0" + RPC_SEPARATOR_CHAR // module base URL, strong name
+        + "-2147483648" + RPC_SEPARATOR_CHAR + "2147483647" + RPC_SEPARATOR_CHAR
+        + "-0" + RPC_SEPARATOR_CHAR + "+12" + RPC_SEPARATOR_CHAR
+        + "-128" + RPC_SEPARATOR_CHAR + "-32768" + RPC_SEPARATOR_CHAR
+        + "0" + RPC_SEPARATOR_CHAR + "1" + RPC_SEPARATOR_CHAR
+        + "200" + RPC_SEPARATOR_CHAR + "trailing");
+    assertEquals(14, reader.getNumberOfTokens());
+    assertEquals(Integer.MIN_VALUE, reader.readInt());
+    assertEquals(Integer.MAX_VALUE, reader.readInt());
+    assertEquals(0, reader.readInt());
+    assertEquals(12, reader.readInt());
+    assertEquals(Byte.MIN_VALUE, reader.readByte());
+    assertEquals(Short.MIN_VALUE, reader.readShort());
+    assertFalse(reader.readBoolean());
+    assertTrue(reader.readBoolean());
+    try {
+      reader.readByte();
+      fail("Expected NumberFormatException");
+    } catch (NumberFormatException e) {
+      assertTrue(e.getMessage().contains("out-of-range"));
+    }
+    try {
+      reader.readInt();
+      fail("Expected SerializationException");
+    } catch (SerializationException e) {
+      // Expected: the text after the last separator is not a token
+    }
+  }
+
   public void testSerializationStreamDequote() throws SerializationException {
     ServerSerializationStreamReader reader = new ServerSerializationStreamReader(
         null, null);
@@ -16,21 +16,34 @@
 package com.google.gwt.user.server.rpc;
 
 import com.google.gwt.user.client.rpc.IsSerializable;
+import com.google.gwt.user.client.rpc.RemoteService;
 import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.impl.StandardSerializationPolicy;
 
 import junit.framework.TestCase;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.EventListener;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.Filter;
 import javax.servlet.FilterRegistration;
 import javax.servlet.FilterRegistration.Dynamic;
@@ -39,19 +52,32 @@ import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.SessionCookieConfig;
 import javax.servlet.SessionTrackingMode;
 import javax.servlet.descriptor.JspConfigDescriptor;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * Test some of the failure modes associated with
  * {@link RemoteServiceServlet#doGetSerializationPolicy(HttpServletRequest, String, String)}.
- * 
- * TODO: test caching of policies?
  */
 public class RemoteServiceServletTest extends TestCase {
 
+  /**
+   * Long enough to be compressed by default.
+   */
+  private static final String LONG_ANSWER = new String(new char[300]).replace('\0', 'x');
+
+  private static final String LONG_ANSWER_PAYLOAD = "7|0|4|http://www.google.com/MyModule/|"
+      + "POLICY|" + RemoteServiceServletTest.class.getName() + "$AnswerService|getLongAnswer|"
+      + "1|2|3|4|0|";
+
   private static class Bar implements Serializable {
   }
 
@@ -71,15 +97,190 @@ public class RemoteServiceServletTest extends TestCase {
     }
   }
 
+  /**
+   * A request that can be processed asynchronously and records the calls made
+   * to its AsyncContext.
+   */
+  private static class MockAsyncHttpServletRequest extends MockHttpServletRequest {
+    private final boolean asyncSupported;
+    private final StringBuilder asyncCalls = new StringBuilder();
+
+    MockAsyncHttpServletRequest(boolean asyncSupported) {
+      this.asyncSupported = asyncSupported;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+      return asyncSupported;
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+      assertSame(this, request);
+      asyncCalls.append("start ");
+      return (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] {AsyncContext.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+              asyncCalls.append(method.getName()).append(' ');
+              return null;
+            }
+          });
+    }
+  }
+
+  /**
+   * Records the thread-local request seen by processPost and queues requests
+   * on an executor that runs them when asked to.
+   */
+  private static class AsyncRemoteServiceServlet extends AbstractRemoteServiceServlet {
+    private final StringBuilder events = new StringBuilder();
+    private Runnable queued;
+
+    @Override
+    protected Executor getAsyncExecutor() {
+      return new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          events.append("queued ");
+          queued = command;
+        }
+      };
+    }
+
+    @Override
+    protected void processPost(HttpServletRequest request, HttpServletResponse response) {
+      assertSame(request, getThreadLocalRequest());
+      events.append("processed ");
+    }
+  }
+
+  /**
+   * A service whose calls are measured.
+   */
+  public interface AnswerService extends RemoteService {
+    int getAnswer();
+
+    String getLongAnswer();
+  }
+
+  /**
+   * Implements {@link AnswerService} without reading policy files.
+   */
+  private static class AnswerServlet extends CountingRemoteServiceServlet
+      implements AnswerService {
+    @Override
+    public int getAnswer() {
+      return 42;
+    }
+
+    @Override
+    public String getLongAnswer() {
+      return LONG_ANSWER;
+    }
+  }
+
+  /**
+   * An {@link AnswerServlet} that never compresses its responses.
+   */
+  private static class UncompressedAnswerServlet extends AnswerServlet {
+    @Override
+    protected boolean shouldCompressResponse(HttpServletRequest request,
+        HttpServletResponse response, String responsePayload) {
+      return false;
+    }
+  }
+
+  /**
+   * An {@link AnswerServlet} that records the payloads it is asked to compress
+   * and defers to the default decision.
+   */
+  private static class RecordingAnswerServlet extends AnswerServlet {
+    final List<String> payloads = new ArrayList<String>();
+
+    @Override
+    protected boolean shouldCompressResponse(HttpServletRequest request,
+        HttpServletResponse response, String responsePayload) {
+      payloads.add(responsePayload);
+      return super.shouldCompressResponse(request, response, responsePayload);
+    }
+  }
+
+  /**
+   * A GWT-RPC POST of a given payload.
+   */
+  private static class MockRpcRequest extends MockHttpServletRequest {
+    private final byte[] content;
+
+    MockRpcRequest(String payload) throws UnsupportedEncodingException {
+      content = payload.getBytes("UTF-8");
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+      return "UTF-8";
+    }
+
+    @Override
+    public int getContentLength() {
+      return content.length;
+    }
+
+    @Override
+    public String getContentType() {
+      return "text/x-gwt-rpc; charset=utf-8";
+    }
+
+    @Override
+    public String getHeader(String name) {
+      if ("Accept-Encoding".equals(name)) {
+        return "gzip";
+      }
+      return "X-GWT-Permutation".equals(name) ? "permutation" : null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      final InputStream in = new ByteArrayInputStream(content);
+      return new ServletInputStream() {
+        @Override
+        public int read() throws IOException {
+          return in.read();
+        }
+      };
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+      return false;
+    }
+  }
+
+  /**
+   * Counts policy loads instead of reading policy files.
+   */
+  private static class CountingRemoteServiceServlet extends RemoteServiceServlet {
+    private int loads;
+
+    @Override
+    protected SerializationPolicy doGetSerializationPolicy(HttpServletRequest request,
+        String moduleBaseURL, String strongName) {
+      loads++;
+      return new StandardSerializationPolicy(new HashMap<Class<?>, Boolean>(),
+          new HashMap<Class<?>, Boolean>(), new HashMap<Class<?>, String>());
+    }
+  }
+
   private static class MockServletConfig implements ServletConfig {
     private ServletContext context;
+    private final Map<String, String> initParameters = new HashMap<String, String>();
 
     public MockServletConfig(ServletContext context) {
       this.context = context;
     }
 
     public String getInitParameter(String arg0) {
-      throw new UnsupportedOperationException();
+      return initParameters.get(arg0);
     }
 
     public Enumeration<String> getInitParameterNames() {
@@ -114,11 +315,11 @@ public class RemoteServiceServletTest extends TestCase {
     }
 
     public String getContextPath() {
-      throw new UnsupportedOperationException();
+      return "";
     }
 
     public String getInitParameter(String arg0) {
-      throw new UnsupportedOperationException();
+      return null;
     }
 
     public Enumeration<String> getInitParameterNames() {
@@ -306,6 +507,79 @@ public class RemoteServiceServletTest extends TestCase {
     }
   }
 
+  public void testDoPost_Async() {
+    AsyncRemoteServiceServlet servlet = new AsyncRemoteServiceServlet();
+    MockAsyncHttpServletRequest request = new MockAsyncHttpServletRequest(true);
+    servlet.doPost(request, null);
+    assertEquals("queued ", servlet.events.toString());
+    assertEquals("start setTimeout ", request.asyncCalls.toString());
+
+    servlet.queued.run();
+    assertEquals("queued processed ", servlet.events.toString());
+    assertEquals("start setTimeout complete ", request.asyncCalls.toString());
+    assertNull(servlet.getThreadLocalRequest());
+  }
+
+  public void testDoPost_AsyncNotSupported() {
+    AsyncRemoteServiceServlet servlet = new AsyncRemoteServiceServlet();
+    MockAsyncHttpServletRequest request = new MockAsyncHttpServletRequest(false);
+    servlet.doPost(request, null);
+    assertEquals("processed ", servlet.events.toString());
+    assertEquals("", request.asyncCalls.toString());
+  }
+
+  public void testDoPost_Metrics() throws Exception {
+    MockServletConfig config = new MockServletConfig(new MockServletContext());
+    config.initParameters.put(RemoteServiceServlet.RPC_METRICS_JMX_PARAM, "true");
+    AnswerServlet servlet = new AnswerServlet();
+    servlet.init(config);
+
+    String payload = "7|0|4|http://www.google.com/MyModule/|POLICY|"
+        + AnswerService.class.getName() + "|getAnswer|1|2|3|4|0|";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      servlet.doPost(new MockRpcRequest(payload), createResponse(out));
+      assertEquals("//OK[42,[],0,7]", out.toString("UTF-8"));
+
+      RpcMethodMetricsMXBean metrics = ((JmxRpcMetrics) servlet.getRpcMetrics())
+          .getMethodMetrics(AnswerService.class.getName() + "::getAnswer()");
+      assertEquals(1, metrics.getCalls());
+      assertEquals(0, metrics.getFailures());
+      assertEquals(payload.length(), metrics.getRequestBytes());
+      assertEquals(out.size(), metrics.getResponseBytes());
+      assertEquals("POLICY", metrics.getLastPolicyStrongName());
+      assertEquals("[READ, DECODE, INVOKE, ENCODE, GZIP, WRITE]",
+          metrics.getMeanPhaseMillis().keySet().toString());
+    } finally {
+      servlet.destroy();
+    }
+  }
+
+  public void testDoPost_Streamed() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    createStreamingServlet(new AnswerServlet()).doPost(
+        new MockRpcRequest(LONG_ANSWER_PAYLOAD), createResponse(out));
+    byte[] bytes = out.toByteArray();
+    assertEquals((byte) 0x1f, bytes[0]);
+    assertEquals((byte) 0x8b, bytes[1]);
+  }
+
+  public void testDoPost_StreamedWithoutCompression() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    createStreamingServlet(new UncompressedAnswerServlet()).doPost(
+        new MockRpcRequest(LONG_ANSWER_PAYLOAD), createResponse(out));
+    assertEquals("//OK[1,[\"" + LONG_ANSWER + "\"],0,7]", out.toString("UTF-8"));
+  }
+
+  public void testDoPost_StreamedAsksWithNullPayload() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RecordingAnswerServlet servlet = new RecordingAnswerServlet();
+    createStreamingServlet(servlet).doPost(
+        new MockRpcRequest(LONG_ANSWER_PAYLOAD), createResponse(out));
+    assertEquals(Collections.singletonList((String) null), servlet.payloads);
+    assertEquals((byte) 0x1f, out.toByteArray()[0]);
+  }
+
   public void testDoGetSerializationPolicy_FailToOpenMD5Resource()
       throws ServletException {
     MockServletContext mockContext = new MockServletContext() {
@@ -403,6 +677,47 @@ public class RemoteServiceServletTest extends TestCase {
     assertNotValidDeserialize(serializationPolicy, Baz.class);
   }
 
+  public void testGetSerializationPolicy_Cached() throws ServletException {
+    CountingRemoteServiceServlet rss = new CountingRemoteServiceServlet();
+    rss.init(new MockServletConfig(new MockServletContext()));
+
+    SerializationPolicy first = rss.getSerializationPolicy("http://www.google.com/MyModule/", "1");
+    SerializationPolicy second = rss.getSerializationPolicy("http://www.google.com/MyModule/", "1");
+    assertSame(first, second);
+    assertEquals(1, rss.loads);
+
+    rss.getSerializationPolicy("http://www.google.com/MyModule/", "2");
+    assertEquals(2, rss.loads);
+
+    SerializationPolicyCache cache = rss.getSerializationPolicyCache();
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.size());
+  }
+
+  public void testGetSerializationPolicy_BoundedCache() throws ServletException {
+    MockServletConfig mockConfig = new MockServletConfig(new MockServletContext());
+    mockConfig.initParameters.put(RemoteServiceServlet.POLICY_CACHE_MAX_ENTRIES_PARAM, "1");
+    CountingRemoteServiceServlet rss = new CountingRemoteServiceServlet();
+    rss.init(mockConfig);
+
+    rss.getSerializationPolicy("http://www.google.com/MyModule/", "1");
+    rss.getSerializationPolicy("http://www.google.com/MyModule/", "2");
+    rss.getSerializationPolicy("http://www.google.com/MyModule/", "1");
+    assertEquals(3, rss.loads);
+    assertEquals(1, rss.getSerializationPolicyCache().size());
+  }
+
+  public void testGetSerializationPolicy_InvalidCacheParameter() {
+    MockServletConfig mockConfig = new MockServletConfig(new MockServletContext());
+    mockConfig.initParameters.put(RemoteServiceServlet.POLICY_CACHE_TTL_SECONDS_PARAM, "-1");
+    try {
+      new CountingRemoteServiceServlet().init(mockConfig);
+      fail("Expected ServletException");
+    } catch (ServletException expected) {
+    }
+  }
+
   private void assertDeserializeFields(SerializationPolicy policy,
       Class<?> clazz) {
     assertTrue(policy.shouldDeserializeFields(clazz));
@@ -424,6 +739,38 @@ public class RemoteServiceServletTest extends TestCase {
     }
   }
 
+  /**
+   * Initializes a servlet that streams all of its responses.
+   */
+  private AnswerServlet createStreamingServlet(AnswerServlet servlet) throws ServletException {
+    MockServletConfig config = new MockServletConfig(new MockServletContext());
+    config.initParameters.put(RemoteServiceServlet.STREAMING_RESPONSE_THRESHOLD_PARAM, "1");
+    servlet.init(config);
+    return servlet;
+  }
+
+  /**
+   * Returns a response that writes its body to the given stream.
+   */
+  private HttpServletResponse createResponse(final ByteArrayOutputStream out) {
+    return (HttpServletResponse) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {HttpServletResponse.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!method.getName().equals("getOutputStream")) {
+              return null;
+            }
+            return new ServletOutputStream() {
+              @Override
+              public void write(int b) {
+                out.write(b);
+              }
+            };
+          }
+        });
+  }
+
   private void assertValidDeserialize(SerializationPolicy policy, Class<?> clazz)
       throws SerializationException {
     policy.validateDeserialize(clazz);
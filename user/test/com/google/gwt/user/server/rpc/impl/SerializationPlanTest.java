@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server.rpc.impl;
+
+import com.google.gwt.user.server.rpc.impl.SerializationPlan.FieldPlan;
+import com.google.gwt.user.server.rpc.impl.SerializationPlan.ValueKind;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link SerializationPlan}.
+ */
+public class SerializationPlanTest extends TestCase {
+
+  static class Base {
+    long id;
+  }
+
+  static class Child extends Base {
+    String name;
+    int count;
+    transient int ignored;
+    List<String> tags;
+  }
+
+  public void testCachedPerPolicy() {
+    StandardSerializationPolicy policy = createPolicy(null);
+    SerializationPlan plan = SerializationPlan.forPolicy(policy).get(Child.class);
+    assertSame(plan, SerializationPlan.forPolicy(policy).get(Child.class));
+    assertNotSame(plan, SerializationPlan.forPolicy(createPolicy(null)).get(Child.class));
+  }
+
+  /**
+   * The plans are the values of a map weakly keyed by policy, so they must not
+   * refer to their policy strongly or it would never be dropped.
+   */
+  public void testHoldsPolicyWeakly() throws IllegalAccessException {
+    Map<Class<?>, Set<String>> clientFields = new HashMap<Class<?>, Set<String>>();
+    clientFields.put(Child.class, new HashSet<String>(Collections.singleton("name")));
+    StandardSerializationPolicy policy = createPolicy(clientFields);
+    SerializationPlan.Cache plans = SerializationPlan.forPolicy(policy);
+    plans.get(Child.class).getSuperclassPlan();
+    plans.get(ArrayList.class);
+
+    assertNotReachable(policy, plans, new IdentityHashMap<Object, Boolean>());
+  }
+
+  public void testEnhancedClass() {
+    Map<Class<?>, Set<String>> clientFields = new HashMap<Class<?>, Set<String>>();
+    clientFields.put(Child.class, new HashSet<String>(Collections.singleton("name")));
+    SerializationPlan plan =
+        SerializationPlan.forPolicy(createPolicy(clientFields)).get(Child.class);
+
+    assertEquals(Collections.singletonList("name"), getFieldNames(plan));
+    assertEquals(2, plan.serverOnlyFields.length);
+    assertEquals("count", plan.serverOnlyFields[0].getName());
+    assertEquals("tags", plan.serverOnlyFields[1].getName());
+  }
+
+  public void testFields() {
+    SerializationPlan plan = SerializationPlan.forPolicy(createPolicy(null)).get(Child.class);
+
+    assertNull(plan.clientFieldNames);
+    assertNull(plan.customSerializer);
+    assertEquals(0, plan.serverOnlyFields.length);
+    assertEquals(3, plan.fields.length);
+    assertEquals(ValueKind.INT, plan.fields[0].kind);
+    assertEquals(ValueKind.STRING, plan.fields[1].kind);
+    assertEquals(ValueKind.OBJECT, plan.fields[2].kind);
+    assertEquals(List.class, plan.fields[2].type);
+    assertNull(plan.fields[0].setter);
+
+    assertTrue(plan.shouldSerializeSuperclass);
+    assertTrue(plan.shouldDeserializeSuperclass);
+    SerializationPlan superPlan = plan.getSuperclassPlan();
+    assertSame(Base.class, superPlan.instanceClass);
+    assertEquals(1, superPlan.fields.length);
+    assertEquals(ValueKind.LONG, superPlan.fields[0].kind);
+    assertFalse(superPlan.shouldSerializeSuperclass);
+    assertFalse(superPlan.shouldDeserializeSuperclass);
+  }
+
+  public void testSpecialClasses() {
+    SerializationPlan.Cache plans = SerializationPlan.forPolicy(createPolicy(null));
+
+    SerializationPlan listPlan = plans.get(ArrayList.class);
+    assertNotNull(listPlan.customSerializer);
+    assertNotNull(listPlan.serverCustomSerializer);
+    assertEquals(0, listPlan.fields.length);
+    assertEquals(1, listPlan.typeParameters.length);
+    assertFalse(listPlan.simpleClass);
+
+    assertEquals(0, plans.get(int[].class).fields.length);
+    assertEquals(0, plans.get(ValueKind.class).fields.length);
+    assertFalse(plans.get(Child.class).simpleClass);
+    assertTrue(plans.get(String.class).simpleClass);
+  }
+
+  private StandardSerializationPolicy createPolicy(Map<Class<?>, Set<String>> clientFields) {
+    Map<Class<?>, Boolean> whitelist = new HashMap<Class<?>, Boolean>();
+    whitelist.put(Base.class, Boolean.TRUE);
+    whitelist.put(Child.class, Boolean.TRUE);
+    return new StandardSerializationPolicy(whitelist, whitelist,
+        new HashMap<Class<?>, String>(), clientFields);
+  }
+
+  /**
+   * Fails if target can be reached from object through strong references
+   * between plans, their fields and their collections.
+   */
+  private void assertNotReachable(Object target, Object object, Map<Object, Boolean> seen)
+      throws IllegalAccessException {
+    if (object == null || seen.put(object, Boolean.TRUE) != null) {
+      return;
+    }
+    assertNotSame("Strong reference to the policy from " + object.getClass().getName(),
+        target, object);
+    if (object instanceof Reference || object instanceof Class) {
+      return;
+    }
+    if (object instanceof Object[]) {
+      for (Object element : (Object[]) object) {
+        assertNotReachable(target, element, seen);
+      }
+    } else if (object instanceof Map) {
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+        assertNotReachable(target, entry.getKey(), seen);
+        assertNotReachable(target, entry.getValue(), seen);
+      }
+    } else if (object instanceof Collection) {
+      for (Object element : (Collection<?>) object) {
+        assertNotReachable(target, element, seen);
+      }
+    } else if (object.getClass().getName().startsWith(SerializationPlan.class.getName())) {
+      for (Field field : object.getClass().getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          assertNotReachable(target, field.get(object), seen);
+        }
+      }
+    }
+  }
+
+  private List<String> getFieldNames(SerializationPlan plan) {
+    List<String> names = new ArrayList<String>();
+    for (FieldPlan field : plan.fields) {
+      names.add(field.name);
+    }
+    return names;
+  }
+}
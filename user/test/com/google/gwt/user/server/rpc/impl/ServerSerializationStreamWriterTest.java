@@ -18,6 +18,9 @@ package com.google.gwt.user.server.rpc.impl;
 
 import junit.framework.TestCase;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 /**
  * Tests {@link ServerSerializationStreamWriter}.
  */
@@ -146,4 +149,54 @@ public class ServerSerializationStreamWriterTest extends TestCase {
     assertEquals("7", encoded.substring(encoded.lastIndexOf(",") + 1, encoded.lastIndexOf("]")));
   }
 
+  public void testWriteTo() throws IOException {
+    ServerSerializationStreamWriter writer = new ServerSerializationStreamWriter(null, 8);
+    writer.writeString("say \"hi\"\n");
+    writer.writeString("a\\b");
+    writer.writeInt(5);
+
+    StringWriter out = new StringWriter();
+    writer.writeTo(out);
+    assertEquals("[5,2,1,[\"say \\\"hi\\\"\\n\",\"a\\\\b\"],0,8]", out.toString());
+  }
+
+  public void testWriteTo_concatenated() throws IOException {
+    StringBuilder longString = new StringBuilder(70000);
+    for (int i = 0; i < 70000; i++) {
+      longString.append(i % 10 == 0 ? '"' : 'a');
+    }
+
+    ServerSerializationStreamWriter writer = new ServerSerializationStreamWriter(null, 8);
+    int tokens = ServerSerializationStreamWriter.LengthConstrainedArray.MAXIMUM_ARRAY_LENGTH * 2;
+    for (int i = 0; i < tokens; i++) {
+      writer.writeInt(i);
+    }
+    writer.writeString(longString.toString());
+    writer.writeString("short");
+
+    // Encode the same payload with the buffered array, in reverse token order.
+    ServerSerializationStreamWriter.LengthConstrainedArray stringTable =
+        new ServerSerializationStreamWriter.LengthConstrainedArray();
+    stringTable.addToken(
+        ServerSerializationStreamWriter.escapeStringSplitNodes(longString.toString()));
+    stringTable.addToken(ServerSerializationStreamWriter.escapeStringSplitNodes("short"));
+    ServerSerializationStreamWriter.LengthConstrainedArray expected =
+        new ServerSerializationStreamWriter.LengthConstrainedArray();
+    expected.addToken(2);
+    expected.addToken(1);
+    for (int i = tokens - 1; i >= 0; i--) {
+      expected.addToken(i);
+    }
+    expected.addToken(stringTable.toString());
+    expected.addToken(0);
+    expected.addToken(7);
+
+    StringWriter out = new StringWriter();
+    writer.writeTo(out);
+    String encoded = out.toString();
+    assertEquals(expected.toString(), encoded);
+    assertTrue(encoded.contains("].concat(["));
+    assertTrue(encoded.contains("\"+\""));
+    assertTrue(encoded.length() >= writer.getEstimatedLength());
+  }
 }
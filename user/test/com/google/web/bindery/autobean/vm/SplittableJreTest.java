@@ -15,7 +15,13 @@
  */
 package com.google.web.bindery.autobean.vm;
 
+import com.google.web.bindery.autobean.shared.Splittable;
 import com.google.web.bindery.autobean.shared.SplittableTest;
+import com.google.web.bindery.autobean.shared.impl.StringQuoter;
+import com.google.web.bindery.autobean.vm.impl.JsonSplittable;
+
+import java.io.IOException;
+import java.io.StringWriter;
 
 /**
  * A JRE-only version of SplittableTest.
@@ -25,4 +31,52 @@ public class SplittableJreTest extends SplittableTest {
   public String getModuleName() {
     return null;
   }
+
+  public void testEscaping() {
+    assertEquals("\"a\\\"b\\\\c\\/d\\n\\u0001\u00e9\"",
+        StringQuoter.quote("a\"b\\c/d\n\u0001\u00e9"));
+    Splittable s = StringQuoter.split("{\"k\\u0041\":\"\\\"\\/\\t\\u00e9\"}");
+    assertEquals("\"/\t\u00e9", s.get("kA").asString());
+    assertEquals("{\"kA\":\"\\\"\\/\\t\u00e9\"}", s.getPayload());
+  }
+
+  public void testMalformed() {
+    for (String payload : new String[] {"{\"a\":}", "[1,2", "{\"a\" 1}", "[1] 2", "[\"a]"}) {
+      try {
+        StringQuoter.split(payload);
+        fail("Should not parse " + payload);
+      } catch (RuntimeException expected) {
+      }
+    }
+  }
+
+  /**
+   * Nested values are parsed on demand, and changes to them show up in the enclosing value.
+   */
+  public void testNestedChanges() {
+    Splittable s = StringQuoter.split("{\"a\": {\"b\": [1, 2.5, {\"c\": null}]}, \"d\": 1e2}");
+    Splittable b = s.get("a").get("b");
+    assertSame(b, s.get("a").get("b"));
+    assertEquals(3, b.size());
+    assertTrue(b.get(2).isNull("c"));
+    assertFalse(b.get(2).isUndefined("c"));
+
+    StringQuoter.create("x").assign(b.get(2), "c");
+    StringQuoter.create(true).assign(b, 3);
+    assertEquals("{\"a\":{\"b\":[1,2.5,{\"c\":\"x\"},true]},\"d\":100}", s.getPayload());
+  }
+
+  /**
+   * Values that were never looked at are written out as they were received.
+   */
+  public void testUnparsedPayload() throws IOException {
+    String nested = "{ \"b\" : [ 1.0 , \"x\" ] }";
+    Splittable s = StringQuoter.split("{\"a\":" + nested + ",\"c\":2}");
+    assertEquals(2.0, s.get("c").asNumber());
+    assertEquals("{\"a\":" + nested + ",\"c\":2}", s.getPayload());
+
+    StringWriter out = new StringWriter();
+    ((JsonSplittable) s).writePayload(out);
+    assertEquals(s.getPayload(), out.toString());
+  }
 }
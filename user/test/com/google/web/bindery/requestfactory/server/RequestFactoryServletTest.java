@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.web.bindery.requestfactory.server;
+
+import com.google.gwt.user.server.rpc.MockHttpServletRequest;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests the asynchronous processing of {@link RequestFactoryServlet}.
+ */
+public class RequestFactoryServletTest extends TestCase {
+
+  /**
+   * A servlet that queues requests on an executor that runs them when asked
+   * to.
+   */
+  private static class AsyncRequestFactoryServlet extends RequestFactoryServlet {
+    private final StringBuilder events;
+    private Runnable queued;
+
+    AsyncRequestFactoryServlet(StringBuilder events) {
+      this.events = events;
+    }
+
+    @Override
+    protected Executor getAsyncExecutor() {
+      return new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          events.append("queued ");
+          queued = command;
+        }
+      };
+    }
+  }
+
+  /**
+   * A JSON request that can be processed asynchronously and records the calls
+   * made to its AsyncContext.
+   */
+  private static class MockAsyncRequest extends MockHttpServletRequest {
+    private final String contentType;
+    private final String payload;
+    private final StringBuilder events;
+
+    MockAsyncRequest(String contentType, String payload, StringBuilder events) {
+      this.contentType = contentType;
+      this.payload = payload;
+      this.events = events;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+      return "UTF-8";
+    }
+
+    @Override
+    public String getContentType() {
+      return contentType;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      final ByteArrayInputStream in = new ByteArrayInputStream(payload.getBytes("UTF-8"));
+      return new ServletInputStream() {
+        @Override
+        public int read() {
+          return in.read();
+        }
+      };
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+      return true;
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+      assertSame(this, request);
+      events.append("start ");
+      return (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] {AsyncContext.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+              events.append(method.getName()).append(' ');
+              return null;
+            }
+          });
+    }
+  }
+
+  /**
+   * Returns a response that records the status it is given and collects what
+   * is written to it.
+   */
+  private static HttpServletResponse createResponse(final StringBuilder events,
+      final StringWriter body) {
+    return (HttpServletResponse) Proxy.newProxyInstance(
+        RequestFactoryServletTest.class.getClassLoader(),
+        new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("getWriter".equals(name)) {
+              return new PrintWriter(body);
+            } else if ("isCommitted".equals(name)) {
+              return false;
+            } else if ("setStatus".equals(name) || "sendError".equals(name)) {
+              events.append(name).append(' ').append(args[0]).append(' ');
+            }
+            return null;
+          }
+        });
+  }
+
+  private static AsyncRequestFactoryServlet createServlet(StringBuilder events)
+      throws ServletException {
+    AsyncRequestFactoryServlet servlet = new AsyncRequestFactoryServlet(events);
+    servlet.init((ServletConfig) Proxy.newProxyInstance(
+        RequestFactoryServletTest.class.getClassLoader(), new Class<?>[] {ServletConfig.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+          }
+        }));
+    return servlet;
+  }
+
+  public void testDoPost_Async() throws Exception {
+    StringBuilder events = new StringBuilder();
+    StringWriter body = new StringWriter();
+    AsyncRequestFactoryServlet servlet = createServlet(events);
+    HttpServletRequest request = new MockAsyncRequest("application/json", "{}", events);
+
+    servlet.doPost(request, createResponse(events, body));
+    assertEquals("start setTimeout queued ", events.toString());
+    assertEquals("", body.toString());
+
+    servlet.queued.run();
+    // The old-client failure is reported in the payload, then the request completes.
+    assertEquals("start setTimeout queued setStatus 200 complete ", events.toString());
+    assertTrue(body.toString(), body.toString().contains("out of sync"));
+    assertNull(RequestFactoryServlet.getThreadLocalRequest());
+    assertNull(RequestFactoryServlet.getThreadLocalResponse());
+  }
+
+  public void testDoPost_AsyncFailure() throws Exception {
+    StringBuilder events = new StringBuilder();
+    StringWriter body = new StringWriter();
+    AsyncRequestFactoryServlet servlet = createServlet(events);
+    // The wrong content type fails with a ServletException in the executor thread.
+    HttpServletRequest request = new MockAsyncRequest("text/plain", "{}", events);
+
+    servlet.doPost(request, createResponse(events, body));
+    servlet.queued.run();
+    assertEquals("start setTimeout queued sendError 500 complete ", events.toString());
+    assertEquals("", body.toString());
+  }
+}
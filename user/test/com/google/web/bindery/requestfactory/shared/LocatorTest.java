@@ -19,10 +19,78 @@ import com.google.gwt.core.client.GWT;
 import com.google.gwt.junit.client.GWTTestCase;
 import com.google.web.bindery.event.shared.SimpleEventBus;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Tests the use of Locator objects.
  */
 public class LocatorTest extends GWTTestCase {
+  /**
+   * A locator that must only be asked for its entities in bulk.
+   */
+  public static class BulkDomainLocator extends Locator<BulkDomain, Integer> {
+    static int findAllCalls;
+    static int idsFound;
+
+    @Override
+    public List<Boolean> areLive(List<BulkDomain> domainObjects) {
+      List<Boolean> toReturn = new ArrayList<Boolean>();
+      for (BulkDomain domainObject : domainObjects) {
+        toReturn.add(domainObject.getId() != DELETED_ID);
+      }
+      return toReturn;
+    }
+
+    @Override
+    public BulkDomain create(Class<? extends BulkDomain> clazz) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BulkDomain find(Class<? extends BulkDomain> clazz, Integer id) {
+      throw new UnsupportedOperationException("findAll() should have been called");
+    }
+
+    @Override
+    public List<BulkDomain> findAll(Class<? extends BulkDomain> clazz, List<Integer> ids) {
+      assertEquals(BulkDomain.class, clazz);
+      findAllCalls++;
+      idsFound += ids.size();
+      List<BulkDomain> toReturn = new ArrayList<BulkDomain>();
+      for (Integer id : ids) {
+        toReturn.add(new BulkDomain(id));
+      }
+      return toReturn;
+    }
+
+    @Override
+    public Class<BulkDomain> getDomainType() {
+      return BulkDomain.class;
+    }
+
+    @Override
+    public Integer getId(BulkDomain domainObject) {
+      return domainObject.getId();
+    }
+
+    @Override
+    public Class<Integer> getIdType() {
+      return Integer.class;
+    }
+
+    @Override
+    public Object getVersion(BulkDomain domainObject) {
+      return 0;
+    }
+
+    @Override
+    public boolean isLive(BulkDomain domainObject) {
+      throw new UnsupportedOperationException("areLive() should have been called");
+    }
+  }
+
   /**
    * The locator being tested.
    */
@@ -69,15 +137,47 @@ public class LocatorTest extends GWTTestCase {
 
   @Service(ContextImpl.class)
   interface Context extends RequestContext {
+    Request<List<Integer>> countBulkLoads(List<BulkDomainProxy> domains);
+
+    Request<List<BulkDomainProxy>> getBulkDomains();
+
     Request<DomainProxy> getDomain();
   }
 
   static class ContextImpl {
+    public static List<Integer> countBulkLoads(List<BulkDomain> domains) {
+      return Arrays.asList(BulkDomainLocator.findAllCalls, BulkDomainLocator.idsFound,
+          domains.size());
+    }
+
+    public static List<BulkDomain> getBulkDomains() {
+      BulkDomainLocator.findAllCalls = 0;
+      BulkDomainLocator.idsFound = 0;
+      return Arrays.asList(new BulkDomain(1), new BulkDomain(2), new BulkDomain(DELETED_ID));
+    }
+
     public static Domain getDomain() {
       return Domain.INSTANCE;
     }
   }
 
+  static class BulkDomain {
+    private final int id;
+
+    BulkDomain(int id) {
+      this.id = id;
+    }
+
+    public int getId() {
+      return id;
+    }
+  }
+
+  @ProxyFor(value = BulkDomain.class, locator = BulkDomainLocator.class)
+  interface BulkDomainProxy extends EntityProxy {
+    int getId();
+  }
+
   static class Domain {
     static final Domain INSTANCE = new Domain();
   }
@@ -88,6 +188,7 @@ public class LocatorTest extends GWTTestCase {
     EntityProxyId<DomainProxy> stableId();
   };
 
+  private static final int DELETED_ID = 3;
   private static final String ID = "DomainId";
   private static final int TEST_DELAY = 5000;
 
@@ -98,6 +199,26 @@ public class LocatorTest extends GWTTestCase {
     return "com.google.web.bindery.requestfactory.gwt.RequestFactorySuite";
   }
 
+  public void testBulkLocator() {
+    delayTestFinish(TEST_DELAY);
+    context().getBulkDomains().fire(new Receiver<List<BulkDomainProxy>>() {
+      @Override
+      public void onSuccess(List<BulkDomainProxy> response) {
+        assertEquals(3, response.size());
+        // The same entity twice should only be loaded once
+        List<BulkDomainProxy> domains = new ArrayList<BulkDomainProxy>(response);
+        domains.add(response.get(0));
+        context().countBulkLoads(domains).fire(new Receiver<List<Integer>>() {
+          @Override
+          public void onSuccess(List<Integer> counts) {
+            assertEquals(Arrays.asList(1, 3, 4), counts);
+            finishTest();
+          }
+        });
+      }
+    });
+  }
+
   public void testLocator() {
     delayTestFinish(TEST_DELAY);
     context().getDomain().fire(new Receiver<DomainProxy>() {
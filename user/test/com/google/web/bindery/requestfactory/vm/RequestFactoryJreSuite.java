@@ -29,6 +29,7 @@ import com.google.web.bindery.requestfactory.server.RequestFactoryExceptionPropa
 import com.google.web.bindery.requestfactory.server.RequestFactoryGenericsJreTest;
 import com.google.web.bindery.requestfactory.server.RequestFactoryJreTest;
 import com.google.web.bindery.requestfactory.server.RequestFactoryPolymorphicJreTest;
+import com.google.web.bindery.requestfactory.server.RequestFactoryServletTest;
 import com.google.web.bindery.requestfactory.server.RequestFactoryUnicodeEscapingJreTest;
 import com.google.web.bindery.requestfactory.server.RequestPayloadJreTest;
 import com.google.web.bindery.requestfactory.server.ServiceInheritanceJreTest;
@@ -61,6 +62,7 @@ public class RequestFactoryJreSuite {
     suite.addTestSuite(RequestFactoryGenericsJreTest.class);
     suite.addTestSuite(RequestFactoryJreTest.class);
     suite.addTestSuite(RequestFactoryPolymorphicJreTest.class);
+    suite.addTestSuite(RequestFactoryServletTest.class);
     suite.addTestSuite(RequestFactoryUnicodeEscapingJreTest.class);
     suite.addTestSuite(RequestPayloadJreTest.class);
     suite.addTestSuite(ServiceInheritanceJreTest.class);